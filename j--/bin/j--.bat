@@ -2,7 +2,8 @@
 
 REM Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
 
-REM Wrapper script for running jminusminus.Main program.
+REM Wrapper script for running the j-- compiler: the arguments are handed to a
+REM running compile server (see j--server), or else compiled right here.
 
 set BASE_DIR=%~dp0
 set j="%BASE_DIR%\..\"
@@ -12,7 +13,7 @@ if "%CLASSPATH%" == "" goto runApp
 set CPATH=%CPATH%;"%CLASSPATH%"
 
 :runApp
-%JAVA% -classpath %CPATH% jminusminus.Main "j--" %*
+%JAVA% -classpath %CPATH% jminusminus.CompileServer -client "j--" %*
 
 set JAVA=
 set BASE_DIR=
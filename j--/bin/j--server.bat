@@ -0,0 +1,20 @@
+@echo off
+
+REM Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+REM Wrapper script for starting (or, with -stop, stopping) the j-- compile
+REM server.
+
+set BASE_DIR=%~dp0
+set j="%BASE_DIR%\..\"
+set JAVA=java
+set CPATH="%BASE_DIR%\..\lib\j--.jar;%BASE_DIR%\..\lib\spim.jar"
+if "%CLASSPATH%" == "" goto runApp
+set CPATH=%CPATH%;"%CLASSPATH%"
+
+:runApp
+%JAVA% -classpath %CPATH% jminusminus.CompileServer %*
+
+set JAVA=
+set BASE_DIR=
+set CPATH=
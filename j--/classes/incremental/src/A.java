@@ -0,0 +1,10 @@
+package incremental;
+
+public class A {
+    public int f() {
+        return 1;
+    }
+    public int f(int x) {
+        return x;
+    }
+}
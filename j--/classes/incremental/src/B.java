@@ -0,0 +1,7 @@
+package incremental;
+
+public class B {
+    public int g() {
+        return new A().f();
+    }
+}
@@ -0,0 +1,388 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An audit of the memory taken by the ASTs of a compilation (the -Xstats
+ * option): the number of objects of each kind, and the bytes they take. Every
+ * object reachable from the compilation units through AST nodes, contexts and
+ * definitions is counted once: the nodes (by class), the contexts and
+ * definitions strung over them by analysis, and the arrays, ArrayLists and
+ * maps holding their children and entries. The types, symbols and names (the
+ * strings, which the nodes share with the scanner) the nodes refer to are
+ * not.
+ * 
+ * Sizes are worked out from the fields of the objects, not measured, for a
+ * 64-bit JVM with compressed references: a 12-byte object header (16 for an
+ * array), 4-byte references, and objects aligned to 8 bytes. The backing
+ * arrays of ArrayLists and the tables of maps, which cannot be looked into,
+ * are sized as they grow from their default capacities.
+ */
+
+class ASTStats {
+
+    /** Bytes of an object header. */
+    private final static int HEADER = 12;
+
+    /** Bytes of an array header (including its length). */
+    private final static int ARRAY_HEADER = 16;
+
+    /** Bytes of a reference. */
+    private final static int REFERENCE = 4;
+
+    /** Bytes to which objects are aligned. */
+    private final static int ALIGNMENT = 8;
+
+    /** Bytes of an ArrayList (but for its backing array). */
+    private final static int ARRAY_LIST = 24;
+
+    /** Bytes of a HashMap (but for its table and entries). */
+    private final static int HASH_MAP = 48;
+
+    /** Bytes of a HashMap entry. */
+    private final static int HASH_MAP_ENTRY = 32;
+
+    /** Bytes LinkedHashMaps (and their entries) add to HashMaps'. */
+    private final static int LINKED = 8;
+
+    /** Count and bytes of the objects of each kind, by name. */
+    private HashMap<String, long[]> kinds;
+
+    /** Number of AST nodes counted. */
+    private long nodeCount;
+
+    /** The objects counted. */
+    private IdentityHashMap<Object, Object> seen;
+
+    /** Reference fields (and shallow size) of each class looked into. */
+    private HashMap<Class<?>, Layout> layouts;
+
+    /**
+     * Construct an audit of the ASTs of the specified compilation units.
+     * 
+     * @param compilationUnits
+     *            the compilation units.
+     */
+
+    public ASTStats(ArrayList<JCompilationUnit> compilationUnits) {
+        kinds = new HashMap<String, long[]>();
+        seen = new IdentityHashMap<Object, Object>();
+        layouts = new HashMap<Class<?>, Layout>();
+
+        // An explicit stack, since ASTs may be (very) deep
+        ArrayDeque<Object> stack = new ArrayDeque<Object>();
+        stack.addAll(compilationUnits);
+        while (!stack.isEmpty()) {
+            visit(stack.pop(), stack);
+        }
+    }
+
+    /**
+     * Write the audit: a line for each kind of object, in decreasing order of
+     * the bytes taken, and the totals.
+     * 
+     * @param out
+     *            where to write.
+     */
+
+    public void writeTo(PrintStream out) {
+        ArrayList<Map.Entry<String, long[]>> rows;
+        rows = new ArrayList<Map.Entry<String, long[]>>(kinds.entrySet());
+        Collections.sort(rows, new Comparator<Map.Entry<String, long[]>>() {
+            public int compare(Map.Entry<String, long[]> a,
+                    Map.Entry<String, long[]> b) {
+                return a.getValue()[1] != b.getValue()[1] ? Long.compare(b
+                        .getValue()[1], a.getValue()[1]) : a.getKey()
+                        .compareTo(b.getKey());
+            }
+        });
+        long count = 0;
+        long bytes = 0;
+        out.println("AST memory (estimated, 64-bit JVM with compressed "
+                + "references)");
+        out.printf("%-28s %10s %12s %10s\n", "Kind", "Objects", "Bytes",
+                "Bytes/obj");
+        for (Map.Entry<String, long[]> row : rows) {
+            long[] kind = row.getValue();
+            out.printf("%-28s %10d %12d %10.1f\n", row.getKey(), kind[0],
+                    kind[1], (double) kind[1] / kind[0]);
+            count += kind[0];
+            bytes += kind[1];
+        }
+        out.printf("%-28s %10d %12d %10.1f\n", "Total", count, bytes,
+                count == 0 ? 0.0 : (double) bytes / count);
+    }
+
+    /**
+     * Return the number of AST nodes.
+     * 
+     * @return the number.
+     */
+
+    public long nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Return the count of objects of the specified kind.
+     * 
+     * @param kind
+     *            the name of the kind (eg, JBlock or ArrayList).
+     * @return the count.
+     */
+
+    public long count(String kind) {
+        long[] counts = kinds.get(kind);
+        return counts == null ? 0 : counts[0];
+    }
+
+    /**
+     * Return the bytes taken by the objects of the specified kind.
+     * 
+     * @param kind
+     *            the name of the kind.
+     * @return the bytes.
+     */
+
+    public long bytes(String kind) {
+        long[] counts = kinds.get(kind);
+        return counts == null ? 0 : counts[1];
+    }
+
+    /**
+     * Count the specified object, if it is one of those audited and not yet
+     * counted, and push the objects it refers to.
+     * 
+     * @param object
+     *            the object.
+     * @param stack
+     *            the objects still to visit.
+     */
+
+    private void visit(Object object, ArrayDeque<Object> stack) {
+        if (object == null || seen.containsKey(object)) {
+            return;
+        }
+        if (object instanceof JAST || object instanceof Context
+                || object instanceof IDefn) {
+            seen.put(object, object);
+            if (object instanceof JAST) {
+                nodeCount++;
+            }
+            Layout layout = layout(object.getClass());
+            count(object.getClass().getSimpleName(), layout.size);
+            for (Field field : layout.references) {
+                try {
+                    Object value = field.get(object);
+                    if (value != null) {
+                        stack.push(value);
+                    }
+                } catch (IllegalAccessException e) {
+                    // Set accessible in layout()
+                }
+            }
+        } else if (object.getClass().isArray()) {
+            seen.put(object, object);
+            Class<?> component = object.getClass().getComponentType();
+            int length = Array.getLength(object);
+            count(component.getSimpleName() + "[]", array(length,
+                    component.isPrimitive() ? primitiveSize(component)
+                            : REFERENCE));
+            if (!component.isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    Object element = Array.get(object, i);
+                    if (element != null) {
+                        stack.push(element);
+                    }
+                }
+            }
+        } else if (object instanceof ArrayList) {
+            seen.put(object, object);
+            ArrayList<?> list = (ArrayList<?>) object;
+            count("ArrayList", ARRAY_LIST
+                    + (list.isEmpty() ? 0 : array(capacity(list.size()),
+                            REFERENCE)));
+            for (Object element : list) {
+                if (element != null) {
+                    stack.push(element);
+                }
+            }
+        } else if (object instanceof HashMap) {
+            seen.put(object, object);
+            HashMap<?, ?> map = (HashMap<?, ?>) object;
+            boolean linked = map instanceof LinkedHashMap;
+            int table = map.isEmpty() ? 0 : array(tableSize(map.size()),
+                    REFERENCE);
+            count(map.getClass().getSimpleName(), HASH_MAP
+                    + (linked ? LINKED : 0) + table + map.size()
+                    * (HASH_MAP_ENTRY + (linked ? LINKED : 0)));
+            for (Object value : map.values()) {
+                if (value != null) {
+                    stack.push(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an object of the specified kind to the counts.
+     * 
+     * @param kind
+     *            name of the kind.
+     * @param bytes
+     *            bytes taken by the object.
+     */
+
+    private void count(String kind, long bytes) {
+        long[] counts = kinds.get(kind);
+        if (counts == null) {
+            counts = new long[2];
+            kinds.put(kind, counts);
+        }
+        counts[0]++;
+        counts[1] += bytes;
+    }
+
+    /**
+     * Return the layout of the specified class, working it out the first time
+     * it is asked for.
+     * 
+     * @param c
+     *            the class.
+     * @return its layout.
+     */
+
+    private Layout layout(Class<?> c) {
+        Layout layout = layouts.get(c);
+        if (layout == null) {
+            layout = new Layout();
+            int size = HEADER;
+            for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+                for (Field field : k.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    Class<?> type = field.getType();
+                    if (type.isPrimitive()) {
+                        size += primitiveSize(type);
+                    } else {
+                        size += REFERENCE;
+                        field.setAccessible(true);
+                        layout.references.add(field);
+                    }
+                }
+            }
+            layout.size = align(size);
+            layouts.put(c, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Return the bytes taken by an array.
+     * 
+     * @param length
+     *            its length.
+     * @param elementSize
+     *            bytes taken by each element.
+     * @return the bytes.
+     */
+
+    private static int array(int length, int elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    /**
+     * Return the capacity of an ArrayList grown (from the default capacity)
+     * to the specified size.
+     * 
+     * @param size
+     *            its size.
+     * @return the capacity.
+     */
+
+    private static int capacity(int size) {
+        int capacity = 10;
+        while (capacity < size) {
+            capacity += capacity >> 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Return the table size of a HashMap grown (from the default capacity)
+     * to the specified size.
+     * 
+     * @param size
+     *            its size.
+     * @return the table size.
+     */
+
+    private static int tableSize(int size) {
+        int tableSize = 16;
+        while (size > tableSize * 3 / 4) {
+            tableSize *= 2;
+        }
+        return tableSize;
+    }
+
+    /**
+     * Return the bytes taken by a value of the specified primitive type.
+     * 
+     * @param type
+     *            the type.
+     * @return the bytes.
+     */
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Align the specified size.
+     * 
+     * @param size
+     *            the size.
+     * @return the aligned size.
+     */
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * The reference fields of a class (those of its super classes included),
+     * and the bytes taken by an instance.
+     */
+
+    private static class Layout {
+
+        /** The reference fields. */
+        private ArrayList<Field> references = new ArrayList<Field>();
+
+        /** Bytes taken by an instance. */
+        private int size;
+
+    }
+
+}
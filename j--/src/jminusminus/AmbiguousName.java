@@ -81,7 +81,7 @@ class AmbiguousName {
                 break;
             } else if (!st.hasMoreTokens()) {
                 // Nothing found. :(
-                JAST.compilationUnit.reportSemanticError(line,
+                context.compilationUnit().reportSemanticError(line,
                         "Cannot find name " + newName);
                 return null;
             } else {
@@ -26,6 +26,12 @@ public class CLAbsorber {
     /** Name of the class that is read. */
     private String className;
 
+    /**
+     * Whether only the headers are read, skipping over the attributes (see
+     * CLAbsorber(String, CLInputStream, boolean)).
+     */
+    private boolean headersOnly;
+
     /**
      * Print the specified warning to STDERR.
      * 
@@ -111,9 +117,22 @@ public class CLAbsorber {
                 case CONSTANT_Utf8:
                     int length = in.readUnsignedShort();
                     byte[] b = new byte[length];
-                    in.read(b);
+                    in.readFully(b);
                     cp.addCPItem(new CLConstantUtf8Info(b));
                     break;
+                case CONSTANT_MethodHandle:
+                    cp.addCPItem(new CLConstantMethodHandleInfo(in
+                            .readUnsignedByte(), in.readUnsignedShort()));
+                    break;
+                case CONSTANT_MethodType:
+                    cp.addCPItem(new CLConstantMethodTypeInfo(in
+                            .readUnsignedShort()));
+                    break;
+                case CONSTANT_Dynamic:
+                case CONSTANT_InvokeDynamic:
+                    cp.addCPItem(new CLConstantDynamicInfo((short) tag, in
+                            .readUnsignedShort(), in.readUnsignedShort()));
+                    break;
                 default:
                     reportError("Unknown cp_info tag '%d'", tag);
                     return cp;
@@ -184,6 +203,7 @@ public class CLAbsorber {
 
     /**
      * Read the attributes from the specified stream, and return them as a list
+     * (an empty one if only the headers are being read).
      * 
      * @param in
      *            input stream.
@@ -200,6 +220,10 @@ public class CLAbsorber {
             for (int i = 0; i < attributesCount; i++) {
                 int attributeNameIndex = in.readUnsignedShort();
                 long attributeLength = in.readUnsignedInt();
+                if (headersOnly) {
+                    in.skipFully(attributeLength);
+                    continue;
+                }
                 CLAttributeInfo attributeInfo = null;
                 String attributeName = new String(((CLConstantUtf8Info) cp
                         .cpItem(attributeNameIndex)).b);
@@ -261,6 +285,9 @@ public class CLAbsorber {
                 } else if (attributeName.equals(ATT_ANNOTATION_DEFAULT)) {
                     attributeInfo = readAnnotationDefaultAttribute(in,
                             attributeNameIndex, attributeLength);
+                } else if (attributeName.equals(ATT_STACK_MAP_TABLE)) {
+                    attributeInfo = readStackMapTableAttribute(in,
+                            attributeNameIndex, attributeLength);
                 } else {
                     reportWarning("Unknown attribute '%s'", attributeName,
                             className);
@@ -322,11 +349,9 @@ public class CLAbsorber {
         try {
             int maxStack = in.readUnsignedShort();
             int maxLocals = in.readUnsignedShort();
-            ArrayList<Integer> code = new ArrayList<Integer>();
             long codeLength = in.readUnsignedInt();
-            for (long l = 0; l < codeLength; l++) {
-                code.add(in.readUnsignedByte());
-            }
+            byte[] code = new byte[(int) codeLength];
+            in.readFully(code);
             int exceptionTableLength = in.readUnsignedShort();
             ArrayList<CLExceptionInfo> exceptionTable = new ArrayList<CLExceptionInfo>();
             for (int l = 0; l < exceptionTableLength; l++) {
@@ -826,6 +851,94 @@ public class CLAbsorber {
                 attributeLength, readElementValue(in));
     }
 
+    /**
+     * Read a StackMapTable attribute from the specified input stream, and
+     * return it.
+     * 
+     * @param in
+     *            input stream.
+     * @param attributeNameIndex
+     *            constant pool index of the attribute name.
+     * @param attributeLength
+     *            length of attribute.
+     * @return a StackMapTable attribute.
+     */
+
+    private CLStackMapTableAttribute readStackMapTableAttribute(
+            CLInputStream in, int attributeNameIndex, long attributeLength) {
+        CLStackMapTableAttribute attribute = null;
+        try {
+            int numberOfEntries = in.readUnsignedShort();
+            ArrayList<CLStackMapFrame> entries = new ArrayList<CLStackMapFrame>();
+            for (int m = 0; m < numberOfEntries; m++) {
+                int frameType = in.readUnsignedByte();
+                int offsetDelta = 0;
+                int numberOfLocals = 0;
+                int numberOfStackItems = 0;
+                if (frameType < SAME_LOCALS_1_STACK_ITEM_FRAME) {
+                    offsetDelta = frameType;
+                } else if (frameType < SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
+                    offsetDelta = frameType - SAME_LOCALS_1_STACK_ITEM_FRAME;
+                    numberOfStackItems = 1;
+                } else {
+                    offsetDelta = in.readUnsignedShort();
+                    if (frameType == SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
+                        numberOfStackItems = 1;
+                    } else if (frameType == FULL_FRAME) {
+                        numberOfLocals = in.readUnsignedShort();
+                    } else if (frameType >= APPEND_FRAME) {
+                        numberOfLocals = frameType - APPEND_FRAME + 1;
+                    }
+                }
+                ArrayList<CLVerificationTypeInfo> locals = readVerificationTypes(
+                        in, numberOfLocals);
+                if (frameType == FULL_FRAME) {
+                    numberOfStackItems = in.readUnsignedShort();
+                }
+                ArrayList<CLVerificationTypeInfo> stack = readVerificationTypes(
+                        in, numberOfStackItems);
+                entries.add(new CLStackMapFrame(frameType, offsetDelta, locals,
+                        stack));
+            }
+            attribute = new CLStackMapTableAttribute(attributeNameIndex,
+                    attributeLength, numberOfEntries, entries);
+        } catch (IOException e) {
+            reportError("Error reading StackMapTable_attribute from file %s",
+                    className);
+        }
+        return attribute;
+    }
+
+    /**
+     * Read the specified number of verification_type_info structures from the
+     * specified input stream, and return them.
+     * 
+     * @param in
+     *            input stream.
+     * @param count
+     *            number of structures.
+     * @return the verification types.
+     * @throws IOException
+     *             if an error occurs while reading.
+     */
+
+    private ArrayList<CLVerificationTypeInfo> readVerificationTypes(
+            CLInputStream in, int count) throws IOException {
+        ArrayList<CLVerificationTypeInfo> types = new ArrayList<CLVerificationTypeInfo>();
+        for (int i = 0; i < count; i++) {
+            short tag = (short) in.readUnsignedByte();
+            int cpoolIndex = 0;
+            int offset = 0;
+            if (tag == ITEM_Object) {
+                cpoolIndex = in.readUnsignedShort();
+            } else if (tag == ITEM_Uninitialized) {
+                offset = in.readUnsignedShort();
+            }
+            types.add(new CLVerificationTypeInfo(tag, cpoolIndex, offset));
+        }
+        return types;
+    }
+
     /**
      * Read an ElementValue from the specified input stream, and return it.
      * 
@@ -913,10 +1026,31 @@ public class CLAbsorber {
      */
 
     public CLAbsorber(String className) {
+        this(className, new CLPath().loadClass(className), false);
+    }
+
+    /**
+     * Construct a CLAbsorber object that reads the class having the specified
+     * (fully-qualified) name from the specified stream, and then closes the
+     * stream. If headersOnly is true, only the class's headers are read: the
+     * constant pool, its access flags, super class and interfaces, and the
+     * access flags, names and descriptors of its fields and methods. Their
+     * attributes (method bodies among them), and the class's own, are skipped
+     * over.
+     * 
+     * @param className
+     *            fully qualified name of the input class file.
+     * @param in
+     *            stream from which the class file is read; null if the class
+     *            file could not be found.
+     * @param headersOnly
+     *            whether only the headers are read.
+     */
+
+    public CLAbsorber(String className, CLInputStream in, boolean headersOnly) {
         try {
             this.className = className;
-            CLPath classPath = new CLPath();
-            CLInputStream in = classPath.loadClass(className);
+            this.headersOnly = headersOnly;
             errorHasOccurred = false;
             if (in == null) {
                 reportError("Error loading %s", className);
@@ -978,12 +1112,24 @@ public class CLAbsorber {
             }
 
             // Read class attributes
+            if (headersOnly) {
+                classFile.attributes = new ArrayList<CLAttributeInfo>();
+                return;
+            }
             classFile.attributesCount = in.readUnsignedShort();
             classFile.attributes = readAttributes(in, classFile.attributesCount);
         } catch (EOFException e) {
             reportError("Unexpected end of file %s", className);
         } catch (IOException e) {
             reportError("Error reading file %s", className);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
         }
     }
 
@@ -1076,10 +1222,33 @@ class CLInputStream extends DataInputStream {
     public final long readUnsignedInt() throws IOException {
         byte[] b = new byte[4];
         long mask = 0xFF, l;
-        in.read(b);
+        readFully(b);
         l = ((b[0] & mask) << 24) | ((b[1] & mask) << 16)
                 | ((b[2] & mask) << 8) | (b[3] & mask);
         return l;
     }
 
+    /**
+     * Skip over exactly n bytes of the input stream.
+     * 
+     * @param n
+     *            number of bytes to skip.
+     * @exception EOFException
+     *                if this stream reaches the end before skipping all the
+     *                bytes.
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    public final void skipFully(long n) throws IOException {
+        while (n > 0) {
+            int skipped = skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (skipped == 0) {
+                readUnsignedByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
 }
@@ -10,7 +10,8 @@ import static jminusminus.CLConstants.*;
  * Representation of attribute_info structure (JVM Spec Section 4.8). Classes
  * representing individual attributes inherit this class. This file has
  * representations for all attributes specified in JVM Spec Second Edition,
- * including the ones that were added for JDK 1.5.
+ * including the ones that were added for JDK 1.5, and for the StackMapTable
+ * attribute that was added for JDK 1.6.
  * 
  * Attributes are used in the ClassFile (CLFile), field_info (CLFieldInfo),
  * method_info (CLMethodInfo), and Code_attribute (CLCodeAttribute) structures
@@ -228,7 +229,7 @@ class CLCodeAttribute extends CLAttributeInfo {
     /**
      * Code_attribute.code item.
      */
-    public ArrayList<Integer> code;
+    public byte[] code;
 
     /** Code_attribute.exception_table_length item. */
     public int exceptionTableLength;
@@ -260,6 +261,18 @@ class CLCodeAttribute extends CLAttributeInfo {
         return (a << 24) | (b << 16) | (c << 8) | d;
     }
 
+    /**
+     * Return the byte at the specified index of the code, unsigned.
+     * 
+     * @param i
+     *            the index.
+     * @return the byte.
+     */
+
+    private int unsignedByte(int i) {
+        return code[i] & 0xFF;
+    }
+
     /**
      * Construct a CLCodeAttribute object.
      * 
@@ -286,8 +299,8 @@ class CLCodeAttribute extends CLAttributeInfo {
      */
 
     public CLCodeAttribute(int attributeNameIndex, long attributeLength,
-            int maxStack, int maxLocals, long codeLength,
-            ArrayList<Integer> code, int exceptionTableLength,
+            int maxStack, int maxLocals, long codeLength, byte[] code,
+            int exceptionTableLength,
             ArrayList<CLExceptionInfo> exceptionTable, int attributesCount,
             ArrayList<CLAttributeInfo> attributes) {
         super(attributeNameIndex, attributeLength);
@@ -310,9 +323,7 @@ class CLCodeAttribute extends CLAttributeInfo {
         out.writeShort(maxStack);
         out.writeShort(maxLocals);
         out.writeInt(codeLength);
-        for (int i = 0; i < code.size(); i++) {
-            out.writeByte(code.get(i));
-        }
+        out.write(code, 0, code.length);
         out.writeShort(exceptionTableLength);
         for (int i = 0; i < exceptionTable.size(); i++) {
             exceptionTable.get(i).write(out);
@@ -336,9 +347,9 @@ class CLCodeAttribute extends CLAttributeInfo {
         p.printf("Code Length: %s\n", codeLength);
         p.printf("%-10s%-17s%s\n", "PC", "Opcode", "Operands");
         p.printf("%-10s%-17s%s\n", "--", "------", "--------");
-        for (int i = 0; i < code.size(); i++) {
+        for (int i = 0; i < code.length; i++) {
             int pc = i;
-            int opcode = code.get(i);
+            int opcode = unsignedByte(i);
             String mnemonic = CLInstruction.instructionInfo[opcode].mnemonic;
             int operandBytes = CLInstruction.instructionInfo[opcode].operandCount;
             short operandByte1, operandByte2, operandByte3, operandByte4;
@@ -348,27 +359,27 @@ class CLCodeAttribute extends CLAttributeInfo {
                 p.printf("%-10s%-17s\n", pc, mnemonic);
                 break;
             case 1:
-                operandByte1 = code.get(++i).shortValue();
+                operandByte1 = (short) unsignedByte(++i);
                 p.printf("%-10s%-17s%-5s\n", pc, mnemonic, operandByte1);
                 break;
             case 2:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
+                operandByte1 = (short) unsignedByte(++i);
+                operandByte2 = (short) unsignedByte(++i);
                 p.printf("%-10s%-17s%-5s%-5s\n", pc, mnemonic, operandByte1,
                         operandByte2);
                 break;
             case 3:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
+                operandByte1 = (short) unsignedByte(++i);
+                operandByte2 = (short) unsignedByte(++i);
+                operandByte3 = (short) unsignedByte(++i);
                 p.printf("%-10s%-17s%-5s%-5s%-5s\n", pc, mnemonic,
                         operandByte1, operandByte2, operandByte3);
                 break;
             case 4:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
-                operandByte4 = code.get(++i).shortValue();
+                operandByte1 = (short) unsignedByte(++i);
+                operandByte2 = (short) unsignedByte(++i);
+                operandByte3 = (short) unsignedByte(++i);
+                operandByte4 = (short) unsignedByte(++i);
                 p.printf("%-10s%-17s%-5s%-5s%-5s%-5s\n", pc, mnemonic,
                         operandByte1, operandByte2, operandByte3, operandByte4);
                 break;
@@ -377,17 +388,18 @@ class CLCodeAttribute extends CLAttributeInfo {
                     int low, high;
                     pad = 4 - ((i + 1) % 4);
                     i = i + pad + 1;
-                    deflt = intValue(code.get(i++), code.get(i++), code
-                            .get(i++), code.get(i++));
-                    low = intValue(code.get(i++), code.get(i++), code.get(i++),
-                            code.get(i++));
-                    high = intValue(code.get(i++), code.get(i++),
-                            code.get(i++), code.get(i));
+                    deflt = intValue(unsignedByte(i++), unsignedByte(i++),
+                            unsignedByte(i++), unsignedByte(i++));
+                    low = intValue(unsignedByte(i++), unsignedByte(i++),
+                            unsignedByte(i++), unsignedByte(i++));
+                    high = intValue(unsignedByte(i++), unsignedByte(i++),
+                            unsignedByte(i++), unsignedByte(i));
                     p.printf("%-10s%s { // %s to %s \n", pc, mnemonic, low,
                             high);
                     for (int idx = low; idx <= high; idx++) {
-                        int offset = intValue(code.get(++i), code.get(++i),
-                                code.get(++i), code.get(++i));
+                        int offset = intValue(unsignedByte(++i),
+                                unsignedByte(++i), unsignedByte(++i),
+                                unsignedByte(++i));
                         p.printf("%-10s    %s:%s\n", "", idx, offset);
                     }
                     p.printf("%-10s    default: %s\n", "", deflt);
@@ -396,16 +408,18 @@ class CLCodeAttribute extends CLAttributeInfo {
                     int nPairs;
                     pad = 4 - ((i + 1) % 4);
                     i = i + pad + 1;
-                    deflt = intValue(code.get(i++), code.get(i++), code
-                            .get(i++), code.get(i++));
-                    nPairs = intValue(code.get(i++), code.get(i++), code
-                            .get(i++), code.get(i));
+                    deflt = intValue(unsignedByte(i++), unsignedByte(i++),
+                            unsignedByte(i++), unsignedByte(i++));
+                    nPairs = intValue(unsignedByte(i++), unsignedByte(i++),
+                            unsignedByte(i++), unsignedByte(i));
                     p.printf("%-10s%s { \n", pc, mnemonic);
                     for (int idx = 0; idx < nPairs; idx++) {
-                        int match = intValue(code.get(++i), code.get(++i), code
-                                .get(++i), code.get(++i));
-                        int offset = intValue(code.get(++i), code.get(++i),
-                                code.get(++i), code.get(++i));
+                        int match = intValue(unsignedByte(++i),
+                                unsignedByte(++i), unsignedByte(++i),
+                                unsignedByte(++i));
+                        int offset = intValue(unsignedByte(++i),
+                                unsignedByte(++i), unsignedByte(++i),
+                                unsignedByte(++i));
                         p.printf("%-10s    %s:%s\n", "", match, offset);
                     }
                     p.printf("%-10s    default: %s\n", "", deflt);
@@ -2088,3 +2102,321 @@ class CLAnnotationDefaultAttribute extends CLAttributeInfo {
     }
 
 }
+
+/**
+ * Representation of verification_type_info structure (JVM Spec Java SE 7
+ * Edition, Section 4.7.4).
+ */
+
+class CLVerificationTypeInfo {
+
+    /** verification_type_info.tag item. */
+    public short tag;
+
+    /**
+     * Object_variable_info.cpool_index item; applies only to ITEM_Object.
+     */
+    public int cpoolIndex;
+
+    /**
+     * Uninitialized_variable_info.offset item; applies only to
+     * ITEM_Uninitialized.
+     */
+    public int offset;
+
+    /**
+     * Construct a CLVerificationTypeInfo object.
+     * 
+     * @param tag
+     *            verification_type_info.tag item.
+     * @param cpoolIndex
+     *            Object_variable_info.cpool_index item.
+     * @param offset
+     *            Uninitialized_variable_info.offset item.
+     */
+
+    public CLVerificationTypeInfo(short tag, int cpoolIndex, int offset) {
+        this.tag = tag;
+        this.cpoolIndex = cpoolIndex;
+        this.offset = offset;
+    }
+
+    /**
+     * Return the number of bytes this object takes in the class file.
+     * 
+     * @return the number of bytes.
+     */
+
+    public int length() {
+        return tag == ITEM_Object || tag == ITEM_Uninitialized ? 3 : 1;
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     * 
+     * @param out
+     *            output stream.
+     * @throws IOException
+     *             if an error occurs while writing.
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        out.writeByte(tag);
+        if (tag == ITEM_Object) {
+            out.writeShort(cpoolIndex);
+        } else if (tag == ITEM_Uninitialized) {
+            out.writeShort(offset);
+        }
+    }
+
+    /**
+     * Return true if this verification_type_info object is "equal to" the
+     * specified verification_type_info object, false otherwise.
+     * 
+     * @param obj
+     *            the reference verification_type_info object with which to
+     *            compare.
+     * @return true if this verification_type_info object is "equal to" the
+     *         specified verification_type_info object, false otherwise.
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLVerificationTypeInfo) {
+            CLVerificationTypeInfo c = (CLVerificationTypeInfo) obj;
+            return c.tag == tag && c.cpoolIndex == cpoolIndex
+                    && c.offset == offset;
+        }
+        return false;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * (31 * tag + cpoolIndex) + offset;
+    }
+
+    /**
+     * Write the contents of this object to STDOUT in a format similar to that
+     * of javap.
+     * 
+     * @param p
+     *            for pretty printing with indentation.
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        String[] items = { "Top", "Integer", "Float", "Double", "Long",
+                "Null", "UninitializedThis", "Object", "Uninitialized" };
+        if (tag == ITEM_Object) {
+            p.printf("%s #%s\n", items[tag], cpoolIndex);
+        } else if (tag == ITEM_Uninitialized) {
+            p.printf("%s %s\n", items[tag], offset);
+        } else {
+            p.printf("%s\n", items[tag]);
+        }
+    }
+
+}
+
+/**
+ * Representation of stack_map_frame structure (JVM Spec Java SE 7 Edition,
+ * Section 4.7.4). The frame_type item says which of the union's structures
+ * (same_frame, chop_frame, append_frame, full_frame, and so on) this is, and so
+ * which of the other items apply.
+ */
+
+class CLStackMapFrame {
+
+    /** stack_map_frame.frame_type item. */
+    public int frameType;
+
+    /**
+     * stack_map_frame.offset_delta item (implicit in frame_type for same_frame
+     * and same_locals_1_stack_item_frame).
+     */
+    public int offsetDelta;
+
+    /**
+     * stack_map_frame.locals item: all of the locals for full_frame, the new
+     * ones for append_frame, and none for other frames.
+     */
+    public ArrayList<CLVerificationTypeInfo> locals;
+
+    /**
+     * stack_map_frame.stack item: the operand stack for full_frame and the
+     * same_locals_1_stack_item frames, and none for other frames.
+     */
+    public ArrayList<CLVerificationTypeInfo> stack;
+
+    /**
+     * Construct a CLStackMapFrame object.
+     * 
+     * @param frameType
+     *            stack_map_frame.frame_type item.
+     * @param offsetDelta
+     *            stack_map_frame.offset_delta item.
+     * @param locals
+     *            stack_map_frame.locals item.
+     * @param stack
+     *            stack_map_frame.stack item.
+     */
+
+    public CLStackMapFrame(int frameType, int offsetDelta,
+            ArrayList<CLVerificationTypeInfo> locals,
+            ArrayList<CLVerificationTypeInfo> stack) {
+        this.frameType = frameType;
+        this.offsetDelta = offsetDelta;
+        this.locals = locals;
+        this.stack = stack;
+    }
+
+    /**
+     * Return the number of bytes this object takes in the class file.
+     * 
+     * @return the number of bytes.
+     */
+
+    public int length() {
+        int length = 1;
+        if (frameType >= SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
+            length += 2;
+        }
+        if (frameType == FULL_FRAME) {
+            length += 4;
+        }
+        for (int i = 0; i < locals.size(); i++) {
+            length += locals.get(i).length();
+        }
+        for (int i = 0; i < stack.size(); i++) {
+            length += stack.get(i).length();
+        }
+        return length;
+    }
+
+    /**
+     * Write the contents of this object to the specified output stream.
+     * 
+     * @param out
+     *            output stream.
+     * @throws IOException
+     *             if an error occurs while writing.
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        out.writeByte(frameType);
+        if (frameType >= SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
+            out.writeShort(offsetDelta);
+        }
+        if (frameType == FULL_FRAME) {
+            out.writeShort(locals.size());
+        }
+        for (int i = 0; i < locals.size(); i++) {
+            locals.get(i).write(out);
+        }
+        if (frameType == FULL_FRAME) {
+            out.writeShort(stack.size());
+        }
+        for (int i = 0; i < stack.size(); i++) {
+            stack.get(i).write(out);
+        }
+    }
+
+    /**
+     * Write the contents of this object to STDOUT in a format similar to that
+     * of javap.
+     * 
+     * @param p
+     *            for pretty printing with indentation.
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        p.printf("Frame Type: %s, Offset Delta: %s\n", frameType, offsetDelta);
+        p.indentRight();
+        if (locals.size() > 0) {
+            p.printf("Locals:\n");
+            p.indentRight();
+            for (int i = 0; i < locals.size(); i++) {
+                locals.get(i).writeToStdOut(p);
+            }
+            p.indentLeft();
+        }
+        if (stack.size() > 0) {
+            p.printf("Stack:\n");
+            p.indentRight();
+            for (int i = 0; i < stack.size(); i++) {
+                stack.get(i).writeToStdOut(p);
+            }
+            p.indentLeft();
+        }
+        p.indentLeft();
+    }
+
+}
+
+/**
+ * Representation of StackMapTable_attribute structure (JVM Spec Java SE 7
+ * Edition, Section 4.7.4). From class file version 50 on, it is a Code
+ * attribute giving the types of the locals and operand stack at each branch
+ * target and exception handler of the method, which the type-checking verifier
+ * checks the method's code against, rather than inferring them itself.
+ */
+
+class CLStackMapTableAttribute extends CLAttributeInfo {
+
+    /** StackMapTable_attribute.number_of_entries item. */
+    public int numberOfEntries;
+
+    /** StackMapTable_attribute.entries item. */
+    public ArrayList<CLStackMapFrame> entries;
+
+    /**
+     * Construct a CLStackMapTableAttribute object.
+     * 
+     * @param attributeNameIndex
+     *            StackMapTable_attribute.attribute_name_index item.
+     * @param attributeLength
+     *            StackMapTable_attribute.attribute_length item.
+     * @param numberOfEntries
+     *            StackMapTable_attribute.number_of_entries item.
+     * @param entries
+     *            StackMapTable_attribute.entries item.
+     */
+
+    public CLStackMapTableAttribute(int attributeNameIndex,
+            long attributeLength, int numberOfEntries,
+            ArrayList<CLStackMapFrame> entries) {
+        super(attributeNameIndex, attributeLength);
+        this.numberOfEntries = numberOfEntries;
+        this.entries = entries;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(numberOfEntries);
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).write(out);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        p.printf("StackMapTable {\n");
+        p.indentRight();
+        super.writeToStdOut(p);
+        p.printf("Number of Entries: %s\n", numberOfEntries);
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).writeToStdOut(p);
+        }
+        p.indentLeft();
+        p.printf("}\n");
+    }
+
+}
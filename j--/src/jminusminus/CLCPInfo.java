@@ -4,6 +4,7 @@ package jminusminus;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import static jminusminus.CLConstants.*;
 
 /**
@@ -99,6 +100,14 @@ class CLConstantClassInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + nameIndex;
+    }
+
     /**
      * @inheritDoc
      */
@@ -166,6 +175,14 @@ abstract class CLConstantMemberRefInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return (31 * tag + classIndex) * 31 + nameAndTypeIndex;
+    }
+
 }
 
 /**
@@ -304,6 +321,14 @@ class CLConstantStringInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + stringIndex;
+    }
+
     /**
      * @inheritDoc
      */
@@ -380,6 +405,14 @@ class CLConstantIntegerInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + i;
+    }
+
     /**
      * @inheritDoc
      */
@@ -445,13 +478,21 @@ class CLConstantFloatInfo extends CLCPInfo {
     public boolean equals(Object obj) {
         if (obj instanceof CLConstantFloatInfo) {
             CLConstantFloatInfo c = (CLConstantFloatInfo) obj;
-            if (c.f == f) {
+            if (Float.floatToIntBits(c.f) == Float.floatToIntBits(f)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + Float.floatToIntBits(f);
+    }
+
     /**
      * @inheritDoc
      */
@@ -556,6 +597,14 @@ class CLConstantLongInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + (int) (l ^ (l >>> 32));
+    }
+
     /**
      * @inheritDoc
      */
@@ -653,13 +702,22 @@ class CLConstantDoubleInfo extends CLCPInfo {
     public boolean equals(Object obj) {
         if (obj instanceof CLConstantDoubleInfo) {
             CLConstantDoubleInfo c = (CLConstantDoubleInfo) obj;
-            if (c.d == d) {
+            if (Double.doubleToLongBits(c.d) == Double.doubleToLongBits(d)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(d);
+        return 31 * tag + (int) (bits ^ (bits >>> 32));
+    }
+
     /**
      * @inheritDoc
      */
@@ -724,6 +782,14 @@ class CLConstantNameAndTypeInfo extends CLCPInfo {
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return (31 * tag + nameIndex) * 31 + descriptorIndex;
+    }
+
     /**
      * @inheritDoc
      */
@@ -735,6 +801,224 @@ class CLConstantNameAndTypeInfo extends CLCPInfo {
 
 }
 
+/**
+ * Representation of CONSTANT_MethodHandle_info structure (JVM Spec Section
+ * 4.4.8). j-- never emits one; they are read from the class files of library
+ * classes.
+ */
+
+class CLConstantMethodHandleInfo extends CLCPInfo {
+
+    /** CONSTANT_MethodHandle_info.reference_kind item. */
+    public int referenceKind;
+
+    /** CONSTANT_MethodHandle_info.reference_index item. */
+    public int referenceIndex;
+
+    /**
+     * Construct a CLConstantMethodHandleInfo object.
+     * 
+     * @param referenceKind
+     *            CONSTANT_MethodHandle_info.reference_kind item.
+     * @param referenceIndex
+     *            CONSTANT_MethodHandle_info.reference_index item.
+     */
+
+    public CLConstantMethodHandleInfo(int referenceKind, int referenceIndex) {
+        super.tag = CONSTANT_MethodHandle;
+        this.referenceKind = referenceKind;
+        this.referenceIndex = referenceIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeByte(referenceKind);
+        out.writeShort(referenceIndex);
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantMethodHandleInfo) {
+            CLConstantMethodHandleInfo c = (CLConstantMethodHandleInfo) obj;
+            if ((c.referenceKind == referenceKind)
+                    && (c.referenceIndex == referenceIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return (31 * tag + referenceKind) * 31 + referenceIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", "MethodHandle", referenceKind,
+                referenceIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_MethodType_info structure (JVM Spec Section
+ * 4.4.9). j-- never emits one; they are read from the class files of library
+ * classes.
+ */
+
+class CLConstantMethodTypeInfo extends CLCPInfo {
+
+    /** CONSTANT_MethodType_info.descriptor_index item. */
+    public int descriptorIndex;
+
+    /**
+     * Construct a CLConstantMethodTypeInfo object.
+     * 
+     * @param descriptorIndex
+     *            CONSTANT_MethodType_info.descriptor_index item.
+     */
+
+    public CLConstantMethodTypeInfo(int descriptorIndex) {
+        super.tag = CONSTANT_MethodType;
+        this.descriptorIndex = descriptorIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(descriptorIndex);
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantMethodTypeInfo) {
+            CLConstantMethodTypeInfo c = (CLConstantMethodTypeInfo) obj;
+            if (c.descriptorIndex == descriptorIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + descriptorIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%s\n", "MethodType", descriptorIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_Dynamic_info and CONSTANT_InvokeDynamic_info
+ * structures (JVM Spec Section 4.4.10), which differ only in their tags. j--
+ * never emits one; they are read from the class files of library classes.
+ */
+
+class CLConstantDynamicInfo extends CLCPInfo {
+
+    /** bootstrap_method_attr_index item. */
+    public int bootstrapMethodAttrIndex;
+
+    /** name_and_type_index item. */
+    public int nameAndTypeIndex;
+
+    /**
+     * Construct a CLConstantDynamicInfo object.
+     * 
+     * @param tag
+     *            CONSTANT_Dynamic or CONSTANT_InvokeDynamic.
+     * @param bootstrapMethodAttrIndex
+     *            bootstrap_method_attr_index item.
+     * @param nameAndTypeIndex
+     *            name_and_type_index item.
+     */
+
+    public CLConstantDynamicInfo(short tag, int bootstrapMethodAttrIndex,
+            int nameAndTypeIndex) {
+        super.tag = tag;
+        this.bootstrapMethodAttrIndex = bootstrapMethodAttrIndex;
+        this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(bootstrapMethodAttrIndex);
+        out.writeShort(nameAndTypeIndex);
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantDynamicInfo) {
+            CLConstantDynamicInfo c = (CLConstantDynamicInfo) obj;
+            if ((c.tag == tag)
+                    && (c.bootstrapMethodAttrIndex == bootstrapMethodAttrIndex)
+                    && (c.nameAndTypeIndex == nameAndTypeIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return (31 * tag + bootstrapMethodAttrIndex) * 31
+                + nameAndTypeIndex;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", tag == CONSTANT_Dynamic ? "Dynamic"
+                : "InvokeDynamic", bootstrapMethodAttrIndex, nameAndTypeIndex);
+    }
+
+}
+
 /**
  * Representation of CONSTANT_Utf8_info structure (JVM Spec Section 4.5.7).
  */
@@ -782,13 +1066,21 @@ class CLConstantUtf8Info extends CLCPInfo {
     public boolean equals(Object obj) {
         if (obj instanceof CLConstantUtf8Info) {
             CLConstantUtf8Info c = (CLConstantUtf8Info) obj;
-            if ((new String(b)).equals(new String(c.b))) {
+            if (Arrays.equals(b, c.b)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * tag + Arrays.hashCode(b);
+    }
+
     /**
      * @inheritDoc
      */
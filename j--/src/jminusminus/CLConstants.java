@@ -13,12 +13,24 @@ public class CLConstants {
      */
     public static final long MAGIC = 3405691582L;
 
-    /** Major version for the class files that j-- compiles. */
+    /** Major version for the class files that j-- compiles, by default. */
     public static final int MAJOR_VERSION = 49;
 
+    /**
+     * First major version whose methods carry StackMapTable attributes, for the
+     * type-checking verifier (JVM Spec Section 4.10.1).
+     */
+    public static final int STACK_MAP_MAJOR_VERSION = 50;
+
+    /** Newest major version of the class files that j-- can compile. */
+    public static final int MAX_MAJOR_VERSION = 61;
+
     /** Minor version for the class files that j-- compiles. */
     public static final int MINOR_VERSION = 0;
 
+    /** Maximum length of a method's code array (JVM Spec Section 4.7.3). */
+    public static final int MAX_CODE_LENGTH = 65535;
+
     /** public access flag. */
     public static final int ACC_PUBLIC = 0x0001;
 
@@ -112,6 +124,22 @@ public class CLConstants {
      */
     public static final short CONSTANT_NameAndType = 12;
 
+    /**
+     * Identifies CONSTANT_MethodHandle_info constant pool structure.
+     */
+    public static final short CONSTANT_MethodHandle = 15;
+
+    /** Identifies CONSTANT_MethodType_info constant pool structure. */
+    public static final short CONSTANT_MethodType = 16;
+
+    /** Identifies CONSTANT_Dynamic_info constant pool structure. */
+    public static final short CONSTANT_Dynamic = 17;
+
+    /**
+     * Identifies CONSTANT_InvokeDynamic_info constant pool structure.
+     */
+    public static final short CONSTANT_InvokeDynamic = 18;
+
     /** Identifies ConstantValue attribute. */
     public static final String ATT_CONSTANT_VALUE = "ConstantValue";
 
@@ -166,6 +194,57 @@ public class CLConstants {
     /** Identifies AnnotationDefault attribute. */
     public static final String ATT_ANNOTATION_DEFAULT = "AnnotationDefault";
 
+    /** Identifies StackMapTable attribute. */
+    public static final String ATT_STACK_MAP_TABLE = "StackMapTable";
+
+    /** Identifies same_frame (0-63) stack map frame type. */
+    public static final int SAME_FRAME = 0;
+
+    /** Identifies same_locals_1_stack_item_frame (64-127) frame type. */
+    public static final int SAME_LOCALS_1_STACK_ITEM_FRAME = 64;
+
+    /** Identifies same_locals_1_stack_item_frame_extended frame type. */
+    public static final int SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED = 247;
+
+    /** Identifies chop_frame (248-250) stack map frame type. */
+    public static final int CHOP_FRAME = 248;
+
+    /** Identifies same_frame_extended stack map frame type. */
+    public static final int SAME_FRAME_EXTENDED = 251;
+
+    /** Identifies append_frame (252-254) stack map frame type. */
+    public static final int APPEND_FRAME = 252;
+
+    /** Identifies full_frame stack map frame type. */
+    public static final int FULL_FRAME = 255;
+
+    /** Identifies Top verification type. */
+    public static final short ITEM_Top = 0;
+
+    /** Identifies Integer verification type. */
+    public static final short ITEM_Integer = 1;
+
+    /** Identifies Float verification type. */
+    public static final short ITEM_Float = 2;
+
+    /** Identifies Double verification type. */
+    public static final short ITEM_Double = 3;
+
+    /** Identifies Long verification type. */
+    public static final short ITEM_Long = 4;
+
+    /** Identifies Null verification type. */
+    public static final short ITEM_Null = 5;
+
+    /** Identifies UninitializedThis verification type. */
+    public static final short ITEM_UninitializedThis = 6;
+
+    /** Identifies Object verification type. */
+    public static final short ITEM_Object = 7;
+
+    /** Identifies Uninitialized verification type. */
+    public static final short ITEM_Uninitialized = 8;
+
     /** Identifies boolean type of annotation element value. */
     public static final short ELT_B = 'B';
 
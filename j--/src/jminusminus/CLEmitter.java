@@ -11,8 +11,10 @@ import java.io.IOException;
 import java.io.DataOutputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Stack;
+import java.util.Map.Entry;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 import static jminusminus.CLConstants.*;
@@ -23,10 +25,9 @@ import static jminusminus.CLConstants.Category.*;
  * based) representation of Java classes.
  * 
  * j-- uses this interface to produce target JVM bytecode from a j-- source
- * program. During the pre-analysis and analysis phases, j-- produces partial
- * (in-memory) classes for the type declarations within the compilation unit,
- * and during the code generation phase, it produces file-based classes for the
- * declarations.
+ * program. During the code generation phase, it produces file-based (or, for
+ * in-memory compilations, byte array) classes for the type declarations within
+ * the compilation unit.
  */
 
 public class CLEmitter {
@@ -43,6 +44,24 @@ public class CLEmitter {
     /** Destination directory for the class. */
     private String destDir;
 
+    /** The .class file written by write(); null if none was written. */
+    private String outputFile;
+
+    /** Listener to which errors are reported. */
+    private DiagnosticListener diagnosticListener;
+
+    /** Major version of the class file. */
+    private int majorVersion;
+
+    /**
+     * Class hierarchy in which the reference types in stack map frames are
+     * merged.
+     */
+    private CLClassHierarchy classHierarchy;
+
+    /** Name of the super class. */
+    private String superName;
+
     /** In-memory representation of the class. */
     private CLFile clFile;
 
@@ -93,6 +112,12 @@ public class CLEmitter {
      */
     private int mDescriptorIndex;
 
+    /** Name of the method last added. */
+    private String mName;
+
+    /** Descriptor of the method last added. */
+    private String mDescriptor;
+
     /** Number of arguments for the method last added. */
     private int mArgumentCount;
 
@@ -137,12 +162,6 @@ public class CLEmitter {
      */
     private boolean errorHasOccurred;
 
-    /**
-     * Class loader to use for creating in-memory representation of classes from
-     * byte streams.
-     */
-    private static ByteClassLoader byteClassLoader;
-
     /**
      * Initialize all variables used for adding a method to the ClassFile
      * structure to their appropriate values.
@@ -177,6 +196,25 @@ public class CLEmitter {
                 addNoArgInstruction(NOP);
             }
 
+            // The type-checking verifier checks all the code of
+            // a method, but there are no frames for unreachable
+            // code to be checked against
+            boolean hasCode = (mAccessFlags & ACC_NATIVE) == 0
+                    && (mAccessFlags & ACC_ABSTRACT) == 0;
+            boolean hasStackMap = hasCode
+                    && majorVersion >= STACK_MAP_MAJOR_VERSION;
+            if (hasStackMap) {
+                removeUnreachableCode();
+            }
+
+            // Widen the branches that cannot reach their targets
+            // in 16 bits
+            relaxBranches();
+            if (mPC > MAX_CODE_LENGTH) {
+                reportEmitterError("%s: Code too large (%d bytes)",
+                        eCurrentMethod, mPC);
+            }
+
             // Resolve jump labels in exception handlers
             ArrayList<CLExceptionInfo> exceptionTable = new ArrayList<CLExceptionInfo>();
             for (int i = 0; i < mExceptionHandlers.size(); i++) {
@@ -200,8 +238,9 @@ public class CLEmitter {
                 exceptionTable.add(c);
             }
 
-            // Convert Instruction objects to bytes
-            ArrayList<Integer> byteCode = new ArrayList<Integer>();
+            // Write the instructions to the code buffer, sized to
+            // the code length (the location counter)
+            CLCodeBuffer byteCode = new CLCodeBuffer(mPC);
             int maxLocals = mArgumentCount;
             for (int i = 0; i < mCode.size(); i++) {
                 CLInstruction instr = mCode.get(i);
@@ -247,14 +286,22 @@ public class CLEmitter {
                     }
                 }
 
-                byteCode.addAll(instr.toBytes());
+                instr.write(byteCode);
             }
 
             // Code attribute; add only if method is neither
             // native
             // nor abstract
-            if (!((mAccessFlags & ACC_NATIVE) == ACC_NATIVE || (mAccessFlags & ACC_ABSTRACT) == ACC_ABSTRACT)) {
-                addMethodAttribute(codeAttribute(byteCode, exceptionTable,
+            if (hasCode) {
+                byte[] code = byteCode.toByteArray();
+                if (hasStackMap && !errorHasOccurred) {
+                    CLStackMapTableAttribute stackMapTable = stackMapTableAttribute(
+                            code, maxLocals);
+                    if (stackMapTable != null) {
+                        addCodeAttribute(stackMapTable);
+                    }
+                }
+                addMethodAttribute(codeAttribute(code, exceptionTable,
                         stackDepth(), maxLocals));
             }
 
@@ -591,120 +638,608 @@ public class CLEmitter {
     }
 
     /**
-     * Return the instruction with the specified pc within the code array of the
-     * current method being added.
+     * Relax the branches of the method last added: each GOTO or JSR whose
+     * target is out of the reach of its 16-bit offset is replaced by a GOTO_W
+     * or JSR_W, and each such conditional branch by the inverse branch around
+     * a GOTO_W to the target. Widening a branch moves the code after it, which
+     * can put other branches out of reach, so the code is laid out again, and
+     * the branches checked, until no more need widening; the labels then move
+     * with the instructions they are at. Code in which every branch reaches
+     * its target (all code shorter than 32 KB) is left as it is.
+     */
+
+    private void relaxBranches() {
+        if (mPC <= Short.MAX_VALUE || !isBranchOutOfReach()) {
+            return;
+        }
+
+        // The instruction at each label; null for the end of the
+        // code
+        int[] indices = instructionIndices();
+        HashMap<String, CLInstruction> labelTargets = new HashMap<String, CLInstruction>();
+        for (Entry<String, Integer> label : mLabels.entrySet()) {
+            int pc = label.getValue();
+            labelTargets.put(label.getKey(), pc < mPC ? mCode.get(indices[pc])
+                    : null);
+        }
+
+        boolean widened = true;
+        while (widened) {
+            widened = false;
+            ArrayList<CLInstruction> code = new ArrayList<CLInstruction>(
+                    mCode.size());
+            for (int i = 0; i < mCode.size(); i++) {
+                CLInstruction instr = mCode.get(i);
+                int opcode = instr.opcode();
+                if (!isShortBranch(instr)) {
+                    code.add(instr);
+                    continue;
+                }
+                String label = ((CLFlowControlInstruction) instr)
+                        .jumpToLabel();
+                if (!labelTargets.containsKey(label)) {
+                    // Reported when the labels are resolved
+                    code.add(instr);
+                    continue;
+                }
+                CLInstruction target = labelTargets.get(label);
+                int offset = (target == null ? mPC : target.pc()) - instr.pc();
+                if (offset >= Short.MIN_VALUE && offset <= Short.MAX_VALUE) {
+                    code.add(instr);
+                } else if (opcode == GOTO || opcode == JSR) {
+                    int wideOpcode = opcode == GOTO ? GOTO_W : JSR_W;
+                    code.add(new CLFlowControlInstruction(wideOpcode, instr
+                            .pc(), label));
+                    widened = true;
+                } else {
+                    String skip = createLabel();
+                    code.add(new CLFlowControlInstruction(
+                            invertedBranch(opcode), instr.pc(), skip));
+                    code.add(new CLFlowControlInstruction(GOTO_W, instr.pc(),
+                            label));
+                    labelTargets.put(skip, i + 1 < mCode.size() ? mCode
+                            .get(i + 1) : null);
+                    widened = true;
+                }
+            }
+            mCode = code;
+            layOut();
+        }
+        moveLabels(labelTargets);
+    }
+
+    /**
+     * Remove the unreachable code of the method last added: the instructions
+     * that no path from the start of the method reaches, through branches,
+     * fall-throughs and exception handlers (a handler being reached if an
+     * instruction it covers is), and the handlers that are not reached. The
+     * code is then laid out again, the labels at removed instructions moving
+     * to the instructions after them.
+     */
+
+    private void removeUnreachableCode() {
+        int[] indices = instructionIndices();
+        int n = mCode.size();
+        int[] handlers = new int[3 * mExceptionHandlers.size()];
+        for (int h = 0; h < mExceptionHandlers.size(); h++) {
+            CLException e = mExceptionHandlers.get(h);
+            handlers[3 * h] = instructionIndex(e.startLabel, indices);
+            handlers[3 * h + 1] = instructionIndex(e.endLabel, indices);
+            handlers[3 * h + 2] = instructionIndex(e.handlerLabel, indices);
+        }
+        boolean[] reachable = new boolean[n];
+        int[] worklist = new int[n];
+        int size = 0;
+        reachable[0] = true;
+        worklist[size++] = 0;
+        ArrayList<Integer> successors = new ArrayList<Integer>();
+        int reached = 1;
+        while (size > 0) {
+            int i = worklist[--size];
+            CLInstruction instr = mCode.get(i);
+            successors.clear();
+            if (fallsThrough(instr)) {
+                successors.add(i + 1);
+            }
+            if (instr instanceof CLFlowControlInstruction) {
+                for (String label : ((CLFlowControlInstruction) instr)
+                        .jumpToLabels()) {
+                    successors.add(instructionIndex(label, indices));
+                }
+            }
+            for (int h = 0; h < handlers.length; h += 3) {
+                if (handlers[h] <= i && i < handlers[h + 1]) {
+                    successors.add(handlers[h + 2]);
+                }
+            }
+            for (int successor : successors) {
+                if (successor >= 0 && successor < n && !reachable[successor]) {
+                    reachable[successor] = true;
+                    worklist[size++] = successor;
+                    reached++;
+                }
+            }
+        }
+        if (reached == n) {
+            return;
+        }
+
+        // The instruction at each label; null for the end of the
+        // code
+        HashMap<String, CLInstruction> labelTargets = new HashMap<String, CLInstruction>();
+        for (Entry<String, Integer> label : mLabels.entrySet()) {
+            int i = label.getValue() < mPC ? indices[label.getValue()] : n;
+            while (i < n && !reachable[i]) {
+                i++;
+            }
+            labelTargets.put(label.getKey(), i < n ? mCode.get(i) : null);
+        }
+        ArrayList<CLInstruction> code = new ArrayList<CLInstruction>(reached);
+        for (int i = 0; i < n; i++) {
+            if (reachable[i]) {
+                code.add(mCode.get(i));
+            }
+        }
+        ArrayList<CLException> exceptionHandlers = new ArrayList<CLException>();
+        for (int h = 0; h < mExceptionHandlers.size(); h++) {
+            int handler = handlers[3 * h + 2];
+
+            // Unresolvable labels are reported when they are
+            // resolved
+            if (handler < 0 || handler >= n || reachable[handler]) {
+                exceptionHandlers.add(mExceptionHandlers.get(h));
+            }
+        }
+        mCode = code;
+        mExceptionHandlers = exceptionHandlers;
+        layOut();
+        moveLabels(labelTargets);
+    }
+
+    /**
+     * Return the index, within the code array of the current method being
+     * added, of the instruction at the specified label: the number of
+     * instructions if the label is at the end of the code, and -1 if the label
+     * has not been added.
+     * 
+     * @param label
+     *            the label.
+     * @param indices
+     *            the table from instructionIndices().
+     * @return index of the instruction.
+     */
+
+    private int instructionIndex(String label, int[] indices) {
+        Integer pc = mLabels.get(label);
+        if (pc == null || pc < 0 || pc > mPC) {
+            return -1;
+        }
+        return pc < mPC ? indices[pc] : mCode.size();
+    }
+
+    /**
+     * Return true if the specified instruction can be followed by the next
+     * one, false if it always transfers control elsewhere (GOTO, a return,
+     * ATHROW, a switch, and so on).
      * 
-     * @param pc
-     *            pc of the instruction.
-     * @return the instruction with the specified pc, or null.
+     * @param instr
+     *            the instruction.
+     * @return true or false.
      */
 
-    private CLInstruction instruction(int pc) {
-        for (int j = 0; j < mCode.size(); j++) {
-            CLInstruction i = mCode.get(j);
-            if (i.pc() == pc) {
-                return i;
+    private static boolean fallsThrough(CLInstruction instr) {
+        switch (instr.opcode()) {
+        case GOTO:
+        case GOTO_W:
+        case RET:
+        case TABLESWITCH:
+        case LOOKUPSWITCH:
+        case IRETURN:
+        case LRETURN:
+        case FRETURN:
+        case DRETURN:
+        case ARETURN:
+        case RETURN:
+        case ATHROW:
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Lay out the code of the method last added again, after instructions
+     * have been added to or removed from it: each instruction is moved to the
+     * pc after the previous one, and the location counter to the end.
+     */
+
+    private void layOut() {
+        int pc = 0;
+        for (int i = 0; i < mCode.size(); i++) {
+            CLInstruction instr = mCode.get(i);
+            instr.relocate(pc);
+
+            // The operands of a WIDE are counted in the instruction
+            // it widens
+            pc += instr.opcode() == WIDE ? 1 : 1 + instr.operandCount();
+        }
+        mPC = pc;
+    }
+
+    /**
+     * Move the labels of the method last added to the (relocated)
+     * instructions they are at.
+     * 
+     * @param labelTargets
+     *            the instruction at each label; null for the end of the code.
+     */
+
+    private void moveLabels(HashMap<String, CLInstruction> labelTargets) {
+        for (Entry<String, CLInstruction> label : labelTargets.entrySet()) {
+            CLInstruction target = label.getValue();
+            mLabels.put(label.getKey(), target == null ? mPC : target.pc());
+        }
+    }
+
+    /**
+     * Return a StackMapTable attribute for the method last added, or null if it
+     * needs none (it has no branch targets or exception handlers).
+     * 
+     * The frames are inferred by a worklist dataflow over the types of the
+     * locals and operand stack (CLFrame), much like stackDepth() computes the
+     * depth of the stack: from the first instruction, with the method's
+     * arguments in its frame, the code is walked until an instruction that does
+     * not fall through, or a branch target, running each instruction over the
+     * frame; the frame is merged into those of the branch targets met on the
+     * way, and of the exception handlers covering the instructions; and a
+     * target is walked from (again) whenever its frame changes. Reference types
+     * are merged in the class hierarchy. A frame is then written for each
+     * branch target and exception handler, in the most compact form it allows.
+     * 
+     * @param code
+     *            the method's code.
+     * @param maxLocals
+     *            max_locals of the method.
+     * @return the attribute, or null.
+     */
+
+    private CLStackMapTableAttribute stackMapTableAttribute(byte[] code,
+            int maxLocals) {
+        int n = mCode.size();
+        int[] indices = instructionIndices();
+        boolean[] isFramePoint = new boolean[n];
+        int[] handlers = new int[3 * mExceptionHandlers.size()];
+        String[] catchTypes = new String[mExceptionHandlers.size()];
+        for (int h = 0; h < mExceptionHandlers.size(); h++) {
+            CLException e = mExceptionHandlers.get(h);
+            handlers[3 * h] = e.startPC;
+            handlers[3 * h + 1] = e.endPC;
+            handlers[3 * h + 2] = indices[e.handlerPC];
+            catchTypes[h] = e.catchType == null ? "java/lang/Throwable"
+                    : e.catchType;
+            isFramePoint[indices[e.handlerPC]] = true;
+        }
+        for (int i = 0; i < n; i++) {
+            CLInstruction instr = mCode.get(i);
+            if (instr instanceof CLFlowControlInstruction) {
+                for (int offset : ((CLFlowControlInstruction) instr)
+                        .jumpToOffsets()) {
+                    isFramePoint[indices[instr.pc() + offset]] = true;
+                }
+            }
+            if (!fallsThrough(instr) && i + 1 < n) {
+                isFramePoint[i + 1] = true;
             }
         }
-        return null;
+
+        CLClassHierarchy hierarchy = new CLClassHierarchy() {
+            public String superClass(String className) {
+                return className.equals(name) ? superName : classHierarchy
+                        .superClass(className);
+            }
+
+            public boolean isInterface(String className) {
+                return className.equals(name) ? (clFile.accessFlags & ACC_INTERFACE) != 0
+                        : classHierarchy.isInterface(className);
+            }
+        };
+        CLFrame initialFrame = new CLFrame(name, mName, mDescriptor,
+                (mAccessFlags & ACC_STATIC) != 0, maxLocals);
+        CLFrameWorklist frames = new CLFrameWorklist(n, hierarchy);
+        try {
+            frames.merge(0, initialFrame);
+            for (int c = frames.pop(); c >= 0; c = frames.pop()) {
+                CLFrame frame = frames.frame(c).copy();
+                for (int i = c; i < n; i++) {
+                    CLInstruction instr = mCode.get(i);
+                    int pc = instr.pc();
+                    boolean isWidened = instr.opcode() == WIDE;
+                    if (isWidened) {
+                        instr = mCode.get(++i);
+                    }
+                    for (int h = 0; h < handlers.length; h += 3) {
+                        if (handlers[h] <= pc && pc < handlers[h + 1]) {
+                            frames.merge(handlers[h + 2], frame
+                                    .handlerFrame(catchTypes[h / 3]));
+                        }
+                    }
+                    frame.execute(code, instr.pc(), isWidened, constantPool);
+                    for (int h = 0; h < handlers.length; h += 3) {
+                        if (handlers[h] <= pc && pc < handlers[h + 1]) {
+                            frames.merge(handlers[h + 2], frame
+                                    .handlerFrame(catchTypes[h / 3]));
+                        }
+                    }
+                    if (instr instanceof CLFlowControlInstruction) {
+                        for (int offset : ((CLFlowControlInstruction) instr)
+                                .jumpToOffsets()) {
+                            frames.merge(indices[instr.pc() + offset], frame);
+                        }
+                    }
+                    if (!fallsThrough(instr)) {
+                        break;
+                    }
+                    if (i + 1 < n && isFramePoint[i + 1]) {
+                        frames.merge(i + 1, frame);
+                        break;
+                    }
+                }
+            }
+        } catch (IllegalStateException e) {
+            reportEmitterError("%s: Unable to compute stack map frames: %s",
+                    eCurrentMethod, e.getMessage());
+            return null;
+        }
+
+        // The frames, each relative to the previous one (the first
+        // to the initial frame)
+        ArrayList<CLStackMapFrame> entries = new ArrayList<CLStackMapFrame>();
+        ArrayList<CLVerificationTypeInfo> previousLocals = initialFrame
+                .locals(constantPool);
+        int previousPC = -1;
+        for (int i = 0; i < n; i++) {
+            if (!isFramePoint[i] || frames.frame(i) == null) {
+                continue;
+            }
+            int pc = mCode.get(i).pc();
+            ArrayList<CLVerificationTypeInfo> locals = frames.frame(i).locals(
+                    constantPool);
+            entries.add(stackMapFrame(pc - previousPC - 1, previousLocals,
+                    locals, frames.frame(i).stack(constantPool)));
+            previousLocals = locals;
+            previousPC = pc;
+        }
+        if (entries.size() == 0) {
+            return null;
+        }
+        int attributeLength = 2;
+        for (int i = 0; i < entries.size(); i++) {
+            attributeLength += entries.get(i).length();
+        }
+        int attributeNameIndex = constantPool
+                .constantUtf8Info(ATT_STACK_MAP_TABLE);
+        return new CLStackMapTableAttribute(attributeNameIndex,
+                attributeLength, entries.size(), entries);
+    }
+
+    /**
+     * Return the stack map frame with the specified locals and stack, in the
+     * most compact form it allows given the previous frame's locals.
+     * 
+     * @param offsetDelta
+     *            the frame's offset_delta.
+     * @param previousLocals
+     *            the previous frame's locals.
+     * @param locals
+     *            the frame's locals.
+     * @param stack
+     *            the frame's operand stack.
+     * @return the frame.
+     */
+
+    private static CLStackMapFrame stackMapFrame(int offsetDelta,
+            ArrayList<CLVerificationTypeInfo> previousLocals,
+            ArrayList<CLVerificationTypeInfo> locals,
+            ArrayList<CLVerificationTypeInfo> stack) {
+        ArrayList<CLVerificationTypeInfo> none = new ArrayList<CLVerificationTypeInfo>();
+        int k = locals.size() - previousLocals.size();
+        if (k == 0 && locals.equals(previousLocals) && stack.size() <= 1) {
+            int frameType = stack.size() == 0 ? SAME_FRAME
+                    : SAME_LOCALS_1_STACK_ITEM_FRAME;
+            if (offsetDelta < 64) {
+                return new CLStackMapFrame(frameType + offsetDelta,
+                        offsetDelta, none, stack);
+            }
+            frameType = stack.size() == 0 ? SAME_FRAME_EXTENDED
+                    : SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED;
+            return new CLStackMapFrame(frameType, offsetDelta, none, stack);
+        } else if (stack.size() == 0 && k < 0 && k >= -3
+                && previousLocals.subList(0, locals.size()).equals(locals)) {
+            return new CLStackMapFrame(SAME_FRAME_EXTENDED + k, offsetDelta,
+                    none, none);
+        } else if (stack.size() == 0 && k > 0 && k <= 3
+                && locals.subList(0, previousLocals.size()).equals(
+                        previousLocals)) {
+            return new CLStackMapFrame(APPEND_FRAME + k - 1, offsetDelta,
+                    new ArrayList<CLVerificationTypeInfo>(locals.subList(
+                            previousLocals.size(), locals.size())), none);
+        }
+        return new CLStackMapFrame(FULL_FRAME, offsetDelta, locals, stack);
     }
 
     /**
-     * Return the index of the instruction with the specified pc, within the
-     * code array of the current method being added.
+     * Return true if the specified instruction is a branch with a 16-bit
+     * offset (a GOTO, a JSR, or a conditional branch), false otherwise.
      * 
-     * @param pc
-     *            pc of the instruction.
-     * @return index of the instruction with the specified pc.
+     * @param instr
+     *            the instruction.
+     * @return true or false.
      */
 
-    private int instructionIndex(int pc) {
-        int j = 0;
-        for (; j < mCode.size(); j++) {
-            CLInstruction i = mCode.get(j);
-            if (i.pc() == pc) {
-                return j;
+    private static boolean isShortBranch(CLInstruction instr) {
+        int opcode = instr.opcode();
+        return CLInstruction.instructionInfo[opcode].category == FLOW_CONTROL1
+                && opcode != GOTO_W && opcode != JSR_W;
+    }
+
+    /**
+     * Return true if a branch of the method last added (with a 16-bit offset)
+     * cannot reach its target, false otherwise.
+     * 
+     * @return true or false.
+     */
+
+    private boolean isBranchOutOfReach() {
+        for (int i = 0; i < mCode.size(); i++) {
+            CLInstruction instr = mCode.get(i);
+            if (!isShortBranch(instr)) {
+                continue;
             }
+            Integer target = mLabels.get(((CLFlowControlInstruction) instr)
+                    .jumpToLabel());
+            if (target != null) {
+                int offset = target - instr.pc();
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the opcode of the conditional branch that branches when the
+     * specified one does not.
+     * 
+     * @param opcode
+     *            opcode of a conditional branch.
+     * @return opcode of the inverse branch.
+     */
+
+    private static int invertedBranch(int opcode) {
+        switch (opcode) {
+        case IFEQ:
+            return IFNE;
+        case IFNE:
+            return IFEQ;
+        case IFLT:
+            return IFGE;
+        case IFGE:
+            return IFLT;
+        case IFGT:
+            return IFLE;
+        case IFLE:
+            return IFGT;
+        case IF_ICMPEQ:
+            return IF_ICMPNE;
+        case IF_ICMPNE:
+            return IF_ICMPEQ;
+        case IF_ICMPLT:
+            return IF_ICMPGE;
+        case IF_ICMPGE:
+            return IF_ICMPLT;
+        case IF_ICMPGT:
+            return IF_ICMPLE;
+        case IF_ICMPLE:
+            return IF_ICMPGT;
+        case IF_ACMPEQ:
+            return IF_ACMPNE;
+        case IF_ACMPNE:
+            return IF_ACMPEQ;
+        case IFNULL:
+            return IFNONNULL;
+        default:
+            return IFNULL;
         }
-        return j;
+    }
+
+    /**
+     * Return a table of the index, within the code array of the current method
+     * being added, of the instruction at each pc; -1 at a pc within an
+     * instruction.
+     * 
+     * @return the table, indexed by pc (up to the code length, inclusive).
+     */
+
+    private int[] instructionIndices() {
+        int[] indices = new int[mPC + 1];
+        Arrays.fill(indices, -1);
+        for (int i = 0; i < mCode.size(); i++) {
+            indices[mCode.get(i).pc()] = i;
+        }
+        return indices;
     }
 
     /**
      * Compute the maximum depth of the operand stack for the method last added,
      * and return the value.
      * 
+     * The depth is computed by a worklist dataflow over the basic blocks of the
+     * method: from the first instruction and each exception handler, the code
+     * is walked (through branch instructions that fall through) until an
+     * instruction that does not fall through, or one already visited; the
+     * targets of the branches met on the way are pushed on the worklist, with
+     * the stack depth at the branch. Each instruction is visited once, and a
+     * branch target is found through a table indexed by pc, so the computation
+     * is linear in the size of the method.
+     * 
      * @return maximum depth of operand stack.
      */
 
     private int stackDepth() {
-        CLBranchStack branchTargets = new CLBranchStack();
+        int[] indices = instructionIndices();
+        CLBranchStack branchTargets = new CLBranchStack(mCode.size());
+        branchTargets.push(0, 0);
         for (int i = 0; i < mExceptionHandlers.size(); i++) {
             CLException e = mExceptionHandlers.get(i);
-            CLInstruction h = instruction(e.handlerPC);
-            if (h != null) {
+            if (e.handlerPC >= 0 && e.handlerPC < indices.length) {
                 // 1 because the exception that is thrown is
-                // pushed
-                // on top of the operand stack
-                branchTargets.push(h, 1);
+                // pushed on top of the operand stack
+                branchTargets.push(indices[e.handlerPC], 1);
             }
         }
-        int stackDepth = 0, maxStackDepth = 0, c = 0;
-        CLInstruction instr = (mCode.size() == 0) ? null : mCode.get(c);
-        while (instr != null) {
-            int opcode = instr.opcode();
-            int stackUnits = instr.stackUnits();
-            if (stackUnits == EMPTY_STACK) {
-                stackDepth = 0;
-            } else if (stackUnits == UNIT_SIZE_STACK) {
-                stackDepth = 1;
-            } else {
-                stackDepth += stackUnits;
-            }
-            if (stackDepth > maxStackDepth) {
-                maxStackDepth = stackDepth;
-            }
-
-            // For tracing purposes
-            // System.out.println( instr.mnemonic() + ", " +
-            // stackUnits + ", " +
-            // stackDepth + ", " + maxStackDepth );
-
-            if (instr instanceof CLFlowControlInstruction) {
-                CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
-                int jumpToIndex = b.pc() + b.jumpToOffset();
-                CLInstruction instrAt = null;
-                switch (opcode) {
-                case JSR:
-                case JSR_W:
-                case RET:
-                    instr = null;
-                    break;
-                case GOTO:
-                case GOTO_W:
-                    instr = null;
-                default:
-                    instrAt = instruction(jumpToIndex);
-                    if (instrAt != null) {
-                        branchTargets.push(instrAt, stackDepth);
-                    }
+        int maxStackDepth = 0;
+        for (int c = branchTargets.pop(); c >= 0; c = branchTargets.pop()) {
+            int stackDepth = branchTargets.stackDepth(c);
+            boolean fallsThrough = true;
+            while (fallsThrough) {
+                CLInstruction instr = mCode.get(c);
+                int opcode = instr.opcode();
+                int stackUnits = instr.stackUnits();
+                if (stackUnits == EMPTY_STACK) {
+                    stackDepth = 0;
+                } else if (stackUnits == UNIT_SIZE_STACK) {
+                    stackDepth = 1;
+                } else {
+                    stackDepth += stackUnits;
                 }
-            } else {
-                if ((opcode == ATHROW)
-                        || ((opcode >= IRETURN) && (opcode <= RETURN))) {
-                    instr = null;
+                if (stackDepth > maxStackDepth) {
+                    maxStackDepth = stackDepth;
                 }
-            }
-            if (instr != null) {
-                c++;
-                instr = (c >= mCode.size()) ? null : mCode.get(c);
-            }
-            if (instr == null) {
-                CLBranchTarget bt = branchTargets.pop();
-                if (bt != null) {
-                    instr = bt.target;
-                    stackDepth = bt.stackDepth;
-                    c = instructionIndex(instr.pc());
+                if (instr instanceof CLFlowControlInstruction) {
+                    CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
+                    int jumpToIndex = b.pc() + b.jumpToOffset();
+                    switch (opcode) {
+                    case JSR:
+                    case JSR_W:
+                    case RET:
+                        fallsThrough = false;
+                        break;
+                    case GOTO:
+                    case GOTO_W:
+                        fallsThrough = false;
+                    default:
+                        if (jumpToIndex >= 0 && jumpToIndex < indices.length) {
+                            branchTargets.push(indices[jumpToIndex],
+                                    stackDepth);
+                        }
+                    }
+                } else if ((opcode == ATHROW)
+                        || ((opcode >= IRETURN) && (opcode <= RETURN))) {
+                    fallsThrough = false;
                 }
+                fallsThrough = fallsThrough
+                        && branchTargets.visit(++c, stackDepth);
             }
         }
         return maxStackDepth;
@@ -771,8 +1306,7 @@ public class CLEmitter {
      * operand stack, and maximum number of local variables.
      * 
      * @param byteCode
-     *            list of bytes that make up the instructions and their
-     *            operands.
+     *            the bytes that make up the instructions and their operands.
      * @param exceptionTable
      *            exception table.
      * @param stackDepth
@@ -782,10 +1316,10 @@ public class CLEmitter {
      * @return a Code attribute.
      */
 
-    private CLCodeAttribute codeAttribute(ArrayList<Integer> byteCode,
+    private CLCodeAttribute codeAttribute(byte[] byteCode,
             ArrayList<CLExceptionInfo> exceptionTable, int stackDepth,
             int maxLocals) {
-        int codeLength = byteCode.size();
+        int codeLength = byteCode.length;
         int attributeNameIndex = constantPool.constantUtf8Info(ATT_CODE);
         int attributeLength = codeLength + 8 * exceptionTable.size() + 12;
         for (int i = 0; i < mCodeAttributes.size(); i++) {
@@ -867,7 +1401,8 @@ public class CLEmitter {
     }
 
     /**
-     * Report any error that occurs while creating/writing the class, to STDERR.
+     * Report any error that occurs while creating/writing the class, to the
+     * diagnostic listener (STDERR unless set otherwise).
      * 
      * @param message
      *            message identifying the error.
@@ -876,8 +1411,8 @@ public class CLEmitter {
      */
 
     private void reportEmitterError(String message, Object... args) {
-        System.err.printf(message, args);
-        System.err.println();
+        diagnosticListener.report(new Diagnostic(null, 0, String.format(
+                message, args)));
         errorHasOccurred = true;
     }
 
@@ -897,6 +1432,20 @@ public class CLEmitter {
     public CLEmitter(boolean toFile) {
         destDir = ".";
         this.toFile = toFile;
+        diagnosticListener = DiagnosticListener.STDERR;
+        majorVersion = MAJOR_VERSION;
+        classHierarchy = CLClassHierarchy.SYSTEM;
+    }
+
+    /**
+     * Set the listener to which errors are reported.
+     * 
+     * @param diagnosticListener
+     *            the diagnostic listener.
+     */
+
+    public void diagnosticListener(DiagnosticListener diagnosticListener) {
+        this.diagnosticListener = diagnosticListener;
     }
 
     /**
@@ -910,6 +1459,47 @@ public class CLEmitter {
         this.destDir = destDir;
     }
 
+    /**
+     * Set the major version of the class file to the specified value (from
+     * MAJOR_VERSION, the default, to MAX_MAJOR_VERSION); must be called prior
+     * to addClass(). From STACK_MAP_MAJOR_VERSION on, each method's Code
+     * attribute is given a StackMapTable attribute, computed when the method
+     * is closed, so that the class is checked by the type-checking verifier
+     * rather than the (slower, and since Java 13 deprecated) type-inferencing
+     * one.
+     * 
+     * @param majorVersion
+     *            the major version.
+     */
+
+    public void majorVersion(int majorVersion) {
+        this.majorVersion = majorVersion;
+    }
+
+    /**
+     * Set the class hierarchy in which the reference types in stack map frames
+     * are merged; by default, that of the system classes. The class being added
+     * need not be in it.
+     * 
+     * @param classHierarchy
+     *            the class hierarchy.
+     */
+
+    public void classHierarchy(CLClassHierarchy classHierarchy) {
+        this.classHierarchy = classHierarchy;
+    }
+
+    /**
+     * Return the name of the .class file written by write(), or null if no
+     * file was written.
+     * 
+     * @return the output file name.
+     */
+
+    public String outputFile() {
+        return outputFile;
+    }
+
     /**
      * Has an emitter error occurred up to now?
      * 
@@ -951,7 +1541,7 @@ public class CLEmitter {
         innerClasses = new ArrayList<CLInnerClassInfo>();
         errorHasOccurred = false;
         clFile.magic = MAGIC;
-        clFile.majorVersion = MAJOR_VERSION;
+        clFile.majorVersion = majorVersion;
         clFile.minorVersion = MINOR_VERSION;
         if (!validInternalForm(thisClass)) {
             reportEmitterError("'%s' is not in internal form", thisClass);
@@ -966,6 +1556,7 @@ public class CLEmitter {
             }
         }
         name = thisClass;
+        superName = superClass;
         clFile.thisClass = constantPool.constantClassInfo(thisClass);
         clFile.superClass = constantPool.constantClassInfo(superClass);
         for (int i = 0; superInterfaces != null && i < superInterfaces.size(); i++) {
@@ -1161,6 +1752,8 @@ public class CLEmitter {
         isMethodOpen = true;
         initializeMethodVariables();
         eCurrentMethod = name + descriptor;
+        mName = name;
+        mDescriptor = descriptor;
         if (accessFlags != null) {
             for (int i = 0; i < accessFlags.size(); i++) {
                 mAccessFlags |= CLFile.accessFlagToInt(accessFlags.get(i));
@@ -1879,14 +2472,6 @@ public class CLEmitter {
         return constantPool;
     }
 
-    /**
-     * Set a new ByteClassLoader for loading classes from byte streams.
-     */
-
-    public static void initializeByteClassLoader() {
-        byteClassLoader = new ByteClassLoader();
-    }
-
     /**
      * Return the CLFile instance corresponding to the class built by this
      * emitter.
@@ -1897,13 +2482,53 @@ public class CLEmitter {
     }
 
     /**
-     * Return the class being constructed as a Java Class instance.
+     * Return the class being constructed as a Java Class instance, loaded by
+     * the specified class loader.
      * 
+     * @param byteClassLoader
+     *            class loader to use for creating the in-memory
+     *            representation of the class.
      * @return Java Class instance.
      */
-    public Class toClass() {
-        endOpenMethodIfAny();
+
+    public Class toClass(ByteClassLoader byteClassLoader) {
+        byte[] classBytes = toBytes();
         Class theClass = null;
+        if (classBytes == null) {
+            return theClass;
+        }
+        try {
+            // Load a Java Class instance from its byte
+            // representation
+            theClass = byteClassLoader.loadClass(name, classBytes);
+        } catch (ClassNotFoundException e) {
+            reportEmitterError("Cannot load class from byte stream");
+        }
+        return theClass;
+    }
+
+    /**
+     * Return the fully qualified name (in internal form) of the class being
+     * constructed.
+     * 
+     * @return the class name.
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Return the class being constructed in the class file format, without
+     * writing it to the file system.
+     * 
+     * @return the bytes of the class file, or null if they cannot be
+     *         produced.
+     */
+
+    public byte[] toBytes() {
+        endOpenMethodIfAny();
+        byte[] classBytes = null;
         try {
             // Extract the bytes from the class representation in
             // memory into an array of bytes
@@ -1912,19 +2537,12 @@ public class CLEmitter {
                     byteStream));
             clFile.write(out);
             out.close();
-            byte[] classBytes = byteStream.toByteArray();
+            classBytes = byteStream.toByteArray();
             byteStream.close();
-
-            // Load a Java Class instance from its byte
-            // representation
-            byteClassLoader.setClassBytes(classBytes);
-            theClass = byteClassLoader.loadClass(name, true);
         } catch (IOException e) {
             reportEmitterError("Cannot write class to byte stream");
-        } catch (ClassNotFoundException e) {
-            reportEmitterError("Cannot load class from byte stream");
         }
-        return theClass;
+        return classBytes;
     }
 
     /**
@@ -1947,6 +2565,7 @@ public class CLEmitter {
                     new FileOutputStream(outFile)));
             clFile.write(out);
             out.close();
+            outputFile = outFile;
         } catch (FileNotFoundException e) {
             reportEmitterError("File %s not found", outFile);
         } catch (IOException e) {
@@ -2055,118 +2674,191 @@ class CLException {
 }
 
 /**
- * Instances of this class form the elements of the CLBranchStack which is used
- * for control flow analysis to compute maximum depth of operand stack for a
- * method.
+ * The worklist for the control flow analysis that computes the maximum depth of
+ * the operand stack for a method: the depth of the stack before each of its
+ * instructions (by index) visited so far, and the branch targets yet to be
+ * walked from. An instruction is visited once; a target already visited is
+ * not pushed again.
  */
 
-class CLBranchTarget {
+class CLBranchStack {
 
-    /** Target instruction. */
-    public CLInstruction target;
+    /** Depth of the stack before each instruction; -1 if not yet visited. */
+    private int[] stackDepths;
 
-    /** Depth of stack before the target instruction is executed. */
-    public int stackDepth;
+    /** Indices of the branch targets yet to walk from. */
+    private int[] branchTargets;
+
+    /** Number of branch targets yet to walk from. */
+    private int size;
 
     /**
-     * Construct a CLBranchTarget object.
+     * Construct a CLBranchStack object for a method.
      * 
-     * @param target
-     *            the target instruction.
+     * @param instructions
+     *            number of instructions in the method.
+     */
+
+    public CLBranchStack(int instructions) {
+        stackDepths = new int[instructions];
+        Arrays.fill(stackDepths, -1);
+        branchTargets = new int[instructions];
+    }
+
+    /**
+     * Record the specified instruction as visited, with the specified stack
+     * depth before it, unless it has been visited already.
+     * 
+     * @param index
+     *            index of the instruction.
+     * @param stackDepth
+     *            depth of stack before the instruction is executed.
+     * @return true if the instruction was not visited already (and is an
+     *         instruction of the method), false otherwise.
+     */
+
+    public boolean visit(int index, int stackDepth) {
+        if (index < 0 || index >= stackDepths.length
+                || stackDepths[index] >= 0) {
+            return false;
+        }
+        stackDepths[index] = stackDepth;
+        return true;
+    }
+
+    /**
+     * Push the specified branch target, with the specified stack depth before
+     * it, into the stack, if it has not been visited yet.
+     * 
+     * @param index
+     *            index of the target instruction.
      * @param stackDepth
      *            depth of stack before the target instruction is executed.
      */
 
-    public CLBranchTarget(CLInstruction target, int stackDepth) {
-        this.target = target;
-        this.stackDepth = stackDepth;
+    public void push(int index, int stackDepth) {
+        if (visit(index, stackDepth)) {
+            branchTargets[size++] = index;
+        }
+    }
+
+    /**
+     * Pop and return the index of a branch target from the stack. -1 is
+     * returned if the stack is empty.
+     * 
+     * @return index of a branch target, or -1.
+     */
+
+    public int pop() {
+        return size > 0 ? branchTargets[--size] : -1;
+    }
+
+    /**
+     * Return the depth of the stack before the specified (visited)
+     * instruction.
+     * 
+     * @param index
+     *            index of the instruction.
+     * @return the stack depth.
+     */
+
+    public int stackDepth(int index) {
+        return stackDepths[index];
     }
 
 }
 
 /**
- * This class is used for control flow analysis to compute maximum depth of
- * operand stack for a method.
+ * The worklist for the dataflow that infers the stack map frames of a method:
+ * the frame before each of its instructions (by index) reached so far, and the
+ * instructions yet to be walked from. An instruction is pushed again whenever
+ * its frame changes, but is never in the worklist twice.
  */
 
-class CLBranchStack {
+class CLFrameWorklist {
 
-    /** Branch targets yet to visit. */
-    private Stack<CLBranchTarget> branchTargets;
+    /** Frame before each instruction; null if not yet reached. */
+    private CLFrame[] frames;
 
-    /** Branch targets already visited. */
-    private Hashtable<CLInstruction, CLBranchTarget> visitedTargets;
+    /** Whether each instruction is in the worklist. */
+    private boolean[] isPushed;
 
-    /**
-     * Return an instance of CLBranchTarget with the specified information and
-     * record the target as visited.
-     * 
-     * @param target
-     *            the target instruction.
-     * @param stackDepth
-     *            depth of stack before the target instruction is executed.
-     * @return an instance of CLBranchTarget.
-     */
+    /** Indices of the instructions yet to walk from. */
+    private int[] worklist;
 
-    private CLBranchTarget visit(CLInstruction target, int stackDepth) {
-        CLBranchTarget bt = new CLBranchTarget(target, stackDepth);
-        visitedTargets.put(target, bt);
-        return bt;
-    }
+    /** Number of instructions yet to walk from. */
+    private int size;
+
+    /** Class hierarchy in which reference types are merged. */
+    private CLClassHierarchy hierarchy;
 
     /**
-     * Return true if the specified instruction has been visited, false
-     * otherwise.
+     * Construct a CLFrameWorklist object for a method.
      * 
-     * @param target
-     *            the target instruction.
-     * @return true if the specified instruction has been visited, false
-     *         otherwise.
+     * @param instructions
+     *            number of instructions in the method.
+     * @param hierarchy
+     *            class hierarchy in which reference types are merged.
      */
 
-    private boolean visited(CLInstruction target) {
-        return (visitedTargets.get(target) != null);
+    public CLFrameWorklist(int instructions, CLClassHierarchy hierarchy) {
+        frames = new CLFrame[instructions];
+        isPushed = new boolean[instructions];
+        worklist = new int[instructions];
+        this.hierarchy = hierarchy;
     }
 
     /**
-     * Construct a CLBranchStack object.
+     * Merge the specified frame into the frame before the specified
+     * instruction, and push the instruction if its frame changes.
+     * 
+     * @param index
+     *            index of the instruction.
+     * @param frame
+     *            the frame reaching the instruction.
      */
 
-    public CLBranchStack() {
-        this.branchTargets = new Stack<CLBranchTarget>();
-        this.visitedTargets = new Hashtable<CLInstruction, CLBranchTarget>();
+    public void merge(int index, CLFrame frame) {
+        boolean changed;
+        if (frames[index] == null) {
+            frames[index] = frame.copy();
+            changed = true;
+        } else {
+            changed = frames[index].merge(frame, hierarchy);
+        }
+        if (changed && !isPushed[index]) {
+            isPushed[index] = true;
+            worklist[size++] = index;
+        }
     }
 
     /**
-     * Push the specified information into the stack as a CLBranchTarget
-     * instance if the target has not been visited yet.
+     * Pop and return the index of an instruction from the worklist. -1 is
+     * returned if the worklist is empty.
      * 
-     * @param target
-     *            the target instruction.
-     * @param stackDepth
-     *            depth of stack before the target instruction is executed.
+     * @return index of an instruction, or -1.
      */
 
-    public void push(CLInstruction target, int stackDepth) {
-        if (visited(target)) {
-            return;
+    public int pop() {
+        if (size == 0) {
+            return -1;
         }
-        branchTargets.push(visit(target, stackDepth));
+        int index = worklist[--size];
+        isPushed[index] = false;
+        return index;
     }
 
     /**
-     * Pop and return an element from the stack. null is returned if the stack
-     * is empty.
+     * Return the frame before the specified instruction; null if it has not
+     * been reached.
      * 
-     * @return an element from the stack.
+     * @param index
+     *            index of the instruction.
+     * @return the frame.
      */
 
-    public CLBranchTarget pop() {
-        if (!branchTargets.empty()) {
-            CLBranchTarget bt = (CLBranchTarget) branchTargets.pop();
-            return bt;
-        }
-        return null;
+    public CLFrame frame(int index) {
+        return frames[index];
     }
 
 }
@@ -2184,14 +2876,21 @@ class ByteClassLoader extends ClassLoader {
     private boolean pkgDefined = false;
 
     /**
-     * Set the bytes representing the class.
+     * Load the class with the specified name from the bytes representing it.
      * 
+     * @param name
+     *            fully qualified (internal form) name of the class.
      * @param bytes
      *            bytes representing the class.
+     * @return the loaded class.
+     * @throws ClassNotFoundException
+     *             if the class cannot be loaded.
      */
 
-    public void setClassBytes(byte[] bytes) {
+    public synchronized Class<?> loadClass(String name, byte[] bytes)
+            throws ClassNotFoundException {
         this.bytes = bytes;
+        return loadClass(name, true);
     }
 
     /**
@@ -0,0 +1,1214 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import static jminusminus.CLConstants.*;
+
+/**
+ * The types of the local variables and the operand stack of a method at some
+ * instruction, as the type-checking verifier (JVM Spec Java SE 7 Edition,
+ * Section 4.10.1) sees them. CLEmitter infers a frame at each branch target
+ * and exception handler of a method by running the method's instructions over
+ * the frame at its start (execute()) and merging the frames that reach the
+ * same instruction (merge()), and then writes the frames into the method's
+ * StackMapTable attribute.
+ * 
+ * As in the verifier, the locals and the operand stack are arrays of words: a
+ * long or double takes two, the second of which is TOP.
+ */
+
+class CLFrame {
+
+    /** Name (in internal form) of the class whose method this is. */
+    private String className;
+
+    /** Types of the local variables. */
+    private CLFrameType[] locals;
+
+    /** Types on the operand stack, from the bottom up. */
+    private CLFrameType[] stack;
+
+    /** Number of words on the operand stack. */
+    private int stackSize;
+
+    /**
+     * Construct the frame at the start of a method: its arguments (and this)
+     * in the first locals, and an empty operand stack.
+     * 
+     * @param className
+     *            name (in internal form) of the class whose method this is.
+     * @param methodName
+     *            name of the method.
+     * @param descriptor
+     *            descriptor of the method.
+     * @param isStatic
+     *            whether the method is static.
+     * @param maxLocals
+     *            max_locals of the method.
+     */
+
+    public CLFrame(String className, String methodName, String descriptor,
+            boolean isStatic, int maxLocals) {
+        this.className = className;
+        locals = new CLFrameType[maxLocals];
+        Arrays.fill(locals, CLFrameType.TOP);
+        stack = new CLFrameType[8];
+        int index = 0;
+        if (!isStatic) {
+            boolean isConstructor = methodName.equals("<init>")
+                    && !className.equals("java/lang/Object");
+            store(index++, isConstructor ? CLFrameType.UNINITIALIZED_THIS
+                    : CLFrameType.object(className));
+        }
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            int j = i;
+            while (descriptor.charAt(j) == '[') {
+                j++;
+            }
+            if (descriptor.charAt(j) == 'L') {
+                j = descriptor.indexOf(';', j);
+            }
+            CLFrameType type = CLFrameType.forDescriptor(descriptor.substring(
+                    i, j + 1));
+            store(index, type);
+            index += type.words();
+            i = j;
+        }
+    }
+
+    /**
+     * Construct a copy of the specified frame.
+     * 
+     * @param frame
+     *            the frame.
+     */
+
+    private CLFrame(CLFrame frame) {
+        className = frame.className;
+        locals = frame.locals.clone();
+        stack = frame.stack.clone();
+        stackSize = frame.stackSize;
+    }
+
+    /**
+     * Return a copy of this frame.
+     * 
+     * @return the copy.
+     */
+
+    public CLFrame copy() {
+        return new CLFrame(this);
+    }
+
+    /**
+     * Return the frame at the start of an exception handler catching the
+     * specified type that covers the instruction this frame is at: the same
+     * locals, and just the exception on the operand stack.
+     * 
+     * @param catchType
+     *            the type of the exception (in internal form).
+     * @return the handler's frame.
+     */
+
+    public CLFrame handlerFrame(String catchType) {
+        CLFrame frame = new CLFrame(this);
+        frame.stackSize = 0;
+        frame.push(CLFrameType.object(catchType));
+        return frame;
+    }
+
+    /**
+     * Merge the specified frame, for another path reaching the instruction
+     * this frame is at, into this one: each local becomes the least type both
+     * paths' types are assignable to (TOP, unusable, if there is none), as
+     * does each stack word.
+     * 
+     * @param frame
+     *            the other path's frame.
+     * @param hierarchy
+     *            the class hierarchy, for merging reference types.
+     * @return true if this frame changed; false otherwise.
+     * @throws IllegalStateException
+     *             if the paths' operand stacks cannot be merged.
+     */
+
+    public boolean merge(CLFrame frame, CLClassHierarchy hierarchy) {
+        if (frame.stackSize != stackSize) {
+            throw new IllegalStateException("inconsistent stack heights "
+                    + stackSize + " and " + frame.stackSize);
+        }
+        boolean changed = false;
+        for (int i = 0; i < locals.length; i++) {
+            CLFrameType type = locals[i].merge(frame.local(i), hierarchy);
+            if (!type.equals(locals[i])) {
+                locals[i] = type;
+                changed = true;
+            }
+        }
+        for (int i = 0; i < stackSize; i++) {
+            CLFrameType type = stack[i].merge(frame.stack[i], hierarchy);
+            if (type == CLFrameType.TOP && stack[i] != CLFrameType.TOP) {
+                throw new IllegalStateException("inconsistent stack types "
+                        + stack[i] + " and " + frame.stack[i]);
+            }
+            if (!type.equals(stack[i])) {
+                stack[i] = type;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Return the types of the local variables, as a list of verification
+     * types (one per value, rather than per word), leaving out the trailing
+     * unusable ones.
+     * 
+     * @param constantPool
+     *            the constant pool, for the class names of reference types.
+     * @return the locals' verification types.
+     */
+
+    public ArrayList<CLVerificationTypeInfo> locals(
+            CLConstantPool constantPool) {
+        int length = locals.length;
+        while (length > 0 && locals[length - 1] == CLFrameType.TOP) {
+            length--;
+        }
+        return verificationTypes(locals, length, constantPool);
+    }
+
+    /**
+     * Return the types on the operand stack, as a list of verification types
+     * (one per value, rather than per word).
+     * 
+     * @param constantPool
+     *            the constant pool, for the class names of reference types.
+     * @return the stack's verification types.
+     */
+
+    public ArrayList<CLVerificationTypeInfo> stack(
+            CLConstantPool constantPool) {
+        return verificationTypes(stack, stackSize, constantPool);
+    }
+
+    /**
+     * Run the (non-branching part of the) instruction at the specified pc over
+     * this frame, so that it becomes the frame after the instruction.
+     * 
+     * @param code
+     *            the method's code.
+     * @param pc
+     *            pc of the instruction.
+     * @param isWidened
+     *            whether the instruction is preceded by a WIDE instruction.
+     * @param constantPool
+     *            the constant pool the code refers to.
+     * @throws IllegalStateException
+     *             if the instruction underflows the operand stack, or is one
+     *             (JSR, RET, INVOKEDYNAMIC) that frames cannot be inferred
+     *             for.
+     */
+
+    public void execute(byte[] code, int pc, boolean isWidened,
+            CLConstantPool constantPool) {
+        int opcode = code[pc] & 0xFF;
+        int index = isWidened ? u2(code, pc + 1) : u1(code, pc + 1);
+        switch (opcode) {
+        case NOP:
+        case INEG:
+        case LNEG:
+        case FNEG:
+        case DNEG:
+        case IINC:
+        case I2B:
+        case I2C:
+        case I2S:
+        case GOTO:
+        case GOTO_W:
+        case RETURN:
+            break;
+        case ACONST_NULL:
+            push(CLFrameType.NULL);
+            break;
+        case ICONST_M1:
+        case ICONST_0:
+        case ICONST_1:
+        case ICONST_2:
+        case ICONST_3:
+        case ICONST_4:
+        case ICONST_5:
+        case BIPUSH:
+        case SIPUSH:
+        case ILOAD:
+        case ILOAD_0:
+        case ILOAD_1:
+        case ILOAD_2:
+        case ILOAD_3:
+            push(CLFrameType.INT);
+            break;
+        case LCONST_0:
+        case LCONST_1:
+        case LLOAD:
+        case LLOAD_0:
+        case LLOAD_1:
+        case LLOAD_2:
+        case LLOAD_3:
+            push(CLFrameType.LONG);
+            break;
+        case FCONST_0:
+        case FCONST_1:
+        case FCONST_2:
+        case FLOAD:
+        case FLOAD_0:
+        case FLOAD_1:
+        case FLOAD_2:
+        case FLOAD_3:
+            push(CLFrameType.FLOAT);
+            break;
+        case DCONST_0:
+        case DCONST_1:
+        case DLOAD:
+        case DLOAD_0:
+        case DLOAD_1:
+        case DLOAD_2:
+        case DLOAD_3:
+            push(CLFrameType.DOUBLE);
+            break;
+        case LDC:
+            push(constantType(constantPool, u1(code, pc + 1)));
+            break;
+        case LDC_W:
+        case LDC2_W:
+            push(constantType(constantPool, u2(code, pc + 1)));
+            break;
+        case ALOAD:
+            push(local(index));
+            break;
+        case ALOAD_0:
+        case ALOAD_1:
+        case ALOAD_2:
+        case ALOAD_3:
+            push(local(opcode - ALOAD_0));
+            break;
+        case IALOAD:
+        case BALOAD:
+        case CALOAD:
+        case SALOAD:
+            pop(2);
+            push(CLFrameType.INT);
+            break;
+        case LALOAD:
+            pop(2);
+            push(CLFrameType.LONG);
+            break;
+        case FALOAD:
+            pop(2);
+            push(CLFrameType.FLOAT);
+            break;
+        case DALOAD:
+            pop(2);
+            push(CLFrameType.DOUBLE);
+            break;
+        case AALOAD:
+            pop(1);
+            push(pop().componentType());
+            break;
+        case ISTORE:
+            pop(1);
+            store(index, CLFrameType.INT);
+            break;
+        case ISTORE_0:
+        case ISTORE_1:
+        case ISTORE_2:
+        case ISTORE_3:
+            pop(1);
+            store(opcode - ISTORE_0, CLFrameType.INT);
+            break;
+        case LSTORE:
+            pop(2);
+            store(index, CLFrameType.LONG);
+            break;
+        case LSTORE_0:
+        case LSTORE_1:
+        case LSTORE_2:
+        case LSTORE_3:
+            pop(2);
+            store(opcode - LSTORE_0, CLFrameType.LONG);
+            break;
+        case FSTORE:
+            pop(1);
+            store(index, CLFrameType.FLOAT);
+            break;
+        case FSTORE_0:
+        case FSTORE_1:
+        case FSTORE_2:
+        case FSTORE_3:
+            pop(1);
+            store(opcode - FSTORE_0, CLFrameType.FLOAT);
+            break;
+        case DSTORE:
+            pop(2);
+            store(index, CLFrameType.DOUBLE);
+            break;
+        case DSTORE_0:
+        case DSTORE_1:
+        case DSTORE_2:
+        case DSTORE_3:
+            pop(2);
+            store(opcode - DSTORE_0, CLFrameType.DOUBLE);
+            break;
+        case ASTORE:
+            store(index, pop());
+            break;
+        case ASTORE_0:
+        case ASTORE_1:
+        case ASTORE_2:
+        case ASTORE_3:
+            store(opcode - ASTORE_0, pop());
+            break;
+        case IASTORE:
+        case FASTORE:
+        case AASTORE:
+        case BASTORE:
+        case CASTORE:
+        case SASTORE:
+            pop(3);
+            break;
+        case LASTORE:
+        case DASTORE:
+            pop(4);
+            break;
+        case POP:
+        case IFEQ:
+        case IFNE:
+        case IFLT:
+        case IFGE:
+        case IFGT:
+        case IFLE:
+        case IFNULL:
+        case IFNONNULL:
+        case TABLESWITCH:
+        case LOOKUPSWITCH:
+        case IRETURN:
+        case FRETURN:
+        case ARETURN:
+        case ATHROW:
+        case MONITORENTER:
+        case MONITOREXIT:
+            pop(1);
+            break;
+        case POP2:
+        case IF_ICMPEQ:
+        case IF_ICMPNE:
+        case IF_ICMPLT:
+        case IF_ICMPGE:
+        case IF_ICMPGT:
+        case IF_ICMPLE:
+        case IF_ACMPEQ:
+        case IF_ACMPNE:
+        case LRETURN:
+        case DRETURN:
+            pop(2);
+            break;
+        case DUP: {
+            CLFrameType v1 = pop();
+            push(v1);
+            push(v1);
+            break;
+        }
+        case DUP_X1: {
+            CLFrameType v1 = pop(), v2 = pop();
+            push(v1);
+            push(v2);
+            push(v1);
+            break;
+        }
+        case DUP_X2: {
+            CLFrameType v1 = pop(), v2 = pop(), v3 = pop();
+            push(v1);
+            push(v3);
+            push(v2);
+            push(v1);
+            break;
+        }
+        case DUP2: {
+            CLFrameType v1 = pop(), v2 = pop();
+            push(v2);
+            push(v1);
+            push(v2);
+            push(v1);
+            break;
+        }
+        case DUP2_X1: {
+            CLFrameType v1 = pop(), v2 = pop(), v3 = pop();
+            push(v2);
+            push(v1);
+            push(v3);
+            push(v2);
+            push(v1);
+            break;
+        }
+        case DUP2_X2: {
+            CLFrameType v1 = pop(), v2 = pop(), v3 = pop(), v4 = pop();
+            push(v2);
+            push(v1);
+            push(v4);
+            push(v3);
+            push(v2);
+            push(v1);
+            break;
+        }
+        case SWAP: {
+            CLFrameType v1 = pop(), v2 = pop();
+            push(v1);
+            push(v2);
+            break;
+        }
+        case IADD:
+        case ISUB:
+        case IMUL:
+        case IDIV:
+        case IREM:
+        case ISHL:
+        case ISHR:
+        case IUSHR:
+        case IAND:
+        case IOR:
+        case IXOR:
+        case FCMPL:
+        case FCMPG:
+            pop(2);
+            push(CLFrameType.INT);
+            break;
+        case LADD:
+        case LSUB:
+        case LMUL:
+        case LDIV:
+        case LREM:
+        case LAND:
+        case LOR:
+        case LXOR:
+            pop(4);
+            push(CLFrameType.LONG);
+            break;
+        case LSHL:
+        case LSHR:
+        case LUSHR:
+            pop(3);
+            push(CLFrameType.LONG);
+            break;
+        case FADD:
+        case FSUB:
+        case FMUL:
+        case FDIV:
+        case FREM:
+            pop(2);
+            push(CLFrameType.FLOAT);
+            break;
+        case DADD:
+        case DSUB:
+        case DMUL:
+        case DDIV:
+        case DREM:
+            pop(4);
+            push(CLFrameType.DOUBLE);
+            break;
+        case I2L:
+        case F2L:
+            pop(1);
+            push(CLFrameType.LONG);
+            break;
+        case I2F:
+            pop(1);
+            push(CLFrameType.FLOAT);
+            break;
+        case I2D:
+        case F2D:
+            pop(1);
+            push(CLFrameType.DOUBLE);
+            break;
+        case L2I:
+        case D2I:
+            pop(2);
+            push(CLFrameType.INT);
+            break;
+        case L2F:
+        case D2F:
+            pop(2);
+            push(CLFrameType.FLOAT);
+            break;
+        case L2D:
+            pop(2);
+            push(CLFrameType.DOUBLE);
+            break;
+        case D2L:
+            pop(2);
+            push(CLFrameType.LONG);
+            break;
+        case F2I:
+            pop(1);
+            push(CLFrameType.INT);
+            break;
+        case LCMP:
+        case DCMPL:
+        case DCMPG:
+            pop(4);
+            push(CLFrameType.INT);
+            break;
+        case GETSTATIC:
+            push(CLFrameType.forDescriptor(memberDescriptor(constantPool, u2(
+                    code, pc + 1))));
+            break;
+        case PUTSTATIC:
+            pop(CLFrameType.forDescriptor(
+                    memberDescriptor(constantPool, u2(code, pc + 1))).words());
+            break;
+        case GETFIELD:
+            pop(1);
+            push(CLFrameType.forDescriptor(memberDescriptor(constantPool, u2(
+                    code, pc + 1))));
+            break;
+        case PUTFIELD:
+            pop(CLFrameType.forDescriptor(
+                    memberDescriptor(constantPool, u2(code, pc + 1))).words());
+            pop(1);
+            break;
+        case INVOKEVIRTUAL:
+        case INVOKESPECIAL:
+        case INVOKESTATIC:
+        case INVOKEINTERFACE: {
+            CLConstantMemberRefInfo method = (CLConstantMemberRefInfo) constantPool
+                    .cpItem(u2(code, pc + 1));
+            CLConstantNameAndTypeInfo nameAndType = (CLConstantNameAndTypeInfo) constantPool
+                    .cpItem(method.nameAndTypeIndex);
+            String name = utf8(constantPool, nameAndType.nameIndex);
+            String descriptor = utf8(constantPool, nameAndType.descriptorIndex);
+            int returnType = descriptor.indexOf(')') + 1;
+            for (int i = 1; i < returnType - 1; i++) {
+                int j = i;
+                while (descriptor.charAt(j) == '[') {
+                    j++;
+                }
+                if (descriptor.charAt(j) == 'L') {
+                    j = descriptor.indexOf(';', j);
+                }
+                pop(CLFrameType.forDescriptor(descriptor.substring(i, j + 1))
+                        .words());
+                i = j;
+            }
+            if (opcode != INVOKESTATIC) {
+                CLFrameType receiver = pop();
+                if (opcode == INVOKESPECIAL && name.equals("<init>")) {
+                    initialize(receiver, receiver.name() != null ? receiver
+                            .name() : className);
+                }
+            }
+            push(CLFrameType.forDescriptor(descriptor.substring(returnType)));
+            break;
+        }
+        case NEW:
+            push(CLFrameType.uninitialized(pc, className(constantPool, u2(
+                    code, pc + 1))));
+            break;
+        case NEWARRAY:
+            // The array types are numbered from 4 (boolean) to 11 (long)
+            pop(1);
+            push(CLFrameType.object("[" + "ZCFDBSIJ".charAt(u1(code, pc + 1)
+                    - 4)));
+            break;
+        case ANEWARRAY: {
+            String name = className(constantPool, u2(code, pc + 1));
+            pop(1);
+            push(CLFrameType.object(name.startsWith("[") ? "[" + name : "[L"
+                    + name + ";"));
+            break;
+        }
+        case ARRAYLENGTH:
+        case INSTANCEOF:
+            pop(1);
+            push(CLFrameType.INT);
+            break;
+        case CHECKCAST:
+            pop(1);
+            push(CLFrameType.object(className(constantPool, u2(code, pc + 1))));
+            break;
+        case MULTIANEWARRAY:
+            pop(u1(code, pc + 3));
+            push(CLFrameType.object(className(constantPool, u2(code, pc + 1))));
+            break;
+        default:
+            throw new IllegalStateException("cannot infer frames for "
+                    + CLInstruction.instructionInfo[opcode].mnemonic);
+        }
+    }
+
+    /**
+     * Push the specified type onto the operand stack, followed by TOP if it
+     * takes two words; nothing is pushed for void (null).
+     * 
+     * @param type
+     *            the type.
+     */
+
+    private void push(CLFrameType type) {
+        if (type == null) {
+            return;
+        }
+        if (stackSize + 2 > stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        stack[stackSize++] = type;
+        if (type.words() == 2) {
+            stack[stackSize++] = CLFrameType.TOP;
+        }
+    }
+
+    /**
+     * Pop a word off the operand stack, and return its type.
+     * 
+     * @return the type.
+     */
+
+    private CLFrameType pop() {
+        if (stackSize == 0) {
+            throw new IllegalStateException("operand stack underflow");
+        }
+        return stack[--stackSize];
+    }
+
+    /**
+     * Pop the specified number of words off the operand stack.
+     * 
+     * @param words
+     *            number of words.
+     */
+
+    private void pop(int words) {
+        for (int i = 0; i < words; i++) {
+            pop();
+        }
+    }
+
+    /**
+     * Return the type of the specified local variable.
+     * 
+     * @param index
+     *            index of the local variable.
+     * @return the type.
+     */
+
+    private CLFrameType local(int index) {
+        return index < locals.length ? locals[index] : CLFrameType.TOP;
+    }
+
+    /**
+     * Store a value of the specified type into the specified local variable
+     * (and the next, if it takes two words), making unusable a long or double
+     * whose second word it overwrites.
+     * 
+     * @param index
+     *            index of the local variable.
+     * @param type
+     *            the type.
+     */
+
+    private void store(int index, CLFrameType type) {
+        if (index + type.words() > locals.length) {
+            int length = locals.length;
+            locals = Arrays.copyOf(locals, index + type.words());
+            Arrays.fill(locals, length, locals.length, CLFrameType.TOP);
+        }
+        if (index > 0 && locals[index - 1].words() == 2) {
+            locals[index - 1] = CLFrameType.TOP;
+        }
+        locals[index] = type;
+        if (type.words() == 2) {
+            locals[index + 1] = CLFrameType.TOP;
+        }
+    }
+
+    /**
+     * Replace, in the locals and on the operand stack, the specified
+     * uninitialized type by the (initialized) class type, once its
+     * constructor has been invoked.
+     * 
+     * @param uninitialized
+     *            the uninitialized type.
+     * @param name
+     *            the name of the class.
+     */
+
+    private void initialize(CLFrameType uninitialized, String name) {
+        CLFrameType type = CLFrameType.object(name);
+        for (int i = 0; i < locals.length; i++) {
+            if (locals[i].equals(uninitialized)) {
+                locals[i] = type;
+            }
+        }
+        for (int i = 0; i < stackSize; i++) {
+            if (stack[i].equals(uninitialized)) {
+                stack[i] = type;
+            }
+        }
+    }
+
+    /**
+     * Return the verification types for the specified number of words of the
+     * specified types.
+     * 
+     * @param types
+     *            the types.
+     * @param length
+     *            the number of words.
+     * @param constantPool
+     *            the constant pool, for the class names of reference types.
+     * @return the verification types.
+     */
+
+    private static ArrayList<CLVerificationTypeInfo> verificationTypes(
+            CLFrameType[] types, int length, CLConstantPool constantPool) {
+        ArrayList<CLVerificationTypeInfo> verificationTypes = new ArrayList<CLVerificationTypeInfo>();
+        for (int i = 0; i < length; i += types[i].words()) {
+            verificationTypes.add(types[i].verificationType(constantPool));
+        }
+        return verificationTypes;
+    }
+
+    /**
+     * Return the type of the constant (loaded by LDC, LDC_W or LDC2_W) at the
+     * specified index in the constant pool.
+     * 
+     * @param constantPool
+     *            the constant pool.
+     * @param index
+     *            index of the constant.
+     * @return the type.
+     */
+
+    private static CLFrameType constantType(CLConstantPool constantPool,
+            int index) {
+        CLCPInfo constant = constantPool.cpItem(index);
+        if (constant instanceof CLConstantIntegerInfo) {
+            return CLFrameType.INT;
+        } else if (constant instanceof CLConstantFloatInfo) {
+            return CLFrameType.FLOAT;
+        } else if (constant instanceof CLConstantLongInfo) {
+            return CLFrameType.LONG;
+        } else if (constant instanceof CLConstantDoubleInfo) {
+            return CLFrameType.DOUBLE;
+        } else if (constant instanceof CLConstantStringInfo) {
+            return CLFrameType.object("java/lang/String");
+        } else if (constant instanceof CLConstantClassInfo) {
+            return CLFrameType.object("java/lang/Class");
+        } else if (constant instanceof CLConstantMethodTypeInfo) {
+            return CLFrameType.object("java/lang/invoke/MethodType");
+        } else if (constant instanceof CLConstantMethodHandleInfo) {
+            return CLFrameType.object("java/lang/invoke/MethodHandle");
+        }
+        throw new IllegalStateException("cannot infer frames for LDC of "
+                + "constant #" + index);
+    }
+
+    /**
+     * Return the descriptor of the field or method referred to at the
+     * specified index in the constant pool.
+     * 
+     * @param constantPool
+     *            the constant pool.
+     * @param index
+     *            index of the field or method reference.
+     * @return the descriptor.
+     */
+
+    private static String memberDescriptor(CLConstantPool constantPool,
+            int index) {
+        CLConstantMemberRefInfo member = (CLConstantMemberRefInfo) constantPool
+                .cpItem(index);
+        CLConstantNameAndTypeInfo nameAndType = (CLConstantNameAndTypeInfo) constantPool
+                .cpItem(member.nameAndTypeIndex);
+        return utf8(constantPool, nameAndType.descriptorIndex);
+    }
+
+    /**
+     * Return the name of the class at the specified index in the constant
+     * pool.
+     * 
+     * @param constantPool
+     *            the constant pool.
+     * @param index
+     *            index of the class.
+     * @return the name of the class (in internal form).
+     */
+
+    private static String className(CLConstantPool constantPool, int index) {
+        return utf8(constantPool,
+                ((CLConstantClassInfo) constantPool.cpItem(index)).nameIndex);
+    }
+
+    /**
+     * Return the string at the specified index in the constant pool.
+     * 
+     * @param constantPool
+     *            the constant pool.
+     * @param index
+     *            index of the string.
+     * @return the string.
+     */
+
+    private static String utf8(CLConstantPool constantPool, int index) {
+        return new String(((CLConstantUtf8Info) constantPool.cpItem(index)).b);
+    }
+
+    /**
+     * Return the unsigned byte at the specified index of the code.
+     * 
+     * @param code
+     *            the code.
+     * @param i
+     *            the index.
+     * @return the byte.
+     */
+
+    private static int u1(byte[] code, int i) {
+        return i < code.length ? code[i] & 0xFF : 0;
+    }
+
+    /**
+     * Return the unsigned (big-endian) short at the specified index of the
+     * code.
+     * 
+     * @param code
+     *            the code.
+     * @param i
+     *            the index.
+     * @return the short.
+     */
+
+    private static int u2(byte[] code, int i) {
+        return (u1(code, i) << 8) | u1(code, i + 1);
+    }
+
+}
+
+/**
+ * The type of a word in a CLFrame: one of the verification types of the
+ * type-checking verifier. A reference type's name is a class name in internal
+ * form, or an array descriptor; an uninitialized type (that of an object
+ * created by NEW at some pc, whose constructor has not been invoked yet) has
+ * the name of its class as well.
+ */
+
+class CLFrameType {
+
+    /** Type of an unusable word. */
+    public static final CLFrameType TOP = new CLFrameType(ITEM_Top, null, 0);
+
+    /** Type int (and boolean, byte, char and short). */
+    public static final CLFrameType INT = new CLFrameType(ITEM_Integer, null,
+            0);
+
+    /** Type float. */
+    public static final CLFrameType FLOAT = new CLFrameType(ITEM_Float, null,
+            0);
+
+    /** Type long. */
+    public static final CLFrameType LONG = new CLFrameType(ITEM_Long, null, 0);
+
+    /** Type double. */
+    public static final CLFrameType DOUBLE = new CLFrameType(ITEM_Double,
+            null, 0);
+
+    /** Type of null. */
+    public static final CLFrameType NULL = new CLFrameType(ITEM_Null, null, 0);
+
+    /** Type of this in a constructor, before the super constructor is run. */
+    public static final CLFrameType UNINITIALIZED_THIS = new CLFrameType(
+            ITEM_UninitializedThis, null, 0);
+
+    /** Verification type tag (ITEM_Top, ITEM_Integer, ...). */
+    private short tag;
+
+    /** Name of a reference or uninitialized type. */
+    private String name;
+
+    /** pc of the NEW instruction of an uninitialized type. */
+    private int offset;
+
+    /**
+     * Construct a CLFrameType.
+     * 
+     * @param tag
+     *            verification type tag.
+     * @param name
+     *            name of a reference or uninitialized type.
+     * @param offset
+     *            pc of the NEW instruction of an uninitialized type.
+     */
+
+    private CLFrameType(short tag, String name, int offset) {
+        this.tag = tag;
+        this.name = name;
+        this.offset = offset;
+    }
+
+    /**
+     * Return the reference type with the specified name.
+     * 
+     * @param name
+     *            class name (in internal form) or array descriptor.
+     * @return the type.
+     */
+
+    public static CLFrameType object(String name) {
+        return new CLFrameType(ITEM_Object, name, 0);
+    }
+
+    /**
+     * Return the type of an object of the specified class created by the NEW
+     * instruction at the specified pc.
+     * 
+     * @param offset
+     *            pc of the NEW instruction.
+     * @param name
+     *            name of the class (in internal form).
+     * @return the type.
+     */
+
+    public static CLFrameType uninitialized(int offset, String name) {
+        return new CLFrameType(ITEM_Uninitialized, name, offset);
+    }
+
+    /**
+     * Return the type for the specified field descriptor; null for void (V).
+     * 
+     * @param descriptor
+     *            the descriptor.
+     * @return the type.
+     */
+
+    public static CLFrameType forDescriptor(String descriptor) {
+        switch (descriptor.charAt(0)) {
+        case 'B':
+        case 'C':
+        case 'I':
+        case 'S':
+        case 'Z':
+            return INT;
+        case 'F':
+            return FLOAT;
+        case 'J':
+            return LONG;
+        case 'D':
+            return DOUBLE;
+        case 'L':
+            return object(descriptor.substring(1, descriptor.length() - 1));
+        case '[':
+            return object(descriptor);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Return the name of this reference or uninitialized type; null for other
+     * types.
+     * 
+     * @return the name.
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Return the number of words a value of this type takes.
+     * 
+     * @return 2 for long and double; 1 otherwise.
+     */
+
+    public int words() {
+        return tag == ITEM_Long || tag == ITEM_Double ? 2 : 1;
+    }
+
+    /**
+     * Return the type of the components of this array type (or null, if this
+     * is the type of null).
+     * 
+     * @return the component type.
+     * @throws IllegalStateException
+     *             if this is not an array type.
+     */
+
+    public CLFrameType componentType() {
+        if (tag == ITEM_Null) {
+            return NULL;
+        }
+        if (tag != ITEM_Object || !name.startsWith("[")) {
+            throw new IllegalStateException("array expected, found " + this);
+        }
+        return forDescriptor(name.substring(1));
+    }
+
+    /**
+     * Return the least type that both this type and the specified one are
+     * assignable to; TOP if there is none.
+     * 
+     * @param type
+     *            the other type.
+     * @param hierarchy
+     *            the class hierarchy, for merging reference types.
+     * @return the merged type.
+     */
+
+    public CLFrameType merge(CLFrameType type, CLClassHierarchy hierarchy) {
+        if (equals(type)) {
+            return this;
+        } else if (tag == ITEM_Null && type.tag == ITEM_Object) {
+            return type;
+        } else if (tag == ITEM_Object && type.tag == ITEM_Null) {
+            return this;
+        } else if (tag == ITEM_Object && type.tag == ITEM_Object) {
+            return object(commonSuperType(name, type.name, hierarchy));
+        }
+        return TOP;
+    }
+
+    /**
+     * Return the verification type for this type.
+     * 
+     * @param constantPool
+     *            the constant pool, for the class name of a reference type.
+     * @return the verification type.
+     */
+
+    public CLVerificationTypeInfo verificationType(CLConstantPool constantPool) {
+        int cpoolIndex = tag == ITEM_Object ? constantPool
+                .constantClassInfo(name) : 0;
+        return new CLVerificationTypeInfo(tag, cpoolIndex, offset);
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLFrameType) {
+            CLFrameType t = (CLFrameType) obj;
+            return t.tag == tag && t.offset == offset
+                    && (t.name == null ? name == null : t.name.equals(name));
+        }
+        return false;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int hashCode() {
+        return 31 * (31 * tag + offset) + (name == null ? 0 : name.hashCode());
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public String toString() {
+        String[] items = { "top", "int", "float", "double", "long", "null",
+                "uninitializedThis", "", "uninitialized " };
+        return name == null ? items[tag] : items[tag] + name;
+    }
+
+    /**
+     * Return the least class or array type that the two specified ones are
+     * both assignable to. As in the verifier, interfaces are treated as
+     * java/lang/Object.
+     * 
+     * @param name1
+     *            class name (in internal form) or array descriptor.
+     * @param name2
+     *            class name (in internal form) or array descriptor.
+     * @param hierarchy
+     *            the class hierarchy.
+     * @return the common supertype's name.
+     */
+
+    private static String commonSuperType(String name1, String name2,
+            CLClassHierarchy hierarchy) {
+        if (name1.startsWith("[") || name2.startsWith("[")) {
+            CLFrameType component1 = name1.startsWith("[") ? forDescriptor(name1
+                    .substring(1)) : null;
+            CLFrameType component2 = name2.startsWith("[") ? forDescriptor(name2
+                    .substring(1)) : null;
+            if (component1 != null && component2 != null
+                    && component1.tag == ITEM_Object
+                    && component2.tag == ITEM_Object) {
+                String name = commonSuperType(component1.name,
+                        component2.name, hierarchy);
+                return name.startsWith("[") ? "[" + name : "[L" + name + ";";
+            }
+            return "java/lang/Object";
+        }
+        if (hierarchy.isInterface(name1) || hierarchy.isInterface(name2)) {
+            return "java/lang/Object";
+        }
+        ArrayList<String> superClasses = new ArrayList<String>();
+        for (String c = name1; c != null; c = hierarchy.superClass(c)) {
+            superClasses.add(c);
+        }
+        for (String c = name2; c != null; c = hierarchy.superClass(c)) {
+            if (superClasses.contains(c)) {
+                return c;
+            }
+        }
+        return "java/lang/Object";
+    }
+
+}
+
+/**
+ * The class hierarchy that CLEmitter merges reference types in when it infers
+ * frames: the types of two paths reaching the same instruction are merged to
+ * their least common superclass.
+ */
+
+interface CLClassHierarchy {
+
+    /** The hierarchy of the system classes. */
+    public static final CLClassHierarchy SYSTEM = new CLClassHierarchy() {
+        public String superClass(String name) {
+            Type type = SymbolLoader.platform().typeFor(name);
+            return type == null || type.superClass() == null ? null : type
+                    .superClass().jvmName();
+        }
+
+        public boolean isInterface(String name) {
+            Type type = SymbolLoader.platform().typeFor(name);
+            return type != null && type.isInterface();
+        }
+    };
+
+    /**
+     * Return the name of the superclass of the specified class.
+     * 
+     * @param name
+     *            the class name (in internal form).
+     * @return the superclass's name (in internal form); null for
+     *         java/lang/Object, or for an unknown class.
+     */
+
+    public String superClass(String name);
+
+    /**
+     * Return true if the specified class is an interface, false otherwise.
+     * 
+     * @param name
+     *            the class name (in internal form).
+     * @return true or false.
+     */
+
+    public boolean isInterface(String name);
+
+}
@@ -3,6 +3,7 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Set;
@@ -338,6 +339,18 @@ abstract class CLInstruction {
         return pc;
     }
 
+    /**
+     * Move this instruction to the specified pc, as when the code of a method
+     * is laid out again after some of its branches are widened.
+     * 
+     * @param pc
+     *            the new pc.
+     */
+
+    public void relocate(int pc) {
+        this.pc = pc;
+    }
+
     /**
      * Return the stack units for this instruction.
      * 
@@ -359,41 +372,14 @@ abstract class CLInstruction {
     }
 
     /**
-     * Return the bytecode for this instruction.
+     * Write the bytecode for this instruction (its opcode and operands) to the
+     * specified code buffer.
      * 
-     * @return bytecode.
+     * @param out
+     *            the code buffer of the method the instruction belongs to.
      */
 
-    public abstract ArrayList<Integer> toBytes();
-
-    /**
-     * Return the byte from i at position byteNum.
-     * 
-     * @param i
-     *            number whose individual byte is required.
-     * @param byteNum
-     *            the byte to return; 1 (lower) - 4 (higher) instructions.
-     * @return the byte at the specified position.
-     */
-
-    protected int byteAt(int i, int byteNum) {
-        int j = 0, mask = 0xFF;
-        switch (byteNum) {
-        case 1: // lower order
-            j = i & mask;
-            break;
-        case 2:
-            j = (i >> 8) & mask;
-            break;
-        case 3:
-            j = (i >> 16) & mask;
-            break;
-        case 4: // higher order
-            j = (i >> 24) & mask;
-            break;
-        }
-        return j;
-    }
+    public abstract void write(CLCodeBuffer out);
 
 }
 
@@ -435,12 +421,9 @@ class CLObjectInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        bytes.add(byteAt(index, 2));
-        bytes.add(byteAt(index, 1));
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
+        out.writeShort(index);
     }
 
 }
@@ -486,12 +469,9 @@ class CLFieldInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        bytes.add(byteAt(index, 2));
-        bytes.add(byteAt(index, 1));
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
+        out.writeShort(index);
     }
 
 }
@@ -572,22 +552,19 @@ class CLMethodInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
         if (instructionInfo[opcode].category == METHOD1) {
-            bytes.add(byteAt(index, 2));
-            bytes.add(byteAt(index, 1));
+            out.writeShort(index);
 
             // INVOKEINTERFACE expects the number of arguments of
             // the method as the third operand and a fourth
             // argument which must always be 0.
             if (opcode == INVOKEINTERFACE) {
-                bytes.add(byteAt(nArgs, 1));
-                bytes.add(0);
+                out.writeByte(nArgs);
+                out.writeByte(0);
             }
         }
-        return bytes;
     }
 
 }
@@ -675,24 +652,20 @@ class CLArrayInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
         switch (opcode) {
         case NEWARRAY:
-            bytes.add(byteAt(type, 1));
+            out.writeByte(type);
             break;
         case ANEWARRAY:
-            bytes.add(byteAt(type, 2));
-            bytes.add(byteAt(type, 1));
+            out.writeShort(type);
             break;
         case MULTIANEWARRAY:
-            bytes.add(byteAt(type, 2));
-            bytes.add(byteAt(type, 1));
-            bytes.add(byteAt(dim, 1));
+            out.writeShort(type);
+            out.writeByte(dim);
             break;
         }
-        return bytes;
     }
 
 }
@@ -753,6 +726,10 @@ class CLArithmeticInstruction extends CLInstruction {
         super.localVariableIndex = localVariableIndex;
         mnemonic = instructionInfo[opcode].mnemonic;
         operandCount = instructionInfo[opcode].operandCount;
+        if (isWidened) {
+            // WIDE doubles the width of the operands
+            operandCount *= 2;
+        }
         stackUnits = instructionInfo[opcode].stackUnits;
         this.constVal = constVal;
         this.isWidened = isWidened;
@@ -762,21 +739,17 @@ class CLArithmeticInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
         if (opcode == IINC) {
             if (isWidened) {
-                bytes.add(byteAt(localVariableIndex, 2));
-                bytes.add(byteAt(localVariableIndex, 1));
-                bytes.add(byteAt(constVal, 2));
-                bytes.add(byteAt(constVal, 1));
+                out.writeShort(localVariableIndex);
+                out.writeShort(constVal);
             } else {
-                bytes.add(byteAt(localVariableIndex, 1));
-                bytes.add(byteAt(constVal, 1));
+                out.writeByte(localVariableIndex);
+                out.writeByte(constVal);
             }
         }
-        return bytes;
     }
 
 }
@@ -809,10 +782,8 @@ class CLBitInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
     }
 
 }
@@ -845,10 +816,8 @@ class CLComparisonInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
     }
 
 }
@@ -881,10 +850,8 @@ class CLConversionInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
     }
 
 }
@@ -1003,6 +970,10 @@ class CLFlowControlInstruction extends CLInstruction {
         super.pc = pc;
         mnemonic = instructionInfo[opcode].mnemonic;
         operandCount = instructionInfo[opcode].operandCount;
+        if (isWidened) {
+            // WIDE doubles the width of the operands
+            operandCount *= 2;
+        }
         stackUnits = instructionInfo[opcode].stackUnits;
         localVariableIndex = instructionInfo[opcode].localVariableIndex;
         this.index = index;
@@ -1131,6 +1102,31 @@ class CLFlowControlInstruction extends CLInstruction {
         return allLabelsResolved;
     }
 
+    /**
+     * @inheritDoc
+     */
+
+    public void relocate(int pc) {
+        super.relocate(pc);
+        if (opcode == TABLESWITCH) {
+            pad = 4 - ((pc + 1) % 4);
+            operandCount = pad + 12 + 4 * labels.size();
+        } else if (opcode == LOOKUPSWITCH) {
+            pad = 4 - ((pc + 1) % 4);
+            operandCount = pad + 8 + 8 * numPairs;
+        }
+    }
+
+    /**
+     * Return the label this (FLOW_CONTROL1) instruction jumps to.
+     * 
+     * @return the label.
+     */
+
+    public String jumpToLabel() {
+        return jumpToLabel;
+    }
+
     /**
      * Return the pc of instruction to jump to.
      * 
@@ -1141,86 +1137,98 @@ class CLFlowControlInstruction extends CLInstruction {
         return jumpToOffset;
     }
 
+    /**
+     * Return the labels this instruction can jump to: the jump label of a
+     * FLOW_CONTROL1 instruction, or the default and match labels of a
+     * TABLESWITCH or LOOKUPSWITCH instruction.
+     * 
+     * @return the labels.
+     */
+
+    public ArrayList<String> jumpToLabels() {
+        ArrayList<String> jumpToLabels = new ArrayList<String>();
+        if (instructionInfo[opcode].category == FLOW_CONTROL1) {
+            jumpToLabels.add(jumpToLabel);
+        } else if (opcode == LOOKUPSWITCH) {
+            jumpToLabels.add(defaultLabel);
+            jumpToLabels.addAll(matchLabelPairs.values());
+        } else if (opcode == TABLESWITCH) {
+            jumpToLabels.add(defaultLabel);
+            jumpToLabels.addAll(labels);
+        }
+        return jumpToLabels;
+    }
+
+    /**
+     * Return the offsets (resolved labels from jumpToLabels()) this
+     * instruction can jump to.
+     * 
+     * @return the offsets.
+     */
+
+    public ArrayList<Integer> jumpToOffsets() {
+        ArrayList<Integer> jumpToOffsets = new ArrayList<Integer>();
+        if (instructionInfo[opcode].category == FLOW_CONTROL1) {
+            jumpToOffsets.add(jumpToOffset);
+        } else if (opcode == LOOKUPSWITCH) {
+            jumpToOffsets.add(defaultOffset);
+            jumpToOffsets.addAll(matchOffsetPairs.values());
+        } else if (opcode == TABLESWITCH) {
+            jumpToOffsets.add(defaultOffset);
+            jumpToOffsets.addAll(offsets);
+        }
+        return jumpToOffsets;
+    }
+
     /**
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
         switch (opcode) {
         case RET:
             if (isWidened) {
-                bytes.add(byteAt(index, 2));
-                bytes.add(byteAt(index, 1));
+                out.writeShort(index);
             } else {
-                bytes.add(byteAt(index, 1));
+                out.writeByte(index);
             }
             break;
         case TABLESWITCH:
             for (int i = 0; i < pad; i++) {
-                bytes.add(0);
+                out.writeByte(0);
             }
-            bytes.add(byteAt(defaultOffset, 4));
-            bytes.add(byteAt(defaultOffset, 3));
-            bytes.add(byteAt(defaultOffset, 2));
-            bytes.add(byteAt(defaultOffset, 1));
-            bytes.add(byteAt(low, 4));
-            bytes.add(byteAt(low, 3));
-            bytes.add(byteAt(low, 2));
-            bytes.add(byteAt(low, 1));
-            bytes.add(byteAt(high, 4));
-            bytes.add(byteAt(high, 3));
-            bytes.add(byteAt(high, 2));
-            bytes.add(byteAt(high, 1));
+            out.writeInt(defaultOffset);
+            out.writeInt(low);
+            out.writeInt(high);
             for (int i = 0; i < offsets.size(); i++) {
                 int jumpOffset = offsets.get(i);
-                bytes.add(byteAt(jumpOffset, 4));
-                bytes.add(byteAt(jumpOffset, 3));
-                bytes.add(byteAt(jumpOffset, 2));
-                bytes.add(byteAt(jumpOffset, 1));
+                out.writeInt(jumpOffset);
             }
             break;
         case LOOKUPSWITCH:
             for (int i = 0; i < pad; i++) {
-                bytes.add(0);
+                out.writeByte(0);
             }
-            bytes.add(byteAt(defaultOffset, 4));
-            bytes.add(byteAt(defaultOffset, 3));
-            bytes.add(byteAt(defaultOffset, 2));
-            bytes.add(byteAt(defaultOffset, 1));
-            bytes.add(byteAt(numPairs, 4));
-            bytes.add(byteAt(numPairs, 3));
-            bytes.add(byteAt(numPairs, 2));
-            bytes.add(byteAt(numPairs, 1));
+            out.writeInt(defaultOffset);
+            out.writeInt(numPairs);
             Set<Entry<Integer, Integer>> matches = matchOffsetPairs.entrySet();
             Iterator<Entry<Integer, Integer>> iter = matches.iterator();
             while (iter.hasNext()) {
                 Entry<Integer, Integer> entry = iter.next();
                 int match = entry.getKey();
                 int offset = entry.getValue();
-                bytes.add(byteAt(match, 4));
-                bytes.add(byteAt(match, 3));
-                bytes.add(byteAt(match, 2));
-                bytes.add(byteAt(match, 1));
-                bytes.add(byteAt(offset, 4));
-                bytes.add(byteAt(offset, 3));
-                bytes.add(byteAt(offset, 2));
-                bytes.add(byteAt(offset, 1));
+                out.writeInt(match);
+                out.writeInt(offset);
             }
             break;
         case GOTO_W:
         case JSR_W:
-            bytes.add(byteAt(jumpToOffset, 4));
-            bytes.add(byteAt(jumpToOffset, 3));
-            bytes.add(byteAt(jumpToOffset, 2));
-            bytes.add(byteAt(jumpToOffset, 1));
+            out.writeInt(jumpToOffset);
             break;
         default:
-            bytes.add(byteAt(jumpToOffset, 2));
-            bytes.add(byteAt(jumpToOffset, 1));
+            out.writeShort(jumpToOffset);
         }
-        return bytes;
     }
 
 }
@@ -1283,6 +1291,10 @@ class CLLoadStoreInstruction extends CLInstruction {
         super.pc = pc;
         mnemonic = instructionInfo[opcode].mnemonic;
         operandCount = instructionInfo[opcode].operandCount;
+        if (isWidened) {
+            // WIDE doubles the width of the operands
+            operandCount *= 2;
+        }
         stackUnits = instructionInfo[opcode].stackUnits;
         super.localVariableIndex = localVariableIndex;
         this.isWidened = isWidened;
@@ -1315,30 +1327,27 @@ class CLLoadStoreInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
         if (instructionInfo[opcode].operandCount > 0) {
             if (localVariableIndex != IRRELEVANT) {
                 if (isWidened) {
-                    bytes.add(byteAt(localVariableIndex, 2));
+                    out.writeByte(localVariableIndex >> 8);
                 }
-                bytes.add(byteAt(localVariableIndex, 1));
+                out.writeByte(localVariableIndex);
             } else {
                 switch (opcode) {
                 case BIPUSH:
                 case LDC:
-                    bytes.add(byteAt(constVal, 1));
+                    out.writeByte(constVal);
                     break;
                 case SIPUSH:
                 case LDC_W:
                 case LDC2_W:
-                    bytes.add(byteAt(constVal, 2));
-                    bytes.add(byteAt(constVal, 1));
+                    out.writeShort(constVal);
                 }
             }
         }
-        return bytes;
     }
 
 }
@@ -1371,10 +1380,8 @@ class CLStackInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
     }
 
 }
@@ -1407,10 +1414,8 @@ class CLMiscInstruction extends CLInstruction {
      * @inheritDoc
      */
 
-    public ArrayList<Integer> toBytes() {
-        ArrayList<Integer> bytes = new ArrayList<Integer>();
-        bytes.add(opcode);
-        return bytes;
+    public void write(CLCodeBuffer out) {
+        out.writeByte(opcode);
     }
 
 }
@@ -1474,3 +1479,93 @@ class CLInsInfo {
     }
 
 }
+
+/**
+ * The code array of a method, as its instructions are written to it: a
+ * growable array of bytes, which the Code attribute of the method then holds,
+ * and writes to the class file as one block. The emitter sizes the buffer to
+ * the code length of the method, so that the array is allocated once and need
+ * not be copied.
+ */
+
+class CLCodeBuffer {
+
+    /** The bytes; those at length and after are unused. */
+    private byte[] bytes;
+
+    /** Number of bytes written. */
+    private int length;
+
+    /**
+     * Construct an empty CLCodeBuffer.
+     * 
+     * @param capacity
+     *            number of bytes expected.
+     */
+
+    public CLCodeBuffer(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    /**
+     * Write the low byte of the specified value.
+     * 
+     * @param v
+     *            the value.
+     */
+
+    public void writeByte(int v) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(16, bytes.length * 2));
+        }
+        bytes[length++] = (byte) v;
+    }
+
+    /**
+     * Write the low two bytes of the specified value, high byte first.
+     * 
+     * @param v
+     *            the value.
+     */
+
+    public void writeShort(int v) {
+        writeByte(v >> 8);
+        writeByte(v);
+    }
+
+    /**
+     * Write the four bytes of the specified value, high byte first.
+     * 
+     * @param v
+     *            the value.
+     */
+
+    public void writeInt(int v) {
+        writeByte(v >> 24);
+        writeByte(v >> 16);
+        writeByte(v >> 8);
+        writeByte(v);
+    }
+
+    /**
+     * Return the number of bytes written.
+     * 
+     * @return the number of bytes.
+     */
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Return the bytes written, as an array of their number; the buffer's own
+     * array if it is full.
+     * 
+     * @return the bytes.
+     */
+
+    public byte[] toByteArray() {
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+}
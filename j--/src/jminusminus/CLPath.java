@@ -3,28 +3,54 @@
 package jminusminus;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.StringTokenizer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * This class can be used to locate and load system, extension, and user-defined
- * class files from directories and zip (jar) files. The code for this class has
- * been adapted from the Kopi (http://www.dms.at/kopi/) project.
+ * class files from directories and zip (jar) files, and (on Java 9 and later)
+ * system class files from the run-time image, through the jrt:/ file system.
+ * The code for this class has been adapted from the Kopi
+ * (http://www.dms.at/kopi/) project.
+ * 
+ * Each zip file is opened once, the first time it is looked in, and is kept
+ * open (along with the names of the packages in it) until the path is closed.
+ * Which of the path's entries hold a package is worked out the first time a
+ * class in the package is asked for, so a class is then looked for only in
+ * the entries that may hold it; the first of them that does wins.
  */
 
-class CLPath {
+class CLPath implements Closeable {
 
     /**
      * Stores the individual directories, zip, and jar files from the class
      * path.
      */
-    private ArrayList<String> dirs;
+    private ArrayList<CLPathEntry> dirs;
+
+    /**
+     * Maps (internal) package names to the entries holding them, in class
+     * path order.
+     */
+    private HashMap<String, ArrayList<CLPathEntry>> packageIndex;
 
     /**
      * Return a list of conceptual directories defining the class path.
@@ -34,14 +60,14 @@ class CLPath {
      * @return a list of conceptual directories defining the class path.
      */
 
-    private ArrayList<String> loadClassPath(String classPath) {
-        ArrayList<String> container = new ArrayList<String>();
+    private ArrayList<CLPathEntry> loadClassPath(String classPath) {
+        ArrayList<CLPathEntry> container = new ArrayList<CLPathEntry>();
 
         // Add directories/jars/zips from the classpath
         StringTokenizer entries = new StringTokenizer(classPath,
                 File.pathSeparator);
         while (entries.hasMoreTokens()) {
-            container.add(entries.nextToken());
+            addEntry(container, new File(entries.nextToken()));
         }
 
         // Add system directories
@@ -49,21 +75,41 @@ class CLPath {
             entries = new StringTokenizer(System
                     .getProperty("sun.boot.class.path"), File.pathSeparator);
             while (entries.hasMoreTokens()) {
-                container.add(entries.nextToken());
+                addEntry(container, new File(entries.nextToken()));
             }
         } else {
-            float version = Float
-                    .parseFloat(System.getProperty("java.version"));
-            if (version > 1.1) {
-                String dir = System.getProperty("java.home")
-                        + File.separatorChar + "lib" + File.separatorChar
-                        + "rt.jar";
-                container.add(dir);
+            File rtJar = new File(System.getProperty("java.home")
+                    + File.separatorChar + "lib" + File.separatorChar
+                    + "rt.jar");
+            if (rtJar.isFile()) {
+                addEntry(container, rtJar);
+            } else {
+                container.add(new CLRuntimeImageEntry());
             }
         }
         return container;
     }
 
+    /**
+     * Add the specified directory or zip (jar) file to a list of conceptual
+     * directories.
+     * 
+     * @param container
+     *            the list.
+     * @param file
+     *            the directory or zip file; anything else is ignored.
+     */
+
+    private static void addEntry(ArrayList<CLPathEntry> container, File file) {
+        if (file.isDirectory()) {
+            container.add(new CLDirectoryEntry(file));
+        } else if (file.isFile()) {
+            container.add(new CLArchiveEntry(file));
+        } else {
+            // Bogus entry; ignore
+        }
+    }
+
     /**
      * Construct a CLPath object.
      */
@@ -92,6 +138,7 @@ class CLPath {
             path = ".";
         }
         dirs = loadClassPath(path);
+        packageIndex = new HashMap<String, ArrayList<CLPathEntry>>();
         if (extdir == null) {
             // Java extension classes
             extdir = System.getProperty("java.ext.dirs");
@@ -105,7 +152,7 @@ class CLPath {
                     if (file.isFile()
                             && (file.getName().endsWith(".zip") || file
                                     .getName().endsWith(".jar"))) {
-                        dirs.add(file.getName());
+                        dirs.add(new CLArchiveEntry(file));
                     } else {
                         // Wrong suffix; ignore
                     }
@@ -127,37 +174,390 @@ class CLPath {
      */
 
     public CLInputStream loadClass(String name) {
-        CLInputStream reader = null;
-        for (int i = 0; i < dirs.size(); i++) {
-            String dir = dirs.get(i);
-            File file = new File(dir);
-            if (file.isDirectory()) {
-                File theClass = new File(dir, name.replace('/',
-                        File.separatorChar)
-                        + ".class");
-                if (theClass.canRead()) {
-                    try {
-                        reader = new CLInputStream(new BufferedInputStream(
-                                new FileInputStream(theClass)));
-                    } catch (FileNotFoundException e) {
-                        // Ignore
-                    }
+        for (CLPathEntry entry : entriesFor(name)) {
+            InputStream in = entry.open(name + ".class");
+            if (in != null) {
+                return new CLInputStream(in);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Is there a class file for the class with the specified name on this
+     * path? Unlike loadClass(), this does not open the class file.
+     * 
+     * @param name
+     *            the fully-qualified name of the class -- java/util/ArrayList
+     *            for example.
+     * @return true or false.
+     */
+
+    public boolean contains(String name) {
+        for (CLPathEntry entry : entriesFor(name)) {
+            if (entry.contains(name + ".class")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Close the zip files opened by this path. The path may still be used; it
+     * then opens them again.
+     */
+
+    public synchronized void close() {
+        for (CLPathEntry entry : dirs) {
+            entry.close();
+        }
+        packageIndex.clear();
+    }
+
+    /**
+     * Return the entries that may hold the class with the specified name, ie,
+     * those holding its package.
+     * 
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return the entries, in class path order.
+     */
+
+    private synchronized ArrayList<CLPathEntry> entriesFor(String name) {
+        int i = name.lastIndexOf('/');
+        String packageName = i < 0 ? "" : name.substring(0, i);
+        ArrayList<CLPathEntry> entries = packageIndex.get(packageName);
+        if (entries == null) {
+            entries = new ArrayList<CLPathEntry>();
+            for (CLPathEntry entry : dirs) {
+                if (entry.holdsPackage(packageName)) {
+                    entries.add(entry);
                 }
-            } else if (file.isFile()) {
+            }
+            packageIndex.put(packageName, entries);
+        }
+        return entries;
+    }
+
+}
+
+/**
+ * An entry (a directory, a zip file, or the run-time image) on a class path.
+ */
+
+abstract class CLPathEntry {
+
+    /**
+     * Does this entry hold the package with the specified name?
+     * 
+     * @param packageName
+     *            the package name in internal form -- java/util for example;
+     *            "" for the unnamed package.
+     * @return true or false.
+     */
+
+    public abstract boolean holdsPackage(String packageName);
+
+    /**
+     * Does this entry hold a file with the specified name?
+     * 
+     * @param name
+     *            the file name, relative to the entry -- java/util/List.class
+     *            for example.
+     * @return true or false.
+     */
+
+    public abstract boolean contains(String name);
+
+    /**
+     * Return an input stream for the file with the specified name, or null if
+     * this entry does not hold it.
+     * 
+     * @param name
+     *            the file name, relative to the entry.
+     * @return an input stream, or null.
+     */
+
+    public abstract InputStream open(String name);
+
+    /**
+     * Release any resources held by this entry.
+     */
+
+    public void close() {
+    }
+
+}
+
+/**
+ * A directory on a class path.
+ */
+
+class CLDirectoryEntry extends CLPathEntry {
+
+    /** The directory. */
+    private File dir;
+
+    /**
+     * Construct a CLDirectoryEntry.
+     * 
+     * @param dir
+     *            the directory.
+     */
+
+    public CLDirectoryEntry(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean holdsPackage(String packageName) {
+        return new File(dir, packageName.replace('/', File.separatorChar))
+                .isDirectory();
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean contains(String name) {
+        return new File(dir, name.replace('/', File.separatorChar)).isFile();
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public InputStream open(String name) {
+        try {
+            return new BufferedInputStream(new FileInputStream(new File(dir,
+                    name.replace('/', File.separatorChar))));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+}
+
+/**
+ * A zip (jar) file on a class path. The file is opened, and the names of the
+ * packages in it noted, the first time it is looked in.
+ */
+
+class CLArchiveEntry extends CLPathEntry {
+
+    /** The zip file's name. */
+    private File file;
+
+    /** The open zip file; null if it is not open (yet). */
+    private ZipFile zip;
+
+    /** (Internal) names of the packages in the zip file. */
+    private HashSet<String> packages;
+
+    /**
+     * Construct a CLArchiveEntry.
+     * 
+     * @param file
+     *            the zip file's name.
+     */
+
+    public CLArchiveEntry(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean holdsPackage(String packageName) {
+        return zip() != null && packages.contains(packageName);
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean contains(String name) {
+        return zip() != null && zip.getEntry(name) != null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public InputStream open(String name) {
+        ZipFile zip = zip();
+        ZipEntry entry = zip == null ? null : zip.getEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return new BufferedInputStream(zip.getInputStream(entry));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public synchronized void close() {
+        if (zip != null) {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            zip = null;
+            packages = null;
+        }
+    }
+
+    /**
+     * Return the open zip file, opening it (and indexing its packages) if it
+     * is not open yet.
+     * 
+     * @return the zip file, or null if it cannot be read.
+     */
+
+    private synchronized ZipFile zip() {
+        if (zip == null && packages == null) {
+            packages = new HashSet<String>();
+            try {
+                zip = new ZipFile(file);
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    int i = name.lastIndexOf('/');
+                    packages.add(i < 0 ? "" : name.substring(0, i));
+                }
+            } catch (IOException e) {
+                // Not a zip file; ignore
+            }
+        }
+        return zip;
+    }
+
+}
+
+/**
+ * The run-time image of Java 9 and later, which holds the system classes, read
+ * through the jrt:/ file system. Its /packages directory maps each package to
+ * the module(s) holding it, and a class file is found under
+ * /modules/&lt;module&gt;/. A package's modules are looked up the first time
+ * it is asked for; listing all of /packages up front costs more than a
+ * compilation usually saves.
+ */
+
+class CLRuntimeImageEntry extends CLPathEntry {
+
+    /** The jrt:/ file system; null if there is none. */
+    private static FileSystem jrt;
+
+    /**
+     * Maps the (internal) names of the packages asked for so far to the
+     * modules holding them; no modules if there is no such package.
+     */
+    private static HashMap<String, ArrayList<Path>> packages;
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean holdsPackage(String packageName) {
+        return modulesFor(packageName).size() > 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean contains(String name) {
+        return find(name) != null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public InputStream open(String name) {
+        Path path = find(name);
+        if (path == null) {
+            return null;
+        }
+        try {
+            // The image is memory mapped; reading a file whole is cheapest
+            return new ByteArrayInputStream(Files.readAllBytes(path));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the path to the file with the specified name in the run-time
+     * image.
+     * 
+     * @param name
+     *            the file name, relative to a module.
+     * @return the path, or null if there is no such file.
+     */
+
+    private static Path find(String name) {
+        int i = name.lastIndexOf('/');
+        for (Path module : modulesFor(i < 0 ? "" : name.substring(0, i))) {
+            Path path = module.resolve(name);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the modules holding the specified package, looking them up the
+     * first time. What is found (like the image) is shared by all class paths.
+     * 
+     * @param packageName
+     *            the package name in internal form.
+     * @return the modules' directories.
+     */
+
+    private static synchronized ArrayList<Path> modulesFor(String packageName) {
+        if (packages == null) {
+            packages = new HashMap<String, ArrayList<Path>>();
+            try {
+                jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            } catch (Exception e) {
+                // No run-time image; there are no system classes then
+            }
+        }
+        ArrayList<Path> modules = packages.get(packageName);
+        if (modules == null) {
+            modules = new ArrayList<Path>();
+            if (jrt != null && packageName.length() > 0) {
+                Path dir = jrt.getPath("/packages", packageName.replace('/',
+                        '.'));
                 try {
-                    ZipFile zip = new ZipFile(dir);
-                    ZipEntry entry = zip.getEntry(name + ".class");
-                    if (entry != null) {
-                        reader = new CLInputStream(zip.getInputStream(entry));
+                    DirectoryStream<Path> links = Files.newDirectoryStream(dir);
+                    try {
+                        for (Path link : links) {
+                            modules.add(jrt.getPath("/modules", link
+                                    .getFileName().toString()));
+                        }
+                    } finally {
+                        links.close();
                     }
                 } catch (IOException e) {
-                    // Ignore
+                    // No such package
                 }
-            } else {
-                // Bogus entry; ignore
             }
+            packages.put(packageName, modules);
         }
-        return reader;
+        return modules;
     }
 
 }
@@ -0,0 +1,802 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A compilation of one or more compilation units that are parsed, analyzed and
+ * translated together as one program. The front-end drivers (Main and
+ * JavaCCMain) parse the source files, add the resulting ASTs to a Compilation,
+ * and then send it the preAnalyze(), analyze() and codegen() messages.
+ * 
+ * Work that is independent from one compilation unit (or type declaration) to
+ * the next, that is, parsing and code generation, is run on a fork-join pool
+ * whose parallelism is fixed when the Compilation is constructed. Pre-analysis
+ * and analysis walk the units one after the other, since the types declared in
+ * one unit may be referenced from any other.
+ * 
+ * A Compilation also holds all of the state that lives as long as the
+ * compilation does: the error flag and the listener to which errors are
+ * reported, the arena of the nodes made up in analysis, the units (whose
+ * types are backed by the ClassSymbols built in pre-analysis), the
+ * SymbolLoader that finds library classes on the class path, and the number
+ * of physical registers available to the register allocators. Nothing is
+ * shared between Compilations (but the read-only symbols of the system
+ * classes), so any number of them may run at once in one JVM.
+ */
+
+class Compilation {
+
+    /** The compilation units making up the program. */
+    private ArrayList<JCompilationUnit> compilationUnits;
+
+    /** Pool on which the parallel phases are run. */
+    private ForkJoinPool pool;
+
+    /** Whether an error occurred during compilation. */
+    private boolean errorHasOccurred;
+
+    /** Qualified names of the types declared in the program. */
+    private HashSet<String> declaredTypeNames;
+
+    /** Number of physical registers available for allocation. */
+    private int registerCount;
+
+    /** Names of the files written by code generation, in order. */
+    private ArrayList<String> outputFiles;
+
+    /** Emitters of the classes generated by codegen(), in order. */
+    private ArrayList<CLEmitter> emitters;
+
+    /** Listener to which errors are reported. */
+    private DiagnosticListener diagnosticListener;
+
+    /** Loader for the library classes. */
+    private SymbolLoader symbolLoader;
+
+    /** Major version of the class files generated. */
+    private int majorVersion;
+
+    /**
+     * Units whose output is up to date (see DependencyGraph); they are
+     * pre-analyzed, but neither analyzed nor translated.
+     */
+    private HashSet<JCompilationUnit> upToDate;
+
+    /** Arena for the nodes made up in analysis. */
+    private NodeArena arena;
+
+    /** Where the passes run are recorded; null if they are not. */
+    private PassMetrics passMetrics;
+
+    /**
+     * Construct a Compilation whose parallel phases use the specified number of
+     * worker threads.
+     * 
+     * @param parallelism
+     *            number of worker threads (at least 1).
+     * @param registerCount
+     *            number of physical registers available for allocation in
+     *            SPIM code.
+     */
+
+    public Compilation(int parallelism, int registerCount) {
+        this(parallelism, registerCount, DiagnosticListener.STDERR);
+    }
+
+    /**
+     * Construct a Compilation whose parallel phases use the specified number of
+     * worker threads, and whose errors are reported to the specified listener.
+     * 
+     * @param parallelism
+     *            number of worker threads (at least 1).
+     * @param registerCount
+     *            number of physical registers available for allocation in
+     *            SPIM code.
+     * @param diagnosticListener
+     *            listener to which errors are reported.
+     */
+
+    public Compilation(int parallelism, int registerCount,
+            DiagnosticListener diagnosticListener) {
+        compilationUnits = new ArrayList<JCompilationUnit>();
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+        errorHasOccurred = false;
+        declaredTypeNames = new HashSet<String>();
+        this.registerCount = registerCount;
+        outputFiles = new ArrayList<String>();
+        emitters = new ArrayList<CLEmitter>();
+        this.diagnosticListener = diagnosticListener;
+        symbolLoader = new SymbolLoader(null);
+        majorVersion = CLConstants.MAJOR_VERSION;
+        upToDate = new HashSet<JCompilationUnit>();
+        arena = new NodeArena();
+    }
+
+    /**
+     * Compile against the library classes on the specified class path (and
+     * the system classes), rather than those on the compiler's own.
+     * 
+     * @param classPath
+     *            the directories and zip (jar) files making up the class path,
+     *            separated by the path separator.
+     */
+
+    public void setClassPath(String classPath) {
+        symbolLoader = new SymbolLoader(classPath);
+    }
+
+    /**
+     * Generate class files of the specified major version, rather than
+     * CLConstants.MAJOR_VERSION; from CLConstants.STACK_MAP_MAJOR_VERSION on,
+     * with StackMapTable attributes, whose frames merge the types in the
+     * program's class hierarchy.
+     * 
+     * @param majorVersion
+     *            the major version.
+     */
+
+    public void setMajorVersion(int majorVersion) {
+        this.majorVersion = majorVersion;
+    }
+
+    /**
+     * Return the loader for the library classes.
+     * 
+     * @return the symbol loader.
+     */
+
+    public SymbolLoader symbolLoader() {
+        return symbolLoader;
+    }
+
+    /**
+     * Run the specified tasks on the pool, and return their results in the
+     * order in which the tasks were given.
+     * 
+     * @param tasks
+     *            the tasks to run.
+     * @return the results of the tasks.
+     */
+
+    public <T> ArrayList<T> invokeAll(ArrayList<Callable<T>> tasks) {
+        ArrayList<T> results = new ArrayList<T>();
+        for (Future<T> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Add a (parsed) compilation unit to the program.
+     * 
+     * @param compilationUnit
+     *            the compilation unit.
+     */
+
+    public void addCompilationUnit(JCompilationUnit compilationUnit) {
+        compilationUnits.add(compilationUnit);
+    }
+
+    /**
+     * Return the compilation units making up the program.
+     * 
+     * @return list of compilation units.
+     */
+
+    public ArrayList<JCompilationUnit> compilationUnits() {
+        return compilationUnits;
+    }
+
+    /**
+     * Record that the output of the specified unit is up to date, so that it
+     * need not be analyzed or translated.
+     * 
+     * @param compilationUnit
+     *            the compilation unit.
+     */
+
+    public void markUpToDate(JCompilationUnit compilationUnit) {
+        upToDate.add(compilationUnit);
+    }
+
+    /**
+     * Is the output of the specified unit up to date?
+     * 
+     * @param compilationUnit
+     *            the compilation unit.
+     * @return true or false.
+     */
+
+    public boolean isUpToDate(JCompilationUnit compilationUnit) {
+        return upToDate.contains(compilationUnit);
+    }
+
+    /**
+     * Record whether an error occurred in some phase of the compilation. This
+     * may be sent from any of the pool's threads.
+     * 
+     * @param errorHasOccurred
+     *            whether an error occurred.
+     */
+
+    public synchronized void recordError(boolean errorHasOccurred) {
+        this.errorHasOccurred |= errorHasOccurred;
+    }
+
+    /**
+     * Has an error occurred up to now?
+     * 
+     * @return true or false.
+     */
+
+    public synchronized boolean errorHasOccurred() {
+        return errorHasOccurred;
+    }
+
+    /**
+     * Has a semantic error (one found in pre-analysis or analysis) occurred up
+     * to now? Unlike syntax errors, from which the parser recovers, these stop
+     * the compilation before the next phase.
+     * 
+     * @return true or false.
+     */
+
+    public boolean semanticErrorHasOccurred() {
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            if (compilationUnit.errorHasOccurred()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the listener to which errors are reported.
+     * 
+     * @return the diagnostic listener.
+     */
+
+    public DiagnosticListener diagnosticListener() {
+        return diagnosticListener;
+    }
+
+    /**
+     * Is the type with the specified (qualified) name declared by the program?
+     * 
+     * @param name
+     *            qualified type name.
+     * @return true or false.
+     */
+
+    public boolean declaresType(String name) {
+        return declaredTypeNames.contains(name);
+    }
+
+    /**
+     * Return the number of physical registers available for allocation.
+     * 
+     * @return the register count.
+     */
+
+    public int registerCount() {
+        return registerCount;
+    }
+
+    /**
+     * Return the names of the (.class and .s) files written by code
+     * generation.
+     * 
+     * @return list of file names.
+     */
+
+    public ArrayList<String> outputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * Return the class files generated by codegen(), whether or not they were
+     * written to the file system.
+     * 
+     * @return map from the (binary) names of the classes to the bytes of
+     *         their class files, in the order in which the classes are
+     *         declared.
+     */
+
+    public LinkedHashMap<String, byte[]> classFiles() {
+        LinkedHashMap<String, byte[]> classFiles = new LinkedHashMap<String, byte[]>();
+        for (CLEmitter output : emitters) {
+            byte[] bytes = output.toBytes();
+            if (bytes != null) {
+                classFiles.put(output.name().replace('/', '.'), bytes);
+            }
+        }
+        return classFiles;
+    }
+
+    /**
+     * Pre-analyze the program. First every unit declares its own types, then
+     * the types that one unit can see in another (those in the same package,
+     * and those it imports) are added to its context, and finally the units
+     * are pre-analyzed with units declaring super classes ahead of the units
+     * that extend them.
+     */
+
+    public void preAnalyze() {
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            declaredTypeNames.addAll(compilationUnit.declaredTypeNames());
+        }
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            compilationUnit.declareTypes(this);
+        }
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            for (JCompilationUnit other : compilationUnits) {
+                if (other != compilationUnit) {
+                    compilationUnit.importTypes(other);
+                }
+            }
+        }
+        for (JCompilationUnit compilationUnit : preAnalysisOrder()) {
+            compilationUnit.preAnalyzeTypes();
+            recordError(compilationUnit.errorHasOccurred());
+        }
+    }
+
+    /**
+     * Analyze the program, one compilation unit at a time, skipping the units
+     * that are up to date.
+     */
+
+    public void analyze() {
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            if (isUpToDate(compilationUnit)) {
+                continue;
+            }
+            compilationUnit.analyze(null);
+            recordError(compilationUnit.errorHasOccurred());
+        }
+    }
+
+    /**
+     * Generate JVM code for the program. Each type declaration gets its own
+     * CLEmitter, and the declarations are translated in parallel. The units
+     * that are up to date are skipped.
+     * 
+     * @param outputDir
+     *            destination directory for the .class files.
+     * @param toFile
+     *            whether the classes are written to the file system.
+     */
+
+    public void codegen(final String outputDir, final boolean toFile) {
+        final CLClassHierarchy classHierarchy = classHierarchy();
+        ArrayList<Callable<CLEmitter>> tasks = new ArrayList<Callable<CLEmitter>>();
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            if (isUpToDate(compilationUnit)) {
+                continue;
+            }
+            for (final JAST typeDeclaration : compilationUnit
+                    .typeDeclarations()) {
+                tasks.add(new Callable<CLEmitter>() {
+                    public CLEmitter call() {
+                        CLEmitter output = new CLEmitter(toFile);
+                        output.destinationDir(outputDir);
+                        output.diagnosticListener(diagnosticListener);
+                        output.majorVersion(majorVersion);
+                        output.classHierarchy(classHierarchy);
+                        typeDeclaration.codegen(output);
+                        output.write();
+                        recordError(output.errorHasOccurred());
+                        return output;
+                    }
+                });
+            }
+        }
+        ArrayList<CLEmitter> outputs = invokeAll(tasks);
+        int i = 0;
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            if (isUpToDate(compilationUnit)) {
+                continue;
+            }
+            for (int j = 0; j < compilationUnit.typeDeclarations().size(); j++) {
+                CLEmitter output = outputs.get(i++);
+                compilationUnit.clFiles().add(output.clFile());
+                emitters.add(output);
+                if (output.outputFile() != null) {
+                    outputFiles.add(output.outputFile());
+                    compilationUnit.outputFiles().add(output.outputFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the class hierarchy of the program, in which the emitters merge
+     * the reference types in stack map frames: that of the types declared in
+     * it, and of the library classes.
+     * 
+     * @return the class hierarchy.
+     */
+
+    private CLClassHierarchy classHierarchy() {
+        final HashMap<String, Type> declaredTypes = new HashMap<String, Type>();
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            for (JAST typeDeclaration : compilationUnit.typeDeclarations()) {
+                Type type = ((JTypeDecl) typeDeclaration).thisType();
+                if (type != null) {
+                    declaredTypes.put(type.jvmName(), type);
+                }
+            }
+        }
+        return new CLClassHierarchy() {
+            public String superClass(String name) {
+                Type type = typeFor(name);
+                return type == null || type.superClass() == null ? null
+                        : type.superClass().jvmName();
+            }
+
+            public boolean isInterface(String name) {
+                Type type = typeFor(name);
+                return type != null && type.isInterface();
+            }
+
+            private Type typeFor(String name) {
+                Type type = declaredTypes.get(name);
+                return type != null ? type : symbolLoader.typeFor(name);
+            }
+        };
+    }
+
+    /**
+     * Convert the in-memory JVM instructions of each compilation unit to SPIM,
+     * writing one .s file per unit.
+     * 
+     * @param outputDir
+     *            destination directory for the .s files.
+     * @param registerAllocation
+     *            register allocation scheme (naive, linear, or graph).
+     */
+
+    public void nativeCodegen(String outputDir, String registerAllocation) {
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            if (isUpToDate(compilationUnit)) {
+                continue;
+            }
+            NEmitter nEmitter = new NEmitter(this, compilationUnit.fileName(),
+                    compilationUnit.clFiles(), registerAllocation);
+            nEmitter.destinationDir(outputDir);
+            nEmitter.write();
+            recordError(nEmitter.errorHasOccurred());
+            if (nEmitter.outputFile() != null) {
+                outputFiles.add(nEmitter.outputFile());
+                compilationUnit.outputFiles().add(nEmitter.outputFile());
+            }
+        }
+    }
+
+    /**
+     * Record the passes run over this compilation, and over its methods in the
+     * SPIM back end, in a PassMetrics (see passMetrics()).
+     */
+
+    public void recordPassMetrics() {
+        passMetrics = new PassMetrics();
+    }
+
+    /**
+     * Return where the passes run are recorded.
+     * 
+     * @return the pass metrics, or null if the passes are not recorded.
+     */
+
+    public PassMetrics passMetrics() {
+        return passMetrics;
+    }
+
+    /**
+     * Return the arena for the nodes made up in analysis (see NodeArena).
+     * 
+     * @return the arena.
+     */
+
+    public NodeArena arena() {
+        return arena;
+    }
+
+    /**
+     * Release the worker threads, the nodes of the arena, and close the
+     * library files opened by the symbol loader.
+     */
+
+    public void shutdown() {
+        pool.shutdown();
+        arena.release();
+        symbolLoader.close();
+    }
+
+    /**
+     * Return the parse pass, which parses the specified sources, one task per
+     * source, and adds the resulting ASTs to the compilation in the order of
+     * the sources. After syntax errors, the classes the parser recovered are
+     * still analyzed (but those in error), so that their semantic errors are
+     * reported too, but no code is generated.
+     * 
+     * @param sourceNames
+     *            names of the sources (files).
+     * @param scanners
+     *            factory of the scanners over the sources.
+     * @return the pass.
+     */
+
+    public static Pass<Compilation> parsePass(
+            final ArrayList<String> sourceNames,
+            final ScannerFactory scanners) {
+        return new ASTPass("parse") {
+            public boolean run(final Compilation compilation) {
+                ArrayList<Callable<JCompilationUnit>> parses = new ArrayList<Callable<JCompilationUnit>>();
+                for (final String sourceName : sourceNames) {
+                    parses.add(new Callable<JCompilationUnit>() {
+                        public JCompilationUnit call() {
+                            LookaheadScanner scanner = null;
+                            try {
+                                scanner = scanners.newScanner(sourceName,
+                                        compilation.diagnosticListener());
+                            } catch (FileNotFoundException e) {
+                                compilation.diagnosticListener().report(
+                                        new Diagnostic(null, 0, "Error: file "
+                                                + sourceName + " not found."));
+                                compilation.recordError(true);
+                                return null;
+                            }
+                            Parser parser = new Parser(scanner);
+                            JCompilationUnit ast = parser.compilationUnit();
+                            compilation.recordError(parser
+                                    .errorHasOccurred());
+                            return ast;
+                        }
+                    });
+                }
+                for (JCompilationUnit ast : compilation.invokeAll(parses)) {
+                    if (ast != null) {
+                        compilation.addCompilationUnit(ast);
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Return the pre-analysis pass, which stops the compilation after semantic
+     * errors (but not after syntax errors alone).
+     * 
+     * @return the pass.
+     */
+
+    public static Pass<Compilation> preAnalyzePass() {
+        return new ASTPass("preAnalyze") {
+            public boolean run(Compilation compilation) {
+                compilation.preAnalyze();
+                return !compilation.semanticErrorHasOccurred();
+            }
+        };
+    }
+
+    /**
+     * Return the analysis pass, which stops the compilation after errors.
+     * 
+     * @return the pass.
+     */
+
+    public static Pass<Compilation> analyzePass() {
+        return new ASTPass("analyze") {
+            public boolean run(Compilation compilation) {
+                compilation.analyze();
+                return !compilation.errorHasOccurred();
+            }
+        };
+    }
+
+    /**
+     * Return the JVM code generation pass (see codegen()), which stops the
+     * compilation after errors. The size of the IR it leaves is that of the
+     * bytecode.
+     * 
+     * @param outputDir
+     *            where to write the class files.
+     * @param toFile
+     *            whether the class files are written.
+     * @return the pass.
+     */
+
+    public static Pass<Compilation> codegenPass(final String outputDir,
+            final boolean toFile) {
+        return new Pass<Compilation>("codegen") {
+            public boolean run(Compilation compilation) {
+                compilation.codegen(outputDir, toFile);
+                return !compilation.errorHasOccurred();
+            }
+
+            public long size(Compilation compilation) {
+                long size = 0;
+                for (CLEmitter output : compilation.emitters) {
+                    for (CLMethodInfo method : output.clFile().methods) {
+                        for (CLAttributeInfo attribute : method.attributes) {
+                            if (attribute instanceof CLCodeAttribute) {
+                                size += ((CLCodeAttribute) attribute)
+                                        .codeLength;
+                            }
+                        }
+                    }
+                }
+                return size;
+            }
+
+            public String units() {
+                return "bytecode bytes";
+            }
+        };
+    }
+
+    /**
+     * Return the SPIM code generation pass (see nativeCodegen()), whose
+     * per-method passes (see NEmitter) are recorded under it.
+     * 
+     * @param outputDir
+     *            where to write the .s files.
+     * @param registerAllocation
+     *            register allocation scheme (naive, linear, or graph).
+     * @param isEnabled
+     *            whether SPIM code is generated.
+     * @return the pass.
+     */
+
+    public static Pass<Compilation> nativeCodegenPass(final String outputDir,
+            final String registerAllocation, boolean isEnabled) {
+        return new Pass<Compilation>("nativeCodegen", isEnabled) {
+            public boolean run(Compilation compilation) {
+                compilation.nativeCodegen(outputDir, registerAllocation);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Return the compilation units in the order in which they must be
+     * pre-analyzed: a unit declaring a class comes before the units declaring
+     * its subclasses.
+     * 
+     * @return the ordered list of compilation units.
+     */
+
+    private ArrayList<JCompilationUnit> preAnalysisOrder() {
+        HashMap<String, JCompilationUnit> declaringUnits = new HashMap<String, JCompilationUnit>();
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            for (String name : compilationUnit.declaredTypeNames()) {
+                declaringUnits.put(name, compilationUnit);
+            }
+        }
+        ArrayList<JCompilationUnit> order = new ArrayList<JCompilationUnit>();
+        HashSet<JCompilationUnit> visited = new HashSet<JCompilationUnit>();
+        for (JCompilationUnit compilationUnit : compilationUnits) {
+            visit(compilationUnit, declaringUnits, visited, order);
+        }
+        return order;
+    }
+
+    /**
+     * Depth-first helper for preAnalysisOrder().
+     * 
+     * @param compilationUnit
+     *            the unit being visited.
+     * @param declaringUnits
+     *            maps qualified type names to the units declaring them.
+     * @param visited
+     *            units visited so far.
+     * @param order
+     *            the order being built.
+     */
+
+    private void visit(JCompilationUnit compilationUnit,
+            HashMap<String, JCompilationUnit> declaringUnits,
+            HashSet<JCompilationUnit> visited,
+            ArrayList<JCompilationUnit> order) {
+        if (!visited.add(compilationUnit)) {
+            return;
+        }
+        for (String name : compilationUnit.superTypeNames()) {
+            JCompilationUnit declaringUnit = declaringUnits.get(name);
+            if (declaringUnit != null) {
+                visit(declaringUnit, declaringUnits, visited, order);
+            }
+        }
+        order.add(compilationUnit);
+    }
+
+    /**
+     * Add the j-- source files found (recursively) under the specified
+     * directory to the given list, in a deterministic order.
+     * 
+     * @param dir
+     *            the directory.
+     * @param sourceFiles
+     *            list to which the source file names are added.
+     */
+
+    public static void addSourceFiles(File dir, ArrayList<String> sourceFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addSourceFiles(file, sourceFiles);
+            } else if (file.getName().endsWith(".java")) {
+                sourceFiles.add(file.getPath());
+            }
+        }
+    }
+
+    /**
+     * A pass over the ASTs of a compilation; the size of the IR it leaves is
+     * the number of AST nodes (see ASTStats).
+     */
+
+    abstract static class ASTPass extends Pass<Compilation> {
+
+        /**
+         * Construct an ASTPass, enabled.
+         * 
+         * @param name
+         *            name of the pass.
+         */
+
+        protected ASTPass(String name) {
+            super(name);
+        }
+
+        /**
+         * @inheritDoc
+         */
+
+        public long size(Compilation compilation) {
+            return new ASTStats(compilation.compilationUnits()).nodeCount();
+        }
+
+        /**
+         * @inheritDoc
+         */
+
+        public String units() {
+            return "AST nodes";
+        }
+
+    }
+
+}
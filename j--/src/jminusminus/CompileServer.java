@@ -0,0 +1,532 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+
+/**
+ * A compile server keeps the j-- compiler resident in a warm JVM, so that the
+ * cost of starting a JVM, loading the compiler's classes, JIT warm-up, and
+ * reading the system classes' symbols (which are shared, see SymbolLoader) is
+ * paid once rather than on every compile.
+ * 
+ * The server listens on a port of the loopback interface. Each request carries
+ * the usual j-- command-line arguments, and is answered with what the compiler
+ * wrote to STDOUT and STDERR, whether an error occurred, and the names of the
+ * files it wrote. Requests are served one at a time, since the compiler's
+ * diagnostics are captured by redirecting System.out and System.err.
+ * 
+ * Since a request has the server read and write files with its owner's rights,
+ * only that user may make one: on start-up, the server writes a random token
+ * to a file in the user's home directory that only the user can read, and a
+ * client must send the token before its request; a connection that does not is
+ * closed unserved.
+ * 
+ * The same class is also the (thin) client: with -client, it forwards its
+ * arguments to a running server, or, if no server is running, compiles them
+ * itself (just as jminusminus.Main would).
+ * 
+ * Usage:
+ * 
+ * <pre>
+ *   java jminusminus.CompileServer [-port &lt;num&gt;]
+ *   java jminusminus.CompileServer [-port &lt;num&gt;] -stop
+ *   java jminusminus.CompileServer [-port &lt;num&gt;] -client &lt;args&gt;
+ * </pre>
+ */
+
+public class CompileServer {
+
+    /** Port the server listens on, unless told otherwise. */
+    public static final int DEFAULT_PORT = 7430;
+
+    /** How long (in milliseconds) a client waits to connect to a server. */
+    private static final int CONNECT_TIMEOUT = 500;
+
+    /** The request that stops the server. */
+    private static final String STOP = "-stop";
+
+    /** Length (in bytes) of the token a client must send. */
+    private static final int TOKEN_LENGTH = 32;
+
+    /** The socket the server listens on. */
+    private ServerSocket serverSocket;
+
+    /** The token a client must send before its request. */
+    private byte[] token;
+
+    /** File holding the token. */
+    private File tokenFile;
+
+    /**
+     * Construct a CompileServer listening on the specified port of the loopback
+     * interface.
+     * 
+     * @param port
+     *            the port.
+     * @throws IOException
+     *             if the port cannot be bound, or the token file cannot be
+     *             written.
+     */
+
+    public CompileServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress
+                .getLoopbackAddress());
+        token = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(token);
+        tokenFile = tokenFile(port);
+        try {
+            writeToken(tokenFile, token);
+        } catch (IOException e) {
+            close(serverSocket);
+            throw e;
+        }
+    }
+
+    /**
+     * Serve requests until a stop request is received.
+     */
+
+    public void serve() {
+        try {
+            boolean stopped = false;
+            while (!stopped) {
+                Socket socket = null;
+                try {
+                    socket = serverSocket.accept();
+                    stopped = serve(socket);
+                } catch (EOFException e) {
+                    // The client hung up without a (complete) request
+                } catch (IOException e) {
+                    System.err.println("Error: " + e.getMessage());
+                } finally {
+                    close(socket);
+                }
+            }
+        } finally {
+            close(serverSocket);
+            tokenFile.delete();
+        }
+    }
+
+    /**
+     * Serve the request on the specified connection, provided the client
+     * first sends the server's token.
+     * 
+     * @param socket
+     *            connection to a client.
+     * @return true if the request was to stop the server; false otherwise.
+     * @throws IOException
+     *             if the request cannot be read or the response written.
+     */
+
+    private boolean serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                socket.getInputStream()));
+        byte[] clientToken = new byte[TOKEN_LENGTH];
+        socket.setSoTimeout(CONNECT_TIMEOUT);
+        in.readFully(clientToken);
+        socket.setSoTimeout(0);
+        if (!MessageDigest.isEqual(token, clientToken)) {
+            System.err.println("Error: rejected a connection without the "
+                    + "server's token");
+            return false;
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                socket.getOutputStream()));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(in);
+        }
+        if (args.length == 1 && args[0].equals(STOP)) {
+            try {
+                writeResponse(out, "", "", false, new ArrayList<String>());
+            } catch (IOException e) {
+                // Stop all the same
+            }
+            return true;
+        }
+
+        // Capture the compiler's diagnostics
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        PrintStream systemOut = System.out;
+        PrintStream systemErr = System.err;
+        ArrayList<String> outputFiles = new ArrayList<String>();
+        boolean errorHasOccurred = true;
+        System.setOut(new PrintStream(stdout, true));
+        System.setErr(new PrintStream(stderr, true));
+        try {
+            errorHasOccurred = Main.run(args, outputFiles);
+        } catch (Throwable e) {
+            // Including errors (a StackOverflowError from deeply nested
+            // input, say), which are reported to the client, and the server
+            // carries on
+            e.printStackTrace();
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+        writeResponse(out, stdout.toString(), stderr.toString(),
+                errorHasOccurred, outputFiles);
+        return false;
+    }
+
+    /**
+     * Forward a compile request to the server listening on the specified port,
+     * and copy its answer to STDOUT and STDERR. Relative paths among the
+     * arguments are made absolute, since the server runs in a directory of
+     * its own. Unless a class path is given, this JVM's is sent along, so that
+     * library classes are found where they would be by a compile in this JVM
+     * (rather than on the server's class path).
+     * 
+     * @param port
+     *            port the server listens on.
+     * @param args
+     *            j-- command-line arguments.
+     * @param outputFiles
+     *            list to which the names of the files written by the server
+     *            are added.
+     * @return true if an error occurred during compilation; false otherwise.
+     * @throws IOException
+     *             if no server is listening on the port, or the connection
+     *             fails.
+     */
+
+    public static boolean forward(int port, String[] args,
+            ArrayList<String> outputFiles) throws IOException {
+        ArrayList<String> request = new ArrayList<String>();
+        boolean hasClassPath = false;
+        for (int i = 0; i < args.length; i++) {
+            request.add(args[i]);
+            if ((args[i].endsWith("-d") || args[i].equals("-i") || args[i]
+                    .equals("-time-passes-json"))
+                    && (i + 1) < args.length) {
+                request.add(new File(args[++i]).getAbsolutePath());
+            } else if ((args[i].equals("-classpath") || args[i].equals("-cp"))
+                    && (i + 1) < args.length) {
+                request.add(absoluteClassPath(args[++i]));
+                hasClassPath = true;
+            } else if (args[i].endsWith(".java")
+                    || new File(args[i]).isDirectory()) {
+                request.set(request.size() - 1, new File(args[i])
+                        .getAbsolutePath());
+            }
+        }
+        if (!hasClassPath) {
+            request.add(0, "-classpath");
+            request.add(1, absoluteClassPath(System
+                    .getProperty("java.class.path")));
+        }
+        Socket socket = connect(port);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(request.size());
+            for (String arg : request) {
+                writeString(out, arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream()));
+            System.out.print(readString(in));
+            System.err.print(readString(in));
+            boolean errorHasOccurred = in.readBoolean();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                outputFiles.add(readString(in));
+            }
+            return errorHasOccurred;
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Stop the server listening on the specified port.
+     * 
+     * @param port
+     *            port the server listens on.
+     * @throws IOException
+     *             if no server is listening on the port.
+     */
+
+    public static void stop(int port) throws IOException {
+        Socket socket = connect(port);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(1);
+            writeString(out, STOP);
+            out.flush();
+            new DataInputStream(socket.getInputStream()).readInt();
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Connect to the server listening on the specified port, and send it the
+     * token it wrote to its token file.
+     * 
+     * @param port
+     *            the port.
+     * @return the connection.
+     * @throws IOException
+     *             if no server (of this user's) is listening on the port.
+     */
+
+    private static Socket connect(int port) throws IOException {
+        byte[] token = Files.readAllBytes(tokenFile(port).toPath());
+        if (token.length != TOKEN_LENGTH) {
+            throw new IOException("malformed token file");
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress
+                    .getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            socket.getOutputStream().write(token);
+        } catch (IOException e) {
+            close(socket);
+            throw e;
+        }
+        return socket;
+    }
+
+    /**
+     * Return the file in the user's home directory holding the token of the
+     * server listening on the specified port.
+     * 
+     * @param port
+     *            the port.
+     * @return the token file.
+     */
+
+    private static File tokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".j--server-" + port);
+    }
+
+    /**
+     * Write the specified token to the specified file, which is (re)created
+     * readable and writable by the user only.
+     * 
+     * @param file
+     *            the token file.
+     * @param token
+     *            the token.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private static void writeToken(File file, byte[] token)
+            throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains(
+                "posix")) {
+            Files.createFile(path, PosixFilePermissions
+                    .asFileAttribute(PosixFilePermissions
+                            .fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+            if (!(file.setReadable(false, false)
+                    && file.setReadable(true, true)
+                    && file.setWritable(false, false) && file.setWritable(
+                    true, true))) {
+                file.delete();
+                throw new IOException("cannot restrict access to " + file);
+            }
+        }
+        Files.write(path, token);
+    }
+
+    /**
+     * Return the specified class path with each of its entries made absolute,
+     * since the server does not share the client's working directory.
+     * 
+     * @param classPath
+     *            the class path.
+     * @return the absolute class path.
+     */
+
+    private static String absoluteClassPath(String classPath) {
+        StringBuilder absolute = new StringBuilder();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (absolute.length() > 0) {
+                absolute.append(File.pathSeparator);
+            }
+            absolute.append(entry.equals("") ? entry : new File(entry)
+                    .getAbsolutePath());
+        }
+        return absolute.toString();
+    }
+
+    /**
+     * Write a response to a compile request.
+     * 
+     * @param out
+     *            output stream to the client.
+     * @param stdout
+     *            what the compiler wrote to STDOUT.
+     * @param stderr
+     *            what the compiler wrote to STDERR.
+     * @param errorHasOccurred
+     *            whether an error occurred.
+     * @param outputFiles
+     *            names of the files written by the compiler.
+     * @throws IOException
+     *             if the response cannot be written.
+     */
+
+    private static void writeResponse(DataOutputStream out, String stdout,
+            String stderr, boolean errorHasOccurred,
+            ArrayList<String> outputFiles) throws IOException {
+        writeString(out, stdout);
+        writeString(out, stderr);
+        out.writeBoolean(errorHasOccurred);
+        out.writeInt(outputFiles.size());
+        for (String outputFile : outputFiles) {
+            writeString(out, outputFile);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a string (of any length) as its length followed by its UTF-8
+     * bytes.
+     * 
+     * @param out
+     *            the output stream.
+     * @param s
+     *            the string.
+     * @throws IOException
+     *             if the string cannot be written.
+     */
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString().
+     * 
+     * @param in
+     *            the input stream.
+     * @return the string.
+     * @throws IOException
+     *             if the string cannot be read.
+     */
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Close the specified socket (or stream), ignoring any error.
+     * 
+     * @param socket
+     *            the socket (may be null).
+     */
+
+    private static void close(Closeable socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more to be done
+            }
+        }
+    }
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            command-line arguments.
+     */
+
+    public static void main(String args[]) {
+        int port = DEFAULT_PORT;
+        int i = 0;
+        if (args.length >= 2 && args[0].equals("-port")) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                printUsage();
+                return;
+            }
+            i = 2;
+        }
+        if (i == args.length) {
+            try {
+                new CompileServer(port).serve();
+            } catch (IOException e) {
+                System.err.println("Error: cannot listen on port " + port
+                        + ": " + e.getMessage());
+            }
+        } else if (args[i].equals(STOP) && i + 1 == args.length) {
+            try {
+                stop(port);
+            } catch (IOException e) {
+                System.err.println("Error: no server of yours on port "
+                        + port);
+            }
+        } else if (args[i].equals("-client")) {
+            String[] compilerArgs = new String[args.length - i - 1];
+            System.arraycopy(args, i + 1, compilerArgs, 0, compilerArgs.length);
+            try {
+                forward(port, compilerArgs, new ArrayList<String>());
+            } catch (IOException e) {
+                // No server running; compile in this JVM
+                Main.main(compilerArgs);
+            }
+        } else {
+            printUsage();
+        }
+    }
+
+    /**
+     * Print command usage to STDOUT.
+     */
+
+    private static void printUsage() {
+        String usage = "Usage: java jminusminus.CompileServer "
+                + "[-port <num>] [-stop | -client <j-- arguments>]\n"
+                + "where\n"
+                + "  -port <num> Port (on the loopback interface) of the "
+                + "server; default = " + DEFAULT_PORT + "\n"
+                + "  -stop Stop the running server\n"
+                + "  -client Forward the j-- arguments to the running server, "
+                + "or compile them here if there is none\n"
+                + "With neither -stop nor -client, start the server.";
+        System.out.println(usage);
+    }
+
+}
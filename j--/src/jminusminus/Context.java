@@ -83,7 +83,7 @@ class Context {
 
     public void addEntry(int line, String name, IDefn definition) {
         if (entries.containsKey(name)) {
-            JAST.compilationUnit.reportSemanticError(line, "redefining name: "
+            compilationUnit().reportSemanticError(line, "redefining name: "
                     + name);
         } else {
             entries.put(name, definition);
@@ -179,6 +179,17 @@ class Context {
         return compilationUnitContext;
     }
 
+    /**
+     * Return the compilation unit (the AST) whose contexts these are. Semantic
+     * errors found in this context are reported to it.
+     * 
+     * @return the compilation unit.
+     */
+
+    public JCompilationUnit compilationUnit() {
+        return compilationUnitContext.compilationUnit();
+    }
+
     /**
      * Return the closest surrounding method context. Return null if we're not
      * within a method.
@@ -224,14 +235,29 @@ class Context {
 
 class CompilationUnitContext extends Context {
 
+    /** The compilation unit this context is for. */
+    private JCompilationUnit compilationUnit;
+
     /**
      * Construct a new compilation unit context. There are no surrounding
      * contexts.
+     * 
+     * @param compilationUnit
+     *            the compilation unit this context is for.
      */
 
-    public CompilationUnitContext() {
+    public CompilationUnitContext(JCompilationUnit compilationUnit) {
         super(null, null, null);
         compilationUnitContext = this;
+        this.compilationUnit = compilationUnit;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public JCompilationUnit compilationUnit() {
+        return compilationUnit;
     }
 
     /**
@@ -0,0 +1,966 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import static jminusminus.TokenKind.*;
+
+/**
+ * A table-driven lexical analyzer for j--, an alternative to the hand-written
+ * Scanner that produces the same tokens (kinds, images and lines) and reports
+ * the same errors.
+ * 
+ * Tokens are recognized by a deterministic finite automaton (a LexicalDFA),
+ * built from the lexical grammar when the class is loaded, and run over the
+ * source characters (read in bulk by a CharReader) for the longest match:
+ * each character costs two table lookups, of its character class and of the
+ * next state. What the automaton does not accept, that is lexical errors,
+ * including character and string literals in error, is scanned (and the
+ * errors reported) as the Scanner does.
+ */
+
+class DFAScanner implements TokenScanner {
+
+    /** End of file character. */
+    public final static char EOFCH = CharReader.EOFCH;
+
+    /** Names (identifiers and int literals) met so far. */
+    private NameTable names;
+
+    /** Text of the character or string literal being scanned. */
+    private StringBuilder text;
+
+    /** Image of the token last scanned. */
+    private String image;
+
+    /** Source characters. */
+    private CharReader input;
+
+    /** The characters read. */
+    private char[] chars;
+
+    /** Number of characters read. */
+    private int count;
+
+    /** Offset of the next unscanned character. */
+    private int pos;
+
+    /** Rule of the token last found by longestMatch(). */
+    private int lastRule;
+
+    /** Whether a scanner error has been found. */
+    private boolean isInError;
+
+    /** Source file name. */
+    private String fileName;
+
+    /** Line number of current token. */
+    private int line;
+
+    /** Listener to which lexical errors are reported. */
+    private DiagnosticListener diagnosticListener;
+
+    /**
+     * Construct a DFAScanner object.
+     * 
+     * @param fileName
+     *            the name of the file containing the source.
+     * @exception FileNotFoundException
+     *                when the named file cannot be found.
+     */
+
+    public DFAScanner(String fileName) throws FileNotFoundException {
+        this(fileName, new SourceReader(fileName), DiagnosticListener.STDERR);
+    }
+
+    /**
+     * Construct a DFAScanner object reading the source from the specified
+     * reader rather than from the file system.
+     * 
+     * @param fileName
+     *            the name under which errors in the source are reported.
+     * @param source
+     *            the source.
+     * @param diagnosticListener
+     *            listener to which lexical errors are reported.
+     */
+
+    public DFAScanner(String fileName, Reader source,
+            DiagnosticListener diagnosticListener) {
+        this.input = new CharReader(fileName, source);
+        this.fileName = fileName;
+        this.diagnosticListener = diagnosticListener;
+        isInError = false;
+
+        names = new NameTable();
+        text = new StringBuilder();
+
+        // Read the whole source
+        try {
+            input.nextChar();
+        } catch (IOException e) {
+            reportScannerError("Unable to read characters from input");
+        }
+        chars = input.chars() != null ? input.chars() : new char[1];
+        count = input.length();
+        chars[count] = EOFCH;
+        pos = 0;
+    }
+
+    /**
+     * Scan the next token from input.
+     * 
+     * @return the the next scanned token.
+     */
+
+    public TokenInfo getNextToken() {
+        TokenKind kind = scan();
+        return new TokenInfo(kind, image, line);
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public TokenKind scan() {
+        byte[] charClasses = LexicalDFA.CHAR_CLASSES;
+        int[] transitions = LexicalDFA.TRANSITIONS;
+        while (true) {
+            // Run the automaton as far as it goes from pos; it stops at the
+            // EOFCH after the last character at the latest
+            int start = pos;
+            int state = LexicalDFA.START;
+            int end = start;
+            int next = transitions[state + charClasses[chars[end]]];
+            while (next >= 0) {
+                state = next;
+                next = transitions[state + charClasses[chars[++end]]];
+            }
+            int rule = LexicalDFA.ACCEPTS[state >> LexicalDFA.SHIFT];
+            if (rule < 0 && end > start) {
+                // Not at the end of a token; back up to the last one
+                end = longestMatch(start);
+                rule = end > start ? lastRule : -1;
+            }
+            if (rule >= 0) {
+                pos = end;
+                TokenKind kind = LexicalDFA.KINDS[rule];
+                if (kind == null) {
+                    // White space or a comment
+                    continue;
+                }
+                line = input.line(start);
+                switch (kind) {
+                case IDENTIFIER:
+                case INT_LITERAL:
+                    image = names.intern(chars, start, end - start);
+                    break;
+                case CHAR_LITERAL:
+                case STRING_LITERAL:
+                    image = literal(start, end);
+                    break;
+                default:
+                    image = kind.image();
+                }
+                return kind;
+            }
+
+            // No token; the end of file, or a lexical error
+            char c = current();
+            line = input.line(start);
+            switch (c) {
+            case EOFCH:
+                image = EOF.image();
+                return EOF;
+            case '&':
+                advance();
+                reportScannerError("Operator & is not supported in j--.");
+                break;
+            case '<':
+                advance();
+                reportScannerError("Operator < is not supported in j--.");
+                break;
+            case '\'':
+                return charLiteral();
+            case '"':
+                return stringLiteral();
+            default:
+                reportScannerError("Unidentified input token: '%c'", c);
+                advance();
+            }
+        }
+    }
+
+    /**
+     * Run the automaton from the specified offset, for the longest match: the
+     * end of the last token it went through, whose rule is then lastRule.
+     * 
+     * @param start
+     *            the offset.
+     * @return the offset just past the token, or start if there is none.
+     */
+
+    private int longestMatch(int start) {
+        int state = LexicalDFA.START;
+        int end = start;
+        for (int p = start;; p++) {
+            state = LexicalDFA.TRANSITIONS[state
+                    + LexicalDFA.CHAR_CLASSES[chars[p]]];
+            if (state < 0) {
+                return end;
+            }
+            int rule = LexicalDFA.ACCEPTS[state >> LexicalDFA.SHIFT];
+            if (rule >= 0) {
+                lastRule = rule;
+                end = p + 1;
+            }
+        }
+    }
+
+    /**
+     * Return the image of a (well formed) character or string literal: its
+     * text, but for an escaped double quote, which stands for itself (see
+     * escape()).
+     * 
+     * @param start
+     *            offset of the literal's opening quote.
+     * @param end
+     *            offset just past its closing quote.
+     * @return the image.
+     */
+
+    private String literal(int start, int end) {
+        text.setLength(0);
+        for (int i = start; i < end; i++) {
+            if (chars[i] == '\\') {
+                if (chars[++i] != '"') {
+                    text.append('\\');
+                }
+            }
+            text.append(chars[i]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Scan a character literal in error, as the Scanner does.
+     * 
+     * @return the token's kind.
+     */
+
+    private TokenKind charLiteral() {
+        text.setLength(0);
+        text.append('\'');
+        advance();
+        if (current() == '\\') {
+            advance();
+            text.append(escape());
+        } else {
+            text.append(current());
+            advance();
+        }
+        if (current() == '\'') {
+            text.append('\'');
+            advance();
+        } else {
+            // Expected a ' ; report error and try to
+            // recover.
+            reportScannerError(
+                    "%c found by scanner where closing ' was expected.",
+                    current());
+            while (current() != '\'' && current() != ';'
+                    && current() != '\n' && current() != EOFCH) {
+                advance();
+            }
+        }
+        image = text.toString();
+        return CHAR_LITERAL;
+    }
+
+    /**
+     * Scan a string literal in error, as the Scanner does.
+     * 
+     * @return the token's kind.
+     */
+
+    private TokenKind stringLiteral() {
+        text.setLength(0);
+        text.append("\"");
+        advance();
+        while (current() != '"' && current() != '\n' && current() != EOFCH) {
+            if (current() == '\\') {
+                advance();
+                text.append(escape());
+            } else {
+                text.append(current());
+                advance();
+            }
+        }
+        if (current() == '\n') {
+            reportScannerError("Unexpected end of line found in String");
+        } else if (current() == EOFCH) {
+            reportScannerError("Unexpected end of file found in String");
+        } else {
+            // Scan the closing "
+            advance();
+            text.append("\"");
+        }
+        image = text.toString();
+        return STRING_LITERAL;
+    }
+
+    /**
+     * Scan and return an escaped character.
+     * 
+     * @return escaped character.
+     */
+
+    private String escape() {
+        char c = current();
+        switch (c) {
+        case 'b':
+        case 't':
+        case 'n':
+        case 'f':
+        case 'r':
+        case '\'':
+        case '\\':
+            advance();
+            return "\\" + c;
+        case '"':
+            advance();
+            return "\"";
+        default:
+            reportScannerError("Badly formed escape: \\%c", c);
+            advance();
+            return "";
+        }
+    }
+
+    /**
+     * Return the next unscanned character.
+     * 
+     * @return the character, or EOFCH at the end of file.
+     */
+
+    private char current() {
+        return pos < count ? chars[pos] : EOFCH;
+    }
+
+    /**
+     * Move on to the next character, unless at the end of file.
+     */
+
+    private void advance() {
+        if (pos < count) {
+            pos++;
+        }
+    }
+
+    /**
+     * Report a lexcial error and record the fact that an error has occured.
+     * This fact can be ascertained from the DFAScanner by sending it an
+     * errorHasOccurred() message.
+     * 
+     * @param message
+     *            message identifying the error.
+     * @param args
+     *            related values.
+     */
+
+    private void reportScannerError(String message, Object... args) {
+        isInError = true;
+        line = input.line(pos);
+        diagnosticListener.report(new Diagnostic(fileName, line, String
+                .format(message, args)));
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean errorHasOccurred() {
+        return isInError;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public String image() {
+        return image;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int line() {
+        return line;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public String fileName() {
+        return fileName;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public DiagnosticListener diagnosticListener() {
+        return diagnosticListener;
+    }
+
+}
+
+/**
+ * The deterministic finite automaton recognizing the tokens of j--, for the
+ * DFAScanner. It is built when the class is loaded, from the lexical grammar
+ * (the file lexicalgrammar): each rule's regular expression is made into a
+ * nondeterministic automaton (Thompson's construction), and these into one
+ * deterministic automaton (the subset construction), each of whose states
+ * accepts the first rule it matches the end of. The characters on which the
+ * nondeterministic automaton makes the same moves are first merged into a
+ * character class, so that the construction, and the transition table, have
+ * a column per class (about fifty) rather than per character.
+ */
+
+class LexicalDFA {
+
+    /** Symbols while building: the ASCII characters, then these two. */
+    private final static int OTHER = 128, END = 129, SYMBOLS = 130;
+
+    /** Character class of every character (EOFCH's has no transitions). */
+    public final static byte[] CHAR_CLASSES = new byte[65536];
+
+    /** Number of character classes. */
+    public final static int CLASSES;
+
+    /** Number of states. */
+    public final static int STATES;
+
+    /**
+     * A state's row of transitions starts at the state's number shifted left
+     * by SHIFT bits; the scanner knows a state by that offset.
+     */
+    public final static int SHIFT;
+
+    /** The start state. */
+    public final static int START = 0;
+
+    /** Next state, at state + character class; -1 if none. */
+    public final static int[] TRANSITIONS;
+
+    /** Rule (an index in KINDS) accepted, by state number; -1 if none. */
+    public final static int[] ACCEPTS;
+
+    /** Token kind of each rule; null for white space and comments. */
+    public final static TokenKind[] KINDS;
+
+    static {
+        NFA nfa = new NFA();
+        ArrayList<TokenKind> kinds = new ArrayList<TokenKind>();
+
+        // White space, ignored (CharReader maps all new lines to '\n')
+        nfa.rule(kinds.size(), nfa.plus(nfa.symbols(chars(" \t\n\r\f"))));
+        kinds.add(null);
+
+        // Single line comment, ignored; it ends before the new line (which
+        // is then white space) or at the end of file
+        nfa.rule(kinds.size(), nfa.sequence(nfa.string("//"), nfa.star(nfa
+                .symbols(not("\n\r")))));
+        kinds.add(null);
+
+        // Reserved words, operators and separators: the token kinds whose
+        // image is their text; reserved words come first, so they take
+        // precedence over identifiers
+        EnumSet<TokenKind> named = EnumSet.of(EOF, IDENTIFIER, INT_LITERAL,
+                CHAR_LITERAL, STRING_LITERAL);
+        for (TokenKind kind : TokenKind.values()) {
+            if (!named.contains(kind)) {
+                nfa.rule(kinds.size(), nfa.string(kind.image()));
+                kinds.add(kind);
+            }
+        }
+
+        // IDENTIFIER ::= ("a"-"z"|"A"-"Z"|"_"|"$")
+        // {"a"-"z"|"A"-"Z"|"_"|"0"-"9"|"$"}
+        BitSet letters = range('a', 'z');
+        letters.or(range('A', 'Z'));
+        letters.or(chars("_$"));
+        BitSet lettersAndDigits = range('0', '9');
+        lettersAndDigits.or(letters);
+        nfa.rule(kinds.size(), nfa.sequence(nfa.symbols(letters), nfa
+                .star(nfa.symbols(lettersAndDigits))));
+        kinds.add(IDENTIFIER);
+
+        // INT_LITERAL ::= "0" | ("1"-"9") {"0"-"9"}
+        nfa.rule(kinds.size(), nfa.alternation(nfa.string("0"), nfa.sequence(
+                nfa.symbols(range('1', '9')), nfa.star(nfa.symbols(range('0',
+                        '9'))))));
+        kinds.add(INT_LITERAL);
+
+        // STRING_LITERAL ::= "\"" {ESC | ~("\""|"\\"|"\n"|"\r")} "\""
+        nfa.rule(kinds.size(), nfa.sequence(nfa.string("\""), nfa.star(nfa
+                .alternation(escape(nfa), nfa.symbols(not("\"\\\n\r")))), nfa
+                .string("\"")));
+        kinds.add(STRING_LITERAL);
+
+        // CHAR_LITERAL ::= "'" (ESC | ~("'"|"\n"|"\r"|"\\")) "'"
+        nfa.rule(kinds.size(), nfa.sequence(nfa.string("'"), nfa.alternation(
+                escape(nfa), nfa.symbols(not("'\n\r\\"))), nfa.string("'")));
+        kinds.add(CHAR_LITERAL);
+
+        KINDS = kinds.toArray(new TokenKind[kinds.size()]);
+
+        // Character classes: symbols on which every state of the
+        // nondeterministic automaton has the same transitions
+        int[] classOf = new int[SYMBOLS];
+        ArrayList<Integer> representatives = new ArrayList<Integer>();
+        HashMap<BitSet, Integer> classNumbers = new HashMap<BitSet, Integer>();
+        BitSet[] statesOn = nfa.statesOn();
+        for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+            Integer number = classNumbers.get(statesOn[symbol]);
+            if (number == null) {
+                number = representatives.size();
+                representatives.add(symbol);
+                classNumbers.put(statesOn[symbol], number);
+            }
+            classOf[symbol] = number;
+        }
+        CLASSES = representatives.size();
+        Arrays.fill(CHAR_CLASSES, (byte) classOf[OTHER]);
+        for (int c = 0; c < OTHER; c++) {
+            CHAR_CLASSES[c] = (byte) classOf[c];
+        }
+        CHAR_CLASSES[CharReader.EOFCH] = (byte) classOf[END];
+
+        // Subset construction, over the character classes; the start state
+        // is 0
+        ArrayList<BitSet> states = new ArrayList<BitSet>();
+        HashMap<BitSet, Integer> stateNumbers = new HashMap<BitSet, Integer>();
+        ArrayList<int[]> rows = new ArrayList<int[]>();
+        int[][] labelClasses = nfa.labelClasses(representatives);
+        BitSet start = nfa.closure(nfa.start);
+        states.add(start);
+        stateNumbers.put(start, 0);
+        for (int i = 0; i < states.size(); i++) {
+            BitSet[] moves = nfa.moves(states.get(i), labelClasses, CLASSES);
+            int[] row = new int[CLASSES];
+            for (int c = 0; c < CLASSES; c++) {
+                if (moves[c] == null) {
+                    row[c] = -1;
+                } else {
+                    BitSet target = nfa.closure(moves[c]);
+                    Integer number = stateNumbers.get(target);
+                    if (number == null) {
+                        number = states.size();
+                        states.add(target);
+                        stateNumbers.put(target, number);
+                    }
+                    row[c] = number;
+                }
+            }
+            rows.add(row);
+        }
+        STATES = states.size();
+        SHIFT = 32 - Integer.numberOfLeadingZeros(CLASSES - 1);
+        TRANSITIONS = new int[STATES << SHIFT];
+        ACCEPTS = new int[STATES];
+        for (int i = 0; i < STATES; i++) {
+            for (int c = 0; c < CLASSES; c++) {
+                int target = rows.get(i)[c];
+                TRANSITIONS[(i << SHIFT) + c] = target < 0 ? -1
+                        : target << SHIFT;
+            }
+            ACCEPTS[i] = nfa.accepts(states.get(i));
+        }
+    }
+
+    /**
+     * Return the automaton for ESC ::= "\\"
+     * ("n"|"r"|"t"|"b"|"f"|"'"|"\""|"\\").
+     * 
+     * @param nfa
+     *            the automaton under construction.
+     * @return the automaton's start and end states.
+     */
+
+    private static int[] escape(NFA nfa) {
+        return nfa.sequence(nfa.string("\\"), nfa.symbols(chars("nrtbf'\"\\")));
+    }
+
+    /**
+     * Return the set of the specified characters.
+     * 
+     * @param chars
+     *            the characters.
+     * @return the set.
+     */
+
+    private static BitSet chars(String chars) {
+        BitSet set = new BitSet(SYMBOLS);
+        for (int i = 0; i < chars.length(); i++) {
+            set.set(chars.charAt(i));
+        }
+        return set;
+    }
+
+    /**
+     * Return the set of the characters in the specified range.
+     * 
+     * @param first
+     *            the first character.
+     * @param last
+     *            the last character.
+     * @return the set.
+     */
+
+    private static BitSet range(char first, char last) {
+        BitSet set = new BitSet(SYMBOLS);
+        set.set(first, last + 1);
+        return set;
+    }
+
+    /**
+     * Return the set of all the characters but the specified ones (the end of
+     * file is not a character).
+     * 
+     * @param chars
+     *            the characters.
+     * @return the set.
+     */
+
+    private static BitSet not(String chars) {
+        BitSet set = new BitSet(SYMBOLS);
+        set.set(0, OTHER + 1);
+        set.andNot(chars(chars));
+        return set;
+    }
+
+    /**
+     * A nondeterministic finite automaton, made up by Thompson's construction:
+     * every state has either a transition on a set of symbols, or epsilon
+     * transitions. A piece of the automaton is represented by its start and
+     * end states.
+     */
+
+    private static class NFA {
+
+        /** Symbols on which each state has a transition; null if none. */
+        private ArrayList<BitSet> labels = new ArrayList<BitSet>();
+
+        /** Target of each state's transition on symbols. */
+        private ArrayList<Integer> targets = new ArrayList<Integer>();
+
+        /** Epsilon transitions of each state. */
+        private ArrayList<ArrayList<Integer>> epsilons =
+            new ArrayList<ArrayList<Integer>>();
+
+        /** Rule whose end each state is; -1 if none. */
+        private ArrayList<Integer> rules = new ArrayList<Integer>();
+
+        /** Each state's closure (see closure()), once computed. */
+        private BitSet[] closures;
+
+        /** The start state, with an epsilon transition to every rule. */
+        public int start = state();
+
+        /**
+         * Add a state.
+         * 
+         * @return the state.
+         */
+
+        private int state() {
+            labels.add(null);
+            targets.add(-1);
+            epsilons.add(new ArrayList<Integer>());
+            rules.add(-1);
+            return labels.size() - 1;
+        }
+
+        /**
+         * Add an epsilon transition.
+         * 
+         * @param from
+         *            the source state.
+         * @param to
+         *            the target state.
+         */
+
+        private void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        /**
+         * Add the specified rule, recognized by the specified piece.
+         * 
+         * @param rule
+         *            the rule.
+         * @param piece
+         *            the piece.
+         */
+
+        public void rule(int rule, int[] piece) {
+            epsilon(start, piece[0]);
+            rules.set(piece[1], rule);
+        }
+
+        /**
+         * Return a piece matching one of the specified symbols.
+         * 
+         * @param symbols
+         *            the symbols.
+         * @return the piece.
+         */
+
+        public int[] symbols(BitSet symbols) {
+            int from = state();
+            int to = state();
+            labels.set(from, symbols);
+            targets.set(from, to);
+            return new int[] { from, to };
+        }
+
+        /**
+         * Return a piece matching the specified string.
+         * 
+         * @param s
+         *            the string.
+         * @return the piece.
+         */
+
+        public int[] string(String s) {
+            int[][] pieces = new int[s.length()][];
+            for (int i = 0; i < s.length(); i++) {
+                pieces[i] = symbols(chars(s.substring(i, i + 1)));
+            }
+            return sequence(pieces);
+        }
+
+        /**
+         * Return a piece matching the specified pieces in sequence.
+         * 
+         * @param pieces
+         *            the pieces.
+         * @return the piece.
+         */
+
+        public int[] sequence(int[]... pieces) {
+            for (int i = 1; i < pieces.length; i++) {
+                epsilon(pieces[i - 1][1], pieces[i][0]);
+            }
+            return new int[] { pieces[0][0], pieces[pieces.length - 1][1] };
+        }
+
+        /**
+         * Return a piece matching any one of the specified pieces.
+         * 
+         * @param pieces
+         *            the pieces.
+         * @return the piece.
+         */
+
+        public int[] alternation(int[]... pieces) {
+            int from = state();
+            int to = state();
+            for (int[] piece : pieces) {
+                epsilon(from, piece[0]);
+                epsilon(piece[1], to);
+            }
+            return new int[] { from, to };
+        }
+
+        /**
+         * Return a piece matching the specified piece one or more times.
+         * 
+         * @param piece
+         *            the piece.
+         * @return the piece.
+         */
+
+        public int[] plus(int[] piece) {
+            int from = state();
+            int to = state();
+            epsilon(from, piece[0]);
+            epsilon(piece[1], piece[0]);
+            epsilon(piece[1], to);
+            return new int[] { from, to };
+        }
+
+        /**
+         * Return a piece matching the specified piece zero or more times.
+         * 
+         * @param piece
+         *            the piece.
+         * @return the piece.
+         */
+
+        public int[] star(int[] piece) {
+            int[] plus = plus(piece);
+            epsilon(plus[0], plus[1]);
+            return plus;
+        }
+
+        /**
+         * Return the specified state and the states reachable from it by
+         * epsilon transitions.
+         * 
+         * @param state
+         *            the state.
+         * @return the states.
+         */
+
+        public BitSet closure(int state) {
+            if (closures == null) {
+                closures = new BitSet[labels.size()];
+            }
+            if (closures[state] == null) {
+                BitSet closure = new BitSet();
+                closure.set(state);
+                ArrayList<Integer> work = new ArrayList<Integer>();
+                work.add(state);
+                while (!work.isEmpty()) {
+                    int s = work.remove(work.size() - 1);
+                    for (int t : epsilons.get(s)) {
+                        if (!closure.get(t)) {
+                            closure.set(t);
+                            work.add(t);
+                        }
+                    }
+                }
+                closures[state] = closure;
+            }
+            return closures[state];
+        }
+
+        /**
+         * Return the specified states and the states reachable from them by
+         * epsilon transitions.
+         * 
+         * @param states
+         *            the states.
+         * @return the states.
+         */
+
+        public BitSet closure(BitSet states) {
+            BitSet closure = new BitSet();
+            for (int s = states.nextSetBit(0); s >= 0; s = states
+                    .nextSetBit(s + 1)) {
+                closure.or(closure(s));
+            }
+            return closure;
+        }
+
+        /**
+         * Return, for each state, the character classes on which it has a
+         * transition.
+         * 
+         * @param representatives
+         *            a symbol of each class.
+         * @return the classes, by state.
+         */
+
+        public int[][] labelClasses(ArrayList<Integer> representatives) {
+            int[][] labelClasses = new int[labels.size()][];
+            int[] classes = new int[representatives.size()];
+            for (int s = 0; s < labels.size(); s++) {
+                BitSet label = labels.get(s);
+                int n = 0;
+                for (int c = 0; label != null && c < classes.length; c++) {
+                    if (label.get(representatives.get(c))) {
+                        classes[n++] = c;
+                    }
+                }
+                labelClasses[s] = Arrays.copyOf(classes, n);
+            }
+            return labelClasses;
+        }
+
+        /**
+         * Return the states the specified states go to on each character
+         * class (without following epsilon transitions).
+         * 
+         * @param states
+         *            the states.
+         * @param labelClasses
+         *            the classes on which each state has a transition.
+         * @param classes
+         *            number of classes.
+         * @return the states, by class; null for none.
+         */
+
+        public BitSet[] moves(BitSet states, int[][] labelClasses,
+                int classes) {
+            BitSet[] moves = new BitSet[classes];
+            for (int s = states.nextSetBit(0); s >= 0; s = states
+                    .nextSetBit(s + 1)) {
+                for (int c : labelClasses[s]) {
+                    if (moves[c] == null) {
+                        moves[c] = new BitSet();
+                    }
+                    moves[c].set(targets.get(s));
+                }
+            }
+            return moves;
+        }
+
+        /**
+         * Return, for each symbol, the states with a transition on it.
+         * 
+         * @return the states, by symbol.
+         */
+
+        public BitSet[] statesOn() {
+            BitSet[] statesOn = new BitSet[SYMBOLS];
+            for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+                statesOn[symbol] = new BitSet();
+            }
+            for (int s = 0; s < labels.size(); s++) {
+                BitSet label = labels.get(s);
+                if (label == null) {
+                    continue;
+                }
+                for (int symbol = label.nextSetBit(0); symbol >= 0;
+                        symbol = label.nextSetBit(symbol + 1)) {
+                    statesOn[symbol].set(s);
+                }
+            }
+            return statesOn;
+        }
+
+        /**
+         * Return the first rule any of the specified states is the end of.
+         * 
+         * @param states
+         *            the states.
+         * @return the rule, or -1 if none.
+         */
+
+        public int accepts(BitSet states) {
+            int rule = -1;
+            for (int s = states.nextSetBit(0); s >= 0; s = states
+                    .nextSetBit(s + 1)) {
+                int r = rules.get(s);
+                if (r >= 0 && (rule < 0 || r < rule)) {
+                    rule = r;
+                }
+            }
+            return rule;
+        }
+
+    }
+
+}
@@ -0,0 +1,484 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The dependency graph of a program, kept from one compilation to the next in
+ * a cache directory, so that only the units affected by an edit are analyzed
+ * and translated again.
+ * 
+ * For each compilation unit the graph records a fingerprint of its source, the
+ * fingerprints of the signatures of the types it declares, the types declared
+ * by other units that it refers to (as recorded by
+ * JCompilationUnit.addDependency()), and the files generated for it. The
+ * signature fingerprint of a type covers what pre-analysis puts into its
+ * ClassSymbol -- its modifiers, super class, and the modifiers and types of
+ * its fields, constructors and methods -- and, for a super class declared in
+ * the program, the super class's own signature fingerprint, so that a change to
+ * inherited members is seen by the users of subclasses.
+ * 
+ * After pre-analysis, a unit is up to date (and so is neither analyzed nor
+ * translated) if its source is unchanged, its output files still exist, and
+ * none of the types it refers to has changed signature since it was last
+ * compiled. Every unit is compiled when there is no graph yet, when the
+ * options affecting the output have changed, or when the program declares a
+ * type it did not declare before (since a new type may change what a name
+ * elsewhere denotes). Dependencies are kept per type rather than per member:
+ * adding an overload of a method may change which method a call elsewhere
+ * selects, even though none of the members that call used has changed.
+ * 
+ * The files generated for a source that has since been removed are deleted
+ * (before pre-analysis, so that the classes in them are not found on the class
+ * path in place of the missing source), and its entry is dropped.
+ */
+
+class DependencyGraph {
+
+    /** Name of the file, within the cache directory, holding the graph. */
+    private static final String FILE_NAME = "dependencies";
+
+    /** The file holding the graph. */
+    private File file;
+
+    /** The options affecting the output, as a string. */
+    private String options;
+
+    /** Options affecting the output when the graph was saved. */
+    private String savedOptions;
+
+    /** Maps the (absolute) names of source files to their entries. */
+    private TreeMap<String, Entry> entries;
+
+    /**
+     * Construct a DependencyGraph kept in the specified cache directory, and
+     * read what was saved there by the last compilation (if any).
+     * 
+     * @param cacheDir
+     *            the cache directory.
+     * @param options
+     *            the options affecting the output (output directory, target,
+     *            and so on) as a string.
+     */
+
+    public DependencyGraph(String cacheDir, String options) {
+        file = new File(cacheDir, FILE_NAME);
+        this.options = options;
+        entries = new TreeMap<String, Entry>();
+        try {
+            read();
+        } catch (IOException e) {
+            // Compile everything
+            savedOptions = null;
+            entries.clear();
+        }
+    }
+
+    /**
+     * Drop the entries of the source files that no longer exist, and delete
+     * the files generated for them (but those also recorded as generated for
+     * a source that still exists).
+     */
+
+    public void removeDeletedSources() {
+        ArrayList<String> staleFiles = new ArrayList<String>();
+        HashSet<String> outputFiles = new HashSet<String>();
+        Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (new File(key).isFile()) {
+                outputFiles.addAll(entries.get(key).outputFiles);
+            } else {
+                staleFiles.addAll(entries.get(key).outputFiles);
+                keys.remove();
+            }
+        }
+        for (String staleFile : staleFiles) {
+            if (!outputFiles.contains(staleFile)) {
+                new File(staleFile).delete();
+            }
+        }
+    }
+
+    /**
+     * Mark, in the specified (pre-analyzed) compilation, the units whose
+     * output is up to date.
+     * 
+     * @param compilation
+     *            the compilation.
+     */
+
+    public void markUpToDate(Compilation compilation) {
+        if (!options.equals(savedOptions)) {
+            return;
+        }
+        HashMap<String, String> signatures = signatures(compilation);
+        HashMap<String, String> savedSignatures = new HashMap<String, String>();
+        for (Entry entry : entries.values()) {
+            savedSignatures.putAll(entry.signatures);
+        }
+        if (!savedSignatures.keySet().containsAll(signatures.keySet())) {
+            return;
+        }
+        for (JCompilationUnit compilationUnit : compilation
+                .compilationUnits()) {
+            Entry entry = entries.get(key(compilationUnit));
+            if (entry != null && isUpToDate(compilationUnit, entry,
+                    signatures, savedSignatures)) {
+                compilation.markUpToDate(compilationUnit);
+            }
+        }
+    }
+
+    /**
+     * Update the graph from the specified (successful) compilation, and save
+     * it to the cache directory. Units that were up to date keep their
+     * entries; the others get new ones.
+     * 
+     * @param compilation
+     *            the compilation.
+     * @throws IOException
+     *             if the graph cannot be saved.
+     */
+
+    public void save(Compilation compilation) throws IOException {
+        HashMap<String, String> signatures = signatures(compilation);
+        TreeMap<String, Entry> entries = new TreeMap<String, Entry>();
+        for (JCompilationUnit compilationUnit : compilation
+                .compilationUnits()) {
+            String key = key(compilationUnit);
+            Entry entry = this.entries.get(key);
+            if (entry == null || !compilation.isUpToDate(compilationUnit)) {
+                entry = new Entry();
+                entry.source = sourceFingerprint(compilationUnit);
+                entry.dependencies.addAll(compilationUnit.dependencies());
+                for (String outputFile : compilationUnit.outputFiles()) {
+                    entry.outputFiles.add(new File(outputFile)
+                            .getAbsolutePath());
+                }
+            }
+            entry.signatures.clear();
+            for (String name : compilationUnit.declaredTypeNames()) {
+                entry.signatures.put(name, signatures.get(name));
+            }
+            entries.put(key, entry);
+        }
+        this.entries = entries;
+        savedOptions = options;
+        write();
+    }
+
+    /**
+     * Is the specified unit up to date?
+     * 
+     * @param compilationUnit
+     *            the unit.
+     * @param entry
+     *            its entry in the graph.
+     * @param signatures
+     *            signature fingerprints of the program's types now.
+     * @param savedSignatures
+     *            signature fingerprints of the program's types when the graph
+     *            was saved.
+     * @return true or false.
+     */
+
+    private boolean isUpToDate(JCompilationUnit compilationUnit, Entry entry,
+            HashMap<String, String> signatures,
+            HashMap<String, String> savedSignatures) {
+        for (String name : entry.dependencies) {
+            String signature = signatures.get(name);
+            if (signature == null
+                    || !signature.equals(savedSignatures.get(name))) {
+                return false;
+            }
+        }
+        for (String outputFile : entry.outputFiles) {
+            if (!new File(outputFile).isFile()) {
+                return false;
+            }
+        }
+        String source = sourceFingerprint(compilationUnit);
+        return source != null && source.equals(entry.source);
+    }
+
+    /**
+     * Return the signature fingerprints of the types declared by the
+     * specified (pre-analyzed) compilation.
+     * 
+     * @param compilation
+     *            the compilation.
+     * @return map from qualified type names to signature fingerprints.
+     */
+
+    private static HashMap<String, String> signatures(Compilation compilation) {
+        HashMap<String, ClassSymbol> classes = new HashMap<String, ClassSymbol>();
+        for (JCompilationUnit compilationUnit : compilation
+                .compilationUnits()) {
+            for (JAST typeDeclaration : compilationUnit.typeDeclarations()) {
+                Type type = ((JTypeDecl) typeDeclaration).thisType();
+                classes.put(type.toString(), type.symbol());
+            }
+        }
+        HashMap<String, String> signatures = new HashMap<String, String>();
+        for (String name : classes.keySet()) {
+            signature(name, classes, signatures);
+        }
+        return signatures;
+    }
+
+    /**
+     * Compute (if not yet computed) the signature fingerprint of the named
+     * type, after those of its super classes declared in the program.
+     * 
+     * @param name
+     *            qualified name of the type.
+     * @param classes
+     *            maps the names of the program's types to their symbols.
+     * @param signatures
+     *            map to which the fingerprints are added.
+     * @return the fingerprint.
+     */
+
+    private static String signature(String name,
+            HashMap<String, ClassSymbol> classes,
+            HashMap<String, String> signatures) {
+        String signature = signatures.get(name);
+        if (signature != null) {
+            return signature;
+        }
+        ClassSymbol symbol = classes.get(name);
+        StringBuilder s = new StringBuilder();
+        s.append(symbol.modifiers()).append(' ').append(name);
+        Type superClass = symbol.superType();
+        if (superClass != null) {
+            s.append(" extends ").append(superClass);
+            if (classes.containsKey(superClass.toString())) {
+                s.append(' ').append(
+                        signature(superClass.toString(), classes, signatures));
+            }
+        }
+        s.append('\n');
+        ArrayList<String> members = new ArrayList<String>();
+        for (FieldSymbol field : symbol.fields()) {
+            members.add(field.modifiers() + " " + field.name() + " "
+                    + field.type().toDescriptor());
+        }
+        for (MethodSymbol constructor : symbol.constructors()) {
+            members.add(constructor.modifiers() + " <init>"
+                    + constructor.toDescriptor());
+        }
+        for (MethodSymbol method : symbol.methods()) {
+            members.add(method.modifiers() + " " + method.name()
+                    + method.toDescriptor());
+        }
+        String[] sorted = members.toArray(new String[members.size()]);
+        Arrays.sort(sorted);
+        for (String member : sorted) {
+            s.append(member).append('\n');
+        }
+        signature = fingerprint(s.toString().getBytes());
+        signatures.put(name, signature);
+        return signature;
+    }
+
+    /**
+     * Return the fingerprint of the source of the specified unit, or null if
+     * the source cannot be read.
+     * 
+     * @param compilationUnit
+     *            the unit.
+     * @return the fingerprint.
+     */
+
+    private static String sourceFingerprint(JCompilationUnit compilationUnit) {
+        File source = new File(compilationUnit.fileName());
+        byte[] bytes = new byte[(int) source.length()];
+        try {
+            InputStream in = new FileInputStream(source);
+            try {
+                int n = 0;
+                while (n < bytes.length) {
+                    int read = in.read(bytes, n, bytes.length - n);
+                    if (read == -1) {
+                        break;
+                    }
+                    n += read;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return fingerprint(bytes);
+    }
+
+    /**
+     * Return a fingerprint (SHA-1 digest, in hex) of the specified bytes.
+     * 
+     * @param bytes
+     *            the bytes.
+     * @return the fingerprint.
+     */
+
+    private static String fingerprint(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Return the key of the specified unit in the graph: the absolute name of
+     * its source file.
+     * 
+     * @param compilationUnit
+     *            the unit.
+     * @return the key.
+     */
+
+    private static String key(JCompilationUnit compilationUnit) {
+        return new File(compilationUnit.fileName()).getAbsolutePath();
+    }
+
+    /**
+     * Read the graph from its file. The file has one line per fact, each
+     * beginning with a keyword: "options" for the options, "unit" to begin the
+     * entry for a source file, and "source", "type", "depends" and "output"
+     * for the facts of that entry.
+     * 
+     * @throws IOException
+     *             if the file cannot be read, or is malformed.
+     */
+
+    private void read() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            Entry entry = null;
+            for (String line = in.readLine(); line != null; line = in
+                    .readLine()) {
+                int space = line.indexOf(' ');
+                if (space == -1) {
+                    throw new IOException("malformed dependency graph");
+                }
+                String keyword = line.substring(0, space);
+                String value = line.substring(space + 1);
+                if (keyword.equals("options")) {
+                    savedOptions = value;
+                } else if (keyword.equals("unit")) {
+                    entry = new Entry();
+                    entries.put(value, entry);
+                } else if (entry == null) {
+                    throw new IOException("malformed dependency graph");
+                } else if (keyword.equals("source")) {
+                    entry.source = value;
+                } else if (keyword.equals("type") && value.indexOf(' ') != -1) {
+                    int i = value.lastIndexOf(' ');
+                    entry.signatures.put(value.substring(0, i), value
+                            .substring(i + 1));
+                } else if (keyword.equals("depends")) {
+                    entry.dependencies.add(value);
+                } else if (keyword.equals("output")) {
+                    entry.outputFiles.add(value);
+                } else {
+                    throw new IOException("malformed dependency graph");
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the graph to its file (see read()).
+     * 
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private void write() throws IOException {
+        file.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(file);
+        try {
+            out.println("options " + options);
+            for (String key : entries.keySet()) {
+                Entry entry = entries.get(key);
+                out.println("unit " + key);
+                out.println("source " + entry.source);
+                for (String name : new TreeSet<String>(entry.signatures
+                        .keySet())) {
+                    out.println("type " + name + " "
+                            + entry.signatures.get(name));
+                }
+                for (String name : entry.dependencies) {
+                    out.println("depends " + name);
+                }
+                for (String outputFile : entry.outputFiles) {
+                    out.println("output " + outputFile);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("cannot write " + file);
+        }
+    }
+
+    /**
+     * What the graph records about one compilation unit.
+     */
+
+    private static class Entry {
+
+        /** Fingerprint of the source. */
+        public String source;
+
+        /** Signature fingerprints of the types declared by the unit. */
+        public HashMap<String, String> signatures;
+
+        /** Types declared elsewhere in the program that the unit refers to. */
+        public TreeSet<String> dependencies;
+
+        /** Files generated for the unit. */
+        public ArrayList<String> outputFiles;
+
+        /**
+         * Construct an empty Entry.
+         */
+
+        public Entry() {
+            signatures = new HashMap<String, String>();
+            dependencies = new TreeSet<String>();
+            outputFiles = new ArrayList<String>();
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+/**
+ * An error reported by some phase of the compiler: the scanner, the parser,
+ * semantic analysis, or one of the code emitters. Errors found in the source
+ * program carry the name of the source file and the line in which they were
+ * found; emitter errors carry neither.
+ */
+
+public class Diagnostic {
+
+    /** Name of the source file; null if the error is not in a source file. */
+    private String fileName;
+
+    /** Line in which the error occurred; 0 if unknown. */
+    private int line;
+
+    /** Message identifying the error. */
+    private String message;
+
+    /**
+     * Construct a Diagnostic.
+     * 
+     * @param fileName
+     *            name of the source file (may be null).
+     * @param line
+     *            line in which the error occurred (0 if unknown).
+     * @param message
+     *            message identifying the error.
+     */
+
+    public Diagnostic(String fileName, int line, String message) {
+        this.fileName = fileName;
+        this.line = line;
+        this.message = message;
+    }
+
+    /**
+     * Return the name of the source file in which the error occurred.
+     * 
+     * @return the file name, or null.
+     */
+
+    public String fileName() {
+        return fileName;
+    }
+
+    /**
+     * Return the line in which the error occurred.
+     * 
+     * @return the line number, or 0.
+     */
+
+    public int line() {
+        return line;
+    }
+
+    /**
+     * Return the message identifying the error.
+     * 
+     * @return the message.
+     */
+
+    public String message() {
+        return message;
+    }
+
+    /**
+     * Return the error as the compiler prints it: "file:line: message", or
+     * just the message if the error is not in a source file.
+     * 
+     * @return the error as a string.
+     */
+
+    public String toString() {
+        return fileName == null ? message : String.format("%s:%d: %s",
+                fileName, line, message);
+    }
+
+}
+
+/**
+ * Receives the errors reported during a compilation. Errors may be reported
+ * from any of the compilation's worker threads.
+ */
+
+interface DiagnosticListener {
+
+    /** Listener printing each error to STDERR, as the command line does. */
+    public static final DiagnosticListener STDERR = new DiagnosticListener() {
+        public void report(Diagnostic diagnostic) {
+            System.err.println(diagnostic);
+        }
+    };
+
+    /**
+     * Report an error.
+     * 
+     * @param diagnostic
+     *            the error.
+     */
+
+    public void report(Diagnostic diagnostic);
+
+}
@@ -4,13 +4,15 @@ package jminusminus;
 
 /**
  * The abstract superclass of all nodes in the abstract syntax tree (AST).
+ * 
+ * The parser collects the children of a node in ArrayLists, but the node keeps
+ * them in an array of the right size, which takes neither the list nor its
+ * spare capacity. The memory taken by the ASTs can be audited with -Xstats
+ * (see ASTStats).
  */
 
 abstract class JAST {
 
-    /** Current compilation unit (set in JCompilationUnit()). */
-    public static JCompilationUnit compilationUnit;
-
     /** Line in which the source for the AST was found. */
     protected int line;
 
@@ -46,21 +48,6 @@ abstract class JAST {
 
     public abstract JAST analyze(Context context);
 
-    /**
-     * Generate a partial class for this type, reflecting only the member
-     * information required to do analysis.
-     * 
-     * @param context
-     *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
-     */
-
-    public void partialCodegen(Context context, CLEmitter partial) {
-        // A dummy -- redefined where necessary.
-    }
-
     /**
      * Perform code generation for this AST.
      * 
@@ -47,13 +47,13 @@ class JArrayExpression extends JExpression implements JLhs {
         theArray = (JExpression) theArray.analyze(context);
         indexExpr = (JExpression) indexExpr.analyze(context);
         if (!(theArray.type().isArray())) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "attempt to index a non-array object");
             this.type = Type.ANY;
         } else {
             this.type = theArray.type().componentType();
         }
-        indexExpr.type().mustMatchExpected(line(), Type.INT);
+        indexExpr.type().mustMatchExpected(context, line(), Type.INT);
         return this;
     }
 
@@ -13,7 +13,7 @@ import static jminusminus.CLConstants.*;
 class JArrayInitializer extends JExpression {
 
     /** The initializations. */
-    private ArrayList<JExpression> initials;
+    private JExpression[] initials;
 
     /**
      * Construct an AST node for an array initializer given the (expected) array
@@ -32,7 +32,7 @@ class JArrayInitializer extends JExpression {
             ArrayList<JExpression> initials) {
         super(line);
         type = expected;
-        this.initials = initials;
+        this.initials = initials.toArray(new JExpression[initials.size()]);
     }
 
     /**
@@ -47,17 +47,18 @@ class JArrayInitializer extends JExpression {
     public JExpression analyze(Context context) {
         type = type.resolve(context);
         if (!type.isArray()) {
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     "Cannot initialize a " + type.toString()
                             + " with an array sequence {...}");
             return this; // un-analyzed
         }
         Type componentType = type.componentType();
-        for (int i = 0; i < initials.size(); i++) {
-            JExpression component = initials.get(i);
-            initials.set(i, component = component.analyze(context));
+        for (int i = 0; i < initials.length; i++) {
+            JExpression component = initials[i];
+            initials[i] = component = component.analyze(context);
             if (!(component instanceof JArrayInitializer)) {
-                component.type().mustMatchExpected(line, componentType);
+                component.type().mustMatchExpected(context, line,
+                        componentType);
             }
         }
         return this;
@@ -76,7 +77,7 @@ class JArrayInitializer extends JExpression {
         Type componentType = type.componentType();
 
         // Code to push array length.
-        new JLiteralInt(line, String.valueOf(initials.size())).codegen(output);
+        new JLiteralInt(line, String.valueOf(initials.length)).codegen(output);
 
         // Code to create the (empty) array
         output.addArrayInstruction(componentType.isReference() ? ANEWARRAY
@@ -84,8 +85,8 @@ class JArrayInitializer extends JExpression {
 
         // Code to load initial values and store them as
         // elements in the newly created array.
-        for (int i = 0; i < initials.size(); i++) {
-            JExpression initExpr = initials.get(i);
+        for (int i = 0; i < initials.length; i++) {
+            JExpression initExpr = initials[i];
 
             // Duplicate the array for each element store
             output.addNoArgInstruction(DUP);
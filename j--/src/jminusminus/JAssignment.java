@@ -67,13 +67,13 @@ class JAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
         } else {
             lhs = (JExpression) ((JLhs) lhs).analyzeLhs(context);
         }
         rhs = (JExpression) rhs.analyze(context);
-        rhs.type().mustMatchExpected(line(), lhs.type());
+        rhs.type().mustMatchExpected(context, line(), lhs.type());
         type = rhs.type();
         if (lhs instanceof JVariable) {
             IDefn defn = ((JVariable) lhs).iDefn();
@@ -143,20 +143,20 @@ class JPlusAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
         } else {
             lhs = (JExpression) ((JLhs) lhs).analyzeLhs(context);
         }
         rhs = (JExpression) rhs.analyze(context);
         if (lhs.type().equals(Type.INT)) {
-            rhs.type().mustMatchExpected(line(), Type.INT);
+            rhs.type().mustMatchExpected(context, line(), Type.INT);
             type = Type.INT;
         } else if (lhs.type().equals(Type.STRING)) {
             rhs = (new JStringConcatenationOp(line, lhs, rhs)).analyze(context);
             type = Type.STRING;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for +=: " + lhs.type());
         }
         return this;
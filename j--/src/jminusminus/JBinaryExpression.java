@@ -112,7 +112,7 @@ class JPlusOp extends JBinaryExpression {
             type = Type.INT;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for +");
         }
         return this;
@@ -174,8 +174,8 @@ class JSubtractOp extends JBinaryExpression {
     public JExpression analyze(Context context) {
         lhs = (JExpression) lhs.analyze(context);
         rhs = (JExpression) rhs.analyze(context);
-        lhs.type().mustMatchExpected(line(), Type.INT);
-        rhs.type().mustMatchExpected(line(), Type.INT);
+        lhs.type().mustMatchExpected(context, line(), Type.INT);
+        rhs.type().mustMatchExpected(context, line(), Type.INT);
         type = Type.INT;
         return this;
     }
@@ -232,8 +232,8 @@ class JMultiplyOp extends JBinaryExpression {
     public JExpression analyze(Context context) {
         lhs = (JExpression) lhs.analyze(context);
         rhs = (JExpression) rhs.analyze(context);
-        lhs.type().mustMatchExpected(line(), Type.INT);
-        rhs.type().mustMatchExpected(line(), Type.INT);
+        lhs.type().mustMatchExpected(context, line(), Type.INT);
+        rhs.type().mustMatchExpected(context, line(), Type.INT);
         type = Type.INT;
         return this;
     }
@@ -290,8 +290,8 @@ class JDivideOp extends JBinaryExpression {
     public JExpression analyze(Context context) {
         lhs = (JExpression) lhs.analyze(context);
         rhs = (JExpression) rhs.analyze(context);
-        lhs.type().mustMatchExpected(line(), Type.INT);
-        rhs.type().mustMatchExpected(line(), Type.INT);
+        lhs.type().mustMatchExpected(context, line(), Type.INT);
+        rhs.type().mustMatchExpected(context, line(), Type.INT);
         type = Type.INT;
         return this;
     }
@@ -348,8 +348,8 @@ class JModuloOp extends JBinaryExpression {
     public JExpression analyze(Context context) {
         lhs = (JExpression) lhs.analyze(context);
         rhs = (JExpression) rhs.analyze(context);
-        lhs.type().mustMatchExpected(line(), Type.INT);
-        rhs.type().mustMatchExpected(line(), Type.INT);
+        lhs.type().mustMatchExpected(context, line(), Type.INT);
+        rhs.type().mustMatchExpected(context, line(), Type.INT);
         type = Type.INT;
         return this;
     }
@@ -10,8 +10,8 @@ import java.util.ArrayList;
 
 class JBlock extends JStatement {
 
-    /** List of statements forming the block body. */
-    private ArrayList<JStatement> statements;
+    /** Statements forming the block body. */
+    private JStatement[] statements;
 
     /**
      * The new context (built in analyze()) represented by this block.
@@ -30,16 +30,16 @@ class JBlock extends JStatement {
 
     public JBlock(int line, ArrayList<JStatement> statements) {
         super(line);
-        this.statements = statements;
+        this.statements = statements.toArray(new JStatement[statements.size()]);
     }
 
     /**
-     * Return the list of statements comprising the block.
+     * Return the statements comprising the block.
      * 
-     * @return list of statements.
+     * @return array of statements.
      */
 
-    public ArrayList<JStatement> statements() {
+    public JStatement[] statements() {
         return statements;
     }
 
@@ -56,9 +56,8 @@ class JBlock extends JStatement {
         // { ... } defines a new level of scope.
         this.context = new LocalContext(context);
 
-        for (int i = 0; i < statements.size(); i++) {
-            statements.set(i, (JStatement) statements.get(i).analyze(
-                    this.context));
+        for (int i = 0; i < statements.length; i++) {
+            statements[i] = (JStatement) statements[i].analyze(this.context);
         }
         return this;
     }
@@ -18,8 +18,8 @@ class JCastOp extends JExpression {
     /** The expression we're casting. */
     private JExpression expr;
 
-    /** The conversions table. */
-    private static Conversions conversions;
+    /** The conversions table (shared, and never changed once built). */
+    private static final Conversions conversions = new Conversions();
 
     /** The converter to use for this cast. */
     private Converter converter;
@@ -40,7 +40,6 @@ class JCastOp extends JExpression {
         super(line);
         this.cast = cast;
         this.expr = expr;
-        conversions = new Conversions();
     }
 
     /**
@@ -64,7 +63,7 @@ class JCastOp extends JExpression {
             converter = new NarrowReference(cast);
         } else if ((converter = conversions.get(expr.type(), cast)) != null) {
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "Cannot cast a "
+            context.compilationUnit().reportSemanticError(line, "Cannot cast a "
                     + expr.type().toString() + " to a " + cast.toString());
         }
         return this;
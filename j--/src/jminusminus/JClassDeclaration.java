@@ -2,6 +2,7 @@
 
 package jminusminus;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import static jminusminus.CLConstants.*;
 
@@ -21,7 +22,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
     private String name;
 
     /** Class block. */
-    private ArrayList<JMember> classBlock;
+    private JMember[] classBlock;
 
     /** Super class type. */
     private Type superType;
@@ -41,6 +42,9 @@ class JClassDeclaration extends JAST implements JTypeDecl {
     /** Static (class) fields of this class. */
     private ArrayList<JFieldDeclaration> staticFieldInitializations;
 
+    /** Whether the parser found syntax errors in this class. */
+    private boolean hasSyntaxErrors;
+
     /**
      * Construct an AST node for a class declaration given the line number, list
      * of class modifiers, name of the class, its super class type, and the
@@ -64,7 +68,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         this.mods = mods;
         this.name = name;
         this.superType = superType;
-        this.classBlock = classBlock;
+        this.classBlock = classBlock.toArray(new JMember[classBlock.size()]);
         hasExplicitConstructor = false;
         instanceFieldInitializations = new ArrayList<JFieldDeclaration>();
         staticFieldInitializations = new ArrayList<JFieldDeclaration>();
@@ -80,6 +84,23 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         return name;
     }
 
+    /**
+     * Record that the parser found syntax errors in this class (from which it
+     * recovered).
+     */
+
+    public void markSyntaxErrors() {
+        hasSyntaxErrors = true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean hasSyntaxErrors() {
+        return hasSyntaxErrors;
+    }
+
     /**
      * Return the class' super class type.
      * 
@@ -119,12 +140,12 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      */
 
     public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        CLEmitter partial = new CLEmitter(false);
-        partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null,
-                false); // Object for superClass, just for now
-        thisType = Type.typeFor(partial.toClass());
+        String packageName = context.compilationUnit().packageName();
+        String qualifiedName = packageName == "" ? name : packageName + "."
+                + name;
+        // Object for superClass, just for now
+        thisType = Type.typeFor(new ClassSymbol(Symbol.modifiersFor(mods),
+                qualifiedName, Type.OBJECT));
         context.addType(line, thisType);
     }
 
@@ -144,44 +165,42 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         // Resolve superclass
         superType = superType.resolve(this.context);
 
-        // Creating a partial class in memory can result in a
-        // java.lang.VerifyError if the semantics below are
-        // violated, so we can't defer these checks to analyze()
-        thisType.checkAccess(line, superType);
+        // Member lookup walks the super classes, so we can't defer
+        // these checks to analyze()
+        thisType.checkAccess(context, line, superType);
         if (superType.isFinal()) {
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     "Cannot extend a final type: %s", superType.toString());
         }
+        boolean isCyclic = false;
+        for (Type type = superType; type != null; type = type.superClass()) {
+            if (type == thisType) {
+                context.compilationUnit().reportSemanticError(line,
+                        "Cyclic inheritance involving %s", thisType);
+                isCyclic = true;
+                break;
+            }
+        }
 
-        // Create the (partial) class
-        CLEmitter partial = new CLEmitter(false);
-
-        // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        partial.addClass(mods, qualifiedName, superType.jvmName(), null, false);
+        // Add the class header to this type's symbol
+        ClassSymbol symbol = thisType.symbol();
+        if (!isCyclic) {
+            symbol.setSuperType(superType);
+        }
 
-        // Pre-analyze the members and add them to the partial
-        // class
+        // Pre-analyze the members and add them to the symbol
         for (JMember member : classBlock) {
-            member.preAnalyze(this.context, partial);
+            member.preAnalyze(this.context, symbol);
             if (member instanceof JConstructorDeclaration
-                    && ((JConstructorDeclaration) member).params.size() == 0) {
+                    && ((JConstructorDeclaration) member).params.length == 0) {
                 hasExplicitConstructor = true;
             }
         }
 
         // Add the implicit empty constructor?
         if (!hasExplicitConstructor) {
-            codegenPartialImplicitConstructor(partial);
-        }
-
-        // Get the Class rep for the (partial) class and make it
-        // the
-        // representation for this type
-        Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+            symbol.addConstructor(new MethodSymbol(Modifier.PUBLIC, symbol
+                    .name(), thisType, new Type[0], Type.VOID));
         }
     }
 
@@ -220,7 +239,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             for (Method method : thisType.abstractMethods()) {
                 methods += "\n" + method;
             }
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     "Class must be declared abstract since it defines "
                             + "the following abstract methods: %s", methods);
 
@@ -237,10 +256,10 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      */
 
     public void codegen(CLEmitter output) {
-        // The class header
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        output.addClass(mods, qualifiedName, superType.jvmName(), null, false);
+        // The class header; this type's name was qualified with the
+        // package name in declareThisType()
+        output.addClass(mods, thisType.jvmName(), superType.jvmName(), null,
+                false);
 
         // The implicit empty constructor?
         if (!hasExplicitConstructor) {
@@ -289,28 +308,6 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         p.println("</JClassDeclaration>");
     }
 
-    /**
-     * Generate code for an implicit empty constructor. (Necessary only if there
-     * is not already an explicit one.)
-     * 
-     * @param partial
-     *            the code emitter (basically an abstraction for producing a
-     *            Java class).
-     */
-
-    private void codegenPartialImplicitConstructor(CLEmitter partial) {
-        // Invoke super constructor
-        ArrayList<String> mods = new ArrayList<String>();
-        mods.add("public");
-        partial.addMethod(mods, "<init>", "()V", null, false);
-        partial.addNoArgInstruction(ALOAD_0);
-        partial.addMemberAccessInstruction(INVOKESPECIAL, superType.jvmName(),
-                "<init>", "()V");
-
-        // Return
-        partial.addNoArgInstruction(RETURN);
-    }
-
     /**
      * Generate code for an implicit empty constructor. (Necessary only if there
      * is not already an explicit one.
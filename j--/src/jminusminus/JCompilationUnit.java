@@ -3,6 +3,7 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.TreeSet;
 
 /**
  * The abstract syntax tree (AST) node representing a compilation unit, and so
@@ -12,16 +13,16 @@ import java.util.ArrayList;
  * imported types, a list of type (eg class) declarations, and a flag indicating
  * if a semantic error has been detected in analysis or code generation. It also
  * maintains a CompilationUnitContext (built in pre-analysis) for declaring both
- * imported and declared types.
+ * imported and declared types, and knows the Compilation it is a part of.
  * 
  * The AST is produced by the Parser. Once the AST has been built, three
- * successive methods are invoked:
+ * successive methods are invoked (by the Compilation):
  * 
- * (1) Method preAnalyze() is invoked for making a first pass at type analysis,
- * recursively reaching down to the member headers for declaring types and
- * member interfaces in the environment (contexts). preAnalyze() also creates a
- * partial class file (in memory) for recording member header information, using
- * the partialCodegen() method.
+ * (1) Methods declareTypes() and preAnalyzeTypes() are invoked for making a
+ * first pass at type analysis, recursively reaching down to the member headers
+ * for declaring types and member interfaces in the environment (contexts).
+ * Pre-analysis also records the member header information in the symbols
+ * (ClassSymbol) of the declared types.
  * 
  * (2) Method analyze() is invoked for type-checking field initializations and
  * method bodies, and determining the types of all expressions. A certain amount
@@ -61,9 +62,21 @@ class JCompilationUnit extends JAST {
     /** For imports and type declarations. */
     private CompilationUnitContext context;
 
+    /** The compilation (program) this unit is a part of. */
+    private Compilation compilation;
+
     /** Whether a semantic error has been found. */
     private boolean isInError;
 
+    /**
+     * Qualified names of the types declared elsewhere in the program that
+     * this unit refers to.
+     */
+    private TreeSet<String> dependencies;
+
+    /** Names of the files written by code generation for this unit. */
+    private ArrayList<String> outputFiles;
+
     /**
      * Construct an AST node for a compilation unit given a file name, class
      * directory, line number, package name, list of imports, and type
@@ -89,7 +102,18 @@ class JCompilationUnit extends JAST {
         this.imports = imports;
         this.typeDeclarations = typeDeclarations;
         clFiles = new ArrayList<CLFile>();
-        compilationUnit = this;
+        dependencies = new TreeSet<String>();
+        outputFiles = new ArrayList<String>();
+    }
+
+    /**
+     * The name of the source file.
+     * 
+     * @return the file name.
+     */
+
+    public String fileName() {
+        return fileName;
     }
 
     /**
@@ -102,6 +126,16 @@ class JCompilationUnit extends JAST {
         return packageName == null ? "" : packageName.toString();
     }
 
+    /**
+     * Return the compilation this unit is a part of.
+     * 
+     * @return the compilation.
+     */
+
+    public Compilation compilation() {
+        return compilation;
+    }
+
     /**
      * Has a semantic error occurred up to now?
      * 
@@ -126,19 +160,22 @@ class JCompilationUnit extends JAST {
     public void reportSemanticError(int line, String message,
             Object... arguments) {
         isInError = true;
-        System.err.printf("%s:%d: ", fileName, line);
-        System.err.printf(message, arguments);
-        System.err.println();
+        compilation.diagnosticListener().report(new Diagnostic(fileName,
+                line, String.format(message, arguments)));
     }
 
     /**
      * Construct a context for the compilation unit, initializing it with
-     * imported types. Then pre-analyze the unit's type declarations, adding
-     * their types to the context.
+     * imported types, and declare the unit's own types in it. Imports naming a
+     * type declared elsewhere in the program are left to importTypes().
+     * 
+     * @param compilation
+     *            the compilation this unit is a part of.
      */
 
-    public void preAnalyze() {
-        context = new CompilationUnitContext();
+    public void declareTypes(Compilation compilation) {
+        this.compilation = compilation;
+        context = new CompilationUnitContext(this);
 
         // Declare the two implicit types java.lang.Object and
         // java.lang.String
@@ -147,32 +184,116 @@ class JCompilationUnit extends JAST {
 
         // Declare any imported types
         for (TypeName imported : imports) {
-            try {
-                Class<?> classRep = Class.forName(imported.toString());
-                context.addType(imported.line(), Type.typeFor(classRep));
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(imported.line(),
-                        "Unable to find %s", imported.toString());
+            if (compilation.declaresType(imported.toString())) {
+                continue;
+            }
+            Type type = compilation.symbolLoader().typeFor(
+                    imported.toString());
+            if (type != null) {
+                context.addType(imported.line(), type);
+            } else {
+                reportSemanticError(imported.line(), "Unable to find %s",
+                        imported.toString());
             }
         }
 
         // Declare the locally declared type(s)
-        CLEmitter.initializeByteClassLoader();
         for (JAST typeDeclaration : typeDeclarations) {
             ((JTypeDecl) typeDeclaration).declareThisType(context);
         }
+    }
 
-        // Pre-analyze the locally declared type(s). Generate
-        // (partial) Class instances, reflecting only the member
-        // interface type information
-        CLEmitter.initializeByteClassLoader();
+    /**
+     * Declare in this unit's context the types declared by another unit of
+     * the same program that are visible from here: those in the same package,
+     * and those named by an import.
+     * 
+     * @param other
+     *            another compilation unit of the program.
+     */
+
+    public void importTypes(JCompilationUnit other) {
+        boolean samePackage = other.packageName().equals(packageName());
+        for (JAST typeDeclaration : other.typeDeclarations) {
+            Type type = ((JTypeDecl) typeDeclaration).thisType();
+            if (samePackage) {
+                context.addType(0, type);
+                continue;
+            }
+            for (TypeName imported : imports) {
+                if (imported.toString().equals(type.toString())) {
+                    context.addType(imported.line(), type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pre-analyze the unit's type declarations, filling in their symbols with
+     * only the member interface type information. The types must have been
+     * declared with declareTypes().
+     */
+
+    public void preAnalyzeTypes() {
         for (JAST typeDeclaration : typeDeclarations) {
             ((JTypeDecl) typeDeclaration).preAnalyze(context);
         }
     }
 
     /**
-     * Perform semantic analysis on the AST in the specified context.
+     * Return the qualified names of the types declared in this unit.
+     * 
+     * @return list of qualified type names.
+     */
+
+    public ArrayList<String> declaredTypeNames() {
+        ArrayList<String> names = new ArrayList<String>();
+        for (JAST typeDeclaration : typeDeclarations) {
+            names.add(qualified(((JTypeDecl) typeDeclaration).name()));
+        }
+        return names;
+    }
+
+    /**
+     * Return the qualified names that the super classes of this unit's type
+     * declarations could denote, as written in the source.
+     * 
+     * @return list of candidate qualified type names.
+     */
+
+    public ArrayList<String> superTypeNames() {
+        ArrayList<String> names = new ArrayList<String>();
+        for (JAST typeDeclaration : typeDeclarations) {
+            String name = ((JTypeDecl) typeDeclaration).superType().toString();
+            if (name.indexOf('.') != -1) {
+                names.add(name);
+                continue;
+            }
+            names.add(qualified(name));
+            for (TypeName imported : imports) {
+                if (imported.simpleName().equals(name)) {
+                    names.add(imported.toString());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Qualify a simple type name with this unit's package name.
+     * 
+     * @param name
+     *            the simple name.
+     * @return the qualified name.
+     */
+
+    private String qualified(String name) {
+        return packageName().equals("") ? name : packageName() + "." + name;
+    }
+
+    /**
+     * Perform semantic analysis on the AST in the specified context, that is,
+     * on its type declarations but those with syntax errors.
      * 
      * @param context
      *            context in which names are resolved (ignored here).
@@ -181,7 +302,9 @@ class JCompilationUnit extends JAST {
 
     public JAST analyze(Context context) {
         for (JAST typeDeclaration : typeDeclarations) {
-            typeDeclaration.analyze(this.context);
+            if (!((JTypeDecl) typeDeclaration).hasSyntaxErrors()) {
+                typeDeclaration.analyze(this.context);
+            }
         }
         return this;
     }
@@ -214,6 +337,61 @@ class JCompilationUnit extends JAST {
         return clFiles;
     }
 
+    /**
+     * Return the names of the files written by code generation for this unit.
+     * 
+     * @return list of file names.
+     */
+
+    public ArrayList<String> outputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * Record that this unit refers to the specified type (or, for an array
+     * type, to its base type). Only types declared by other units of the
+     * program are recorded, since only those can change from one compilation
+     * to the next.
+     * 
+     * @param type
+     *            the referenced type.
+     */
+
+    public void addDependency(Type type) {
+        if (type == null || type == Type.ANY) {
+            return;
+        }
+        while (type.isArray()) {
+            type = type.componentType();
+        }
+        String name = type.toString();
+        if (!type.isPrimitive() && compilation.declaresType(name)
+                && !declaredTypeNames().contains(name)) {
+            dependencies.add(name);
+        }
+    }
+
+    /**
+     * Return the qualified names of the types declared elsewhere in the
+     * program that this unit refers to.
+     * 
+     * @return set of type names.
+     */
+
+    public TreeSet<String> dependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Return the type declarations in this compilation unit.
+     * 
+     * @return list of type declarations.
+     */
+
+    public ArrayList<JAST> typeDeclarations() {
+        return typeDeclarations;
+    }
+
     /**
      * @inheritDoc
      */
@@ -48,24 +48,23 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param symbol
+     *            symbol for the parent class.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
-        super.preAnalyze(context, partial);
+    public void preAnalyze(Context context, ClassSymbol symbol) {
+        super.preAnalyze(context, symbol);
         if (isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Constructor cannot be declared static");
         } else if (isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Constructor cannot be declared abstract");
         }
-        if (body.statements().size() > 0
-                && body.statements().get(0) instanceof JStatementExpression) {
+        if (body.statements().length > 0
+                && body.statements()[0] instanceof JStatementExpression) {
             JStatementExpression first = (JStatementExpression) body
-                    .statements().get(0);
+                    .statements()[0];
             if (first.expr instanceof JSuperConstruction) {
                 ((JSuperConstruction) first.expr).markProperUseOfConstructor();
                 invokesConstructor = true;
@@ -92,24 +91,18 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
     }
 
     /**
-     * Add this constructor declaration to the partial class.
+     * Add this constructor declaration to the parent class's symbol.
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param symbol
+     *            symbol for the parent class.
      */
 
-    public void partialCodegen(Context context, CLEmitter partial) {
-        partial.addMethod(mods, "<init>", descriptor, null, false);
-        if (!invokesConstructor) {
-            partial.addNoArgInstruction(ALOAD_0);
-            partial.addMemberAccessInstruction(INVOKESPECIAL,
-                    ((JTypeDecl) context.classContext().definition())
-                            .superType().jvmName(), "<init>", "()V");
-        }
-        partial.addNoArgInstruction(RETURN);
+    protected void declare(Context context, ClassSymbol symbol) {
+        symbol.addConstructor(new MethodSymbol(Symbol.modifiersFor(mods),
+                symbol.name(), context.definingType(), paramTypes(),
+                Type.VOID));
     }
 
     /**
@@ -14,7 +14,7 @@ class JFieldDeclaration extends JAST implements JMember {
     private ArrayList<String> mods;
 
     /** Variable declarators. */
-    private ArrayList<JVariableDeclarator> decls;
+    private JVariableDeclarator[] decls;
 
     /** Variable initializations. */
     private ArrayList<JStatement> initializations;
@@ -36,7 +36,7 @@ class JFieldDeclaration extends JAST implements JMember {
             ArrayList<JVariableDeclarator> decls) {
         super(line);
         this.mods = mods;
-        this.decls = decls;
+        this.decls = decls.toArray(new JVariableDeclarator[decls.size()]);
         initializations = new ArrayList<JStatement>();
     }
 
@@ -51,27 +51,26 @@ class JFieldDeclaration extends JAST implements JMember {
     }
 
     /**
-     * Declare fields in the parent's (partial) class.
+     * Declare fields in the parent class's symbol.
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param symbol
+     *            symbol for the parent class.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, ClassSymbol symbol) {
         // Fields may not be declared abstract.
         if (mods.contains("abstract")) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Field cannot be declared abstract");
         }
 
         for (JVariableDeclarator decl : decls) {
-            // Add field to (partial) class
+            // Add field to the class's symbol
             decl.setType(decl.type().resolve(context));
-            partial.addField(mods, decl.name(), decl.type().toDescriptor(),
-                    false);
+            symbol.addField(new FieldSymbol(Symbol.modifiersFor(mods), decl
+                    .name(), context.definingType(), decl.type()));
         }
     }
 
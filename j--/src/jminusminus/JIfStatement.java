@@ -52,7 +52,7 @@ class JIfStatement extends JStatement {
 
     public JStatement analyze(Context context) {
         condition = (JExpression) condition.analyze(context);
-        condition.type().mustMatchExpected(line(), Type.BOOLEAN);
+        condition.type().mustMatchExpected(context, line(), Type.BOOLEAN);
         thenPart = (JStatement) thenPart.analyze(context);
         if (elsePart != null) {
             elsePart = (JStatement) elsePart.analyze(context);
@@ -9,17 +9,16 @@ package jminusminus;
 interface JMember {
 
     /**
-     * Declare the member name(s) in the specified (class) context. Generate the
-     * member header(s) in the (partial) class. All members must support this
+     * Declare the member name(s) in the specified (class) context. Add the
+     * member header(s) to the class's symbol. All members must support this
      * method.
      * 
      * @param context
      *            class context in which names are resolved.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param symbol
+     *            symbol for the class declaring the member.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial);
+    public void preAnalyze(Context context, ClassSymbol symbol);
 
 }
@@ -23,7 +23,7 @@ class JMessageExpression extends JExpression {
     private String messageName;
 
     /** Message arguments. */
-    private ArrayList<JExpression> arguments;
+    private JExpression[] arguments;
 
     /** Types of arguments. */
     private Type[] argTypes;
@@ -71,7 +71,7 @@ class JMessageExpression extends JExpression {
         this.target = target;
         this.ambiguousPart = ambiguousPart;
         this.messageName = messageName;
-        this.arguments = arguments;
+        this.arguments = arguments.toArray(new JExpression[arguments.size()]);
     }
 
     /**
@@ -96,7 +96,7 @@ class JMessageExpression extends JExpression {
                     target = expr;
                 } else {
                     // Can't even happen syntactically
-                    JAST.compilationUnit.reportSemanticError(line(),
+                    context.compilationUnit().reportSemanticError(line(),
                             "Badly formed suffix");
                 }
             }
@@ -104,10 +104,10 @@ class JMessageExpression extends JExpression {
 
         // Then analyze the arguments, collecting
         // their types (in Class form) as argTypes
-        argTypes = new Type[arguments.size()];
-        for (int i = 0; i < arguments.size(); i++) {
-            arguments.set(i, (JExpression) arguments.get(i).analyze(context));
-            argTypes[i] = arguments.get(i).type();
+        argTypes = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = (JExpression) arguments[i].analyze(context);
+            argTypes[i] = arguments[i].type();
         }
 
         // Where are we now? (For access)
@@ -117,16 +117,16 @@ class JMessageExpression extends JExpression {
         // Then analyze the target
         if (target == null) {
             // Implied this (or, implied type for statics)
+            NodeArena arena = context.compilationUnit().compilation().arena();
             if (!context.methodContext().isStatic()) {
-                target = new JThis(line()).analyze(context);
+                target = arena.implicitThis(line(), context);
             } else {
-                target = new JVariable(line(), context.definingType()
-                        .toString()).analyze(context);
+                target = arena.implicitType(line(), context);
             }
         } else {
             target = (JExpression) target.analyze(context);
             if (target.type().isPrimitive()) {
-                JAST.compilationUnit.reportSemanticError(line(),
+                context.compilationUnit().reportSemanticError(line(),
                         "cannot invoke a message on a primitive type:"
                                 + target.type());
             }
@@ -135,19 +135,20 @@ class JMessageExpression extends JExpression {
         // Find appropriate Method for this message expression
         method = target.type().methodFor(messageName, argTypes);
         if (method == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Cannot find method for: "
                             + Type.signatureFor(messageName, argTypes));
             type = Type.ANY;
         } else {
-            context.definingType().checkAccess(line, (Member) method);
+            context.definingType().checkAccess(context, line, (Member) method);
+            context.compilationUnit().addDependency(target.type());
             type = method.returnType();
 
             // Non-static method cannot be referenced from a static context.
             if (!method.isStatic()) {
                 if (target instanceof JVariable
                         && ((JVariable) target).iDefn() instanceof TypeNameDefn) {
-                    JAST.compilationUnit
+                    context.compilationUnit()
                             .reportSemanticError(
                                     line(),
                                     "Non-static method "
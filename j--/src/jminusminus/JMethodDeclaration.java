@@ -21,7 +21,7 @@ class JMethodDeclaration extends JAST implements JMember {
     private Type returnType;
 
     /** The formal parameters. */
-    protected ArrayList<JFormalParameter> params;
+    protected JFormalParameter[] params;
 
     /** Method body. */
     protected JBlock body;
@@ -68,7 +68,7 @@ class JMethodDeclaration extends JAST implements JMember {
         this.mods = mods;
         this.name = name;
         this.returnType = returnType;
-        this.params = params;
+        this.params = params.toArray(new JFormalParameter[params.size()]);
         this.body = body;
         this.isAbstract = mods.contains("abstract");
         this.isStatic = mods.contains("static");
@@ -80,12 +80,11 @@ class JMethodDeclaration extends JAST implements JMember {
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param symbol
+     *            symbol for the parent class.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, ClassSymbol symbol) {
         // Resolve types of the formal parameters
         for (JFormalParameter param : params) {
             param.setType(param.type().resolve(context));
@@ -96,16 +95,16 @@ class JMethodDeclaration extends JAST implements JMember {
 
         // Check proper local use of abstract
         if (isAbstract && body != null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "abstract method cannot have a body");
         } else if (body == null && !isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Method with null body must be abstarct");
         } else if (isAbstract && isPrivate) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "private method cannot be declared abstract");
         } else if (isAbstract && isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "static method cannot be declared abstract");
         }
 
@@ -116,8 +115,8 @@ class JMethodDeclaration extends JAST implements JMember {
         }
         descriptor += ")" + returnType.toDescriptor();
 
-        // Generate the method with an empty body (for now)
-        partialCodegen(context, partial);
+        // Add the method to the class's symbol
+        declare(context, symbol);
     }
 
     /**
@@ -156,33 +155,31 @@ class JMethodDeclaration extends JAST implements JMember {
     }
 
     /**
-     * Add this method declaration to the partial class.
+     * Add this method declaration to the parent class's symbol.
      * 
      * @param context
      *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     * @param symbol
+     *            symbol for the parent class.
      */
 
-    public void partialCodegen(Context context, CLEmitter partial) {
-        // Generate a method with an empty body; need a return to
-        // make
-        // the class verifier happy.
-        partial.addMethod(mods, name, descriptor, null, false);
+    protected void declare(Context context, ClassSymbol symbol) {
+        symbol.addMethod(new MethodSymbol(Symbol.modifiersFor(mods), name,
+                context.definingType(), paramTypes(), returnType));
+    }
 
-        // Add implicit RETURN
-        if (returnType == Type.VOID) {
-            partial.addNoArgInstruction(RETURN);
-        } else if (returnType == Type.INT || returnType == Type.BOOLEAN
-                || returnType == Type.CHAR) {
-            partial.addNoArgInstruction(ICONST_0);
-            partial.addNoArgInstruction(IRETURN);
-        } else {
-            // A reference type.
-            partial.addNoArgInstruction(ACONST_NULL);
-            partial.addNoArgInstruction(ARETURN);
+    /**
+     * Return the (resolved) types of the formal parameters.
+     * 
+     * @return the parameter types.
+     */
+
+    protected Type[] paramTypes() {
+        Type[] paramTypes = new Type[params.length];
+        for (int i = 0; i < params.length; i++) {
+            paramTypes[i] = params[i].type();
         }
+        return paramTypes;
     }
 
     /**
@@ -0,0 +1,338 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Programmatic interface to the j-- compiler (with hand-written front-end) for
+ * programs held in memory. Sources are read from the given strings rather than
+ * from files, the class files are returned as byte arrays rather than written
+ * out, and errors are returned as Diagnostics rather than printed to STDERR;
+ * the file system is not touched.
+ * 
+ * For example,
+ * 
+ * <pre>
+ *   Map&lt;String, CharSequence&gt; sources = ...;
+ *   JMinusMinusCompiler.Result result = JMinusMinusCompiler.compile(sources,
+ *           new JMinusMinusCompiler.Options());
+ *   if (result.errorHasOccurred()) {
+ *       for (Diagnostic diagnostic : result.diagnostics()) ...
+ *   } else {
+ *       for (Map.Entry&lt;String, byte[]&gt; classFile :
+ *               result.classFiles().entrySet()) ...
+ *   }
+ * </pre>
+ * 
+ * Each call is a Compilation of its own, so calls may be made from any number
+ * of threads at once.
+ */
+
+public class JMinusMinusCompiler {
+
+    /**
+     * Options controlling a compilation.
+     */
+
+    public static class Options {
+
+        /** Number of threads used for parsing and code generation. */
+        private int parallelism;
+
+        /** Where library classes are found; null for the compiler's own. */
+        private String classPath;
+
+        /** Major version of the class files. */
+        private int majorVersion;
+
+        /** Whether to scan with the DFAScanner rather than the Scanner. */
+        private boolean dfaScanner;
+
+        /** Whether to scan with the ParallelScanner. */
+        private boolean parallelScan;
+
+        /**
+         * Construct the default options: parsing and code generation on a
+         * single worker thread, against the compiler's own class path, into
+         * class files of version CLConstants.MAJOR_VERSION.
+         */
+
+        public Options() {
+            parallelism = 1;
+            majorVersion = CLConstants.MAJOR_VERSION;
+        }
+
+        /**
+         * Set the number of threads used for parsing and code generation.
+         * 
+         * @param parallelism
+         *            number of threads (at least 1).
+         * @return these options.
+         */
+
+        public Options parallelism(int parallelism) {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        /**
+         * Return the number of threads used for parsing and code generation.
+         * 
+         * @return number of threads.
+         */
+
+        public int parallelism() {
+            return parallelism;
+        }
+
+        /**
+         * Set the class path on which library classes are found.
+         * 
+         * @param classPath
+         *            the directories and zip (jar) files making up the class
+         *            path, separated by the path separator.
+         * @return these options.
+         */
+
+        public Options classPath(String classPath) {
+            this.classPath = classPath;
+            return this;
+        }
+
+        /**
+         * Return the class path on which library classes are found.
+         * 
+         * @return the class path, or null for the compiler's own.
+         */
+
+        public String classPath() {
+            return classPath;
+        }
+
+        /**
+         * Set whether the sources are scanned with the table-driven
+         * DFAScanner rather than the hand-written Scanner.
+         * 
+         * @param dfaScanner
+         *            whether to scan with the DFAScanner.
+         * @return these options.
+         */
+
+        public Options dfaScanner(boolean dfaScanner) {
+            this.dfaScanner = dfaScanner;
+            return this;
+        }
+
+        /**
+         * Return whether the sources are scanned with the DFAScanner.
+         * 
+         * @return true or false.
+         */
+
+        public boolean dfaScanner() {
+            return dfaScanner;
+        }
+
+        /**
+         * Set whether large sources are scanned in parallel chunks (with the
+         * ParallelScanner, which overrides dfaScanner()).
+         * 
+         * @param parallelScan
+         *            whether to scan with the ParallelScanner.
+         * @return these options.
+         */
+
+        public Options parallelScan(boolean parallelScan) {
+            this.parallelScan = parallelScan;
+            return this;
+        }
+
+        /**
+         * Return whether large sources are scanned in parallel chunks.
+         * 
+         * @return true or false.
+         */
+
+        public boolean parallelScan() {
+            return parallelScan;
+        }
+
+        /**
+         * Set the major version of the class files; from
+         * CLConstants.STACK_MAP_MAJOR_VERSION on, their methods carry
+         * StackMapTable attributes.
+         * 
+         * @param majorVersion
+         *            the major version, from CLConstants.MAJOR_VERSION to
+         *            CLConstants.MAX_MAJOR_VERSION.
+         * @return these options.
+         * @throws IllegalArgumentException
+         *             if the version is out of range.
+         */
+
+        public Options majorVersion(int majorVersion) {
+            if (majorVersion < CLConstants.MAJOR_VERSION
+                    || majorVersion > CLConstants.MAX_MAJOR_VERSION) {
+                throw new IllegalArgumentException(
+                        "unsupported class file version " + majorVersion);
+            }
+            this.majorVersion = majorVersion;
+            return this;
+        }
+
+        /**
+         * Return the major version of the class files.
+         * 
+         * @return the major version.
+         */
+
+        public int majorVersion() {
+            return majorVersion;
+        }
+
+    }
+
+    /**
+     * The outcome of a compilation: the class files, and the errors.
+     */
+
+    public static class Result {
+
+        /** Maps binary class names to class file bytes. */
+        private Map<String, byte[]> classFiles;
+
+        /** Errors reported by the compiler, in source order. */
+        private List<Diagnostic> diagnostics;
+
+        /** Whether an error occurred. */
+        private boolean errorHasOccurred;
+
+        /**
+         * Construct a Result.
+         * 
+         * @param classFiles
+         *            the class files.
+         * @param diagnostics
+         *            the errors.
+         * @param errorHasOccurred
+         *            whether an error occurred.
+         */
+
+        private Result(Map<String, byte[]> classFiles,
+                List<Diagnostic> diagnostics, boolean errorHasOccurred) {
+            this.classFiles = classFiles;
+            this.diagnostics = diagnostics;
+            this.errorHasOccurred = errorHasOccurred;
+        }
+
+        /**
+         * Return the class files, keyed by binary class name (for example,
+         * "pass.Factorial"). Empty if an error occurred.
+         * 
+         * @return the class files.
+         */
+
+        public Map<String, byte[]> classFiles() {
+            return classFiles;
+        }
+
+        /**
+         * Return the errors reported by the compiler, in source order: by
+         * source (in the order the sources were given), and then by line.
+         * Errors on a line are in the order reported, and errors not in any
+         * of the sources come first. The order does not depend on the
+         * parallelism.
+         * 
+         * @return the errors.
+         */
+
+        public List<Diagnostic> diagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * Did an error occur?
+         * 
+         * @return true or false.
+         */
+
+        public boolean errorHasOccurred() {
+            return errorHasOccurred;
+        }
+
+    }
+
+    /**
+     * Compile the specified sources together as one program.
+     * 
+     * @param sources
+     *            maps source file names (used in diagnostics) to source text.
+     * @param options
+     *            compilation options.
+     * @return the class files and errors.
+     */
+
+    public static Result compile(Map<String, CharSequence> sources,
+            Options options) {
+        final ArrayList<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+        final DiagnosticListener diagnosticListener = new DiagnosticListener() {
+            public void report(Diagnostic diagnostic) {
+                synchronized (diagnostics) {
+                    diagnostics.add(diagnostic);
+                }
+            }
+        };
+        final Compilation compilation = new Compilation(options
+                .parallelism(), NPhysicalRegister.DEFAULT_COUNT,
+                diagnosticListener);
+        if (options.classPath() != null) {
+            compilation.setClassPath(options.classPath());
+        }
+        compilation.setMajorVersion(options.majorVersion());
+        LinkedHashMap<String, byte[]> classFiles = new LinkedHashMap<String, byte[]>();
+        try {
+            PassManager<Compilation> passes = new PassManager<Compilation>(
+                    null);
+            passes.add(Compilation.parsePass(new ArrayList<String>(sources
+                    .keySet()), new ScannerFactory(options.dfaScanner(),
+                    options.parallelScan(), sources)));
+            passes.add(Compilation.preAnalyzePass());
+            passes.add(Compilation.analyzePass());
+            passes.add(Compilation.codegenPass(null, false));
+            if (passes.run(compilation)) {
+                classFiles = compilation.classFiles();
+            }
+        } finally {
+            compilation.shutdown();
+        }
+
+        // Errors from tasks run in parallel are reported as the tasks finish;
+        // put them in source order
+        final HashMap<String, Integer> sourceIndices = new HashMap<String, Integer>();
+        for (String sourceName : sources.keySet()) {
+            sourceIndices.put(sourceName, sourceIndices.size());
+        }
+        Collections.sort(diagnostics, new Comparator<Diagnostic>() {
+            public int compare(Diagnostic d1, Diagnostic d2) {
+                int i1 = sourceIndex(d1), i2 = sourceIndex(d2);
+                return i1 != i2 ? Integer.compare(i1, i2) : Integer.compare(
+                        d1.line(), d2.line());
+            }
+
+            private int sourceIndex(Diagnostic diagnostic) {
+                Integer index = sourceIndices.get(diagnostic.fileName());
+                return index == null ? -1 : index;
+            }
+        });
+        return new Result(classFiles, diagnostics, compilation
+                .errorHasOccurred());
+    }
+
+}
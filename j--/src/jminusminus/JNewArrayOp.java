@@ -16,7 +16,7 @@ class JNewArrayOp extends JExpression {
     private Type typeSpec;
 
     /** Dimensions of the array. */
-    private ArrayList<JExpression> dimExprs;
+    private JExpression[] dimExprs;
 
     /**
      * Construct an AST node for a "new" array operation.
@@ -32,7 +32,7 @@ class JNewArrayOp extends JExpression {
     public JNewArrayOp(int line, Type typeSpec, ArrayList<JExpression> dimExprs) {
         super(line);
         this.typeSpec = typeSpec;
-        this.dimExprs = dimExprs;
+        this.dimExprs = dimExprs.toArray(new JExpression[dimExprs.size()]);
     }
 
     /**
@@ -46,9 +46,9 @@ class JNewArrayOp extends JExpression {
 
     public JExpression analyze(Context context) {
         type = typeSpec.resolve(context);
-        for (int i = 0; i < dimExprs.size(); i++) {
-            dimExprs.set(i, dimExprs.get(i).analyze(context));
-            dimExprs.get(i).type().mustMatchExpected(line, Type.INT);
+        for (int i = 0; i < dimExprs.length; i++) {
+            dimExprs[i] = dimExprs[i].analyze(context);
+            dimExprs[i].type().mustMatchExpected(context, line, Type.INT);
         }
         return this;
     }
@@ -69,13 +69,13 @@ class JNewArrayOp extends JExpression {
         }
 
         // Generate the appropriate array creation instruction
-        if (dimExprs.size() == 1) {
+        if (dimExprs.length == 1) {
             output.addArrayInstruction(
                     type.componentType().isReference() ? ANEWARRAY : NEWARRAY,
                     type.componentType().jvmName());
         } else {
-            output.addMULTIANEWARRAYInstruction(type.toDescriptor(), dimExprs
-                    .size());
+            output.addMULTIANEWARRAYInstruction(type.toDescriptor(),
+                    dimExprs.length);
         }
     }
 
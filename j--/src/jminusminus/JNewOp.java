@@ -16,7 +16,7 @@ class JNewOp extends JExpression {
     private Constructor constructor;
 
     /** The arguments to the constructor. */
-    private ArrayList<JExpression> arguments;
+    private JExpression[] arguments;
 
     /** Types of the arguments. */
     private Type[] argTypes;
@@ -36,7 +36,7 @@ class JNewOp extends JExpression {
     public JNewOp(int line, Type type, ArrayList<JExpression> arguments) {
         super(line);
         this.type = type;
-        this.arguments = arguments;
+        this.arguments = arguments.toArray(new JExpression[arguments.size()]);
     }
 
     /**
@@ -55,15 +55,15 @@ class JNewOp extends JExpression {
 
         // Analyze the arguments, collecting
         // their types (in Class form) as argTypes.
-        argTypes = new Type[arguments.size()];
-        for (int i = 0; i < arguments.size(); i++) {
-            arguments.set(i, (JExpression) arguments.get(i).analyze(context));
-            argTypes[i] = arguments.get(i).type();
+        argTypes = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = (JExpression) arguments[i].analyze(context);
+            argTypes[i] = arguments[i].type();
         }
 
         // Can't instantiate an abstract type
         if (type.isAbstract()) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Cannot instantiate an abstract type:" + type.toString());
         }
 
@@ -77,7 +77,7 @@ class JNewOp extends JExpression {
         constructor = type.constructorFor(argTypes);
 
         if (constructor == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "Cannot find constructor: "
                             + Type.signatureFor(type.toString(), argTypes));
         }
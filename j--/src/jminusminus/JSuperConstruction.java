@@ -12,7 +12,7 @@ import static jminusminus.CLConstants.*;
 class JSuperConstruction extends JExpression {
 
     /** Arguments to the constructor. */
-    private ArrayList<JExpression> arguments;
+    private JExpression[] arguments;
 
     /** Constructor representation of the constructor. */
     private Constructor constructor;
@@ -38,7 +38,7 @@ class JSuperConstruction extends JExpression {
 
     protected JSuperConstruction(int line, ArrayList<JExpression> arguments) {
         super(line);
-        this.arguments = arguments;
+        this.arguments = arguments.toArray(new JExpression[arguments.size()]);
     }
 
     /**
@@ -66,14 +66,14 @@ class JSuperConstruction extends JExpression {
 
         // Analyze the arguments, collecting
         // their types (in Class form) as argTypes.
-        argTypes = new Type[arguments.size()];
-        for (int i = 0; i < arguments.size(); i++) {
-            arguments.set(i, (JExpression) arguments.get(i).analyze(context));
-            argTypes[i] = arguments.get(i).type();
+        argTypes = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = (JExpression) arguments[i].analyze(context);
+            argTypes[i] = arguments[i].type();
         }
 
         if (!properUseOfConstructor) {
-            JAST.compilationUnit.reportSemanticError(line(), "super"
+            context.compilationUnit().reportSemanticError(line(), "super"
                     + Type.argTypesAsString(argTypes)
                     + " must be first statement in the constructor's body.");
             return this;
@@ -83,14 +83,14 @@ class JSuperConstruction extends JExpression {
         Type superClass = ((JTypeDecl) context.classContext.definition())
                 .thisType().superClass();
         if (superClass == null) {
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     ((JTypeDecl) context.classContext.definition()).thisType()
                             + " has no super class.");
         }
         constructor = superClass.constructorFor(argTypes);
 
         if (constructor == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "No such constructor: super"
                             + Type.argTypesAsString(argTypes));
 
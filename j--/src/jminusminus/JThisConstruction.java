@@ -12,7 +12,7 @@ import static jminusminus.CLConstants.*;
 class JThisConstruction extends JExpression {
 
     /** Arguments to the constructor. */
-    private ArrayList<JExpression> arguments;
+    private JExpression[] arguments;
 
     /** Constructor representation of the constructor. */
     private Constructor constructor;
@@ -38,7 +38,7 @@ class JThisConstruction extends JExpression {
 
     protected JThisConstruction(int line, ArrayList<JExpression> arguments) {
         super(line);
-        this.arguments = arguments;
+        this.arguments = arguments.toArray(new JExpression[arguments.size()]);
     }
 
     /**
@@ -66,14 +66,14 @@ class JThisConstruction extends JExpression {
 
         // Analyze the arguments, collecting
         // their types (in Class form) as argTypes.
-        argTypes = new Type[arguments.size()];
-        for (int i = 0; i < arguments.size(); i++) {
-            arguments.set(i, (JExpression) arguments.get(i).analyze(context));
-            argTypes[i] = arguments.get(i).type();
+        argTypes = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = (JExpression) arguments[i].analyze(context);
+            argTypes[i] = arguments[i].type();
         }
 
         if (!properUseOfConstructor) {
-            JAST.compilationUnit.reportSemanticError(line(), "this"
+            context.compilationUnit().reportSemanticError(line(), "this"
                     + Type.argTypesAsString(argTypes)
                     + " must be first statement in the constructor's body.");
             return this;
@@ -84,7 +84,7 @@ class JThisConstruction extends JExpression {
                 .thisType().constructorFor(argTypes);
 
         if (constructor == null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            context.compilationUnit().reportSemanticError(line(),
                     "No such constructor: this"
                             + Type.argTypesAsString(argTypes));
 
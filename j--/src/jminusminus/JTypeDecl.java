@@ -37,6 +37,16 @@ interface JTypeDecl {
 
     public String name();
 
+    /**
+     * Does this declaration have syntax errors (from which the parser
+     * recovered)? If so, it is pre-analyzed (so that other types may refer to
+     * it), but neither analyzed nor translated.
+     * 
+     * @return true or false.
+     */
+
+    public boolean hasSyntaxErrors();
+
     /**
      * Return the super class' type.
      * 
@@ -86,7 +86,7 @@ class JNegateOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         arg = arg.analyze(context);
-        arg.type().mustMatchExpected(line(), Type.INT);
+        arg.type().mustMatchExpected(context, line(), Type.INT);
         type = Type.INT;
         return this;
     }
@@ -138,7 +138,7 @@ class JLogicalNotOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         arg = (JExpression) arg.analyze(context);
-        arg.type().mustMatchExpected(line(), Type.BOOLEAN);
+        arg.type().mustMatchExpected(context, line(), Type.BOOLEAN);
         type = Type.BOOLEAN;
         return this;
     }
@@ -210,12 +210,12 @@ class JPostDecrementOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         if (!(arg instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     "Operand to expr-- must have an LValue.");
             type = Type.ANY;
         } else {
             arg = (JExpression) arg.analyze(context);
-            arg.type().mustMatchExpected(line(), Type.INT);
+            arg.type().mustMatchExpected(context, line(), Type.INT);
             type = Type.INT;
         }
         return this;
@@ -292,12 +292,12 @@ class JPreIncrementOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         if (!(arg instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     "Operand to ++expr must have an LValue.");
             type = Type.ANY;
         } else {
             arg = (JExpression) arg.analyze(context);
-            arg.type().mustMatchExpected(line(), Type.INT);
+            arg.type().mustMatchExpected(context, line(), Type.INT);
             type = Type.INT;
         }
         return this;
@@ -371,7 +371,7 @@ class JUnaryPlusOp extends JUnaryExpression {
 
     public JExpression analyze(Context context) {
         arg = arg.analyze(context);
-        arg.type().mustMatchExpected(line(), Type.INT);
+        arg.type().mustMatchExpected(context, line(), Type.INT);
         type = Type.INT;
         return this;
     }
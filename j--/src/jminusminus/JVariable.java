@@ -71,24 +71,26 @@ class JVariable extends JExpression implements JLhs {
             Field field = definingType.fieldFor(name);
             if (field == null) {
                 type = Type.ANY;
-                JAST.compilationUnit.reportSemanticError(line,
+                context.compilationUnit().reportSemanticError(line,
                         "Cannot find name: " + name);
             } else {
                 // Rewrite a variable denoting a field as an
                 // explicit field selection
                 type = field.type();
+                NodeArena arena = context.compilationUnit().compilation()
+                        .arena();
                 JExpression newTree = new JFieldSelection(line(), field
                         .isStatic()
                         || (context.methodContext() != null && context
-                                .methodContext().isStatic()) ? new JVariable(
-                        line(), definingType.toString()) : new JThis(line),
-                        name);
+                                .methodContext().isStatic()) ? arena
+                        .implicitType(line(), context) : arena.implicitThis(
+                        line(), context), name);
                 return (JExpression) newTree.analyze(context);
             }
         } else {
             if (!analyzeLhs && iDefn instanceof LocalVariableDefn
                     && !((LocalVariableDefn) iDefn).isInitialized()) {
-                JAST.compilationUnit.reportSemanticError(line, "Variable "
+                context.compilationUnit().reportSemanticError(line, "Variable "
                         + name + " might not have been initialized");
             }
             type = iDefn.type();
@@ -111,7 +113,7 @@ class JVariable extends JExpression implements JLhs {
             // Could (now) be a JFieldSelection, but if it's
             // (still) a JVariable
             if (iDefn != null && !(iDefn instanceof LocalVariableDefn)) {
-                JAST.compilationUnit.reportSemanticError(line(), name
+                context.compilationUnit().reportSemanticError(line(), name
                         + " is a bad lhs to a  =");
             }
         }
@@ -16,7 +16,7 @@ class JVariableDeclaration extends JStatement {
     private ArrayList<String> mods;
 
     /** Variable declarators. */
-    private ArrayList<JVariableDeclarator> decls;
+    private JVariableDeclarator[] decls;
 
     /** Variable initializers. */
     private ArrayList<JStatement> initializations;
@@ -38,7 +38,7 @@ class JVariableDeclaration extends JStatement {
             ArrayList<JVariableDeclarator> decls) {
         super(line);
         this.mods = mods;
-        this.decls = decls;
+        this.decls = decls.toArray(new JVariableDeclarator[decls.size()]);
         initializations = new ArrayList<JStatement>();
     }
 
@@ -74,7 +74,7 @@ class JVariableDeclaration extends JStatement {
             IDefn previousDefn = context.lookup(decl.name());
             if (previousDefn != null
                     && previousDefn instanceof LocalVariableDefn) {
-                JAST.compilationUnit.reportSemanticError(decl.line(),
+                context.compilationUnit().reportSemanticError(decl.line(),
                         "The name " + decl.name()
                                 + " overshadows another local variable.");
             }
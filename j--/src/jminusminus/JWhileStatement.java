@@ -45,7 +45,7 @@ class JWhileStatement extends JStatement {
 
     public JWhileStatement analyze(Context context) {
         condition.analyze(context);
-        condition.type().mustMatchExpected(line(), Type.BOOLEAN);
+        condition.type().mustMatchExpected(context, line(), Type.BOOLEAN);
         body.analyze(context);
         return this;
     }
@@ -2,8 +2,10 @@
 
 package jminusminus;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 /**
  * Driver class for j-- compiler using JavaCC front-end. This is the main entry
@@ -30,11 +32,17 @@ import java.io.FileNotFoundException;
  * Again, codegen() recursively descends the tree, down to its leaves,
  * generating JVM code for producing a .class or .s (SPIM) file for each defined
  * type (class).
+ * 
+ * Any number of source files (or directories containing them) may be given;
+ * they are compiled together as one program. Parsing and code generation run
+ * on a fork-join pool (see Compilation) whose size is set with -j. The phases
+ * are run as the passes of a PassManager, as in Main; with -time-passes, what
+ * each took is reported (see PassMetrics).
  */
 
 public class JavaCCMain {
 
-    /** Whether an error occurred during compilation. */
+    /** Whether an error occurred during the last compilation run by main(). */
     private static boolean errorHasOccurred;
 
     /**
@@ -42,21 +50,53 @@ public class JavaCCMain {
      */
 
     public static void main(String args[]) {
+        errorHasOccurred = run(args);
+    }
+
+    /**
+     * Run the compiler with the specified command-line arguments. All of the
+     * state of a run is held by its Compilation, so that several runs may
+     * proceed at once in one JVM (from different threads).
+     * 
+     * @param args
+     *            command-line arguments.
+     * @return true if an error occurred during compilation; false otherwise.
+     */
+
+    public static boolean run(String args[]) {
         String caller = "java jminusminus.JavaCCMain";
-        String sourceFile = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
         String debugOption = "";
         String outputDir = ".";
         boolean spimOutput = false;
         String registerAllocation = "";
-        errorHasOccurred = false;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int registerCount = NPhysicalRegister.DEFAULT_COUNT;
+        String classPath = null;
+        boolean timePasses = false;
+        boolean errorHasOccurred = false;
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("javaccj--")) {
                 caller = "javaccj--";
             } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
+                sourceFiles.add(args[i]);
+            } else if (new File(args[i]).isDirectory()) {
+                Compilation.addSourceFiles(new File(args[i]), sourceFiles);
             } else if (args[i].equals("-t") || args[i].equals("-p")
                     || args[i].equals("-pa") || args[i].equals("-a")) {
                 debugOption = args[i];
+            } else if (args[i].equals("-time-passes")) {
+                timePasses = true;
+            } else if (args[i].equals("-j") && (i + 1) < args.length) {
+                try {
+                    parallelism = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    printUsage(caller);
+                    return false;
+                }
+            } else if ((args[i].equals("-classpath") || args[i].equals("-cp"))
+                    && (i + 1) < args.length) {
+                classPath = args[++i];
             } else if (args[i].endsWith("-d") && (i + 1) < args.length) {
                 outputDir = args[++i];
             } else if (args[i].endsWith("-s") && (i + 1) < args.length) {
@@ -67,110 +107,199 @@ public class JavaCCMain {
                         && !registerAllocation.equals("graph")
                         || registerAllocation.equals("")) {
                     printUsage(caller);
-                    return;
+                    return false;
                 }
             } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
-                NPhysicalRegister.MAX_COUNT = Math.min(18, Integer
+                registerCount = Math.min(NPhysicalRegister.MAX_COUNT, Integer
                         .parseInt(args[++i]));
-                NPhysicalRegister.MAX_COUNT = Math.max(1,
-                        NPhysicalRegister.MAX_COUNT);
+                registerCount = Math.max(1, registerCount);
             } else {
                 printUsage(caller);
-                return;
+                return false;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sourceFiles.isEmpty()) {
             printUsage(caller);
-            return;
-        }
-
-        JavaCCParserTokenManager javaCCScanner = null;
-        try {
-            javaCCScanner = new JavaCCParserTokenManager(new SimpleCharStream(
-                    new FileInputStream(sourceFile), 1, 1));
-        } catch (FileNotFoundException e) {
-            System.err.println("Error: file " + sourceFile + " not found.");
+            return false;
         }
 
         if (debugOption.equals("-t")) {
             // Just tokenize input and print the tokens to STDOUT
-            Token token;
-            do {
-                token = javaCCScanner.getNextToken();
-                if (token.kind == JavaCCParserConstants.ERROR) {
-                    System.err.printf(
-                            "%s:%d: Unidentified input token: '%s'\n",
-                            sourceFile, token.beginLine, token.image);
-                    errorHasOccurred |= true;
-                } else {
-                    System.out.printf("%d\t : %s = %s\n", token.beginLine,
-                            JavaCCParserConstants.tokenImage[token.kind],
-                            token.image);
-                }
-            } while (token.kind != JavaCCParserConstants.EOF);
-            return;
+            for (String sourceFile : sourceFiles) {
+                errorHasOccurred |= tokenize(sourceFile);
+            }
+            return errorHasOccurred;
         }
 
-        // Parse input
-        JCompilationUnit ast = null;
-        JavaCCParser javaCCParser = new JavaCCParser(javaCCScanner);
-        javaCCParser.fileName(sourceFile);
-        try {
-            ast = javaCCParser.compilationUnit();
-            errorHasOccurred |= javaCCParser.errorHasOccurred();
-        } catch (ParseException e) {
-            System.err.println(e.getMessage());
+        Compilation compilation = new Compilation(parallelism, registerCount);
+        if (classPath != null) {
+            compilation.setClassPath(classPath);
         }
-        if (debugOption.equals("-p")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
+        if (timePasses) {
+            compilation.recordPassMetrics();
         }
-        if (errorHasOccurred) {
-            return;
+        try {
+            compile(compilation, sourceFiles, debugOption, outputDir,
+                    spimOutput, registerAllocation);
+            if (timePasses) {
+                compilation.passMetrics().writeTo(System.err);
+            }
+        } finally {
+            compilation.shutdown();
         }
+        return compilation.errorHasOccurred();
+    }
 
-        // Do pre-analysis
-        ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-pa")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
+    /**
+     * Run the compiler proper on the specified source files.
+     * 
+     * @param compilation
+     *            the compilation to which the parsed units are added.
+     * @param sourceFiles
+     *            the source files.
+     * @param debugOption
+     *            one of -p, -pa or -a to stop after the corresponding phase
+     *            and print the AST to STDOUT; "" otherwise.
+     * @param outputDir
+     *            where to place the output files.
+     * @param spimOutput
+     *            whether SPIM code is generated.
+     * @param registerAllocation
+     *            register allocation scheme for SPIM code.
+     */
+
+    private static void compile(final Compilation compilation,
+            final ArrayList<String> sourceFiles, String debugOption,
+            String outputDir, boolean spimOutput, String registerAllocation) {
+        PassManager<Compilation> passes = new PassManager<Compilation>(
+                compilation.passMetrics());
+
+        // Parse input, one task per source file
+        passes.add(new Compilation.ASTPass("parse") {
+            public boolean run(Compilation compilation) {
+                parse(compilation, sourceFiles);
+                return !compilation.errorHasOccurred();
+            }
+        });
+        passes.add(Compilation.preAnalyzePass());
+        passes.add(Compilation.analyzePass());
+        passes.add(Compilation.codegenPass(outputDir, !spimOutput));
+
+        // If SPIM output was asked for, convert the in-memory
+        // JVM instructions to SPIM using the specified register
+        // allocation scheme.
+        passes.add(Compilation.nativeCodegenPass(outputDir,
+                registerAllocation, spimOutput));
+
+        if (!debugOption.equals("")) {
+            passes.stopAfter(debugOption.equals("-p") ? "parse" : debugOption
+                    .equals("-pa") ? "preAnalyze" : "analyze");
         }
-        if (errorHasOccurred) {
-            return;
+        if (passes.run(compilation) && !debugOption.equals("")) {
+            writeToStdOut(compilation);
         }
+    }
 
-        // Do analysis
-        ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-a")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
+    /**
+     * Parse the specified source files, one task per file, and add the
+     * resulting ASTs to the compilation.
+     * 
+     * @param compilation
+     *            the compilation to which the parsed units are added.
+     * @param sourceFiles
+     *            the source files.
+     */
+
+    private static void parse(final Compilation compilation,
+            ArrayList<String> sourceFiles) {
+        ArrayList<Callable<JCompilationUnit>> parses = new ArrayList<Callable<JCompilationUnit>>();
+        for (final String sourceFile : sourceFiles) {
+            parses.add(new Callable<JCompilationUnit>() {
+                public JCompilationUnit call() {
+                    JavaCCParserTokenManager javaCCScanner = null;
+                    try {
+                        javaCCScanner = new JavaCCParserTokenManager(
+                                new SimpleCharStream(new SourceReader(
+                                        sourceFile), 1, 1));
+                    } catch (FileNotFoundException e) {
+                        System.err.println("Error: file " + sourceFile
+                                + " not found.");
+                        compilation.recordError(true);
+                        return null;
+                    }
+                    JavaCCParser javaCCParser = new JavaCCParser(
+                            javaCCScanner);
+                    javaCCParser.fileName(sourceFile);
+                    try {
+                        JCompilationUnit ast = javaCCParser.compilationUnit();
+                        compilation.recordError(javaCCParser
+                                .errorHasOccurred());
+                        return ast;
+                    } catch (ParseException e) {
+                        System.err.println(e.getMessage());
+                        compilation.recordError(true);
+                        return null;
+                    }
+                }
+            });
         }
+        for (JCompilationUnit ast : compilation.invokeAll(parses)) {
+            if (ast != null) {
+                compilation.addCompilationUnit(ast);
+            }
+        }
+    }
+
+    /**
+     * Tokenize the specified source file and print the tokens to STDOUT.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @return true if an error occurred; false otherwise.
+     */
 
-        // Generate JVM code
-        CLEmitter clEmitter = new CLEmitter(!spimOutput);
-        clEmitter.destinationDir(outputDir);
-        ast.codegen(clEmitter);
-        errorHasOccurred |= clEmitter.errorHasOccurred();
-        if (errorHasOccurred) {
-            return;
+    private static boolean tokenize(String sourceFile) {
+        JavaCCParserTokenManager javaCCScanner = null;
+        try {
+            javaCCScanner = new JavaCCParserTokenManager(new SimpleCharStream(
+                    new SourceReader(sourceFile), 1, 1));
+        } catch (FileNotFoundException e) {
+            System.err.println("Error: file " + sourceFile + " not found.");
+            return true;
         }
+        boolean errorHasOccurred = false;
+        Token token;
+        do {
+            token = javaCCScanner.getNextToken();
+            if (token.kind == JavaCCParserConstants.ERROR) {
+                System.err.printf("%s:%d: Unidentified input token: '%s'\n",
+                        sourceFile, token.beginLine, token.image);
+                errorHasOccurred = true;
+            } else {
+                System.out.printf("%d\t : %s = %s\n", token.beginLine,
+                        JavaCCParserConstants.tokenImage[token.kind],
+                        token.image);
+            }
+        } while (token.kind != JavaCCParserConstants.EOF);
+        return errorHasOccurred;
+    }
 
-        // If SPIM output was asked for, convert the in-memory
-        // JVM instructions to SPIM using the specified register
-        // allocation scheme.
-        if (spimOutput) {
-            NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(),
-                    registerAllocation);
-            nEmitter.destinationDir(outputDir);
-            nEmitter.write();
-            errorHasOccurred |= nEmitter.errorHasOccurred();
+    /**
+     * Write the ASTs of the compilation units to STDOUT.
+     * 
+     * @param compilation
+     *            the compilation.
+     */
+
+    private static void writeToStdOut(Compilation compilation) {
+        for (JCompilationUnit ast : compilation.compilationUnits()) {
+            ast.writeToStdOut(new PrettyPrinter());
         }
     }
 
     /**
-     * Return true if an error occurred during compilation; false otherwise.
+     * Return true if an error occurred during the last compilation run by
+     * main(); false otherwise.
      * 
      * @return true or false.
      */
@@ -189,7 +318,7 @@ public class JavaCCMain {
     private static void printUsage(String caller) {
         String usage = "Usage: "
                 + caller
-                + " <options> <source file>\n"
+                + " <options> <source files or directories>\n"
                 + "where possible options include:\n"
                 + "  -t Only tokenize input and print tokens to STDOUT\n"
                 + "  -p Only parse input and print AST to STDOUT\n"
@@ -199,6 +328,9 @@ public class JavaCCMain {
                 + "and print AST to STDOUT\n"
                 + "  -s <naive|linear|graph> Generate SPIM code\n"
                 + "  -r <num> Max. physical registers (1-18) available for allocation; default = 8\n"
+                + "  -time-passes Print the time, allocation and IR size of each compiler pass to STDERR\n"
+                + "  -j <num> Number of threads used for parsing and code generation; default = number of processors\n"
+                + "  -classpath <path> Specify where to find library classes; default = the compiler's class path\n"
                 + "  -d <dir> Specify where to place output files; default = .";
         System.out.println(usage);
     }
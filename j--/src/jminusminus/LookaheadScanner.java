@@ -3,28 +3,52 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
-import java.util.Stack;
-import java.util.Vector;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * A lexical analyzer for j-- that interfaces with the hand-written parser
- * (Parser.java). It provides a backtracking mechanism, and makes use of the
- * underlying hand-written Scanner.
+ * (Parser.java). It provides a backtracking mechanism, and makes use of an
+ * underlying scanner: the hand-written Scanner, or the table-driven
+ * DFAScanner.
+ * 
+ * Scanned tokens are kept in parallel arrays (of kinds, images and lines),
+ * and the current token is just an index into them; recording a position
+ * pushes that index on a stack, and returning to the position pops it, so no
+ * tokens are copied when looking ahead. Once no position is recorded and the
+ * tokens looked ahead at have been consumed, the arrays are emptied again.
+ * No TokenInfo is made per token: token() and previousToken() answer the same
+ * two (flyweight) TokenInfo objects, updated as the scanner moves.
  */
 
 class LookaheadScanner {
 
-    /** The underlying hand-written scanner. */
-    private Scanner scanner;
+    /** The underlying scanner. */
+    private TokenScanner scanner;
 
-    /** Backtracking queue. */
-    private Vector<TokenInfo> backtrackingQueue;
+    /** Kinds of the tokens scanned (and kept for backtracking). */
+    private TokenKind[] kinds;
 
-    /** Token queue. */
-    private Vector<TokenInfo> nextQueue;
+    /** Images of the tokens scanned. */
+    private String[] images;
 
-    /** Stack of token queues for nested lookahead. */
-    private Stack<Vector<TokenInfo>> queueStack;
+    /** Lines of the tokens scanned. */
+    private int[] lines;
+
+    /** Number of tokens in the arrays. */
+    private int count;
+
+    /** Index of the current token in the arrays. */
+    private int position;
+
+    /** Number of tokens let go of (emptied out of the arrays). */
+    private int base;
+
+    /** Stack of recorded positions, for nested lookahead. */
+    private int[] marks;
+
+    /** Number of recorded positions. */
+    private int depth;
 
     /** Whether we are looking ahead. */
     public boolean isLookingAhead;
@@ -45,11 +69,46 @@ class LookaheadScanner {
      */
 
     public LookaheadScanner(String fileName) throws FileNotFoundException {
-        scanner = new Scanner(fileName);
-        backtrackingQueue = new Vector<TokenInfo>();
-        nextQueue = new Vector<TokenInfo>();
-        queueStack = new Stack<Vector<TokenInfo>>();
+        this(new Scanner(fileName));
+    }
+
+    /**
+     * Construct a LookaheadScanner reading the source from the specified
+     * reader rather than from the file system.
+     * 
+     * @param fileName
+     *            the name under which errors in the source are reported.
+     * @param source
+     *            the source.
+     * @param diagnosticListener
+     *            listener to which lexical and syntax errors are reported.
+     */
+
+    public LookaheadScanner(String fileName, Reader source,
+            DiagnosticListener diagnosticListener) {
+        this(new Scanner(fileName, source, diagnosticListener));
+    }
+
+    /**
+     * Construct a LookaheadScanner on top of the specified scanner.
+     * 
+     * @param scanner
+     *            the underlying scanner.
+     */
+
+    public LookaheadScanner(TokenScanner scanner) {
+        this.scanner = scanner;
+        kinds = new TokenKind[64];
+        images = new String[64];
+        lines = new int[64];
+        count = 1;
+        position = 0;
+        base = 0;
+        marks = new int[16];
+        depth = 0;
         isLookingAhead = false;
+        previousToken = new TokenInfo(null, null, 0);
+        token = new TokenInfo(null, null, 0);
     }
 
     /**
@@ -57,30 +116,43 @@ class LookaheadScanner {
      */
 
     public void next() {
-        previousToken = token;
-        if (backtrackingQueue.size() == 0) {
-            token = scanner.getNextToken();
-        } else {
-            token = backtrackingQueue.remove(0);
+        if (depth == 0 && position + 1 == count) {
+            // Nothing to backtrack to; keep just the current token
+            kinds[0] = kinds[position];
+            images[0] = images[position];
+            lines[0] = lines[position];
+            base += position;
+            position = 0;
+            count = 1;
         }
-        if (isLookingAhead) {
-            nextQueue.add(token);
+        position++;
+        if (position == count) {
+            if (count == kinds.length) {
+                kinds = Arrays.copyOf(kinds, 2 * count);
+                images = Arrays.copyOf(images, 2 * count);
+                lines = Arrays.copyOf(lines, 2 * count);
+            }
+            kinds[count] = scanner.scan();
+            images[count] = scanner.image();
+            lines[count] = scanner.line();
+            count++;
         }
+        select();
     }
 
     /**
      * Record the current position in the input, so that we can start looking
-     * ahead in the input (and later return to this position). We'll queue up
-     * the current and subsequent tokens until returnToPosition() is invoked.
+     * ahead in the input (and later return to this position). We'll keep the
+     * current and subsequent tokens until returnToPosition() is invoked.
      * These recordPosition's can be nested.
      */
 
     public void recordPosition() {
         isLookingAhead = true;
-        queueStack.push(nextQueue);
-        nextQueue = new Vector<TokenInfo>();
-        nextQueue.add(previousToken);
-        nextQueue.add(token);
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, 2 * depth);
+        }
+        marks[depth++] = position;
     }
 
     /**
@@ -89,20 +161,41 @@ class LookaheadScanner {
      */
 
     public void returnToPosition() {
-        while (backtrackingQueue.size() > 0) {
-            nextQueue.add(backtrackingQueue.remove(0));
-        }
-        backtrackingQueue = nextQueue;
-        nextQueue = queueStack.pop();
-        isLookingAhead = !(queueStack.empty());
+        position = marks[--depth];
+        isLookingAhead = depth > 0;
 
         // Restore previous and current tokens
-        previousToken = backtrackingQueue.remove(0);
-        token = backtrackingQueue.remove(0);
+        select();
+    }
+
+    /**
+     * Make the current and previous tokens those at position.
+     */
+
+    private void select() {
+        if (position > 0) {
+            previousToken.set(kinds[position - 1], images[position - 1],
+                    lines[position - 1]);
+        }
+        token.set(kinds[position], images[position], lines[position]);
     }
 
     /**
-     * The currently scanned token.
+     * Return the index of the current token in the input, the first token
+     * being at 0. It grows as tokens are scanned (and goes back when
+     * returning to a recorded position), so comparing indexes tells whether
+     * tokens have been scanned in between.
+     * 
+     * @return the index of the current token.
+     */
+
+    public int index() {
+        return base + position;
+    }
+
+    /**
+     * The currently scanned token. The same TokenInfo is answered for every
+     * token, so it must not be held on to.
      * 
      * @return the current token.
      */
@@ -114,7 +207,7 @@ class LookaheadScanner {
     /**
      * The previously scanned token. We use this in the parser to get at a
      * token's semantic info (for example an identifier's name), after we've
-     * scanned it.
+     * scanned it. As with token(), the same TokenInfo is answered every time.
      * 
      * @return the previous token.
      */
@@ -143,4 +236,14 @@ class LookaheadScanner {
         return scanner.fileName();
     }
 
+    /**
+     * Return the listener to which errors in the source are reported.
+     * 
+     * @return the diagnostic listener.
+     */
+
+    public DiagnosticListener diagnosticListener() {
+        return scanner.diagnosticListener();
+    }
+
 }
@@ -2,8 +2,10 @@
 
 package jminusminus;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
 import static jminusminus.TokenKind.EOF;
 
 /**
@@ -15,7 +17,9 @@ import static jminusminus.TokenKind.EOF;
  * (2) It builds a scanner.
  * 
  * (3) It builds a parser (using the scanner) and parses the input for producing
- * an abstact syntax tree (AST).
+ * an abstact syntax tree (AST). The parser recovers from syntax errors, so
+ * that all of them are reported; the classes without any are then analyzed
+ * (for their semantic errors) as usual, but no code is generated.
  * 
  * (4) It sends the preAnalyze() message to that AST, which recursively descends
  * the tree so far as the memeber headers for declaring types and members in the
@@ -31,11 +35,27 @@ import static jminusminus.TokenKind.EOF;
  * Again, codegen() recursively descends the tree, down to its leaves,
  * generating JVM code for producing a .class or .s (SPIM) file for each defined
  * type (class).
+ * 
+ * Any number of source files (or directories containing them) may be given;
+ * they are compiled together as one program. Parsing and code generation run
+ * on a fork-join pool (see Compilation) whose size is set with -j. With -i,
+ * only the units affected by changes since the last compilation are analyzed
+ * and translated (see DependencyGraph). Library classes are read from the
+ * class path given with -classpath, which defaults to the compiler's own (see
+ * SymbolLoader). With -target, class files of a newer version than 49 (Java 5)
+ * are generated, with the StackMapTable attributes that their type-checking
+ * verifier requires (see CLEmitter). With -Xstats, the memory taken by the
+ * ASTs is audited (see ASTStats) once they have been compiled.
+ * 
+ * The phases are run as the passes of a PassManager (see Pass); those that
+ * only some options call for (-i, -s) are enabled by them. With -time-passes
+ * (or -time-passes-json), each pass is timed, and its allocation and the size
+ * of the IR it leaves are reported (see PassMetrics).
  */
 
 public class Main {
 
-    /** Whether an error occurred during compilation. */
+    /** Whether an error occurred during the last compilation run by main(). */
     private static boolean errorHasOccurred;
 
     /**
@@ -43,21 +63,96 @@ public class Main {
      */
 
     public static void main(String args[]) {
+        errorHasOccurred = run(args);
+    }
+
+    /**
+     * Run the compiler with the specified command-line arguments. All of the
+     * state of a run is held by its Compilation, so that several runs may
+     * proceed at once in one JVM (from different threads).
+     * 
+     * @param args
+     *            command-line arguments.
+     * @return true if an error occurred during compilation; false otherwise.
+     */
+
+    public static boolean run(String args[]) {
+        return run(args, new ArrayList<String>());
+    }
+
+    /**
+     * Run the compiler with the specified command-line arguments, adding the
+     * names of the files it writes to the given list.
+     * 
+     * @param args
+     *            command-line arguments.
+     * @param outputFiles
+     *            list to which the names of the output files are added.
+     * @return true if an error occurred during compilation; false otherwise.
+     */
+
+    public static boolean run(String args[], ArrayList<String> outputFiles) {
         String caller = "java jminusminus.Main";
-        String sourceFile = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
         String debugOption = "";
         String outputDir = ".";
         boolean spimOutput = false;
         String registerAllocation = "";
-        errorHasOccurred = false;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int registerCount = NPhysicalRegister.DEFAULT_COUNT;
+        String classPath = null;
+        int majorVersion = CLConstants.MAJOR_VERSION;
+        String cacheDir = null;
+        boolean dfaScanner = false;
+        boolean parallelScan = false;
+        boolean xstats = false;
+        boolean timePasses = false;
+        String timePassesJson = null;
+        boolean errorHasOccurred = false;
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("j--")) {
                 caller = "j--";
             } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
+                sourceFiles.add(args[i]);
+            } else if (new File(args[i]).isDirectory()) {
+                Compilation.addSourceFiles(new File(args[i]), sourceFiles);
             } else if (args[i].equals("-t") || args[i].equals("-p")
                     || args[i].equals("-pa") || args[i].equals("-a")) {
                 debugOption = args[i];
+            } else if (args[i].equals("-dfa")) {
+                dfaScanner = true;
+            } else if (args[i].equals("-ps")) {
+                parallelScan = true;
+            } else if (args[i].equals("-Xstats")) {
+                xstats = true;
+            } else if (args[i].equals("-time-passes")) {
+                timePasses = true;
+            } else if (args[i].equals("-time-passes-json")
+                    && (i + 1) < args.length) {
+                timePassesJson = args[++i];
+            } else if (args[i].equals("-j") && (i + 1) < args.length) {
+                try {
+                    parallelism = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    printUsage(caller);
+                    return false;
+                }
+            } else if (args[i].equals("-i") && (i + 1) < args.length) {
+                cacheDir = args[++i];
+            } else if ((args[i].equals("-classpath") || args[i].equals("-cp"))
+                    && (i + 1) < args.length) {
+                classPath = args[++i];
+            } else if (args[i].equals("-target") && (i + 1) < args.length) {
+                try {
+                    majorVersion = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    majorVersion = -1;
+                }
+                if (majorVersion < CLConstants.MAJOR_VERSION
+                        || majorVersion > CLConstants.MAX_MAJOR_VERSION) {
+                    printUsage(caller);
+                    return false;
+                }
             } else if (args[i].endsWith("-d") && (i + 1) < args.length) {
                 outputDir = args[++i];
             } else if (args[i].endsWith("-s") && (i + 1) < args.length) {
@@ -68,101 +163,220 @@ public class Main {
                         && !registerAllocation.equals("graph")
                         || registerAllocation.equals("")) {
                     printUsage(caller);
-                    return;
+                    return false;
                 }
             } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
-                NPhysicalRegister.MAX_COUNT = Math.min(18, Integer
+                registerCount = Math.min(NPhysicalRegister.MAX_COUNT, Integer
                         .parseInt(args[++i]));
-                NPhysicalRegister.MAX_COUNT = Math.max(1,
-                        NPhysicalRegister.MAX_COUNT);
+                registerCount = Math.max(1, registerCount);
             } else {
                 printUsage(caller);
-                return;
+                return false;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sourceFiles.isEmpty()) {
             printUsage(caller);
-            return;
-        }
-
-        LookaheadScanner scanner = null;
-        try {
-            scanner = new LookaheadScanner(sourceFile);
-        } catch (FileNotFoundException e) {
-            System.err.println("Error: file " + sourceFile + " not found.");
-            return;
+            return false;
         }
 
         if (debugOption.equals("-t")) {
             // Just tokenize input and print the tokens to STDOUT
-            TokenInfo token;
-            do {
-                scanner.next();
-                token = scanner.token();
-                System.out.printf("%d\t : %s = %s\n", token.line(), token
-                        .tokenRep(), token.image());
-            } while (token.kind() != EOF);
-            errorHasOccurred |= scanner.errorHasOccured();
-            return;
+            for (String sourceFile : sourceFiles) {
+                errorHasOccurred |= tokenize(sourceFile, dfaScanner,
+                        parallelScan);
+            }
+            return errorHasOccurred;
         }
 
-        // Parse input
-        Parser parser = new Parser(scanner);
-        JCompilationUnit ast = parser.compilationUnit();
-        errorHasOccurred |= parser.errorHasOccurred();
-        if (debugOption.equals("-p")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
-        }
-        if (errorHasOccurred) {
-            return;
+        Compilation compilation = new Compilation(parallelism, registerCount);
+        if (classPath != null) {
+            compilation.setClassPath(classPath);
         }
-
-        // Do pre-analysis
-        ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-pa")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
+        compilation.setMajorVersion(majorVersion);
+        if (timePasses || timePassesJson != null) {
+            compilation.recordPassMetrics();
         }
-        if (errorHasOccurred) {
-            return;
+        try {
+            DependencyGraph dependencyGraph = null;
+            if (cacheDir != null && debugOption.equals("")) {
+                dependencyGraph = new DependencyGraph(cacheDir, new File(
+                        outputDir).getAbsolutePath()
+                        + (spimOutput ? " -s " + registerAllocation + " -r "
+                                + registerCount : "")
+                        + (classPath != null ? " -classpath " + classPath
+                                : "")
+                        + (majorVersion != CLConstants.MAJOR_VERSION ? " -target "
+                                + majorVersion
+                                : ""));
+            }
+            compile(compilation, sourceFiles, debugOption, dfaScanner,
+                    parallelScan, outputDir, spimOutput, registerAllocation, dependencyGraph);
+            if (xstats) {
+                new ASTStats(compilation.compilationUnits())
+                        .writeTo(System.err);
+            }
+            if (timePasses) {
+                compilation.passMetrics().writeTo(System.err);
+            }
+            if (timePassesJson != null) {
+                try {
+                    compilation.passMetrics().writeJson(timePassesJson);
+                } catch (IOException e) {
+                    System.err.println("Error: cannot write the pass "
+                            + "metrics: " + e.getMessage());
+                }
+            }
+        } finally {
+            compilation.shutdown();
         }
+        outputFiles.addAll(compilation.outputFiles());
+        return compilation.errorHasOccurred();
+    }
 
-        // Do analysis
-        ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
-        if (debugOption.equals("-a")) {
-            ast.writeToStdOut(new PrettyPrinter());
-            return;
-        }
-        if (errorHasOccurred) {
-            return;
-        }
+    /**
+     * Run the compiler proper on the specified source files.
+     * 
+     * @param compilation
+     *            the compilation to which the parsed units are added.
+     * @param sourceFiles
+     *            the source files.
+     * @param debugOption
+     *            one of -p, -pa or -a to stop after the corresponding phase
+     *            and print the AST to STDOUT; "" otherwise.
+     * @param dfaScanner
+     *            whether to scan with the DFAScanner rather than the Scanner.
+     * @param parallelScan
+     *            whether to scan large sources in parallel chunks (with the
+     *            ParallelScanner, which overrides dfaScanner).
+     * @param outputDir
+     *            where to place the output files.
+     * @param spimOutput
+     *            whether SPIM code is generated.
+     * @param registerAllocation
+     *            register allocation scheme for SPIM code.
+     * @param dependencyGraph
+     *            dependency graph for compiling only the units affected by
+     *            changes since the last compilation; null to compile every
+     *            unit.
+     */
 
-        // Generate JVM code
-        CLEmitter clEmitter = new CLEmitter(!spimOutput);
-        clEmitter.destinationDir(outputDir);
-        ast.codegen(clEmitter);
-        errorHasOccurred |= clEmitter.errorHasOccurred();
-        if (errorHasOccurred) {
-            return;
-        }
+    private static void compile(final Compilation compilation,
+            ArrayList<String> sourceFiles, String debugOption,
+            boolean dfaScanner, boolean parallelScan,
+            String outputDir, boolean spimOutput, String registerAllocation,
+            final DependencyGraph dependencyGraph) {
+        PassManager<Compilation> passes = new PassManager<Compilation>(
+                compilation.passMetrics());
+
+        // Parse input, one task per source file
+        passes.add(Compilation.parsePass(sourceFiles, new ScannerFactory(
+                dfaScanner, parallelScan)));
+
+        // Delete what was generated for sources since removed, so that it is
+        // not found on the class path
+        passes.add(new Pass<Compilation>("removeDeletedSources",
+                dependencyGraph != null) {
+            public boolean run(Compilation compilation) {
+                dependencyGraph.removeDeletedSources();
+                return true;
+            }
+        });
+        passes.add(Compilation.preAnalyzePass());
+
+        // Leave out the units whose output is up to date
+        passes.add(new Pass<Compilation>("markUpToDate",
+                dependencyGraph != null) {
+            public boolean run(Compilation compilation) {
+                dependencyGraph.markUpToDate(compilation);
+                return true;
+            }
+        });
+        passes.add(Compilation.analyzePass());
+        passes.add(Compilation.codegenPass(outputDir, !spimOutput));
 
         // If SPIM output was asked for, convert the in-memory
         // JVM instructions to SPIM using the specified register
         // allocation scheme.
-        if (spimOutput) {
-            NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(),
-                    registerAllocation);
-            nEmitter.destinationDir(outputDir);
-            nEmitter.write();
-            errorHasOccurred |= nEmitter.errorHasOccurred();
+        passes.add(Compilation.nativeCodegenPass(outputDir,
+                registerAllocation, spimOutput));
+
+        // Remember what was compiled, for the next compilation
+        passes.add(new Pass<Compilation>("saveDependencies",
+                dependencyGraph != null) {
+            public boolean run(Compilation compilation) {
+                if (compilation.errorHasOccurred()) {
+                    return true;
+                }
+                try {
+                    dependencyGraph.save(compilation);
+                } catch (IOException e) {
+                    compilation.diagnosticListener().report(
+                            new Diagnostic(null, 0, "Error: cannot save the "
+                                    + "dependency graph: " + e.getMessage()));
+                    compilation.recordError(true);
+                }
+                return true;
+            }
+        });
+
+        if (!debugOption.equals("")) {
+            passes.stopAfter(debugOption.equals("-p") ? "parse" : debugOption
+                    .equals("-pa") ? "preAnalyze" : "analyze");
+        }
+        if (passes.run(compilation) && !debugOption.equals("")) {
+            writeToStdOut(compilation);
+        }
+    }
+
+    /**
+     * Tokenize the specified source file and print the tokens to STDOUT.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @param dfaScanner
+     *            whether to scan with the DFAScanner rather than the Scanner.
+     * @param parallelScan
+     *            whether to scan large sources in parallel chunks (with the
+     *            ParallelScanner, which overrides dfaScanner).
+     * @return true if an error occurred; false otherwise.
+     */
+
+    private static boolean tokenize(String sourceFile, boolean dfaScanner,
+            boolean parallelScan) {
+        LookaheadScanner scanner = null;
+        try {
+            scanner = new ScannerFactory(dfaScanner, parallelScan)
+                    .newScanner(sourceFile, DiagnosticListener.STDERR);
+        } catch (FileNotFoundException e) {
+            System.err.println("Error: file " + sourceFile + " not found.");
+            return true;
+        }
+        TokenInfo token;
+        do {
+            scanner.next();
+            token = scanner.token();
+            System.out.printf("%d\t : %s = %s\n", token.line(), token
+                    .tokenRep(), token.image());
+        } while (token.kind() != EOF);
+        return scanner.errorHasOccured();
+    }
+
+    /**
+     * Write the ASTs of the compilation units to STDOUT.
+     * 
+     * @param compilation
+     *            the compilation.
+     */
+
+    private static void writeToStdOut(Compilation compilation) {
+        for (JCompilationUnit ast : compilation.compilationUnits()) {
+            ast.writeToStdOut(new PrettyPrinter());
         }
     }
 
     /**
-     * Return true if an error occurred during compilation; false otherwise.
+     * Return true if an error occurred during the last compilation run by
+     * main(); false otherwise.
      * 
      * @return true or false.
      */
@@ -181,7 +395,7 @@ public class Main {
     private static void printUsage(String caller) {
         String usage = "Usage: "
                 + caller
-                + " <options> <source file>\n"
+                + " <options> <source files or directories>\n"
                 + "where possible options include:\n"
                 + "  -t Only tokenize input and print tokens to STDOUT\n"
                 + "  -p Only parse input and print AST to STDOUT\n"
@@ -191,6 +405,15 @@ public class Main {
                 + "and print AST to STDOUT\n"
                 + "  -s <naive|linear|graph> Generate SPIM code\n"
                 + "  -r <num> Max. physical registers (1-18) available for allocation; default = 8\n"
+                + "  -dfa Scan with the table-driven (DFA) scanner rather than the hand-written one\n"
+                + "  -ps Scan large source files in parallel chunks (with the hand-written scanner)\n"
+                + "  -Xstats Print an estimate of the memory taken by the ASTs to STDERR\n"
+                + "  -time-passes Print the time, allocation and IR size of each compiler pass to STDERR\n"
+                + "  -time-passes-json <file> Write the time, allocation and IR size of each compiler pass to <file> as JSON\n"
+                + "  -j <num> Number of threads used for parsing and code generation; default = number of processors\n"
+                + "  -i <dir> Compile only what changed since the last compilation, keeping dependency information in <dir>\n"
+                + "  -classpath <path> Specify where to find library classes; default = the compiler's class path\n"
+                + "  -target <49-61> Class file (major) version to generate; from 50 on, with StackMapTable frames; default = 49\n"
                 + "  -d <dir> Specify where to place output files; default = .";
         System.out.println(usage);
     }
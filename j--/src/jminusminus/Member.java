@@ -3,9 +3,10 @@
 package jminusminus;
 
 /**
- * A wrapper for members (eg Fields, Methods, Constructors) in the Java API.
- * Members are used in message expressions, field selections, and new object
- * construction operations.
+ * A wrapper for the symbols of members (eg Fields, Methods, Constructors),
+ * whether declared in the program or in the Java API. Members are used in
+ * message expressions, field selections, and new object construction
+ * operations.
  */
 
 abstract class Member {
@@ -17,7 +18,7 @@ abstract class Member {
      */
 
     public String name() {
-        return member().getName();
+        return symbol().name();
     }
 
     /**
@@ -27,7 +28,7 @@ abstract class Member {
      */
 
     public Type declaringType() {
-        return Type.typeFor(member().getDeclaringClass());
+        return symbol().declaringType();
     }
 
     /**
@@ -37,7 +38,7 @@ abstract class Member {
      */
 
     public boolean isStatic() {
-        return java.lang.reflect.Modifier.isStatic(member().getModifiers());
+        return java.lang.reflect.Modifier.isStatic(symbol().modifiers());
     }
 
     /**
@@ -47,7 +48,7 @@ abstract class Member {
      */
 
     public boolean isPublic() {
-        return java.lang.reflect.Modifier.isPublic(member().getModifiers());
+        return java.lang.reflect.Modifier.isPublic(symbol().modifiers());
     }
 
     /**
@@ -57,7 +58,7 @@ abstract class Member {
      */
 
     public boolean isProtected() {
-        return java.lang.reflect.Modifier.isProtected(member().getModifiers());
+        return java.lang.reflect.Modifier.isProtected(symbol().modifiers());
     }
 
     /**
@@ -67,7 +68,7 @@ abstract class Member {
      */
 
     public boolean isPrivate() {
-        return java.lang.reflect.Modifier.isPrivate(member().getModifiers());
+        return java.lang.reflect.Modifier.isPrivate(symbol().modifiers());
     }
 
     /**
@@ -77,7 +78,7 @@ abstract class Member {
      */
 
     public boolean isAbstract() {
-        return java.lang.reflect.Modifier.isAbstract(member().getModifiers());
+        return java.lang.reflect.Modifier.isAbstract(symbol().modifiers());
     }
 
     /**
@@ -90,16 +91,16 @@ abstract class Member {
      */
 
     public boolean isFinal() {
-        return java.lang.reflect.Modifier.isFinal(member().getModifiers());
+        return java.lang.reflect.Modifier.isFinal(symbol().modifiers());
     }
 
     /**
-     * Return the member's internal representation.
+     * Return the member's symbol.
      * 
-     * @return the internal representation.
+     * @return the symbol.
      */
 
-    protected abstract java.lang.reflect.Member member();
+    protected abstract MemberSymbol symbol();
 
 }
 
@@ -110,17 +111,17 @@ abstract class Member {
 
 class Method extends Member {
 
-    /** Internal representation of this method. */
-    private java.lang.reflect.Method method;
+    /** Symbol for this method. */
+    private MethodSymbol method;
 
     /**
-     * Construct a Method is constructed from its internal representation.
+     * Construct a Method from its symbol.
      * 
      * @param method
-     *            a Java method in the relection API.
+     *            the method's symbol.
      */
 
-    public Method(java.lang.reflect.Method method) {
+    public Method(MethodSymbol method) {
         this.method = method;
     }
 
@@ -131,12 +132,7 @@ class Method extends Member {
      */
 
     public String toDescriptor() {
-        String descriptor = "(";
-        for (Class paramType : method.getParameterTypes()) {
-            descriptor += Type.typeFor(paramType).toDescriptor();
-        }
-        descriptor += ")" + Type.typeFor(method.getReturnType()).toDescriptor();
-        return descriptor;
+        return method.toDescriptor();
     }
 
     /**
@@ -147,8 +143,8 @@ class Method extends Member {
 
     public String toString() {
         String str = name() + "(";
-        for (Class paramType : method.getParameterTypes()) {
-            str += Type.typeFor(paramType).toString();
+        for (Type paramType : method.paramTypes()) {
+            str += paramType.toString();
         }
         str += ")";
         return str;
@@ -161,7 +157,7 @@ class Method extends Member {
      */
 
     public Type returnType() {
-        return Type.typeFor(method.getReturnType());
+        return method.returnType();
     }
 
     /**
@@ -173,17 +169,15 @@ class Method extends Member {
      */
 
     public boolean equals(Method that) {
-        return Type.argTypesMatch(this.method.getParameterTypes(), that.method
-                .getParameterTypes());
+        return Type.argTypesMatch(this.method.paramTypes(), that.method
+                .paramTypes());
     }
 
     /**
-     * Return the member's internal representation.
-     * 
-     * @return the internal representation.
+     * @inheritDoc
      */
 
-    protected java.lang.reflect.Member member() {
+    protected MemberSymbol symbol() {
         return method;
     }
 
@@ -195,17 +189,17 @@ class Method extends Member {
 
 class Field extends Member {
 
-    /** Internal representation of this field. */
-    private java.lang.reflect.Field field;
+    /** Symbol for this field. */
+    private FieldSymbol field;
 
     /**
-     * Construct a Field is constructed from its internal representation.
+     * Construct a Field from its symbol.
      * 
      * @param field
-     *            a Java field in the relection API.
+     *            the field's symbol.
      */
 
-    public Field(java.lang.reflect.Field field) {
+    public Field(FieldSymbol field) {
         this.field = field;
     }
 
@@ -216,14 +210,14 @@ class Field extends Member {
      */
 
     public Type type() {
-        return Type.typeFor(field.getType());
+        return field.type();
     }
 
     /**
      * @inheritDoc
      */
 
-    protected java.lang.reflect.Member member() {
+    protected MemberSymbol symbol() {
         return field;
     }
 
@@ -235,17 +229,17 @@ class Field extends Member {
 
 class Constructor extends Member {
 
-    /** Internal representation of this constructor. */
-    java.lang.reflect.Constructor constructor;
+    /** Symbol for this constructor. */
+    private MethodSymbol constructor;
 
     /**
-     * Construct a Constructor from its internal representation.
+     * Construct a Constructor from its symbol.
      * 
      * @param constructor
-     *            a Java constructor in the relection API.
+     *            the constructor's symbol.
      */
 
-    public Constructor(java.lang.reflect.Constructor constructor) {
+    public Constructor(MethodSymbol constructor) {
         this.constructor = constructor;
     }
 
@@ -256,29 +250,14 @@ class Constructor extends Member {
      */
 
     public String toDescriptor() {
-        String descriptor = "(";
-        for (Class paramType : constructor.getParameterTypes()) {
-            descriptor += Type.typeFor(paramType).toDescriptor();
-        }
-        descriptor += ")V";
-        return descriptor;
-    }
-
-    /**
-     * Return the type declaring this constructor.
-     * 
-     * @return the declaring type.
-     */
-
-    public Type declaringType() {
-        return Type.typeFor(constructor.getDeclaringClass());
+        return constructor.toDescriptor();
     }
 
     /**
      * @inheritDoc
      */
 
-    protected java.lang.reflect.Member member() {
+    protected MemberSymbol symbol() {
         return constructor;
     }
 
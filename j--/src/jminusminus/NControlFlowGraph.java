@@ -367,6 +367,9 @@ class NBasicBlock {
 
 class NControlFlowGraph {
 
+    /** The emitter translating this cfg to SPIM. */
+    public NEmitter emitter;
+
     /** Constant pool for the class containing the method. */
     private CLConstantPool cp;
 
@@ -377,22 +380,22 @@ class NControlFlowGraph {
     private HashMap<Integer, NBasicBlock> pcToBasicBlock;
 
     /** block identifier. */
-    public static int blockId;
+    public int blockId;
 
     /** HIR instruction identifier. */
-    public static int hirId;
+    public int hirId;
 
     /** HIR instruction identifier. */
-    public static int lirId;
+    public int lirId;
 
     /** Virtual register identifier. */
-    public static int regId;
+    public int regId;
 
     /** Stack offset counter.. */
     public int offset;
 
     /** Loop identifier. */
-    public static int loopIndex;
+    public int loopIndex;
 
     /** Name of the method this cfg corresponds to. */
     public String name;
@@ -443,25 +446,29 @@ class NControlFlowGraph {
      * pool for the class containing the method and the object containing
      * information about the method.
      * 
+     * @param emitter
+     *            the emitter translating this cfg to SPIM.
      * @param cp
      *            constant pool for the class containing the method.
      * @param m
      *            contains information about the method.
      */
 
-    public NControlFlowGraph(CLConstantPool cp, CLMethodInfo m) {
+    public NControlFlowGraph(NEmitter emitter, CLConstantPool cp,
+            CLMethodInfo m) {
+        this.emitter = emitter;
         this.cp = cp;
         this.m = m;
         name = new String(((CLConstantUtf8Info) cp.cpItem(m.nameIndex)).b);
         desc = new String(((CLConstantUtf8Info) cp.cpItem(m.descriptorIndex)).b);
         basicBlocks = new ArrayList<NBasicBlock>();
         pcToBasicBlock = new HashMap<Integer, NBasicBlock>();
-        ArrayList<Integer> code = getByteCode();
+        byte[] code = getByteCode();
         ArrayList<NTuple> tuples = bytecodeToTuples(code);
         if (tuples.size() == 0) {
             return;
         }
-        NTuple[] tupleAt = new NTuple[code.size()];
+        NTuple[] tupleAt = new NTuple[code.length];
         for (NTuple tuple : tuples) {
             tupleAt[tuple.pc] = tuple;
         }
@@ -551,7 +558,7 @@ class NControlFlowGraph {
         // its control flow graph.
         basicBlocks.get(0).successors.add(basicBlocks.get(1));
         basicBlocks.get(1).predecessors.add(basicBlocks.get(0));
-        NBasicBlock[] blockAt = new NBasicBlock[code.size()];
+        NBasicBlock[] blockAt = new NBasicBlock[code.length];
         for (NBasicBlock block : basicBlocks) {
             if (block.tuples.size() == 0) {
                 continue;
@@ -668,7 +675,7 @@ class NControlFlowGraph {
             block.isLoopHead = true;
             pred.isLoopTail = true;
             block.bwdBranches++;
-            block.loopIndex = NControlFlowGraph.loopIndex++;
+            block.loopIndex = loopIndex++;
         }
     }
 
@@ -1433,8 +1440,8 @@ class NControlFlowGraph {
                 ArrayList<Integer> args = new ArrayList<Integer>();
                 args.add(a.locals[i]);
                 args.add(b.locals[i]);
-                NHIRInstruction ins = new NHIRPhiFunction(a,
-                        NControlFlowGraph.hirId++, args, i);
+                NHIRInstruction ins = new NHIRPhiFunction(a, hirId++, args,
+                        i);
                 a.locals[i] = ins.id;
                 a.hir.add(ins.id);
                 a.cfg.hirMap.put(ins.id, ins);
@@ -1444,7 +1451,7 @@ class NControlFlowGraph {
     }
 
     /**
-     * Convert the bytecode in the specified list to their tuple
+     * Convert the bytecode in the specified array to their tuple
      * representations.
      * 
      * @param code
@@ -1453,11 +1460,11 @@ class NControlFlowGraph {
      * @return list of tuples.
      */
 
-    private ArrayList<NTuple> bytecodeToTuples(ArrayList<Integer> code) {
+    private ArrayList<NTuple> bytecodeToTuples(byte[] code) {
         ArrayList<NTuple> tuples = new ArrayList<NTuple>();
-        for (int i = 0; i < code.size(); i++) {
+        for (int i = 0; i < code.length; i++) {
             int pc = i;
-            int opcode = code.get(i);
+            int opcode = code[i] & 0xFF;
             int operandBytes = CLInstruction.instructionInfo[opcode].operandCount;
             short operandByte1, operandByte2, operandByte3, operandByte4;
             int pad, deflt;
@@ -1466,28 +1473,28 @@ class NControlFlowGraph {
             case 0:
                 break;
             case 1:
-                operandByte1 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 break;
             case 2:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
+                operandByte2 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 operands.add(operandByte2);
                 break;
             case 3:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
+                operandByte2 = (short) (code[++i] & 0xFF);
+                operandByte3 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 operands.add(operandByte2);
                 operands.add(operandByte3);
                 break;
             case 4:
-                operandByte1 = code.get(++i).shortValue();
-                operandByte2 = code.get(++i).shortValue();
-                operandByte3 = code.get(++i).shortValue();
-                operandByte4 = code.get(++i).shortValue();
+                operandByte1 = (short) (code[++i] & 0xFF);
+                operandByte2 = (short) (code[++i] & 0xFF);
+                operandByte3 = (short) (code[++i] & 0xFF);
+                operandByte4 = (short) (code[++i] & 0xFF);
                 operands.add(operandByte1);
                 operands.add(operandByte2);
                 operands.add(operandByte3);
@@ -1541,8 +1548,8 @@ class NControlFlowGraph {
      * @return JVM bytecode for the method denoted by this cfg.
      */
 
-    private ArrayList<Integer> getByteCode() {
-        ArrayList<Integer> code = null;
+    private byte[] getByteCode() {
+        byte[] code = null;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
                 code = ((CLCodeAttribute) info).code;
@@ -1590,11 +1597,9 @@ class NControlFlowGraph {
      */
 
     private int numLocals() {
-        ArrayList<Integer> code = null;
         int numLocals = 0;
         for (CLAttributeInfo info : m.attributes) {
             if (info instanceof CLCodeAttribute) {
-                code = ((CLCodeAttribute) info).code;
                 numLocals = ((CLCodeAttribute) info).maxLocals;
                 break;
             }
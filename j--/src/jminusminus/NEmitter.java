@@ -12,6 +12,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * A class for generating native SPIM code.
@@ -19,26 +20,37 @@ import java.util.HashMap;
 
 public class NEmitter {
 
+    /** The compilation this emitter is a part of. */
+    private Compilation compilation;
+
     /** Source program file name. */
     private String sourceFile;
 
     /**
      * Map of maps, one per class in the compilation unit. Each one of them maps
-     * methods in a class to their control flow graph.
+     * methods in a class to their control flow graph. Both keep insertion
+     * order, so that the SPIM file lists classes and methods in the order in
+     * which they were declared.
      */
     private HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>> classes;
 
     /** Destination directory for the native SPIM code. */
     private String destDir;
 
+    /** The .s file written by write(); null if none was written. */
+    private String outputFile;
+
     /**
      * Whether an error occurred while creating/writing SPIM code.
      */
     private boolean errorHasOccurred;
 
+    /** Suffix for the next string literal label in the SPIM file. */
+    private int stringLabelSuffix;
+
     /**
      * Report any error that occurs while creating/writing the spim file, to
-     * STDERR.
+     * the compilation's diagnostic listener.
      * 
      * @param message
      *            message identifying the error.
@@ -47,8 +59,8 @@ public class NEmitter {
      */
 
     private void reportEmitterError(String message, Object... args) {
-        System.err.printf(message, args);
-        System.err.println();
+        compilation.diagnosticListener().report(new Diagnostic(null, 0,
+                String.format(message, args)));
         errorHasOccurred = true;
     }
 
@@ -119,6 +131,8 @@ public class NEmitter {
     /**
      * Construct an NEmitter instance.
      * 
+     * @param compilation
+     *            the compilation this emitter is a part of.
      * @param sourceFile
      *            the source j-- program file name.
      * @param clFiles
@@ -127,13 +141,17 @@ public class NEmitter {
      *            register allocation scheme (naive, linear, or graph).
      */
 
-    public NEmitter(String sourceFile, ArrayList<CLFile> clFiles, String ra) {
+    NEmitter(Compilation compilation, String sourceFile,
+            ArrayList<CLFile> clFiles, String ra) {
+        this.compilation = compilation;
         this.sourceFile = sourceFile.substring(sourceFile
                 .lastIndexOf(File.separator) + 1);
-        classes = new HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>>();
+        classes = new LinkedHashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>>();
+        PassMetrics metrics = compilation.passMetrics();
+        PassManager<NControlFlowGraph> passes = methodPasses(ra);
         for (CLFile clFile : clFiles) {
             CLConstantPool cp = clFile.constantPool;
-            HashMap<CLMethodInfo, NControlFlowGraph> methods = new HashMap<CLMethodInfo, NControlFlowGraph>();
+            HashMap<CLMethodInfo, NControlFlowGraph> methods = new LinkedHashMap<CLMethodInfo, NControlFlowGraph>();
             for (int i = 0; i < clFile.methodsCount; i++) {
                 CLMethodInfo m = clFile.methods.get(i);
 
@@ -141,85 +159,225 @@ public class NEmitter {
                 // Each block in the cfg, at the end of this step,
                 // has the JVM bytecode translated into tuple
                 // representation.
-                NControlFlowGraph cfg = new NControlFlowGraph(cp, m);
+                NControlFlowGraph cfg;
+                if (metrics == null) {
+                    cfg = new NControlFlowGraph(this, cp, m);
+                } else {
+                    metrics.begin("buildCfg");
+                    try {
+                        cfg = new NControlFlowGraph(this, cp, m);
+                    } finally {
+                        metrics.end();
+                    }
+                    metrics.size("buildCfg", instructionCount(cfg),
+                            "instructions");
+                }
+
+                // Run the passes over the cfg, down to the LIR
+                // instructions with physical registers.
+                passes.run(cfg);
+
+                // Save the cfg for the method in a map keyed in by
+                // the CLMethodInfo object for the method.
+                methods.put(m, cfg);
+            }
+
+            // Store the cfgs for the methods in this class in a map.
+            classes.put(clFile, methods);
+        }
+    }
+
+    /**
+     * Return the passes run over the cfg of each method, in order.
+     * 
+     * @param ra
+     *            register allocation scheme (naive, linear, or graph).
+     * @return the passes.
+     */
 
-                // Write the tuples in cfg to STDOUT.
+    private PassManager<NControlFlowGraph> methodPasses(final String ra) {
+        PassManager<NControlFlowGraph> passes = new PassManager<NControlFlowGraph>(
+                compilation.passMetrics());
+
+        // Write the tuples in cfg to STDOUT.
+        passes.add(new Pass<NControlFlowGraph>("printTuples") {
+            public boolean run(NControlFlowGraph cfg) {
                 PrettyPrinter p = new PrettyPrinter();
                 p.printf("%s %s\n", cfg.name, cfg.desc);
                 cfg.writeTuplesToStdOut(p);
+                return true;
+            }
+        });
 
-                // Identify blocks in cfg that are loop heads and
-                // loop tails. Also, compute number of backward
-                // branches to blocks.
+        // Identify blocks in cfg that are loop heads and
+        // loop tails. Also, compute number of backward
+        // branches to blocks.
+        passes.add(new MethodPass("detectLoops") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.detectLoops(cfg.basicBlocks.get(0), null);
+                return true;
+            }
+        });
 
-                // Remove unreachable blocks from cfg.
+        // Remove unreachable blocks from cfg.
+        passes.add(new MethodPass("removeUnreachableBlocks") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.removeUnreachableBlocks();
+                return true;
+            }
+        });
 
-                // Compute the dominator of each block in the cfg.
+        // Compute the dominator of each block in the cfg.
+        passes.add(new MethodPass("computeDominators") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.computeDominators(cfg.basicBlocks.get(0), null);
+                return true;
+            }
+        });
 
-                // Convert the tuples in each block in the cfg to
-                // high-level (HIR) instructions.
+        // Convert the tuples in each block in the cfg to
+        // high-level (HIR) instructions.
+        passes.add(new MethodPass("tuplesToHir") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.tuplesToHir();
+                return true;
+            }
+        });
 
-                // Eliminate redundant phi functions, i.e., replace
-                // phi functions of the form x = (y, x, x, ..., x)
-                // with y.
+        // Eliminate redundant phi functions, i.e., replace
+        // phi functions of the form x = (y, x, x, ..., x)
+        // with y.
+        passes.add(new MethodPass("eliminateRedundantPhiFunctions") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.eliminateRedundantPhiFunctions();
+                return true;
+            }
+        });
 
-                // Perform optimizations on the high-level
-                // instructions.
+        // Perform optimizations on the high-level
+        // instructions.
+        passes.add(new MethodPass("optimize") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.optimize();
+                return true;
+            }
+        });
 
-                // Write the HIR instructions in cfg to STDOUT.
-                cfg.writeHirToStdOut(p);
+        // Write the HIR instructions in cfg to STDOUT.
+        passes.add(new Pass<NControlFlowGraph>("printHir") {
+            public boolean run(NControlFlowGraph cfg) {
+                cfg.writeHirToStdOut(new PrettyPrinter());
+                return true;
+            }
+        });
 
-                // Convert the HIR instructions in each block in the
-                // cfg to low-level (LIR) instructions.
+        // Convert the HIR instructions in each block in the
+        // cfg to low-level (LIR) instructions.
+        passes.add(new MethodPass("hirToLir") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.hirToLir();
+                return true;
+            }
+        });
 
-                // Resolve phi functions;
+        // Resolve phi functions;
+        passes.add(new MethodPass("resolvePhiFunctions") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.resolvePhiFunctions();
+                return true;
+            }
+        });
 
-                // Compute block order.
+        // Compute block order.
+        passes.add(new MethodPass("orderBlocks") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.orderBlocks();
+                return true;
+            }
+        });
 
-                // Assign new ids to LIR instructions.
+        // Assign new ids to LIR instructions.
+        passes.add(new MethodPass("renumberLirInstructions") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.renumberLirInstructions();
+                return true;
+            }
+        });
 
-                // Write the LIR instructions in cfg to STDOUT.
-                cfg.writeLirToStdOut(p);
-
-                // Save the cfg for the method in a map keyed in by
-                // the CLMethodInfo object for the method.
-                methods.put(m, cfg);
+        // Write the LIR instructions in cfg to STDOUT.
+        passes.add(new Pass<NControlFlowGraph>("printLir") {
+            public boolean run(NControlFlowGraph cfg) {
+                cfg.writeLirToStdOut(new PrettyPrinter());
+                return true;
+            }
+        });
 
-                // Perform register allocation.
+        // Perform register allocation.
+        passes.add(new MethodPass("allocateRegisters") {
+            public boolean run(NControlFlowGraph cfg) {
                 NRegisterAllocator regAllocator;
                 if (ra.equals("naive")) {
-                    regAllocator = new NNaiveRegisterAllocator(cfg);
+                    regAllocator = new NNaiveRegisterAllocator(compilation,
+                            cfg);
                 } else if (ra.equals("linear")) {
-                    regAllocator = new NLinearRegisterAllocator(cfg);
+                    regAllocator = new NLinearRegisterAllocator(compilation,
+                            cfg);
                 } else {
-                    regAllocator = new NGraphRegisterAllocator(cfg);
+                    regAllocator = new NGraphRegisterAllocator(compilation,
+                            cfg);
                 }
                 regAllocator.allocation();
+                return true;
+            }
+        });
 
-                // Write the intervals in cfg to STDOUT.
-                cfg.writeIntervalsToStdOut(p);
+        // Write the intervals in cfg to STDOUT.
+        passes.add(new Pass<NControlFlowGraph>("printIntervals") {
+            public boolean run(NControlFlowGraph cfg) {
+                cfg.writeIntervalsToStdOut(new PrettyPrinter());
+                return true;
+            }
+        });
 
-                // Replace references to virtual registers in LIR
-                // instructions with references to physical registers.
+        // Replace references to virtual registers in LIR
+        // instructions with references to physical registers.
+        passes.add(new MethodPass("allocatePhysicalRegisters") {
+            public boolean run(NControlFlowGraph cfg) {
                 cfg.allocatePhysicalRegisters();
+                return true;
+            }
+        });
 
-                // Write the LIR instructions in cfg to STDOUT.
-                cfg.writeLirToStdOut(p);
+        // Write the LIR instructions in cfg to STDOUT.
+        passes.add(new Pass<NControlFlowGraph>("printPhysicalLir") {
+            public boolean run(NControlFlowGraph cfg) {
+                cfg.writeLirToStdOut(new PrettyPrinter());
+                return true;
             }
+        });
+        return passes;
+    }
 
-            // Store the cfgs for the methods in this class in a map.
-            classes.put(clFile, methods);
+    /**
+     * Return the number of instructions in the specified cfg, in their latest
+     * form: LIR instructions once there are any, HIR instructions once there
+     * are any, and tuples before that.
+     * 
+     * @param cfg
+     *            the control flow graph.
+     * @return the number of instructions.
+     */
+
+    private static long instructionCount(NControlFlowGraph cfg) {
+        long tuples = 0;
+        long hir = 0;
+        long lir = 0;
+        for (NBasicBlock block : cfg.basicBlocks) {
+            tuples += block.tuples.size();
+            hir += block.hir.size();
+            lir += block.lir.size();
         }
+        return lir > 0 ? lir : hir > 0 ? hir : tuples;
     }
 
     /**
@@ -233,6 +391,28 @@ public class NEmitter {
         this.destDir = destDir;
     }
 
+    /**
+     * Create a label for a string literal in the data segment, unique within
+     * the SPIM file being written.
+     * 
+     * @return the label.
+     */
+
+    public String createStringLabel() {
+        return "Constant..String" + stringLabelSuffix++;
+    }
+
+    /**
+     * Return the name of the .s file written by write(), or null if no file
+     * was written.
+     * 
+     * @return the output file name.
+     */
+
+    public String outputFile() {
+        return outputFile;
+    }
+
     /**
      * Has an emitter error occurred up to now?
      * 
@@ -252,6 +432,7 @@ public class NEmitter {
         String file = "";
         try {
             file = destDir + File.separator + sourceFile.replace(".java", ".s");
+            String outFile = file;
             PrintWriter out = new PrintWriter(file);
 
             // Header.
@@ -328,6 +509,7 @@ public class NEmitter {
             }
 
             out.close();
+            outputFile = outFile;
         } catch (FileNotFoundException e) {
             reportEmitterError("File %s not found", file);
         } catch (IOException e) {
@@ -335,4 +517,40 @@ public class NEmitter {
         }
     }
 
+    /**
+     * A pass over the cfg of a method; the size of the IR it leaves is the
+     * number of instructions in the cfg.
+     */
+
+    private abstract static class MethodPass extends Pass<NControlFlowGraph> {
+
+        /**
+         * Construct a MethodPass, enabled.
+         * 
+         * @param name
+         *            name of the pass.
+         */
+
+        protected MethodPass(String name) {
+            super(name);
+        }
+
+        /**
+         * @inheritDoc
+         */
+
+        public long size(NControlFlowGraph cfg) {
+            return instructionCount(cfg);
+        }
+
+        /**
+         * @inheritDoc
+         */
+
+        public String units() {
+            return "instructions";
+        }
+
+    }
+
 }
@@ -13,12 +13,15 @@ public class NGraphRegisterAllocator extends NRegisterAllocator {
     /**
      * Construct a NGraphRegisterAllocator.
      * 
+     * @param compilation
+     *            the compilation this allocator is a part of.
      * @param cfg
      *            an instance of a control flow graph.
      */
 
-    public NGraphRegisterAllocator(NControlFlowGraph cfg) {
-        super(cfg);
+    public NGraphRegisterAllocator(Compilation compilation,
+            NControlFlowGraph cfg) {
+        super(compilation, cfg);
     }
 
     /**
@@ -185,7 +185,7 @@ class NHIRArithmetic extends NHIRInstruction {
         }
         NLIRInstruction ins1 = block.cfg.hirMap.get(lhs).toLir();
         NLIRInstruction ins2 = block.cfg.hirMap.get(rhs).toLir();
-        lir = new NLIRArithmetic(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRArithmetic(block, block.cfg.lirId++, opcode,
                 ins1, ins2);
         block.lir.add(lir);
         return lir;
@@ -236,7 +236,7 @@ class NHIRIntConstant extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRIntConstant(block, NControlFlowGraph.lirId++, value);
+        lir = new NLIRIntConstant(block, block.cfg.lirId++, value);
         block.lir.add(lir);
         return lir;
     }
@@ -285,7 +285,7 @@ class NHIRStringConstant extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRStringConstant(block, NControlFlowGraph.lirId++, value);
+        lir = new NLIRStringConstant(block, block.cfg.lirId++, value);
         block.lir.add(lir);
         return lir;
     }
@@ -361,7 +361,7 @@ class NHIRConditionalJump extends NHIRInstruction {
         }
         NLIRInstruction ins1 = block.cfg.hirMap.get(lhs).toLir();
         NLIRInstruction ins2 = block.cfg.hirMap.get(rhs).toLir();
-        lir = new NLIRConditionalJump(block, NControlFlowGraph.lirId++, ins1,
+        lir = new NLIRConditionalJump(block, block.cfg.lirId++, ins1,
                 ins2, opcode, onTrueDestination, onFalseDestination);
         block.lir.add(lir);
         return lir;
@@ -413,7 +413,7 @@ class NHIRGoto extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRGoto(block, NControlFlowGraph.lirId++, destination);
+        lir = new NLIRGoto(block, block.cfg.lirId++, destination);
         block.lir.add(lir);
         return lir;
     }
@@ -511,12 +511,12 @@ class NHIRInvoke extends NHIRInstruction {
                 NPhysicalRegister from = NPhysicalRegister.regInfo[A0 + i];
                 block.cfg.registers.set(A0 + i, from);
                 NVirtualRegister to = new NVirtualRegister(
-                        NControlFlowGraph.regId++, sType, lType);
+                        block.cfg.regId++, sType, lType);
                 block.cfg.registers.add(to);
-                NLIRMove move1 = new NLIRMove(block, NControlFlowGraph.lirId++,
+                NLIRMove move1 = new NLIRMove(block, block.cfg.lirId++,
                         from, to);
                 block.lir.add(move1);
-                NLIRMove move2 = new NLIRMove(block, NControlFlowGraph.lirId++,
+                NLIRMove move2 = new NLIRMove(block, block.cfg.lirId++,
                         ins.write, from);
                 block.lir.add(move2);
                 arguments.add(NPhysicalRegister.regInfo[A0 + i]);
@@ -528,14 +528,14 @@ class NHIRInvoke extends NHIRInstruction {
                 tos.add(to);
             } else {
                 NLIRStore store = new NLIRStore(block,
-                        NControlFlowGraph.lirId++, i - 4, OffsetFrom.SP,
+                        block.cfg.lirId++, i - 4, OffsetFrom.SP,
                         ins.write);
                 block.lir.add(store);
                 arguments.add(ins.write);
             }
         }
 
-        lir = new NLIRInvoke(block, NControlFlowGraph.lirId++, opcode, target,
+        lir = new NLIRInvoke(block, block.cfg.lirId++, opcode, target,
                 name, arguments, sType, lType);
         block.lir.add(lir);
 
@@ -544,8 +544,8 @@ class NHIRInvoke extends NHIRInstruction {
         // register v0 into a virtual register.
         if (lir.write != null) {
             NVirtualRegister to = new NVirtualRegister(
-                    NControlFlowGraph.regId++, sType, lType);
-            NLIRMove move = new NLIRMove(block, NControlFlowGraph.lirId++,
+                    block.cfg.regId++, sType, lType);
+            NLIRMove move = new NLIRMove(block, block.cfg.lirId++,
                     NPhysicalRegister.regInfo[V0], to);
             block.cfg.registers.add(to);
             block.lir.add(move);
@@ -555,7 +555,7 @@ class NHIRInvoke extends NHIRInstruction {
         // Generate LIR move instructions to restore the a0, ..., a3
         // instructions.
         for (int i = 0; i < tos.size(); i++) {
-            NLIRMove move = new NLIRMove(block, NControlFlowGraph.lirId++, tos
+            NLIRMove move = new NLIRMove(block, block.cfg.lirId++, tos
                     .get(i), froms.get(i));
             block.lir.add(move);
         }
@@ -623,12 +623,12 @@ class NHIRReturn extends NHIRInstruction {
         NLIRInstruction result = null;
         if (value != -1) {
             result = block.cfg.hirMap.get(value).toLir();
-            NLIRMove move = new NLIRMove(block, NControlFlowGraph.lirId++,
+            NLIRMove move = new NLIRMove(block, block.cfg.lirId++,
                     result.write, NPhysicalRegister.regInfo[V0]);
             block.lir.add(move);
             block.cfg.registers.set(V0, NPhysicalRegister.regInfo[V0]);
         }
-        lir = new NLIRReturn(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRReturn(block, block.cfg.lirId++, opcode,
                 (result == null) ? null : NPhysicalRegister.regInfo[V0]);
         block.lir.add(lir);
         return lir;
@@ -705,7 +705,7 @@ class NHIRPutField extends NHIRInstruction {
             return lir;
         }
         NLIRInstruction result = block.cfg.hirMap.get(value).toLir();
-        lir = new NLIRPutField(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRPutField(block, block.cfg.lirId++, opcode,
                 target, name, sType, lType, result);
         block.lir.add(lir);
         return lir;
@@ -772,7 +772,7 @@ class NHIRGetField extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRGetField(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRGetField(block, block.cfg.lirId++, opcode,
                 target, name, sType, lType);
         block.lir.add(lir);
         return lir;
@@ -832,7 +832,7 @@ class NHIRNewArray extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRNewArray(block, NControlFlowGraph.lirId++, opcode, dim,
+        lir = new NLIRNewArray(block, block.cfg.lirId++, opcode, dim,
                 sType, lType);
         block.lir.add(lir);
         return lir;
@@ -901,7 +901,7 @@ class NHIRALoad extends NHIRInstruction {
         }
         NLIRInstruction arrayRef = block.cfg.hirMap.get(this.arrayRef).toLir();
         NLIRInstruction index = block.cfg.hirMap.get(this.index).toLir();
-        lir = new NLIRALoad(block, NControlFlowGraph.lirId++, opcode, arrayRef,
+        lir = new NLIRALoad(block, block.cfg.lirId++, opcode, arrayRef,
                 index, sType, lType);
         block.lir.add(lir);
         return lir;
@@ -978,7 +978,7 @@ class NHIRAStore extends NHIRInstruction {
         NLIRInstruction arrayRef = block.cfg.hirMap.get(this.arrayRef).toLir();
         NLIRInstruction index = block.cfg.hirMap.get(this.index).toLir();
         NLIRInstruction value = block.cfg.hirMap.get(this.value).toLir();
-        lir = new NLIRAStore(block, NControlFlowGraph.lirId++, opcode,
+        lir = new NLIRAStore(block, block.cfg.lirId++, opcode,
                 arrayRef, index, value, sType, lType);
         block.lir.add(lir);
         return lir;
@@ -1052,7 +1052,7 @@ class NHIRPhiFunction extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRPhiFunction(block, NControlFlowGraph.lirId++, sType,
+        lir = new NLIRPhiFunction(block, block.cfg.lirId++, sType,
                 lType);
         return lir;
     }
@@ -1111,7 +1111,7 @@ class NHIRLoadLocal extends NHIRInstruction {
         if (lir != null) {
             return lir;
         }
-        lir = new NLIRLoadLocal(block, NControlFlowGraph.lirId++, local, sType,
+        lir = new NLIRLoadLocal(block, block.cfg.lirId++, local, sType,
                 lType);
         block.lir.add(lir);
         return lir;
@@ -128,7 +128,7 @@ class NLIRArithmetic extends NLIRInstruction {
         this.opcode = opcode;
         reads.add(lhs.write);
         reads.add(rhs.write);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "I", "I");
+        write = new NVirtualRegister(block.cfg.regId++, "I", "I");
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -200,7 +200,7 @@ class NLIRIntConstant extends NLIRInstruction {
     public NLIRIntConstant(NBasicBlock block, int id, int value) {
         super(block, id);
         this.value = value;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "I", "I");
+        write = new NVirtualRegister(block.cfg.regId++, "I", "I");
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -241,9 +241,6 @@ class NLIRStringConstant extends NLIRInstruction {
     /** The constant string value. */
     public String value;
 
-    /** */
-    private static int labelSuffix;
-
     /**
      * Construct an NHIRStringConstant instruction.
      * 
@@ -258,20 +255,9 @@ class NLIRStringConstant extends NLIRInstruction {
     public NLIRStringConstant(NBasicBlock block, int id, String value) {
         super(block, id);
         this.value = value;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, "L",
+        write = new NVirtualRegister(block.cfg.regId++, "L",
                 "Ljava/lang/String;");
         block.cfg.registers.add((NVirtualRegister) write);
-        labelSuffix = 0;
-    }
-
-    /**
-     * Create a label for LIR code.
-     * 
-     * @return the Label.
-     */
-
-    private String createLabel() {
-        return "Constant..String" + labelSuffix++;
     }
 
     /**
@@ -288,7 +274,7 @@ class NLIRStringConstant extends NLIRInstruction {
      */
 
     public void toSpim(PrintWriter out) {
-        String label = createLabel();
+        String label = block.cfg.emitter.createStringLabel();
         String s = label + ":\n";
         int size = 12 + value.length() + 1;
         int align = (size % 4 == 0) ? 0 : (size + 4) / 4 * 4 - size;
@@ -695,7 +681,7 @@ class NLIRGetField extends NLIRInstruction {
         this.opcode = opcode;
         this.target = target;
         this.name = name;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -752,7 +738,7 @@ class NLIRNewArray extends NLIRInstruction {
         super(block, id);
         this.opcode = opcode;
         this.dim = dim;
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -809,7 +795,7 @@ class NLIRALoad extends NLIRInstruction {
         this.opcode = opcode;
         reads.add(arrayRef.write);
         reads.add(index.write);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -912,7 +898,7 @@ class NLIRPhiFunction extends NLIRInstruction {
 
     public NLIRPhiFunction(NBasicBlock block, int id, String sType, String lType) {
         super(block, id);
-        write = new NVirtualRegister(NControlFlowGraph.regId++, sType, lType);
+        write = new NVirtualRegister(block.cfg.regId++, sType, lType);
         block.cfg.registers.add((NVirtualRegister) write);
     }
 
@@ -1035,7 +1021,7 @@ class NLIRLoadLocal extends NLIRInstruction {
             block.cfg.registers.set(A0 + local, NPhysicalRegister.regInfo[A0
                     + local]);
         } else {
-            write = new NVirtualRegister(NControlFlowGraph.regId++, sType,
+            write = new NVirtualRegister(block.cfg.regId++, sType,
                     lType);
             block.cfg.registers.add((NVirtualRegister) write);
         }
@@ -26,23 +26,26 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
     /**
      * Construct a linear register allocator for the given control flow graph.
      * 
+     * @param compilation
+     *            the compilation this allocator is a part of.
      * @param cfg
      *            the control flow graph instance.
      */
 
-    public NLinearRegisterAllocator(NControlFlowGraph cfg) {
-        super(cfg);
+    public NLinearRegisterAllocator(Compilation compilation,
+            NControlFlowGraph cfg) {
+        super(compilation, cfg);
         unhandled = new ArrayList<NInterval>();
         active = new ArrayList<NInterval>();
         inactive = new ArrayList<NInterval>();
 
         // Instantiate usePositions and freePos to be the size of
         // the physical registers used.
-        freePos = new int[NPhysicalRegister.MAX_COUNT];
-        usePos = new int[NPhysicalRegister.MAX_COUNT];
-        blockPos = new int[NPhysicalRegister.MAX_COUNT];
+        freePos = new int[registerCount];
+        usePos = new int[registerCount];
+        blockPos = new int[registerCount];
         regIntervals = new ArrayList<ArrayList<NInterval>>();
-        for (int i = 0; i < NPhysicalRegister.MAX_COUNT; i++) {
+        for (int i = 0; i < registerCount; i++) {
             regIntervals.add(new ArrayList<NInterval>());
         }
     }
@@ -180,7 +183,7 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
         }
 
         // The physical registers available are in NPhysicalRegister.getInfo
-        // static array. This is indexed from 0 to NPhysicalRegister.MAX_COUNT
+        // static array. This is indexed from 0 to registerCount
         int reg = this.getBestFreeReg();
         if (freePos[reg] == 0)
             return false;
@@ -207,7 +210,7 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
      */
 
     private void initFreePositions() {
-        for (int i = 0; i < NPhysicalRegister.MAX_COUNT; i++) {
+        for (int i = 0; i < registerCount; i++) {
             freePos[i] = Integer.MAX_VALUE;
         }
     }
@@ -220,7 +223,7 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
 
     private int getBestFreeReg() {
         int freeRegNumber = 0;
-        for (int i = 0; i < NPhysicalRegister.MAX_COUNT; i++) {
+        for (int i = 0; i < registerCount; i++) {
             if (freePos[i] > freePos[freeRegNumber])
                 freeRegNumber = i;
         }
@@ -282,7 +285,7 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
      */
 
     private void initUseAndBlockPositions() {
-        for (int i = 0; i < NPhysicalRegister.MAX_COUNT; i++) {
+        for (int i = 0; i < registerCount; i++) {
             usePos[i] = Integer.MAX_VALUE;
             blockPos[i] = Integer.MAX_VALUE;
         }
@@ -296,7 +299,7 @@ public class NLinearRegisterAllocator extends NRegisterAllocator {
 
     private int getBestBlockedReg() {
         int usableRegNumber = 0;
-        for (int i = 0; i < NPhysicalRegister.MAX_COUNT; i++) {
+        for (int i = 0; i < registerCount; i++) {
             if (usePos[i] > usePos[usableRegNumber])
                 usableRegNumber = i;
         }
@@ -19,12 +19,15 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
     /**
      * Construct a NNaiveRegisterAllocator.
      * 
+     * @param compilation
+     *            the compilation this allocator is a part of.
      * @param cfg
      *            an instance of a control flow graph.
      */
 
-    public NNaiveRegisterAllocator(NControlFlowGraph cfg) {
-        super(cfg);
+    public NNaiveRegisterAllocator(Compilation compilation,
+            NControlFlowGraph cfg) {
+        super(compilation, cfg);
     }
 
     /**
@@ -76,7 +79,7 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
         for (int i = 32, j = 0; i < cfg.intervals.size(); i++) {
             NInterval interval = cfg.intervals.get(i);
             if (interval.pRegister == null) {
-                if (j >= NPhysicalRegister.MAX_COUNT) {
+                if (j >= registerCount) {
                     // Pull out (from a queue) a register that's
                     // already assigned to another interval and
                     // re-assign it to this interval. But then
@@ -129,7 +132,7 @@ public class NNaiveRegisterAllocator extends NRegisterAllocator {
                     if (input1.pRegister == input2.pRegister) {
                         input2.pRegister = NPhysicalRegister.regInfo[T0
                                 + (input2.pRegister.number() + 1)
-                                % NPhysicalRegister.MAX_COUNT];
+                                % registerCount];
                     }
                 }
 
@@ -101,9 +101,17 @@ class NVirtualRegister extends NRegister {
 class NPhysicalRegister extends NRegister {
 
     /**
-     * Maximum number of physical registers used for allocation, starting at T0.
+     * Default number of physical registers used for allocation, starting at
+     * T0. The number actually used is fixed per compilation (see
+     * Compilation.registerCount()).
      */
-    public static int MAX_COUNT = 8;
+    public static final int DEFAULT_COUNT = 8;
+
+    /**
+     * Maximum number of physical registers that may be used for allocation,
+     * starting at T0.
+     */
+    public static final int MAX_COUNT = 18;
 
     // Constants identifying the physical registers. These
     // can be used as indices into the static regInfo array
@@ -17,15 +17,25 @@ public abstract class NRegisterAllocator {
     protected NControlFlowGraph cfg;
 
     /**
-     * Construct an NRegisterAllocator object given the control flow graph for
-     * method.
+     * Number of physical registers (starting at T0) available for allocation.
+     */
+    protected int registerCount;
+
+    /**
+     * Construct an NRegisterAllocator object given the compilation it is a
+     * part of and the control flow graph for method.
      * 
+     * @param compilation
+     *            the compilation, which fixes the number of physical registers
+     *            available.
      * @param cfg
      *            control flow graph for a method.
      */
 
-    protected NRegisterAllocator(NControlFlowGraph cfg) {
+    protected NRegisterAllocator(Compilation compilation,
+            NControlFlowGraph cfg) {
         this.cfg = cfg;
+        this.registerCount = compilation.registerCount();
         this.cfg.intervals = new ArrayList<NInterval>();
         for (int i = 0; i < cfg.registers.size(); i++) {
             this.cfg.intervals.add(new NInterval(i, cfg));
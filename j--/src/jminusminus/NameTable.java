@@ -0,0 +1,117 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+/**
+ * A table of the names (identifiers, and the images of literals) met by a
+ * Scanner. A name is looked up by the characters making it up, straight from
+ * the scanner's buffer, so that a name already in the table costs no
+ * allocation. A name new to the table is interned (String.intern()) before it
+ * is added, so that all the compiler's scanners share one copy of each name.
+ */
+
+class NameTable {
+
+    /** The names, in an open-addressing hash table. */
+    private String[] names;
+
+    /** The names' hash codes (as String.hashCode()). */
+    private int[] hashes;
+
+    /** Number of names in the table. */
+    private int size;
+
+    /**
+     * Construct an empty NameTable.
+     */
+
+    public NameTable() {
+        names = new String[256];
+        hashes = new int[256];
+        size = 0;
+    }
+
+    /**
+     * Return the (interned) name made up of the specified characters.
+     * 
+     * @param chars
+     *            the characters.
+     * @param start
+     *            offset of the name's first character.
+     * @param length
+     *            length of the name.
+     * @return the name.
+     */
+
+    public String intern(char[] chars, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = names.length - 1;
+        int i = hash & mask;
+        while (names[i] != null) {
+            if (hashes[i] == hash && matches(names[i], chars, start, length)) {
+                return names[i];
+            }
+            i = (i + 1) & mask;
+        }
+        String name = new String(chars, start, length).intern();
+        names[i] = name;
+        hashes[i] = hash;
+        if (++size * 2 > names.length) {
+            grow();
+        }
+        return name;
+    }
+
+    /**
+     * Is the specified name made up of the specified characters?
+     * 
+     * @param name
+     *            the name.
+     * @param chars
+     *            the characters.
+     * @param start
+     *            offset of the first character.
+     * @param length
+     *            number of characters.
+     * @return true or false.
+     */
+
+    private static boolean matches(String name, char[] chars, int start,
+            int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Double the size of the table.
+     */
+
+    private void grow() {
+        String[] oldNames = names;
+        int[] oldHashes = hashes;
+        names = new String[2 * oldNames.length];
+        hashes = new int[2 * oldNames.length];
+        int mask = names.length - 1;
+        for (int j = 0; j < oldNames.length; j++) {
+            if (oldNames[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (names[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                names[i] = oldNames[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+}
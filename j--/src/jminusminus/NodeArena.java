@@ -0,0 +1,92 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.HashMap;
+
+/**
+ * An arena for the AST nodes that analysis makes up, rather than the parser
+ * builds: the implicit targets of the message expressions (and the variables
+ * rewritten as field selections) that name none, that is, this in an instance
+ * method, and the class itself in a static one. Such a target means the same
+ * thing wherever it appears in a class, so rather than making a node (and
+ * analyzing it) for each of them, analysis takes one from the arena, which
+ * makes it once per class; all of a class's implicit targets share it. The
+ * arena belongs to a Compilation, and lets go of its nodes all at once, when
+ * the compilation shuts down.
+ *
+ * Since the units are analyzed one after the other, the arena is not
+ * synchronized.
+ */
+
+class NodeArena {
+
+    /** The analyzed implicit this of each class, by class declaration. */
+    private HashMap<JAST, JExpression> thisTargets;
+
+    /** The analyzed implicit class name of each class. */
+    private HashMap<JAST, JExpression> typeTargets;
+
+    /**
+     * Construct an empty NodeArena.
+     */
+
+    public NodeArena() {
+        thisTargets = new HashMap<JAST, JExpression>();
+        typeTargets = new HashMap<JAST, JExpression>();
+    }
+
+    /**
+     * Return the (analyzed) implicit this of the class being analyzed in the
+     * specified context.
+     *
+     * @param line
+     *            line of the first expression it is the target of.
+     * @param context
+     *            context in which it is the target.
+     * @return the target.
+     */
+
+    public JExpression implicitThis(int line, Context context) {
+        JAST definition = context.classContext().definition();
+        JExpression target = thisTargets.get(definition);
+        if (target == null) {
+            target = new JThis(line).analyze(context.classContext());
+            thisTargets.put(definition, target);
+        }
+        return target;
+    }
+
+    /**
+     * Return the (analyzed) implicit name of the class being analyzed in the
+     * specified context, the target of its static members. The name is
+     * resolved in the class context, where no local variable can hide it.
+     *
+     * @param line
+     *            line of the first expression it is the target of.
+     * @param context
+     *            context in which it is the target.
+     * @return the target.
+     */
+
+    public JExpression implicitType(int line, Context context) {
+        JAST definition = context.classContext().definition();
+        JExpression target = typeTargets.get(definition);
+        if (target == null) {
+            target = new JVariable(line, context.definingType().toString())
+                    .analyze(context.classContext());
+            typeTargets.put(definition, target);
+        }
+        return target;
+    }
+
+    /**
+     * Let go of the nodes, all at once.
+     */
+
+    public void release() {
+        thisTargets.clear();
+        typeTargets.clear();
+    }
+
+}
@@ -0,0 +1,391 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import static jminusminus.TokenKind.*;
+
+/**
+ * A scanner for (very) large sources, which pre-tokenizes the whole source in
+ * parallel: the source is read in, split into chunks at safe points, and the
+ * chunks are scanned by Scanners of their own, at once, on a fork-join pool;
+ * the tokens are then handed out, chunk after chunk, as if scanned by one
+ * Scanner.
+ * 
+ * A safe point is just after a new line that no token can hold. In j--, a
+ * token holds a new line only as the character of a character literal (right
+ * after ') or as an escaped one (right after \); a string literal or a
+ * comment ends at a new line, leaving it to the next token. Splitting just
+ * after every other new line, each chunk starts where a Scanner of the whole
+ * source would start a token (or white space).
+ * 
+ * The chunks' readers share the characters and the line starts of the whole
+ * source, so their tokens carry the lines of the whole source. The errors a
+ * chunk's Scanner finds are held, with the index of the token it was scanning
+ * at the time, and reported when that token is handed out; thus they are
+ * reported to the listener as, and when, a Scanner of the whole source would
+ * report them. The chunks are scanned on the pool the caller runs on, if any
+ * (as the parse tasks of a Compilation do), and otherwise on the common pool.
+ * A source of less than two chunks is scanned by the caller alone.
+ */
+
+class ParallelScanner implements TokenScanner {
+
+    /** The least number of characters worth a chunk of its own. */
+    public final static int MIN_CHUNK = 1 << 20;
+
+    /** Number of chunks (at most) per thread of the pool. */
+    private final static int CHUNKS_PER_THREAD = 4;
+
+    /** The token kinds, by ordinal. */
+    private final static TokenKind[] KINDS = TokenKind.values();
+
+    /**
+     * Bit set in the code of a token (its kind's ordinal) whose image is not
+     * its kind's, but one of its own (an identifier's or a literal's).
+     */
+    private final static int OWN_IMAGE = 0x80;
+
+    /** The chunks not yet handed out; the current one at chunkIndex. */
+    private Chunk[] chunks;
+
+    /** Index of the current chunk. */
+    private int chunkIndex;
+
+    /** Index (in the current chunk) of the next token to hand out. */
+    private int tokenIndex;
+
+    /** Index (in the current chunk) of the next token image of its own. */
+    private int imageIndex;
+
+    /** Index (in the current chunk) of the next error to report. */
+    private int errorIndex;
+
+    /** Image of the token last scanned. */
+    private String image;
+
+    /** Line of the token last scanned. */
+    private int line;
+
+    /** Whether a scanner error has been found (and reported). */
+    private boolean isInError;
+
+    /** Source file name. */
+    private String fileName;
+
+    /** Listener to which errors in the source are reported. */
+    private DiagnosticListener diagnosticListener;
+
+    /**
+     * Construct a ParallelScanner object.
+     * 
+     * @param fileName
+     *            the name of the file containing the source.
+     * @exception FileNotFoundException
+     *                when the named file cannot be found.
+     */
+
+    public ParallelScanner(String fileName) throws FileNotFoundException {
+        this(fileName, new SourceReader(fileName), DiagnosticListener.STDERR);
+    }
+
+    /**
+     * Construct a ParallelScanner object reading the source from the
+     * specified reader rather than from the file system. The whole source is
+     * read in and scanned here.
+     * 
+     * @param fileName
+     *            the name under which errors in the source are reported.
+     * @param source
+     *            the source.
+     * @param diagnosticListener
+     *            listener to which lexical errors are reported.
+     */
+
+    public ParallelScanner(String fileName, Reader source,
+            DiagnosticListener diagnosticListener) {
+        this.fileName = fileName;
+        this.diagnosticListener = diagnosticListener;
+        CharReader input = new CharReader(fileName, source);
+        try {
+            input.nextChar();
+        } catch (IOException e) {
+            isInError = true;
+            diagnosticListener.report(new Diagnostic(fileName, 1,
+                    "Unable to read characters from input"));
+            input = new CharReader(fileName, new StringReader(""));
+            try {
+                input.nextChar();
+            } catch (IOException impossible) {
+            }
+        }
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask
+                .getPool() : ForkJoinPool.commonPool();
+        chunks = split(input, pool.getParallelism());
+        if (chunks.length == 1) {
+            chunks[0].compute();
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(chunks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(chunks);
+                }
+            });
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public TokenKind scan() {
+        Chunk chunk = chunks[chunkIndex];
+        while (tokenIndex == chunk.count - 1 && !chunk.endsEarly
+                && chunkIndex + 1 < chunks.length) {
+            // The chunk's end of file is not the source's: on to the next,
+            // letting go of this one
+            report(chunk, tokenIndex);
+            chunks[chunkIndex++] = null;
+            chunk = chunks[chunkIndex];
+            tokenIndex = 0;
+            imageIndex = 0;
+            errorIndex = 0;
+        }
+        report(chunk, tokenIndex);
+        int code = chunk.kinds[tokenIndex] & 0xff;
+        TokenKind kind = KINDS[code & ~OWN_IMAGE];
+        image = (code & OWN_IMAGE) != 0 ? chunk.images[imageIndex++] : kind
+                .image();
+        line = chunk.lines[tokenIndex];
+        if (kind != EOF) {
+            tokenIndex++;
+        }
+        return kind;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public String image() {
+        return image;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public int line() {
+        return line;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public boolean errorHasOccurred() {
+        return isInError;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public String fileName() {
+        return fileName;
+    }
+
+    /**
+     * @inheritDoc
+     */
+
+    public DiagnosticListener diagnosticListener() {
+        return diagnosticListener;
+    }
+
+    /**
+     * Report the errors the chunk's Scanner found up to (and while scanning)
+     * the token at the specified index, and not yet reported.
+     * 
+     * @param chunk
+     *            the chunk.
+     * @param index
+     *            the index of the token.
+     */
+
+    private void report(Chunk chunk, int index) {
+        while (errorIndex < chunk.errors.size()
+                && chunk.errorTokens[errorIndex] <= index) {
+            isInError = true;
+            diagnosticListener.report(chunk.errors.get(errorIndex++));
+        }
+    }
+
+    /**
+     * Split the (read) source into chunks of at least MIN_CHUNK characters,
+     * and at most CHUNKS_PER_THREAD per thread of the pool, each ending at a
+     * safe point (see above), or at the end of the source.
+     * 
+     * @param input
+     *            reader of the whole source.
+     * @param parallelism
+     *            number of threads of the pool.
+     * @return the chunks.
+     */
+
+    private static Chunk[] split(CharReader input, int parallelism) {
+        char[] chars = input.chars();
+        int count = input.length();
+        int n = Math.max(1, Math.min(count / MIN_CHUNK, CHUNKS_PER_THREAD
+                * parallelism));
+        ArrayList<Chunk> chunks = new ArrayList<Chunk>(n);
+        int start = 0;
+        for (int i = 1; i < n; i++) {
+            int end = Math.max(start, (int) ((long) count * i / n));
+            while (end < count && (chars[end] != '\n' || end > 0
+                    && mayHoldNewLine(chars[end - 1]))) {
+                end++;
+            }
+            if (end + 1 >= count) {
+                break;
+            }
+            chunks.add(new Chunk(input, start, ++end));
+            start = end;
+        }
+        chunks.add(new Chunk(input, start, count));
+        return chunks.toArray(new Chunk[chunks.size()]);
+    }
+
+    /**
+     * Whether a new line right after the specified character may be part of a
+     * token.
+     * 
+     * @param c
+     *            the character.
+     * @return true or false.
+     */
+
+    private static boolean mayHoldNewLine(char c) {
+        return c == '\'' || c == '\\';
+    }
+
+    /**
+     * A chunk of the source, scanned (by a Scanner of its own) into parallel
+     * arrays of token codes and lines, ending with an EOF token, an array of
+     * the images of the tokens with images of their own (identifiers and
+     * literals), and a list of the errors found. Keeping tokens so compactly
+     * (about six bytes each, rather than a dozen) matters for sources of
+     * hundreds of MB: it halves the memory held, and keeps the collector
+     * from scanning arrays full of references to the same few images.
+     */
+
+    private static class Chunk extends RecursiveAction {
+
+        /** Chunks are serializable (as ForkJoinTasks), but never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** Reader of the chunk (a region of the source). */
+        private CharReader input;
+
+        /** Offset just past the last character of the chunk. */
+        private int end;
+
+        /** Codes of the tokens: their kinds' ordinals, and OWN_IMAGE. */
+        private byte[] kinds;
+
+        /** Images of the tokens with images of their own. */
+        private String[] images;
+
+        /** Number of images. */
+        private int imageCount;
+
+        /** Lines of the tokens. */
+        private int[] lines;
+
+        /** Number of tokens. */
+        private int count;
+
+        /** Errors found. */
+        private ArrayList<Diagnostic> errors = new ArrayList<Diagnostic>();
+
+        /** Index of the token being scanned when each error was found. */
+        private int[] errorTokens = new int[4];
+
+        /**
+         * Whether the Scanner reached an end of file (an EOFCH character)
+         * before the end of the chunk; then the source ends there.
+         */
+        private boolean endsEarly;
+
+        /**
+         * Construct a Chunk of the source.
+         * 
+         * @param whole
+         *            reader of the whole source.
+         * @param start
+         *            offset of the first character of the chunk.
+         * @param end
+         *            offset just past the last character of the chunk.
+         */
+
+        public Chunk(CharReader whole, int start, int end) {
+            this.input = new CharReader(whole, start, end);
+            this.end = end;
+        }
+
+        /**
+         * Scan the chunk.
+         */
+
+        protected void compute() {
+            // About one token per four characters, and an image of its own
+            // per ten, to begin with
+            int length = end - input.offset();
+            kinds = new byte[Math.max(16, length / 4)];
+            lines = new int[kinds.length];
+            images = new String[Math.max(16, length / 10)];
+            Scanner scanner = new Scanner(input, new DiagnosticListener() {
+                public void report(Diagnostic diagnostic) {
+                    if (errors.size() == errorTokens.length) {
+                        errorTokens = Arrays.copyOf(errorTokens,
+                                2 * errorTokens.length);
+                    }
+                    errorTokens[errors.size()] = count;
+                    errors.add(diagnostic);
+                }
+            });
+            TokenKind kind;
+            do {
+                kind = scanner.scan();
+                if (count == kinds.length) {
+                    kinds = Arrays.copyOf(kinds, 2 * count);
+                    lines = Arrays.copyOf(lines, 2 * count);
+                }
+                String image = scanner.image();
+                if (image == kind.image()) {
+                    kinds[count] = (byte) kind.ordinal();
+                } else {
+                    if (imageCount == images.length) {
+                        images = Arrays.copyOf(images, 2 * imageCount);
+                    }
+                    images[imageCount++] = image;
+                    kinds[count] = (byte) (kind.ordinal() | OWN_IMAGE);
+                }
+                lines[count++] = scanner.line();
+            } while (kind != EOF);
+            endsEarly = input.offset() < end;
+            input = null;
+        }
+
+    }
+
+}
@@ -3,6 +3,7 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import static jminusminus.TokenKind.*;
 
 /**
@@ -10,10 +11,42 @@ import static jminusminus.TokenKind.*;
  * LookaheadScanner), parses a Java compilation unit (program file), taking
  * tokens from the LookaheadScanner, and produces an abstract syntax tree (AST)
  * for it.
+ * 
+ * The parser recovers from syntax errors so that a single run reports all of
+ * the independent ones. Within a construct, mustBe() recovers by forcing a
+ * match (see below); when that fails, the parser is left in panic mode, and
+ * the enclosing sequence of constructs (the type declarations of the
+ * compilation unit, the members of a class body, or the statements of a block)
+ * synchronizes: it skips to the end of the construct in error (past a SEMI, or
+ * up to an RCURLY) or to the start of the next one. An error found in panic
+ * mode is most likely a consequence of the one that put the parser there, and
+ * is not reported. Members whose headers are in error are left out of the AST,
+ * as are classes whose headers are; the other classes in error are marked (see
+ * JClassDeclaration.hasSyntaxErrors()), so that they are pre-analyzed, but
+ * neither analyzed nor translated.
  */
 
 public class Parser {
 
+	/** Tokens that start a type declaration (at the top level). */
+	private static final EnumSet<TokenKind> TYPE_STARTERS = EnumSet.of(
+			PUBLIC, PROTECTED, PRIVATE, STATIC, ABSTRACT, CLASS);
+
+	/**
+	 * Tokens that start a member declaration (of a class body); an
+	 * identifier (a type name) may too, but is no safe point to stop at.
+	 */
+	private static final EnumSet<TokenKind> MEMBER_STARTERS = EnumSet.of(
+			PUBLIC, PROTECTED, PRIVATE, STATIC, ABSTRACT, VOID, BOOLEAN,
+			CHAR, INT);
+
+	/**
+	 * Tokens that start a statement (of a block), other than an LCURLY,
+	 * which opens braces to skip.
+	 */
+	private static final EnumSet<TokenKind> STATEMENT_STARTERS = EnumSet.of(
+			IF, WHILE, RETURN, BOOLEAN, CHAR, INT);
+
 	/** The lexical analyzer with which tokens are scanned. */
 	private LookaheadScanner scanner;
 
@@ -23,6 +56,9 @@ public class Parser {
 	/** Whether we have recovered from a parser error. */
 	private boolean isRecovered;
 
+	/** Number of parser errors found (whether reported or not). */
+	private int errorCount;
+
 	/**
 	 * Construct a parser from the given lexical analyzer.
 	 * 
@@ -34,6 +70,7 @@ public class Parser {
 		this.scanner = scann;
 		this.isInError = false;
 		this.isRecovered = true;
+		this.errorCount = 0;
 		scanner.next(); // Prime the pump
 	}
 
@@ -93,6 +130,8 @@ public class Parser {
 	 *  a "isRecovered" state.
 	 * This gives us a kind of poor man's syntactic error recovery. 
 	 * The strategy is due to David Turner and Ron Morrison.
+	 * Tokens are not scanned past a curly bracket, out of (or into) the
+	 * block or class body at hand; that is left to synchronize().
 	 * 
 	 * @param sought
 	 *            the token we're looking for.
@@ -103,13 +142,13 @@ public class Parser {
 			this.scanner.next();
 			this.isRecovered = true;
 		} else if (this.isRecovered) {
-			this.isRecovered = false;
 			this.reportParserError("%s found where %s sought", 
 				this.scanner.token().image(), sought.image());
 		} else {
 			// Do not report the (possibly spurious) error,
 			// but rather attempt to recover by forcing a match.
-			while (!this.see(sought) && !this.see(EOF)) {
+			while (!this.see(sought) && !this.see(EOF)
+					&& !this.see(LCURLY) && !this.see(RCURLY)) {
 				this.scanner.next();
 			}
 			if (this.see(sought)) {
@@ -137,7 +176,44 @@ public class Parser {
 	}
 
 	/**
-	 * Report a syntax error.
+	 * Synchronize after a syntax error from which mustBe() has not
+	 * recovered: skip tokens up to the end of the construct in error, that
+	 * is, past a SEMI, or up to the RCURLY closing the enclosing braces (or
+	 * EOF), or up to a token that starts the next construct; braces opened
+	 * on the way are skipped with their contents. So that the parser moves
+	 * on, the next construct may not start where the one in error began.
+	 * 
+	 * @param start
+	 *            index of the token at which the construct began.
+	 * @param starters
+	 *            tokens that start the next construct.
+	 */
+
+	private void synchronize(int start, EnumSet<TokenKind> starters) {
+		int depth = 0;
+		while (!this.see(EOF)) {
+			if (depth == 0) {
+				if (this.see(RCURLY) || this.have(SEMI)) {
+					break;
+				}
+				if (starters.contains(this.scanner.token().kind())
+						&& this.scanner.index() != start) {
+					break;
+				}
+			}
+			if (this.see(LCURLY)) {
+				depth++;
+			} else if (this.see(RCURLY)) {
+				depth--;
+			}
+			this.scanner.next();
+		}
+		this.isRecovered = true;
+	}
+
+	/**
+	 * Report a syntax error, unless we have not recovered from the last one
+	 * (of which this one is most likely a consequence).
 	 * 
 	 * @param message
 	 *            message identifying the error.
@@ -147,11 +223,14 @@ public class Parser {
 
 	private void reportParserError(String message, Object... args) {
 		this.isInError = true;
+		this.errorCount++;
+		if (this.isRecovered) {
+			this.scanner.diagnosticListener().report(new Diagnostic(
+					this.scanner.fileName(),
+					this.scanner.token().line(),
+					String.format(message, args)));
+		}
 		this.isRecovered = false;
-		System.err.printf("%s:%d: ", this.scanner.fileName(), 
-				this.scanner.token().line());
-		System.err.printf(message, args);
-		System.err.println();
 	}
 
 	// ////////////////////////////////////////////////
@@ -359,10 +438,14 @@ public class Parser {
 		}
 		final ArrayList<JAST> typeDeclarations = new ArrayList<JAST>();
 		while (!this.see(EOF)) {
+			final int start = this.scanner.index();
 			final JAST typeDeclaration = typeDeclaration();
 			if (typeDeclaration != null) {
 				typeDeclarations.add(typeDeclaration);
 			}
+			if (!this.isRecovered) {
+				this.synchronize(start, TYPE_STARTERS);
+			}
 		}
 		this.mustBe(EOF);
 		return new JCompilationUnit(this.scanner.fileName(),
@@ -400,7 +483,8 @@ public class Parser {
 	 *   typeDeclaration ::= modifiers classDeclaration
 	 * </pre>
 	 * 
-	 * @return an AST for a typeDeclaration.
+	 * @return an AST for a typeDeclaration, or null if its header is in
+	 *         error.
 	 */
 
 	private JAST typeDeclaration() {
@@ -499,12 +583,14 @@ public class Parser {
 	 * 
 	 * @param mods
 	 *            the class modifiers.
-	 * @return an AST for a classDeclaration.
+	 * @return an AST for a classDeclaration, or null if its header is in
+	 *         error (its body is parsed all the same).
 	 */
 
 	private JClassDeclaration classDeclaration(
 			ArrayList<String> mods) {
 		final int line = this.scanner.token().line();
+		final int errors = this.errorCount;
 		this.mustBe(CLASS);
 		this.mustBe(IDENTIFIER);
 		final String name = this.scanner.previousToken().image();
@@ -514,8 +600,17 @@ public class Parser {
 		} else {
 			superClass = Type.OBJECT;
 		}
-		return new JClassDeclaration(line, mods, name,
-				superClass, classBody());
+		final boolean isHeaderInError = this.errorCount > errors;
+		final ArrayList<JMember> members = classBody();
+		if (isHeaderInError) {
+			return null;
+		}
+		final JClassDeclaration classDeclaration = new JClassDeclaration(
+				line, mods, name, superClass, members);
+		if (this.errorCount > errors) {
+			classDeclaration.markSyntaxErrors();
+		}
+		return classDeclaration;
 	}
 
 	/**
@@ -527,14 +622,22 @@ public class Parser {
 	 *                 RCURLY
 	 * </pre>
 	 * 
-	 * @return list of members in the class body.
+	 * @return list of members in the class body (but those whose headers
+	 *         are in error).
 	 */
 
 	private ArrayList<JMember> classBody() {
 		final ArrayList<JMember> members = new ArrayList<JMember>();
 		this.mustBe(LCURLY);
 		while (!this.see(RCURLY) && !this.see(EOF)) {
-			members.add(memberDecl(this.modifiers()));
+			final int start = this.scanner.index();
+			final JMember member = memberDecl(this.modifiers());
+			if (member != null) {
+				members.add(member);
+			}
+			if (!this.isRecovered) {
+				this.synchronize(start, MEMBER_STARTERS);
+			}
 		}
 		this.mustBe(RCURLY);
 		return members;
@@ -553,13 +656,19 @@ public class Parser {
 	 *                | type variableDeclarators SEMI
 	 * </pre>
 	 * 
+	 * A member whose header (which is all there is to a field) is in error
+	 * is left out of the AST, lest it be pre-analyzed; its body, if any, is
+	 * parsed all the same.
+	 * 
 	 * @param mods
 	 *            the class member modifiers.
-	 * @return an AST for a memberDecl.
+	 * @return an AST for a memberDecl, or null if its header is in error.
 	 */
 
 	private JMember memberDecl(ArrayList<String> mods) {
 		final int line = this.scanner.token().line();
+		final int errors = this.errorCount;
+		boolean isHeaderInError = false;
 		JMember memberDecl = null;
 		if (this.seeIdentLParen()) {
 			// A constructor
@@ -568,6 +677,7 @@ public class Parser {
 					.previousToken().image();
 			final ArrayList<JFormalParameter> params 
 			= formalParameters();
+			isHeaderInError = this.errorCount > errors;
 			final JBlock body = this.block();
 			memberDecl = new JConstructorDeclaration(
 					line, mods, name, params, body);
@@ -581,6 +691,7 @@ public class Parser {
 						.previousToken().image();
 				final ArrayList<JFormalParameter> params 
 				= this.formalParameters();
+				isHeaderInError = this.errorCount > errors;
 				final JBlock body = this.have(SEMI)
 						? null : block();
 				memberDecl = new JMethodDeclaration(
@@ -594,6 +705,7 @@ public class Parser {
 						.previousToken().image();
 					final ArrayList<JFormalParameter> 
 					params = formalParameters();
+					isHeaderInError = this.errorCount > errors;
 					final JBlock body = this.have(SEMI) 
 						? null : this.block();
 					memberDecl = new JMethodDeclaration(
@@ -604,10 +716,11 @@ public class Parser {
 						line, mods,	
 						this.variableDeclarators(type));
 					this.mustBe(SEMI);
+					isHeaderInError = this.errorCount > errors;
 				}
 			}
 		}
-		return memberDecl;
+		return isHeaderInError ? null : memberDecl;
 	}
 
 	/**
@@ -626,7 +739,11 @@ public class Parser {
 				new ArrayList<JStatement>();
 		this.mustBe(LCURLY);
 		while (!this.see(RCURLY) && !this.see(EOF)) {
+			final int start = this.scanner.index();
 			statements.add(blockStatement());
+			if (!this.isRecovered) {
+				this.synchronize(start, STATEMENT_STARTERS);
+			}
 		}
 		this.mustBe(RCURLY);
 		return new JBlock(line, statements);
@@ -868,11 +985,14 @@ public class Parser {
 		if (this.have(RCURLY)) {
 			return new JArrayInitializer(line, type, initials);
 		}
-		initials.add(this.variableInitializer(type.componentType()));
+		// Initializers nested deeper than the type's dimensions are
+		// reported in analysis
+		final Type componentType = type.componentType() != null
+				? type.componentType() : Type.ANY;
+		initials.add(this.variableInitializer(componentType));
 		while (this.have(COMMA)) {
 			initials.add(this.see(RCURLY)
-					? null : this.variableInitializer(type
-					.componentType()));
+					? null : this.variableInitializer(componentType));
 		}
 		this.mustBe(RCURLY);
 		return new JArrayInitializer(line, type, initials);
@@ -0,0 +1,105 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+/**
+ * A named pass of the compiler over an intermediate representation (IR) of
+ * type T: over a Compilation for the phases of the drivers (parsing,
+ * pre-analysis, analysis, code generation), and over an NControlFlowGraph for
+ * those of the SPIM back end. Passes are run, in order, by a PassManager.
+ * 
+ * An optional pass (one that only some command-line flags call for) is added
+ * disabled, unless the flag is given, and is then skipped.
+ * 
+ * @param <T>
+ *            type of the IR the pass is over.
+ */
+
+abstract class Pass<T> {
+
+    /** Name of the pass. */
+    private String name;
+
+    /** Whether the pass is to be run. */
+    private boolean isEnabled;
+
+    /**
+     * Construct a pass, enabled.
+     * 
+     * @param name
+     *            name of the pass.
+     */
+
+    protected Pass(String name) {
+        this(name, true);
+    }
+
+    /**
+     * Construct a pass, enabled or not.
+     * 
+     * @param name
+     *            name of the pass.
+     * @param isEnabled
+     *            whether the pass is to be run.
+     */
+
+    protected Pass(String name, boolean isEnabled) {
+        this.name = name;
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * Return the name of the pass.
+     * 
+     * @return the name.
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Is the pass to be run?
+     * 
+     * @return true or false.
+     */
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Run the pass over the specified IR.
+     * 
+     * @param ir
+     *            the IR.
+     * @return true if the passes after this one are to be run; false if the
+     *         compilation is to stop here (after errors, say).
+     */
+
+    public abstract boolean run(T ir);
+
+    /**
+     * Return the size of the specified IR, as left by the pass, in units().
+     * By default, the size is not measured.
+     * 
+     * @param ir
+     *            the IR.
+     * @return the size, or -1 if it is not measured.
+     */
+
+    public long size(T ir) {
+        return -1;
+    }
+
+    /**
+     * Return the units in which size() is measured (eg, nodes).
+     * 
+     * @return the units.
+     */
+
+    public String units() {
+        return "";
+    }
+
+}
@@ -0,0 +1,102 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+
+/**
+ * Runs a sequence of passes over an IR of type T, in the order in which they
+ * were added, skipping those that are not enabled. The sequence stops early
+ * when a pass says so (after errors, say), or after the pass it is asked to
+ * stop after (for the -p, -pa and -a options of the drivers).
+ * 
+ * If the manager is given a PassMetrics, each pass run is timed, and its
+ * allocation and the size of the IR it leaves are recorded there; a pass run
+ * within another (a pass of the SPIM back end within code generation, say) is
+ * recorded under it.
+ * 
+ * @param <T>
+ *            type of the IR the passes are over.
+ */
+
+class PassManager<T> {
+
+    /** The passes, in order. */
+    private ArrayList<Pass<T>> passes;
+
+    /** Where the passes run are recorded; null if they are not. */
+    private PassMetrics metrics;
+
+    /** Name of the pass after which to stop; null to run them all. */
+    private String stopAfter;
+
+    /**
+     * Construct a PassManager with no passes.
+     * 
+     * @param metrics
+     *            where the passes run are recorded; null if they are not.
+     */
+
+    public PassManager(PassMetrics metrics) {
+        passes = new ArrayList<Pass<T>>();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Add a pass, after those already added.
+     * 
+     * @param pass
+     *            the pass.
+     */
+
+    public void add(Pass<T> pass) {
+        passes.add(pass);
+    }
+
+    /**
+     * Stop after the named pass, whatever it says.
+     * 
+     * @param name
+     *            name of the pass; null to run them all.
+     */
+
+    public void stopAfter(String name) {
+        stopAfter = name;
+    }
+
+    /**
+     * Run the (enabled) passes over the specified IR.
+     * 
+     * @param ir
+     *            the IR.
+     * @return true if the passes ran to the end, or to the pass to stop after;
+     *         false if a pass stopped them.
+     */
+
+    public boolean run(T ir) {
+        for (Pass<T> pass : passes) {
+            if (!pass.isEnabled()) {
+                continue;
+            }
+            boolean proceed;
+            if (metrics == null) {
+                proceed = pass.run(ir);
+            } else {
+                metrics.begin(pass.name());
+                try {
+                    proceed = pass.run(ir);
+                } finally {
+                    metrics.end();
+                }
+                metrics.size(pass.name(), pass.size(ir), pass.units());
+            }
+            if (pass.name().equals(stopAfter)) {
+                return true;
+            } else if (!proceed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,290 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+
+/**
+ * What the passes of a compilation took (the -time-passes option): for each
+ * pass, the number of times it was run, the wall time and the bytes
+ * allocated, in all, and the size of the IR it left (summed over the runs; for
+ * a pass of the SPIM back end, which is run once per method, over the
+ * methods). The passes are reported in the order in which they were first
+ * run, those run within another (as the back end's are within code
+ * generation) indented under it; the totals are those of the outermost
+ * passes.
+ * 
+ * The bytes allocated are those of all of the threads (parsing and code
+ * generation run on a pool), as reported by the JVM's ThreadMXBean; where it
+ * cannot report them, they are not measured. The allocation of a thread that
+ * ends during a pass is missed.
+ * 
+ * Passes are recorded from the thread that runs the PassManagers, so the
+ * metrics are not synchronized.
+ */
+
+class PassMetrics {
+
+    /** The JVM's thread bean, if it reports the bytes threads allocate. */
+    private com.sun.management.ThreadMXBean threads;
+
+    /** Records of the passes, by name, in the order first run. */
+    private LinkedHashMap<String, Record> records;
+
+    /** The passes being run, innermost on top. */
+    private ArrayDeque<Run> running;
+
+    /**
+     * Construct an empty PassMetrics.
+     */
+
+    public PassMetrics() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean)
+                        .isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        records = new LinkedHashMap<String, Record>();
+        running = new ArrayDeque<Run>();
+    }
+
+    /**
+     * Begin a run of the named pass.
+     * 
+     * @param name
+     *            name of the pass.
+     */
+
+    public void begin(String name) {
+        Record record = records.get(name);
+        if (record == null) {
+            record = new Record(name, running.size());
+            records.put(name, record);
+        }
+        running.push(new Run(record, allocatedBytes(), System.nanoTime()));
+    }
+
+    /**
+     * End the run of the pass begun last.
+     */
+
+    public void end() {
+        long nanos = System.nanoTime();
+        Run run = running.pop();
+        run.record.runs++;
+        run.record.nanos += nanos - run.nanos;
+        if (threads != null) {
+            run.record.bytes += allocatedBytes() - run.bytes;
+        }
+    }
+
+    /**
+     * Record the size of the IR left by a run of the named pass.
+     * 
+     * @param name
+     *            name of the pass.
+     * @param size
+     *            size of the IR, or -1 if it is not measured.
+     * @param units
+     *            units in which the size is measured.
+     */
+
+    public void size(String name, long size, String units) {
+        Record record = records.get(name);
+        if (record != null && size >= 0) {
+            record.size = Math.max(record.size, 0) + size;
+            record.units = units;
+        }
+    }
+
+    /**
+     * Write the metrics as a table.
+     * 
+     * @param out
+     *            where to write.
+     */
+
+    public void writeTo(PrintStream out) {
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (Record record : records.values()) {
+            if (record.depth == 0) {
+                totalNanos += record.nanos;
+                totalBytes += record.bytes;
+            }
+        }
+        out.println("Pass metrics (wall time; bytes allocated by all threads)");
+        out.printf("%-34s %6s %10s %6s %10s  %s\n", "Pass", "Runs",
+                "Time (ms)", "%", "Alloc (MB)", "IR size");
+        for (Record record : records.values()) {
+            String name = record.name;
+            for (int i = 0; i < record.depth; i++) {
+                name = "  " + name;
+            }
+            out.printf("%-34s %6d %10.1f %6.1f %10s  %s\n", name,
+                    record.runs, record.nanos / 1e6, totalNanos == 0 ? 0.0
+                            : 100.0 * record.nanos / totalNanos,
+                    megabytes(record.bytes), record.size < 0 ? "-"
+                            : record.size + " " + record.units);
+        }
+        out.printf("%-34s %6s %10.1f %6.1f %10s\n", "Total", "",
+                totalNanos / 1e6, 100.0, megabytes(totalBytes));
+    }
+
+    /**
+     * Write the metrics as JSON to the named file.
+     * 
+     * @param fileName
+     *            name of the file.
+     * @exception IOException
+     *                if the file cannot be written.
+     */
+
+    public void writeJson(String fileName) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(fileName));
+        try {
+            out.println("{");
+            out.println("  \"allocationMeasured\": " + (threads != null)
+                    + ",");
+            out.println("  \"passes\": [");
+            int i = 0;
+            for (Record record : records.values()) {
+                out.printf("    {\"name\": \"%s\", \"depth\": %d, "
+                        + "\"runs\": %d, \"nanos\": %d, \"bytes\": %d, "
+                        + "\"irSize\": %d, \"irUnits\": \"%s\"}%s\n",
+                        record.name, record.depth, record.runs, record.nanos,
+                        threads == null ? -1 : record.bytes, record.size,
+                        record.units, ++i < records.size() ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("cannot write " + fileName);
+        }
+    }
+
+    /**
+     * Return the bytes allocated by all of the (live) threads, up to now; 0
+     * if they are not measured.
+     * 
+     * @return the bytes.
+     */
+
+    private long allocatedBytes() {
+        if (threads == null) {
+            return 0;
+        }
+        long sum = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads
+                .getAllThreadIds())) {
+            if (bytes > 0) {
+                sum += bytes;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Return the specified number of bytes in MB, as a string; "-" if
+     * allocation is not measured.
+     * 
+     * @param bytes
+     *            the number of bytes.
+     * @return the string.
+     */
+
+    private String megabytes(long bytes) {
+        return threads == null ? "-" : String.format("%.1f",
+                bytes / 1048576.0);
+    }
+
+    /**
+     * The record of a pass.
+     */
+
+    private static class Record {
+
+        /** Name of the pass. */
+        private String name;
+
+        /** Number of passes it was run within. */
+        private int depth;
+
+        /** Number of times it was run. */
+        private int runs;
+
+        /** Wall time it took, in all. */
+        private long nanos;
+
+        /** Bytes allocated while it ran, in all. */
+        private long bytes;
+
+        /** Size of the IR it left, summed over the runs; -1 if unknown. */
+        private long size = -1;
+
+        /** Units of the size. */
+        private String units = "";
+
+        /**
+         * Construct a Record.
+         * 
+         * @param name
+         *            name of the pass.
+         * @param depth
+         *            number of passes it is run within.
+         */
+
+        public Record(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+
+    }
+
+    /**
+     * A run of a pass, begun but not yet ended.
+     */
+
+    private static class Run {
+
+        /** Record of the pass. */
+        private Record record;
+
+        /** Bytes allocated when the run began. */
+        private long bytes;
+
+        /** Time at which the run began. */
+        private long nanos;
+
+        /**
+         * Construct a Run.
+         * 
+         * @param record
+         *            record of the pass.
+         * @param bytes
+         *            bytes allocated when the run began.
+         * @param nanos
+         *            time at which the run began.
+         */
+
+        public Run(Record record, long bytes, long nanos) {
+            this.record = record;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+    }
+
+}
@@ -3,10 +3,9 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.util.Hashtable;
+import java.io.Reader;
+import java.util.Arrays;
 import static jminusminus.TokenKind.*;
 
 /**
@@ -17,13 +16,63 @@ import static jminusminus.TokenKind.*;
  * token.
  */
 
-class Scanner {
+class Scanner implements TokenScanner {
 
     /** End of file character. */
     public final static char EOFCH = CharReader.EOFCH;
 
     /** Keywords in j--. */
-    private Hashtable<String, TokenKind> reserved;
+    private final static TokenKind[] RESERVED = { ABSTRACT, BOOLEAN, CHAR,
+            CLASS, ELSE, EXTENDS, FALSE, IF, IMPORT, INSTANCEOF, INT, NEW, NULL,
+            PACKAGE, PRIVATE, PROTECTED, PUBLIC, RETURN, STATIC, SUPER, THIS,
+            TRUE, VOID, WHILE };
+
+    /**
+     * Keywords, by their (perfect) hash; see keywordHash(). The table is
+     * built, and the hash's multiplier chosen so that no two keywords share a
+     * slot, when the class is loaded.
+     */
+    private final static TokenKind[] keywords = new TokenKind[64];
+
+    /** Multiplier in the keywords' perfect hash. */
+    private static int keywordMultiplier;
+
+    /** Lengths of the shortest and longest keywords. */
+    private static int minKeywordLength, maxKeywordLength;
+
+    static {
+        minKeywordLength = Integer.MAX_VALUE;
+        for (TokenKind keyword : RESERVED) {
+            minKeywordLength = Math.min(minKeywordLength, keyword.image()
+                    .length());
+            maxKeywordLength = Math.max(maxKeywordLength, keyword.image()
+                    .length());
+        }
+        boolean collision = true;
+        while (collision) {
+            keywordMultiplier++;
+            collision = false;
+            Arrays.fill(keywords, null);
+            for (TokenKind keyword : RESERVED) {
+                char[] image = keyword.image().toCharArray();
+                int h = keywordHash(image, 0, image.length);
+                if (keywords[h] != null) {
+                    collision = true;
+                    break;
+                }
+                keywords[h] = keyword;
+            }
+        }
+    }
+
+    /** Names (identifiers and int literals) met so far. */
+    private NameTable names;
+
+    /** Text of the character or string literal being scanned. */
+    private StringBuilder text;
+
+    /** Image of the token last scanned. */
+    private String image;
 
     /** Source characters. */
     private CharReader input;
@@ -40,6 +89,9 @@ class Scanner {
     /** Line number of current token. */
     private int line;
 
+    /** Listener to which lexical errors are reported. */
+    private DiagnosticListener diagnosticListener;
+
     /**
      * Construct a Scanner object.
      * 
@@ -50,36 +102,45 @@ class Scanner {
      */
 
     public Scanner(String fileName) throws FileNotFoundException {
-        this.input = new CharReader(fileName);
-        this.fileName = fileName;
+        this(fileName, new SourceReader(fileName), DiagnosticListener.STDERR);
+    }
+
+    /**
+     * Construct a Scanner object reading the source from the specified reader
+     * rather than from the file system.
+     * 
+     * @param fileName
+     *            the name under which errors in the source are reported.
+     * @param source
+     *            the source.
+     * @param diagnosticListener
+     *            listener to which lexical errors are reported.
+     */
+
+    public Scanner(String fileName, Reader source,
+            DiagnosticListener diagnosticListener) {
+        this(new CharReader(fileName, source), diagnosticListener);
+    }
+
+    /**
+     * Construct a Scanner object reading the source from the specified
+     * character reader; this may be one over a region of a source (see
+     * ParallelScanner).
+     * 
+     * @param input
+     *            the character reader.
+     * @param diagnosticListener
+     *            listener to which lexical errors are reported.
+     */
+
+    public Scanner(CharReader input, DiagnosticListener diagnosticListener) {
+        this.input = input;
+        this.fileName = input.fileName();
+        this.diagnosticListener = diagnosticListener;
         isInError = false;
 
-        // Keywords in j--
-        reserved = new Hashtable<String, TokenKind>();
-        reserved.put(ABSTRACT.image(), ABSTRACT);
-        reserved.put(BOOLEAN.image(), BOOLEAN);
-        reserved.put(CHAR.image(), CHAR);
-        reserved.put(CLASS.image(), CLASS);
-        reserved.put(ELSE.image(), ELSE);
-        reserved.put(EXTENDS.image(), EXTENDS);
-        reserved.put(FALSE.image(), FALSE);
-        reserved.put(IF.image(), IF);
-        reserved.put(IMPORT.image(), IMPORT);
-        reserved.put(INSTANCEOF.image(), INSTANCEOF);
-        reserved.put(INT.image(), INT);
-        reserved.put(NEW.image(), NEW);
-        reserved.put(NULL.image(), NULL);
-        reserved.put(PACKAGE.image(), PACKAGE);
-        reserved.put(PRIVATE.image(), PRIVATE);
-        reserved.put(PROTECTED.image(), PROTECTED);
-        reserved.put(PUBLIC.image(), PUBLIC);
-        reserved.put(RETURN.image(), RETURN);
-        reserved.put(STATIC.image(), STATIC);
-        reserved.put(SUPER.image(), SUPER);
-        reserved.put(THIS.image(), THIS);
-        reserved.put(TRUE.image(), TRUE);
-        reserved.put(VOID.image(), VOID);
-        reserved.put(WHILE.image(), WHILE);
+        names = new NameTable();
+        text = new StringBuilder();
 
         // Prime the pump.
         nextCh();
@@ -92,7 +153,20 @@ class Scanner {
      */
 
     public TokenInfo getNextToken() {
-        StringBuffer buffer;
+        TokenKind kind = scan();
+        return new TokenInfo(kind, image, line);
+    }
+
+    /**
+     * Scan the next token from input, without making a TokenInfo for it: its
+     * image and line are then those answered by image() and line(), until the
+     * next token is scanned.
+     * 
+     * @return the kind of the next scanned token.
+     */
+
+    public TokenKind scan() {
+        int start, length;
         boolean moreWhiteSpace = true;
         while (moreWhiteSpace) {
             while (isWhitespace(ch)) {
@@ -107,7 +181,8 @@ class Scanner {
                     }
                 } else {
                     // @depracated reportScannerError("Operator / is not supported in j--.");
-                	return new TokenInfo(DIV, line);
+                    line = input.line();
+                	return token(DIV);
                 }
             } else {
                 moreWhiteSpace = false;
@@ -117,120 +192,120 @@ class Scanner {
         switch (ch) {
         case '(':
             nextCh();
-            return new TokenInfo(LPAREN, line);
+            return token(LPAREN);
         case ')':
             nextCh();
-            return new TokenInfo(RPAREN, line);
+            return token(RPAREN);
         case '{':
             nextCh();
-            return new TokenInfo(LCURLY, line);
+            return token(LCURLY);
         case '}':
             nextCh();
-            return new TokenInfo(RCURLY, line);
+            return token(RCURLY);
         case '[':
             nextCh();
-            return new TokenInfo(LBRACK, line);
+            return token(LBRACK);
         case ']':
             nextCh();
-            return new TokenInfo(RBRACK, line);
+            return token(RBRACK);
         case ';':
             nextCh();
-            return new TokenInfo(SEMI, line);
+            return token(SEMI);
         case ',':
             nextCh();
-            return new TokenInfo(COMMA, line);
+            return token(COMMA);
         case '=':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(EQUAL, line);
+                return token(EQUAL);
             } else {
-                return new TokenInfo(ASSIGN, line);
+                return token(ASSIGN);
             }
         case '!':
             nextCh();
-            return new TokenInfo(LNOT, line);
+            return token(LNOT);
         case '*':
             nextCh();
-            return new TokenInfo(STAR, line);
+            return token(STAR);
         case '%':
             nextCh();
-            return new TokenInfo(MOD, line);
+            return token(MOD);
         case '+':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(PLUS_ASSIGN, line);
+                return token(PLUS_ASSIGN);
             } else if (ch == '+') {
                 nextCh();
-                return new TokenInfo(INC, line);
+                return token(INC);
             } else {
-                return new TokenInfo(PLUS, line);
+                return token(PLUS);
             }
         case '-':
             nextCh();
             if (ch == '-') {
                 nextCh();
-                return new TokenInfo(DEC, line);
+                return token(DEC);
             } else {
-                return new TokenInfo(MINUS, line);
+                return token(MINUS);
             }
         case '&':
             nextCh();
             if (ch == '&') {
                 nextCh();
-                return new TokenInfo(LAND, line);
+                return token(LAND);
             } else {
                 reportScannerError("Operator & is not supported in j--.");
-                return getNextToken();
+                return scan();
             }
         case '>':
             nextCh();
-            return new TokenInfo(GT, line);
+            return token(GT);
         case '<':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(LE, line);
+                return token(LE);
             } else {
                 reportScannerError("Operator < is not supported in j--.");
-                return getNextToken();
+                return scan();
             }
         case '\'':
-            buffer = new StringBuffer();
-            buffer.append('\'');
+            text.setLength(0);
+            text.append('\'');
             nextCh();
             if (ch == '\\') {
                 nextCh();
-                buffer.append(escape());
+                text.append(escape());
             } else {
-                buffer.append(ch);
+                text.append(ch);
                 nextCh();
             }
             if (ch == '\'') {
-                buffer.append('\'');
+                text.append('\'');
                 nextCh();
-                return new TokenInfo(CHAR_LITERAL, buffer.toString(), line);
+                return token(CHAR_LITERAL, text.toString());
             } else {
                 // Expected a ' ; report error and try to
                 // recover.
-                reportScannerError(ch
-                        + " found by scanner where closing ' was expected.");
-                while (ch != '\'' && ch != ';' && ch != '\n') {
+                reportScannerError(
+                        "%c found by scanner where closing ' was expected.", ch);
+                while (ch != '\'' && ch != ';' && ch != '\n' && ch != EOFCH) {
                     nextCh();
                 }
-                return new TokenInfo(CHAR_LITERAL, buffer.toString(), line);
+                return token(CHAR_LITERAL, text.toString());
             }
         case '"':
-            buffer = new StringBuffer();
-            buffer.append("\"");
+            text.setLength(0);
+            text.append("\"");
             nextCh();
             while (ch != '"' && ch != '\n' && ch != EOFCH) {
                 if (ch == '\\') {
                     nextCh();
-                    buffer.append(escape());
+                    text.append(escape());
                 } else {
-                    buffer.append(ch);
+                    text.append(ch);
                     nextCh();
                 }
             }
@@ -241,18 +316,18 @@ class Scanner {
             } else {
                 // Scan the closing "
                 nextCh();
-                buffer.append("\"");
+                text.append("\"");
             }
-            return new TokenInfo(STRING_LITERAL, buffer.toString(), line);
+            return token(STRING_LITERAL, text.toString());
         case '.':
             nextCh();
-            return new TokenInfo(DOT, line);
+            return token(DOT);
         case EOFCH:
-            return new TokenInfo(EOF, line);
+            return token(EOF);
         case '0':
             // Handle only simple decimal integers for now.
             nextCh();
-            return new TokenInfo(INT_LITERAL, "0", line);
+            return token(INT_LITERAL, "0");
         case '1':
         case '2':
         case '3':
@@ -262,31 +337,113 @@ class Scanner {
         case '7':
         case '8':
         case '9':
-            buffer = new StringBuffer();
+            start = input.offset();
             while (isDigit(ch)) {
-                buffer.append(ch);
                 nextCh();
             }
-            return new TokenInfo(INT_LITERAL, buffer.toString(), line);
+            length = input.offset() - start;
+            return token(INT_LITERAL, names.intern(input.chars(), start,
+                    length));
         default:
             if (isIdentifierStart(ch)) {
-                buffer = new StringBuffer();
+                start = input.offset();
                 while (isIdentifierPart(ch)) {
-                    buffer.append(ch);
                     nextCh();
                 }
-                String identifier = buffer.toString();
-                if (reserved.containsKey(identifier)) {
-                    return new TokenInfo(reserved.get(identifier), line);
+                length = input.offset() - start;
+                TokenKind keyword = keyword(input.chars(), start, length);
+                if (keyword != null) {
+                    return token(keyword);
                 } else {
-                    return new TokenInfo(IDENTIFIER, identifier, line);
+                    return token(IDENTIFIER, names.intern(input.chars(),
+                            start, length));
                 }
             } else {
                 reportScannerError("Unidentified input token: '%c'", ch);
                 nextCh();
-                return getNextToken();
+                return scan();
+            }
+        }
+    }
+
+    /**
+     * Record a token whose image is simply its string representation.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @return the token's kind.
+     */
+
+    private TokenKind token(TokenKind kind) {
+        image = kind.image();
+        return kind;
+    }
+
+    /**
+     * Record a token with the specified image.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @param image
+     *            the token's image.
+     * @return the token's kind.
+     */
+
+    private TokenKind token(TokenKind kind, String image) {
+        this.image = image;
+        return kind;
+    }
+
+    /**
+     * Return the keyword made up of the specified characters, or null if they
+     * do not make up a keyword.
+     * 
+     * @param chars
+     *            the characters.
+     * @param start
+     *            offset of the first character.
+     * @param length
+     *            number of characters.
+     * @return the keyword, or null.
+     */
+
+    private static TokenKind keyword(char[] chars, int start, int length) {
+        if (length < minKeywordLength || length > maxKeywordLength) {
+            return null;
+        }
+        TokenKind keyword = keywords[keywordHash(chars, start, length)];
+        if (keyword == null) {
+            return null;
+        }
+        String image = keyword.image();
+        if (image.length() != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (image.charAt(i) != chars[start + i]) {
+                return null;
             }
         }
+        return keyword;
+    }
+
+    /**
+     * The keywords' perfect hash: a function of the first two and the last
+     * characters, and the length, of (at least two) characters.
+     * 
+     * @param chars
+     *            the characters.
+     * @param start
+     *            offset of the first character.
+     * @param length
+     *            number of characters.
+     * @return the hash, an index into keywords.
+     */
+
+    private static int keywordHash(char[] chars, int start, int length) {
+        int h = (chars[start] * 31 + chars[start + 1]) * keywordMultiplier
+                + chars[start + length - 1] * 7 + length;
+        return (h ^ (h >>> 6)) & (keywords.length - 1);
     }
 
     /**
@@ -329,11 +486,12 @@ class Scanner {
     }
 
     /**
-     * Advance ch to the next character from input, and update the line number.
+     * Advance ch to the next character from input. The line number is looked
+     * up (from input) only where it is needed: at the start of a token, and
+     * when an error is reported.
      */
 
     private void nextCh() {
-        line = input.line();
         try {
             ch = input.nextChar();
         } catch (Exception e) {
@@ -354,9 +512,9 @@ class Scanner {
 
     private void reportScannerError(String message, Object... args) {
         isInError = true;
-        System.err.printf("%s:%d: ", fileName, line);
-        System.err.printf(message, args);
-        System.err.println();
+        line = input.line();
+        diagnosticListener.report(new Diagnostic(fileName, line, String
+                .format(message, args)));
     }
 
     /**
@@ -426,6 +584,26 @@ class Scanner {
         return isInError;
     }
 
+    /**
+     * Return the image of the token last scanned.
+     * 
+     * @return the image.
+     */
+
+    public String image() {
+        return image;
+    }
+
+    /**
+     * Return the line of the token last scanned.
+     * 
+     * @return the line number.
+     */
+
+    public int line() {
+        return line;
+    }
+
     /**
      * The name of the source file.
      * 
@@ -436,12 +614,27 @@ class Scanner {
         return fileName;
     }
 
+    /**
+     * Return the listener to which errors in the source are reported.
+     * 
+     * @return the diagnostic listener.
+     */
+
+    public DiagnosticListener diagnosticListener() {
+        return diagnosticListener;
+    }
+
 }
 
 /**
  * A buffered character reader. Abstracts out differences between platforms,
  * mapping all new lines to '\n'. Also, keeps track of line numbers where the
  * first line is numbered 1.
+ * 
+ * The whole input is read (in bulk) into a character array the first time a
+ * character is asked for; the same pass maps new lines to '\n' and records
+ * where each line starts, so that the line number of a character is found
+ * from its offset, rather than counted character by character.
  */
 
 class CharReader {
@@ -449,8 +642,29 @@ class CharReader {
     /** A representation of the end of file as a character. */
     public final static char EOFCH = (char) -1;
 
-    /** The underlying reader records line numbers. */
-    private LineNumberReader lineNumberReader;
+    /** Most characters read (and mapped) at a time. */
+    private final static int BLOCK = 1 << 16;
+
+    /** The input; null once it has been read. */
+    private Reader reader;
+
+    /** The characters read. */
+    private char[] buffer;
+
+    /** Number of characters read. */
+    private int count;
+
+    /** Offset of the next character to be scanned. */
+    private int pos;
+
+    /** Offsets at which the lines start; the first line starts at 0. */
+    private int[] lineStarts;
+
+    /** Number of lines. */
+    private int lines;
+
+    /** Index (in lineStarts) of the line holding the last character scanned. */
+    private int lineIndex;
 
     /** Name of the file that is being read. */
     private String fileName;
@@ -465,10 +679,48 @@ class CharReader {
      */
 
     public CharReader(String fileName) throws FileNotFoundException {
-        lineNumberReader = new LineNumberReader(new FileReader(fileName));
+        this(fileName, new SourceReader(fileName));
+    }
+
+    /**
+     * Construct a CharReader reading from the specified reader.
+     * 
+     * @param fileName
+     *            the name of the input.
+     * @param reader
+     *            the input.
+     */
+
+    public CharReader(String fileName, Reader reader) {
+        this.reader = reader;
         this.fileName = fileName;
     }
 
+    /**
+     * Construct a CharReader over a region of the characters another has
+     * read: its end of file is at the end of the region, and its line numbers
+     * are those of the whole input. The two share the characters, which is
+     * safe from different threads since neither changes them.
+     * 
+     * @param whole
+     *            a CharReader (after its first character has been scanned).
+     * @param start
+     *            offset of the first character of the region.
+     * @param end
+     *            offset just past the last character of the region.
+     */
+
+    public CharReader(CharReader whole, int start, int end) {
+        fileName = whole.fileName;
+        buffer = whole.buffer;
+        lineStarts = whole.lineStarts;
+        lines = whole.lines;
+        count = end;
+        pos = start;
+        int i = Arrays.binarySearch(lineStarts, 0, lines, start);
+        lineIndex = i >= 0 ? i : -i - 2;
+    }
+
     /**
      * Scan the next character.
      * 
@@ -478,18 +730,94 @@ class CharReader {
      */
 
     public char nextChar() throws IOException {
-        return (char) lineNumberReader.read();
+        // Kept small, so as to be inlined into the Scanner's loops
+        if (pos < count) {
+            return buffer[pos++];
+        }
+        return nextCharSlowly();
+    }
+
+    /**
+     * Scan the next character, when there are no more in buffer: either the
+     * input has not been read yet, or the end of file has been reached.
+     * 
+     * @return the character scanned.
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    private char nextCharSlowly() throws IOException {
+        if (reader != null) {
+            read();
+            return nextChar();
+        }
+        pos = count + 1;
+        return EOFCH;
     }
 
     /**
-     * The current line number in the source file, starting at 1.
+     * The line number (starting at 1) of the character last scanned; if none
+     * has been, 1.
      * 
      * @return the current line number.
      */
 
     public int line() {
-        // LineNumberReader counts lines from 0.
-        return lineNumberReader.getLineNumber() + 1;
+        return line(pos - 1);
+    }
+
+    /**
+     * The line number (starting at 1) of the character at the specified
+     * offset (in chars()); at the end of file, that of the last line.
+     * 
+     * @param offset
+     *            the offset.
+     * @return the line number.
+     */
+
+    public int line(int offset) {
+        if (lines > 0 && lineStarts[lineIndex] > offset) {
+            // Rarely, an earlier line; otherwise the line only moves forward
+            int i = Arrays.binarySearch(lineStarts, 0, lines, offset);
+            lineIndex = i >= 0 ? i : -i - 2;
+        }
+        while (lineIndex + 1 < lines && lineStarts[lineIndex + 1] <= offset) {
+            lineIndex++;
+        }
+        return lineIndex + 1;
+    }
+
+    /**
+     * Return the offset of the character last scanned (in chars()); at the end
+     * of file, the number of characters read.
+     * 
+     * @return the offset.
+     */
+
+    public int offset() {
+        return pos - 1;
+    }
+
+    /**
+     * Return the characters read (after the first character has been scanned).
+     * The array has room for (at least) one more character after the last.
+     * 
+     * @return the characters.
+     */
+
+    public char[] chars() {
+        return buffer;
+    }
+
+    /**
+     * Return the number of characters read (after the first character has
+     * been scanned).
+     * 
+     * @return the number of characters.
+     */
+
+    public int length() {
+        return count;
     }
 
     /**
@@ -510,7 +838,60 @@ class CharReader {
      */
 
     public void close() throws IOException {
-        lineNumberReader.close();
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * Read the whole input into buffer, mapping "\r\n" and '\r' to '\n' and
+     * recording the line starts, and close it.
+     * 
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    private void read() throws IOException {
+        // A SourceReader knows how many characters there are (at most), so
+        // the buffer need not grow. It is filled a block at a time, so that
+        // new lines are mapped while the block is still in the cache.
+        buffer = new char[reader instanceof SourceReader
+                ? ((SourceReader) reader).capacity() + 1 : 8192];
+        lineStarts = new int[256];
+        lines = 1;
+        boolean afterCR = false;
+        try {
+            int n = reader.read(buffer, count, Math.min(BLOCK, buffer.length
+                    - count));
+            while (n >= 0) {
+                int end = count + n;
+                for (int i = count; i < end; i++) {
+                    char c = buffer[i];
+                    if (c == '\n' && afterCR) {
+                        // Second half of "\r\n", already mapped
+                        afterCR = false;
+                        continue;
+                    }
+                    afterCR = c == '\r';
+                    if (afterCR || c == '\n') {
+                        c = '\n';
+                        if (lines == lineStarts.length) {
+                            lineStarts = Arrays.copyOf(lineStarts, 2 * lines);
+                        }
+                        lineStarts[lines++] = count + 1;
+                    }
+                    buffer[count++] = c;
+                }
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                }
+                n = reader.read(buffer, count, Math.min(BLOCK, buffer.length
+                        - count));
+            }
+        } finally {
+            close();
+        }
     }
 
 }
@@ -0,0 +1,95 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileNotFoundException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
+
+/**
+ * A factory of the LookaheadScanners over the sources of a compilation: the
+ * hand-written Scanner, the table-driven DFAScanner, or the ParallelScanner
+ * (which scans large sources in parallel chunks), reading the sources from the
+ * file system or from strings held in memory. Main and JMinusMinusCompiler
+ * hand one to the parse pass (see Compilation.parsePass()).
+ */
+
+class ScannerFactory {
+
+    /** Whether to scan with the DFAScanner rather than the Scanner. */
+    private boolean dfaScanner;
+
+    /** Whether to scan with the ParallelScanner (overrides dfaScanner). */
+    private boolean parallelScan;
+
+    /** Maps source names to source text; null to read from files. */
+    private Map<String, CharSequence> sources;
+
+    /**
+     * Construct a ScannerFactory for scanners reading from the file system.
+     * 
+     * @param dfaScanner
+     *            whether to scan with the DFAScanner rather than the Scanner.
+     * @param parallelScan
+     *            whether to scan large sources in parallel chunks (with the
+     *            ParallelScanner, which overrides dfaScanner).
+     */
+
+    public ScannerFactory(boolean dfaScanner, boolean parallelScan) {
+        this(dfaScanner, parallelScan, null);
+    }
+
+    /**
+     * Construct a ScannerFactory for scanners reading from the specified
+     * sources rather than from the file system.
+     * 
+     * @param dfaScanner
+     *            whether to scan with the DFAScanner rather than the Scanner.
+     * @param parallelScan
+     *            whether to scan large sources in parallel chunks (with the
+     *            ParallelScanner, which overrides dfaScanner).
+     * @param sources
+     *            maps source names to source text; null to read from files.
+     */
+
+    public ScannerFactory(boolean dfaScanner, boolean parallelScan,
+            Map<String, CharSequence> sources) {
+        this.dfaScanner = dfaScanner;
+        this.parallelScan = parallelScan;
+        this.sources = sources;
+    }
+
+    /**
+     * Return a LookaheadScanner over the named source.
+     * 
+     * @param sourceName
+     *            name of the source (file).
+     * @param diagnosticListener
+     *            listener to which lexical and syntax errors are reported.
+     * @return the scanner.
+     * @exception FileNotFoundException
+     *                when the source cannot be found.
+     */
+
+    public LookaheadScanner newScanner(String sourceName,
+            DiagnosticListener diagnosticListener)
+            throws FileNotFoundException {
+        Reader source;
+        if (sources == null) {
+            source = new SourceReader(sourceName);
+        } else if (sources.containsKey(sourceName)) {
+            source = new StringReader(sources.get(sourceName).toString());
+        } else {
+            throw new FileNotFoundException(sourceName);
+        }
+        if (parallelScan) {
+            return new LookaheadScanner(new ParallelScanner(sourceName,
+                    source, diagnosticListener));
+        }
+        return dfaScanner ? new LookaheadScanner(new DFAScanner(sourceName,
+                source, diagnosticListener)) : new LookaheadScanner(
+                new Scanner(sourceName, source, diagnosticListener));
+    }
+
+}
@@ -0,0 +1,257 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reader of a source file, from which both front ends read: the CharReader
+ * of the hand-written scanners, and the SimpleCharStream of the JavaCC one.
+ * Rather than copying the file through a FileInputStream, an
+ * InputStreamReader and their buffers, it memory-maps the file (or, if it is
+ * small, reads it in one go) when characters are first asked for, and decodes
+ * the bytes straight into the array they are asked for in, as they are asked
+ * for.
+ * 
+ * The bytes are decoded as a FileReader decodes them, in the platform's
+ * default charset. In UTF-8, ISO-8859-1 and ASCII, the first 128 characters
+ * are single bytes, and a run of them is decoded by a plain loop; the
+ * charset's decoder is used for the other bytes only (and for every byte in
+ * other charsets).
+ * 
+ * Since the size of the file is known, a reader of the whole source can size
+ * its array once, from capacity(), rather than growing it as it reads.
+ */
+
+class SourceReader extends Reader {
+
+    /** Files of fewer bytes than this are read, rather than mapped. */
+    private final static int MAP_THRESHOLD = 1 << 16;
+
+    /** The file; null once it has been mapped (or read). */
+    private FileInputStream file;
+
+    /** The bytes of the file, from the next one to be decoded. */
+    private ByteBuffer bytes;
+
+    /** Decoder for the platform's default charset. */
+    private CharsetDecoder decoder;
+
+    /** Whether the charset is one in which ASCII characters are bytes. */
+    private boolean asciiBytes;
+
+    /** Whether the decoder has been flushed (after the last byte). */
+    private boolean flushed;
+
+    /** Room for the two chars of a surrogate pair, when asked for one. */
+    private char[] pair = new char[2];
+
+    /** Whether pair[1] is a character decoded, but not yet read. */
+    private boolean hasLeftover;
+
+    /**
+     * Construct a SourceReader for the named file.
+     * 
+     * @param fileName
+     *            the name of the file.
+     * @exception FileNotFoundException
+     *                if the file is not found.
+     */
+
+    public SourceReader(String fileName) throws FileNotFoundException {
+        file = new FileInputStream(fileName);
+        Charset charset = Charset.defaultCharset();
+        decoder = charset.newDecoder().onMalformedInput(
+                CodingErrorAction.REPLACE).onUnmappableCharacter(
+                CodingErrorAction.REPLACE);
+        asciiBytes = charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Return (an upper bound on) the number of characters still to be read.
+     * 
+     * @return the number of characters.
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    public int capacity() throws IOException {
+        open();
+        double chars = Math.ceil(bytes.remaining()
+                * (double) decoder.maxCharsPerByte());
+        return (int) Math.min(Integer.MAX_VALUE - 16, chars + 1);
+    }
+
+    /**
+     * Read characters into (part of) an array.
+     * 
+     * @param chars
+     *            the array.
+     * @param offset
+     *            offset at which to start storing characters.
+     * @param length
+     *            maximum number of characters to read.
+     * @return the number of characters read, or -1 if the end of the file has
+     *         been reached.
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    public int read(char[] chars, int offset, int length) throws IOException {
+        open();
+        int end = offset + length;
+        int i = offset;
+        if (hasLeftover && i < end) {
+            chars[i++] = pair[1];
+            hasLeftover = false;
+        }
+        while (i < end && bytes.hasRemaining()) {
+            int start = i;
+            if (asciiBytes) {
+                i = readASCII(chars, i, end);
+            }
+            if (i < end && bytes.hasRemaining()) {
+                i = decode(chars, i, end);
+            }
+            if (i == start) {
+                // Only when asked for one char, and the decoder needs two
+                // (for a surrogate pair): return what was read
+                break;
+            }
+        }
+        if (i < end && !bytes.hasRemaining() && !flushed) {
+            CharBuffer out = CharBuffer.wrap(chars, i, end - i);
+            decoder.decode(bytes, out, true);
+            flushed = decoder.flush(out).isUnderflow();
+            i = out.position();
+        }
+        return i == offset && length > 0 ? -1 : i - offset;
+    }
+
+    /**
+     * Close the reader, letting go of the bytes (and the mapping).
+     * 
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        bytes = ByteBuffer.allocate(0);
+        flushed = true;
+    }
+
+    /**
+     * Map (or read) the file, the first time it is asked for characters.
+     * 
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    private void open() throws IOException {
+        if (file == null) {
+            return;
+        }
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large");
+            } else if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                }
+                bytes.flip();
+            }
+        } finally {
+            // A mapping outlives its channel
+            file.close();
+            file = null;
+            if (bytes == null) {
+                bytes = ByteBuffer.allocate(0);
+            }
+        }
+    }
+
+    /**
+     * Decode the run of ASCII bytes (if any) next in the file.
+     * 
+     * @param chars
+     *            the array to decode into.
+     * @param i
+     *            the offset at which to store the first character.
+     * @param end
+     *            the offset past which no character is to be stored.
+     * @return the offset past the last character stored.
+     */
+
+    private int readASCII(char[] chars, int i, int end) {
+        int p = bytes.position();
+        int n = Math.min(end - i, bytes.limit() - p);
+        int j = 0;
+        for (byte b; j < n && (b = bytes.get(p + j)) >= 0; j++) {
+            chars[i + j] = (char) b;
+        }
+        bytes.position(p + j);
+        return i + j;
+    }
+
+    /**
+     * Decode (at least) the run of non-ASCII bytes next in the file, if the
+     * charset is one in which ASCII characters are bytes; otherwise as many
+     * as there is room for.
+     * 
+     * @param chars
+     *            the array to decode into.
+     * @param i
+     *            the offset at which to store the first character.
+     * @param end
+     *            the offset past which no character is to be stored.
+     * @return the offset past the last character stored.
+     */
+
+    private int decode(char[] chars, int i, int end) {
+        if (end - i == 1) {
+            CharBuffer out = CharBuffer.wrap(pair);
+            decoder.decode(bytes, out, true);
+            if (out.position() > 0) {
+                chars[i++] = pair[0];
+                hasLeftover = out.position() > 1;
+            }
+            return i;
+        }
+        int room = end - i;
+        if (asciiBytes) {
+            // In these charsets, a run of non-ASCII bytes decodes to no more
+            // characters than it has bytes
+            int p = bytes.position();
+            int run = 0;
+            while (run < room && p + run < bytes.limit()
+                    && bytes.get(p + run) < 0) {
+                run++;
+            }
+            room = Math.max(2, run);
+        }
+        CharBuffer out = CharBuffer.wrap(chars, i, room);
+        decoder.decode(bytes, out, true);
+        return out.position();
+    }
+
+}
@@ -0,0 +1,513 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+
+/**
+ * The compiler's own record of a declared class or class member: its modifiers
+ * and name. ClassSymbols back the Types of all classes. Those of the classes
+ * declared in the program being compiled are filled in (with their super
+ * classes and member headers) during pre-analysis; so the compiler never has
+ * to generate (and load) a class in order to find out about the program's own
+ * types. Those of library classes are read from the classes' class files by a
+ * SymbolLoader; so the compiler never loads (or initializes) a library class
+ * either, and may compile against a class path other than its own.
+ */
+
+abstract class Symbol {
+
+    /** Modifiers, as in java.lang.reflect.Modifier. */
+    private int modifiers;
+
+    /** Name. */
+    private String name;
+
+    /**
+     * Construct a Symbol.
+     * 
+     * @param modifiers
+     *            modifiers.
+     * @param name
+     *            name.
+     */
+
+    protected Symbol(int modifiers, String name) {
+        this.modifiers = modifiers;
+        this.name = name;
+    }
+
+    /**
+     * Return the modifiers.
+     * 
+     * @return the modifiers.
+     */
+
+    public int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * Return the name.
+     * 
+     * @return the name.
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Set the modifiers.
+     * 
+     * @param modifiers
+     *            modifiers.
+     */
+
+    protected void setModifiers(int modifiers) {
+        this.modifiers = modifiers;
+    }
+
+    /**
+     * Return the modifiers (as in java.lang.reflect.Modifier) for the specified
+     * list of modifiers, as they appear in a declaration.
+     * 
+     * @param mods
+     *            the modifiers (eg, "public", "static").
+     * @return the modifiers as a mask.
+     */
+
+    public static int modifiersFor(ArrayList<String> mods) {
+        int modifiers = 0;
+        for (String mod : mods) {
+            modifiers |= CLFile.accessFlagToInt(mod);
+        }
+        return modifiers;
+    }
+
+}
+
+/**
+ * A class. For a class declared in the program being compiled, declaring the
+ * class's type (see JClassDeclaration.declareThisType()) creates the symbol
+ * with just its name and modifiers; pre-analysis then adds the super class,
+ * and the headers of the fields, methods and constructors. For a library
+ * class, the symbol is created with just its name, and is filled in by its
+ * SymbolLoader the first time it is asked for anything else.
+ */
+
+class ClassSymbol extends Symbol {
+
+    /** Simple (unqualified) name, eg, Factorial. */
+    private String simpleName;
+
+    /** The super class. */
+    private Type superType;
+
+    /** Interfaces implemented by the class. */
+    private ArrayList<Type> interfaces;
+
+    /** Fields declared in the class. */
+    private ArrayList<FieldSymbol> fields;
+
+    /** Methods declared in the class. */
+    private ArrayList<MethodSymbol> methods;
+
+    /** Constructors declared in the class. */
+    private ArrayList<MethodSymbol> constructors;
+
+    /**
+     * Loader that is yet to fill in this (library) class's symbol; null once
+     * it has, and for classes declared in the program.
+     */
+    private volatile SymbolLoader loader;
+
+    /**
+     * Construct a ClassSymbol.
+     * 
+     * @param modifiers
+     *            modifiers.
+     * @param name
+     *            fully qualified name, eg, pass.Factorial.
+     * @param superType
+     *            the super class.
+     */
+
+    public ClassSymbol(int modifiers, String name, Type superType) {
+        super(modifiers, name);
+        simpleName = name.substring(name.lastIndexOf('.') + 1);
+        this.superType = superType;
+        interfaces = new ArrayList<Type>();
+        fields = new ArrayList<FieldSymbol>();
+        methods = new ArrayList<MethodSymbol>();
+        constructors = new ArrayList<MethodSymbol>();
+    }
+
+    /**
+     * Construct a ClassSymbol for a library class, to be filled in later by
+     * the specified loader.
+     * 
+     * @param name
+     *            fully qualified name, eg, java.lang.String.
+     * @param loader
+     *            the loader that reads the class's class file.
+     */
+
+    public ClassSymbol(String name, SymbolLoader loader) {
+        this(0, name, null);
+        this.loader = loader;
+    }
+
+    /**
+     * Return the modifiers.
+     * 
+     * @return the modifiers.
+     */
+
+    public int modifiers() {
+        complete();
+        return super.modifiers();
+    }
+
+    /**
+     * Return the simple (unqualified) name.
+     * 
+     * @return the simple name.
+     */
+
+    public String simpleName() {
+        return simpleName;
+    }
+
+    /**
+     * Return the super class.
+     * 
+     * @return the super class.
+     */
+
+    public Type superType() {
+        complete();
+        return superType;
+    }
+
+    /**
+     * Set the super class.
+     * 
+     * @param superType
+     *            the super class.
+     */
+
+    public void setSuperType(Type superType) {
+        this.superType = superType;
+    }
+
+    /**
+     * Return the interfaces implemented by the class.
+     * 
+     * @return the interfaces.
+     */
+
+    public ArrayList<Type> interfaces() {
+        complete();
+        return interfaces;
+    }
+
+    /**
+     * Add an interface.
+     * 
+     * @param type
+     *            the interface.
+     */
+
+    public void addInterface(Type type) {
+        interfaces.add(type);
+    }
+
+    /**
+     * Return the fields declared in the class.
+     * 
+     * @return the fields.
+     */
+
+    public ArrayList<FieldSymbol> fields() {
+        complete();
+        return fields;
+    }
+
+    /**
+     * Return the methods declared in the class.
+     * 
+     * @return the methods.
+     */
+
+    public ArrayList<MethodSymbol> methods() {
+        complete();
+        return methods;
+    }
+
+    /**
+     * Return the constructors declared in the class.
+     * 
+     * @return the constructors.
+     */
+
+    public ArrayList<MethodSymbol> constructors() {
+        complete();
+        return constructors;
+    }
+
+    /**
+     * Add a field.
+     * 
+     * @param field
+     *            the field.
+     */
+
+    public void addField(FieldSymbol field) {
+        fields.add(field);
+    }
+
+    /**
+     * Add a method.
+     * 
+     * @param method
+     *            the method.
+     */
+
+    public void addMethod(MethodSymbol method) {
+        methods.add(method);
+    }
+
+    /**
+     * Add a constructor.
+     * 
+     * @param constructor
+     *            the constructor.
+     */
+
+    public void addConstructor(MethodSymbol constructor) {
+        constructors.add(constructor);
+    }
+
+    /**
+     * Return the field declared in this class having the specified name.
+     * 
+     * @param name
+     *            the field name.
+     * @return the field, or null.
+     */
+
+    public FieldSymbol fieldFor(String name) {
+        for (FieldSymbol field : fields()) {
+            if (field.name().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the method declared in this class having the specified name and
+     * argument types.
+     * 
+     * @param name
+     *            the method name.
+     * @param argTypes
+     *            the argument types.
+     * @return the method, or null.
+     */
+
+    public MethodSymbol methodFor(String name, Type[] argTypes) {
+        for (MethodSymbol method : methods()) {
+            if (method.name().equals(name)
+                    && Type.argTypesMatch(argTypes, method.paramTypes())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the constructor declared in this class having the specified
+     * argument types.
+     * 
+     * @param argTypes
+     *            the argument types.
+     * @return the constructor, or null.
+     */
+
+    public MethodSymbol constructorFor(Type[] argTypes) {
+        for (MethodSymbol constructor : constructors()) {
+            if (Type.argTypesMatch(argTypes, constructor.paramTypes())) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Have the loader fill in this (library) class's symbol, if it has yet to
+     * do so.
+     */
+
+    private void complete() {
+        if (loader != null) {
+            synchronized (this) {
+                if (loader != null) {
+                    loader.complete(this);
+                    loader = null;
+                }
+            }
+        }
+    }
+
+}
+
+/**
+ * A member (field, method or constructor) of a class.
+ */
+
+abstract class MemberSymbol extends Symbol {
+
+    /** The class declaring the member. */
+    private Type declaringType;
+
+    /**
+     * Construct a MemberSymbol.
+     * 
+     * @param modifiers
+     *            modifiers.
+     * @param name
+     *            name.
+     * @param declaringType
+     *            the class declaring the member.
+     */
+
+    protected MemberSymbol(int modifiers, String name, Type declaringType) {
+        super(modifiers, name);
+        this.declaringType = declaringType;
+    }
+
+    /**
+     * Return the class declaring the member.
+     * 
+     * @return the declaring class.
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+}
+
+/**
+ * A field.
+ */
+
+class FieldSymbol extends MemberSymbol {
+
+    /** The field's type. */
+    private Type type;
+
+    /**
+     * Construct a FieldSymbol.
+     * 
+     * @param modifiers
+     *            modifiers.
+     * @param name
+     *            name.
+     * @param declaringType
+     *            the class declaring the field.
+     * @param type
+     *            the field's type.
+     */
+
+    public FieldSymbol(int modifiers, String name, Type declaringType,
+            Type type) {
+        super(modifiers, name, declaringType);
+        this.type = type;
+    }
+
+    /**
+     * Return the field's type.
+     * 
+     * @return the type.
+     */
+
+    public Type type() {
+        return type;
+    }
+
+}
+
+/**
+ * A method or a constructor. The name of a constructor is that of its class,
+ * and its return type is void.
+ */
+
+class MethodSymbol extends MemberSymbol {
+
+    /** Types of the formal parameters. */
+    private Type[] paramTypes;
+
+    /** Return type. */
+    private Type returnType;
+
+    /**
+     * Construct a MethodSymbol.
+     * 
+     * @param modifiers
+     *            modifiers.
+     * @param name
+     *            name.
+     * @param declaringType
+     *            the class declaring the method.
+     * @param paramTypes
+     *            types of the formal parameters.
+     * @param returnType
+     *            return type.
+     */
+
+    public MethodSymbol(int modifiers, String name, Type declaringType,
+            Type[] paramTypes, Type returnType) {
+        super(modifiers, name, declaringType);
+        this.paramTypes = paramTypes;
+        this.returnType = returnType;
+    }
+
+    /**
+     * Return the types of the formal parameters.
+     * 
+     * @return the parameter types.
+     */
+
+    public Type[] paramTypes() {
+        return paramTypes;
+    }
+
+    /**
+     * Return the return type.
+     * 
+     * @return the return type.
+     */
+
+    public Type returnType() {
+        return returnType;
+    }
+
+    /**
+     * Return the JVM descriptor, eg, (ILjava/lang/String;)V.
+     * 
+     * @return the descriptor.
+     */
+
+    public String toDescriptor() {
+        String descriptor = "(";
+        for (Type paramType : paramTypes) {
+            descriptor += paramType.toDescriptor();
+        }
+        descriptor += ")" + returnType.toDescriptor();
+        return descriptor;
+    }
+
+}
@@ -0,0 +1,311 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import static jminusminus.CLConstants.*;
+
+/**
+ * A SymbolLoader finds the library classes referred to by a program on a class
+ * path, and builds their Types. A class's symbol is filled in from the headers
+ * of its class file (read by CLAbsorber, which skips over the method bodies)
+ * the first time it is asked for anything but its name; so the compiler never
+ * loads, links or initializes a library class, and the class path need not be
+ * the compiler's own.
+ * 
+ * Like the JVM's class loaders, a loader asks its parent first: the loader for
+ * a class path given to the compiler delegates to the platform loader, which
+ * finds the system classes and is shared by all compilations. There is a
+ * unique Type for each class found by a loader; in particular, the types named
+ * in Type (Type.STRING, Type.OBJECT, ...) are the platform loader's.
+ */
+
+class SymbolLoader {
+
+    /** Loader for the system classes. */
+    private static final SymbolLoader PLATFORM = new SymbolLoader(new CLPath(
+            "", null), null);
+
+    /** Modifiers of a class, as in java.lang.reflect.Modifier. */
+    private static final int CLASS_MODIFIERS = Modifier.PUBLIC
+            | Modifier.FINAL | Modifier.INTERFACE | Modifier.ABSTRACT;
+
+    /** Where the class files are found. */
+    private CLPath classPath;
+
+    /** The loader asked first; null for the platform loader. */
+    private SymbolLoader parent;
+
+    /** Maps (internal) names of the classes found to their Types. */
+    private HashMap<String, Type> types;
+
+    /** (Internal) names of classes that are known not to be there. */
+    private HashSet<String> missing;
+
+    /**
+     * Construct a SymbolLoader.
+     * 
+     * @param classPath
+     *            where the class files are found.
+     * @param parent
+     *            the loader asked first; null for none.
+     */
+
+    private SymbolLoader(CLPath classPath, SymbolLoader parent) {
+        this.classPath = classPath;
+        this.parent = parent;
+        types = new HashMap<String, Type>();
+        missing = new HashSet<String>();
+    }
+
+    /**
+     * Construct a SymbolLoader for the classes on the specified class path,
+     * and the system classes.
+     * 
+     * @param classPath
+     *            the directories and zip (jar) files making up the class path,
+     *            separated by the path separator; null for the compiler's own
+     *            class path.
+     */
+
+    public SymbolLoader(String classPath) {
+        this(new CLPath(classPath == null ? System
+                .getProperty("java.class.path") : classPath, ""), PLATFORM);
+    }
+
+    /**
+     * Return the loader for the system classes.
+     * 
+     * @return the platform loader.
+     */
+
+    public static SymbolLoader platform() {
+        return PLATFORM;
+    }
+
+    /**
+     * Return the Type for the class having the specified (fully qualified)
+     * name, eg, java.util.ArrayList.
+     * 
+     * @param name
+     *            the class name.
+     * @return the type, or null if there is no such class.
+     */
+
+    public Type typeFor(String name) {
+        return typeFor(name.replace('.', '/'), true);
+    }
+
+    /**
+     * Close the zip (jar) files this loader has opened on its class path (but
+     * not its parent's).
+     */
+
+    public void close() {
+        classPath.close();
+    }
+
+    /**
+     * Fill in the specified (library) class's symbol from its class file. If
+     * the class file cannot be read (CLAbsorber will have said why), the class
+     * is left public, without members.
+     * 
+     * @param symbol
+     *            the class's symbol.
+     */
+
+    public void complete(ClassSymbol symbol) {
+        String name = symbol.name().replace('.', '/');
+        CLAbsorber absorber = new CLAbsorber(name, classPath.loadClass(name),
+                true);
+        if (absorber.errorHasOccurred()) {
+            symbol.setModifiers(Modifier.PUBLIC);
+            if (!name.equals("java/lang/Object")) {
+                symbol.setSuperType(Type.OBJECT);
+            }
+            return;
+        }
+        CLFile classFile = absorber.classFile();
+        CLConstantPool cp = classFile.constantPool;
+        symbol.setModifiers(classFile.accessFlags & CLASS_MODIFIERS);
+        if (classFile.superClass != 0) {
+            symbol.setSuperType(referencedType(className(cp,
+                    classFile.superClass)));
+        }
+        for (int index : classFile.interfaces) {
+            symbol.addInterface(referencedType(className(cp, index)));
+        }
+        Type declaringType = referencedType(name);
+        for (CLFieldInfo field : classFile.fields) {
+            if ((field.accessFlags & ACC_SYNTHETIC) == 0) {
+                symbol.addField(new FieldSymbol(field.accessFlags
+                        & Modifier.fieldModifiers(), utf8(cp,
+                        field.nameIndex), declaringType, typeForDescriptor(utf8(
+                        cp, field.descriptorIndex))));
+            }
+        }
+        for (CLMethodInfo method : classFile.methods) {
+            if ((method.accessFlags & (ACC_SYNTHETIC | ACC_BRIDGE)) != 0) {
+                continue;
+            }
+            int modifiers = method.accessFlags & Modifier.methodModifiers();
+            String methodName = utf8(cp, method.nameIndex);
+            String descriptor = utf8(cp, method.descriptorIndex);
+            if (methodName.equals("<init>")) {
+                symbol.addConstructor(new MethodSymbol(modifiers, symbol
+                        .name(), declaringType, paramTypes(descriptor),
+                        Type.VOID));
+            } else if (!methodName.equals("<clinit>")) {
+                symbol.addMethod(new MethodSymbol(modifiers, methodName,
+                        declaringType, paramTypes(descriptor),
+                        typeForDescriptor(descriptor.substring(descriptor
+                                .indexOf(')') + 1))));
+            }
+        }
+    }
+
+    /**
+     * Return the Type for the class having the specified internal name, as
+     * found by this loader (or its parent).
+     * 
+     * @param name
+     *            the class name in internal form, eg, java/util/ArrayList.
+     * @param mustExist
+     *            whether the class file must be found; if not, the type is
+     *            made up all the same (and its symbol is left without
+     *            members, once it is found not to be there).
+     * @return the type, or null if mustExist and there is no such class.
+     */
+
+    private Type typeFor(String name, boolean mustExist) {
+        if (parent != null) {
+            Type type = parent.typeFor(name, true);
+            if (type != null) {
+                return type;
+            }
+        }
+        synchronized (this) {
+            Type type = types.get(name);
+            if (type == null) {
+                if (mustExist
+                        && (missing.contains(name) || !classPath
+                                .contains(name))) {
+                    missing.add(name);
+                    return null;
+                }
+                type = Type.typeFor(new ClassSymbol(name.replace('/', '.'),
+                        this));
+                types.put(name, type);
+            }
+            return type;
+        }
+    }
+
+    /**
+     * Return the Type for a class named in a class file read by this loader.
+     * 
+     * @param name
+     *            the class name in internal form.
+     * @return the type.
+     */
+
+    private Type referencedType(String name) {
+        return typeFor(name, false);
+    }
+
+    /**
+     * Return the Type denoted by the specified field descriptor, eg, I or
+     * [Ljava/lang/String;.
+     * 
+     * @param descriptor
+     *            the descriptor.
+     * @return the type.
+     */
+
+    private Type typeForDescriptor(String descriptor) {
+        switch (descriptor.charAt(0)) {
+        case '[':
+            return Type.arrayTypeFor(typeForDescriptor(descriptor
+                    .substring(1)));
+        case 'L':
+            return referencedType(descriptor.substring(1,
+                    descriptor.length() - 1));
+        case 'I':
+            return Type.INT;
+        case 'C':
+            return Type.CHAR;
+        case 'Z':
+            return Type.BOOLEAN;
+        case 'V':
+            return Type.VOID;
+        case 'B':
+            return Type.typeFor(byte.class);
+        case 'S':
+            return Type.typeFor(short.class);
+        case 'J':
+            return Type.typeFor(long.class);
+        case 'F':
+            return Type.typeFor(float.class);
+        default:
+            return Type.typeFor(double.class);
+        }
+    }
+
+    /**
+     * Return the parameter types in the specified method descriptor, eg,
+     * (ILjava/lang/String;)V.
+     * 
+     * @param descriptor
+     *            the method descriptor.
+     * @return the parameter types.
+     */
+
+    private Type[] paramTypes(String descriptor) {
+        ArrayList<Type> paramTypes = new ArrayList<Type>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int end = i;
+            while (descriptor.charAt(end) == '[') {
+                end++;
+            }
+            end = descriptor.charAt(end) == 'L' ? descriptor
+                    .indexOf(';', end) + 1 : end + 1;
+            paramTypes.add(typeForDescriptor(descriptor.substring(i, end)));
+            i = end;
+        }
+        return paramTypes.toArray(new Type[paramTypes.size()]);
+    }
+
+    /**
+     * Return the (internal) name of the class at the specified index in a
+     * constant pool.
+     * 
+     * @param cp
+     *            the constant pool.
+     * @param index
+     *            index of a CONSTANT_Class_info item.
+     * @return the class name.
+     */
+
+    private static String className(CLConstantPool cp, int index) {
+        return utf8(cp, ((CLConstantClassInfo) cp.cpItem(index)).nameIndex);
+    }
+
+    /**
+     * Return the string at the specified index in a constant pool.
+     * 
+     * @param cp
+     *            the constant pool.
+     * @param index
+     *            index of a CONSTANT_Utf8_info item.
+     * @return the string.
+     */
+
+    private static String utf8(CLConstantPool cp, int index) {
+        return new String(((CLConstantUtf8Info) cp.cpItem(index)).b);
+    }
+
+}
@@ -115,6 +115,24 @@ class TokenInfo {
         this(kind, kind.toString(), line);
     }
 
+    /**
+     * Make this token stand for another: a TokenInfo may be used as a
+     * flyweight (see LookaheadScanner), rather than one being made per token.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @param image
+     *            the semantic text comprising the token.
+     * @param line
+     *            the line in which the token occurs in the source file.
+     */
+
+    public void set(TokenKind kind, String image, int line) {
+        this.kind = kind;
+        this.image = image;
+        this.line = line;
+    }
+
     /**
      * Return the token's string representation.
      * 
@@ -0,0 +1,63 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+/**
+ * A scanner from which the LookaheadScanner takes its tokens: either the
+ * hand-written Scanner, or the table-driven DFAScanner. Both produce the same
+ * tokens (kinds, images and lines), and report the same lexical errors.
+ */
+
+interface TokenScanner {
+
+    /**
+     * Scan the next token from input, without making a TokenInfo for it: its
+     * image and line are then those answered by image() and line(), until the
+     * next token is scanned.
+     * 
+     * @return the kind of the next scanned token.
+     */
+
+    public TokenKind scan();
+
+    /**
+     * Return the image of the token last scanned.
+     * 
+     * @return the image.
+     */
+
+    public String image();
+
+    /**
+     * Return the line of the token last scanned.
+     * 
+     * @return the line number.
+     */
+
+    public int line();
+
+    /**
+     * Has an error occurred up to now in lexical analysis?
+     * 
+     * @return true or false.
+     */
+
+    public boolean errorHasOccurred();
+
+    /**
+     * The name of the source file.
+     * 
+     * @return name of the source file.
+     */
+
+    public String fileName();
+
+    /**
+     * Return the listener to which errors in the source are reported.
+     * 
+     * @return the diagnostic listener.
+     */
+
+    public DiagnosticListener diagnosticListener();
+
+}
@@ -2,16 +2,20 @@
 
 package jminusminus;
 
-import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * For representing j-- types. All types are represented underneath (in the
- * classRep field) by Java objects of type Class. These ojects represent types
- * in Java, so this should ease our interfacing with existing Java classes.
+ * For representing j-- types. Classes are represented underneath (in the
+ * symbol field) by ClassSymbols: pre-analysis fills in those of the classes
+ * declared in the program being compiled, and a SymbolLoader those of library
+ * classes, from their class files. Arrays are represented by their component
+ * types, and primitive types (in the classRep field) by Java objects of type
+ * Class.
  * 
  * Class types (reference types that are represented by the identifiers
  * introduced in class declarations) are represented using TypeName. So for now,
@@ -24,12 +28,40 @@ import java.util.Hashtable;
 
 class Type {
 
-    /** The Type's internal (Java) representation. * */
+    /** The Type's internal (Java) representation, for primitive types. * */
     private Class<?> classRep;
 
-    /** Maps type names to their Type representations. */
+    /** Symbol for a class; null otherwise. */
+    private ClassSymbol symbol;
+
+    /** Component type of an array type; null otherwise. */
+    private Type arrayComponent;
+
+    /**
+     * The array type having this type as its component, once it has been asked
+     * for (see arrayTypeFor()).
+     */
+    private Type arrayType;
+
+    /**
+     * Memoized results of methodFor(), constructorFor() and fieldFor(), keyed
+     * by member name and argument-type signature (see memberKey()); NONE
+     * records a lookup that found nothing. Created on the first lookup.
+     */
+    private HashMap<String, Object> members;
+
+    /** Maps type names to their Type representations, for primitive types. */
     private static Hashtable<String, Type> types = new Hashtable<String, Type>();
 
+    /** Marks a memoized lookup that found nothing. */
+    private static final Object NONE = new Object();
+
+    /** Number of member lookups made, over all types. */
+    private static AtomicLong memberLookups = new AtomicLong();
+
+    /** Number of member lookups answered from the memo tables. */
+    private static AtomicLong memberLookupHits = new AtomicLong();
+
     /** The primitive type, int. */
     public final static Type INT = typeFor(int.class);
 
@@ -40,25 +72,30 @@ class Type {
     public final static Type BOOLEAN = typeFor(boolean.class);
 
     /** java.lang.Integer. */
-    public final static Type BOXED_INT = typeFor(java.lang.Integer.class);
+    public final static Type BOXED_INT = SymbolLoader.platform().typeFor(
+            "java.lang.Integer");
 
     /** java.lang.Character. */
-    public final static Type BOXED_CHAR = typeFor(java.lang.Character.class);
+    public final static Type BOXED_CHAR = SymbolLoader.platform().typeFor(
+            "java.lang.Character");
 
     /** java.lang.Boolean. */
-    public final static Type BOXED_BOOLEAN = typeFor(java.lang.Boolean.class);
+    public final static Type BOXED_BOOLEAN = SymbolLoader.platform().typeFor(
+            "java.lang.Boolean");
 
     /** The type java.lang.String. */
-    public static Type STRING = typeFor(java.lang.String.class);
+    public static Type STRING = SymbolLoader.platform().typeFor(
+            "java.lang.String");
 
     /** The type java.lang.Object. */
-    public static Type OBJECT = typeFor(java.lang.Object.class);
+    public static Type OBJECT = SymbolLoader.platform().typeFor(
+            "java.lang.Object");
 
     /** The void type. */
     public final static Type VOID = typeFor(void.class);
 
     /** The null void. */
-    public final static Type NULLTYPE = new Type(java.lang.Object.class);
+    public final static Type NULLTYPE = new Type(OBJECT.symbol, null);
 
     /**
      * A type marker indicating a constructor (having no return type).
@@ -69,9 +106,9 @@ class Type {
     public final static Type ANY = new Type(null);
 
     /**
-     * Construct a Type representation for a type from its Java (Class)
-     * representation. Use typeFor() -- that maps types having like classReps to
-     * like Types.
+     * Construct a Type representation for a primitive type from its Java
+     * (Class) representation. Use typeFor() -- that maps types having like
+     * classReps to like Types.
      * 
      * @param classRep
      *            the Java representation.
@@ -81,6 +118,20 @@ class Type {
         this.classRep = classRep;
     }
 
+    /**
+     * Construct a Type representation for a class, or for an array.
+     * 
+     * @param symbol
+     *            the class's symbol (null for an array).
+     * @param arrayComponent
+     *            the array's component type (null for a class).
+     */
+
+    private Type(ClassSymbol symbol, Type arrayComponent) {
+        this.symbol = symbol;
+        this.arrayComponent = arrayComponent;
+    }
+
     /** This constructor is to keep the compiler happy. */
 
     protected Type() {
@@ -88,41 +139,67 @@ class Type {
     }
 
     /**
-     * Construct a Type representation for a type from its (Java) Class
-     * representation. Make sure there is a unique Type for each unique type.
+     * Construct a Type representation for a primitive type from its (Java)
+     * Class representation. Make sure there is a unique Type for each unique
+     * type.
      * 
      * @param classRep
      *            the Java representation.
      */
 
     public static Type typeFor(Class<?> classRep) {
-        if (types.get(descriptorFor(classRep)) == null) {
-            types.put(descriptorFor(classRep), new Type(classRep));
+        synchronized (types) {
+            if (types.get(descriptorFor(classRep)) == null) {
+                types.put(descriptorFor(classRep), new Type(classRep));
+            }
+            return types.get(descriptorFor(classRep));
         }
-        return types.get(descriptorFor(classRep));
     }
 
     /**
-     * Return the class representation for a type, appropriate for dealing with
-     * the Java reflection API.
+     * Construct the Type representation for a class, from its symbol. Each
+     * declaration in a program gets a Type of its own, so concurrent
+     * compilations of like-named classes do not share Types; library classes
+     * get theirs from the SymbolLoader that finds them.
      * 
-     * @return the Class representation for this type.
+     * @param symbol
+     *            the class's symbol.
+     * @return the type.
      */
 
-    public Class<?> classRep() {
-        return classRep;
+    public static Type typeFor(ClassSymbol symbol) {
+        return new Type(symbol, null);
     }
 
     /**
-     * This setter is used by JCompilationUnit.preAnalyze() to set the classRep
-     * to the specified partial class, computed during pre-analysis.
+     * Return the Type representation for an array having the specified
+     * component type. Make sure there is a unique Type for each unique type.
      * 
-     * @param classRep
-     *            the partial class.
+     * @param componentType
+     *            the component type.
+     * @return the array type.
      */
 
-    public void setClassRep(Class<?> classRep) {
-        this.classRep = classRep;
+    public static Type arrayTypeFor(Type componentType) {
+        if (componentType == Type.ANY) {
+            return Type.ANY;
+        }
+        synchronized (componentType) {
+            if (componentType.arrayType == null) {
+                componentType.arrayType = new Type(null, componentType);
+            }
+            return componentType.arrayType;
+        }
+    }
+
+    /**
+     * Return the symbol for a class.
+     * 
+     * @return the class's symbol, or null if this is not a class.
+     */
+
+    public ClassSymbol symbol() {
+        return symbol;
     }
 
     /**
@@ -144,7 +221,7 @@ class Type {
      */
 
     public boolean isArray() {
-        return classRep.isArray();
+        return arrayComponent != null;
     }
 
     /**
@@ -154,7 +231,7 @@ class Type {
      */
 
     public Type componentType() {
-        return typeFor(classRep.getComponentType());
+        return arrayComponent;
     }
 
     /**
@@ -165,8 +242,21 @@ class Type {
      */
 
     public Type superClass() {
-        return classRep == null || classRep.getSuperclass() == null ? null
-                : typeFor(classRep.getSuperclass());
+        if (symbol != null) {
+            return symbol.superType();
+        }
+        return arrayComponent != null ? Type.OBJECT : null;
+    }
+
+    /**
+     * Return the interfaces implemented by this type. Meaningful only to class
+     * Types.
+     * 
+     * @return the interfaces.
+     */
+
+    private ArrayList<Type> interfaces() {
+        return symbol != null ? symbol.interfaces() : new ArrayList<Type>();
     }
 
     /**
@@ -176,7 +266,7 @@ class Type {
      */
 
     public boolean isPrimitive() {
-        return classRep.isPrimitive();
+        return classRep != null && classRep.isPrimitive();
     }
 
     /**
@@ -186,7 +276,7 @@ class Type {
      */
 
     public boolean isInterface() {
-        return classRep.isInterface();
+        return Modifier.isInterface(modifiers());
     }
 
     /**
@@ -206,7 +296,7 @@ class Type {
      */
 
     public boolean isFinal() {
-        return Modifier.isFinal(classRep.getModifiers());
+        return Modifier.isFinal(modifiers());
     }
 
     /**
@@ -216,7 +306,27 @@ class Type {
      */
 
     public boolean isAbstract() {
-        return Modifier.isAbstract(classRep.getModifiers());
+        return Modifier.isAbstract(modifiers());
+    }
+
+    /**
+     * Return the modifiers of this (class or array) type, as in
+     * java.lang.reflect.Modifier.
+     * 
+     * @return the modifiers.
+     */
+
+    private int modifiers() {
+        if (symbol != null) {
+            return symbol.modifiers();
+        }
+        if (arrayComponent != null) {
+            return arrayComponent.modifiers() & Modifier.PUBLIC
+                    | Modifier.FINAL | Modifier.ABSTRACT;
+        }
+        // The any type (of what is in error) is accessible, so as not to
+        // report more errors
+        return classRep != null ? classRep.getModifiers() : Modifier.PUBLIC;
     }
 
     /**
@@ -228,7 +338,40 @@ class Type {
      */
 
     public boolean isJavaAssignableFrom(Type that) {
-        return this.classRep.isAssignableFrom(that.classRep);
+        if (this.isPrimitive() || that.isPrimitive()) {
+            return this == that;
+        }
+        if (that.isArray()) {
+            if (this.isArray()) {
+                return this.componentType().isPrimitive()
+                        || that.componentType().isPrimitive() ? this
+                        .equals(that) : this.componentType()
+                        .isJavaAssignableFrom(that.componentType());
+            }
+            return this == Type.OBJECT
+                    || toString().equals("java.lang.Cloneable")
+                    || toString().equals("java.io.Serializable");
+        }
+
+        // Search that class and all its superclasses
+        for (Type type = that; type != null; type = type.superClass()) {
+            if (this.equals(type)) {
+                return true;
+            }
+        }
+
+        // Search the interfaces they implement
+        if (!this.isInterface()) {
+            return false;
+        }
+        for (Type type = that; type != null; type = type.superClass()) {
+            for (Type superInterface : type.interfaces()) {
+                if (this.isJavaAssignableFrom(superInterface)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -263,9 +406,9 @@ class Type {
 
     private ArrayList<Method> declaredAbstractMethods() {
         ArrayList<Method> declaredAbstractMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
-                declaredAbstractMethods.add(new Method(method));
+        for (Method method : declaredMethods()) {
+            if (method.isAbstract()) {
+                declaredAbstractMethods.add(method);
             }
         }
         return declaredAbstractMethods;
@@ -279,25 +422,45 @@ class Type {
 
     private ArrayList<Method> declaredConcreteMethods() {
         ArrayList<Method> declaredConcreteMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (!Modifier.isAbstract(method.getModifiers())) {
-                declaredConcreteMethods.add(new Method(method));
+        for (Method method : declaredMethods()) {
+            if (!method.isAbstract()) {
+                declaredConcreteMethods.add(method);
             }
         }
         return declaredConcreteMethods;
     }
 
+    /**
+     * Return a list of this class' declared methods.
+     * 
+     * @return a list of declared methods.
+     */
+
+    private ArrayList<Method> declaredMethods() {
+        ArrayList<Method> declaredMethods = new ArrayList<Method>();
+        if (symbol != null) {
+            for (MethodSymbol method : symbol.methods()) {
+                declaredMethods.add(new Method(method));
+            }
+        }
+        return declaredMethods;
+    }
+
     /**
      * An assertion that this type matches one of the specified types. If there
      * is no match, an error message is returned.
      * 
+     * @param context
+     *            context in which the check is made; errors are reported to
+     *            its compilation unit.
      * @param line
      *            the line near which the mismatch occurs.
      * @param expectedTypes
      *            expected types.
      */
 
-    public void mustMatchOneOf(int line, Type... expectedTypes) {
+    public void mustMatchOneOf(Context context, int line,
+            Type... expectedTypes) {
         if (this == Type.ANY)
             return;
         for (int i = 0; i < expectedTypes.length; i++) {
@@ -305,7 +468,7 @@ class Type {
                 return;
             }
         }
-        JAST.compilationUnit.reportSemanticError(line,
+        context.compilationUnit().reportSemanticError(line,
                 "Type %s doesn't match any of the expected types %s", this,
                 Arrays.toString(expectedTypes));
     }
@@ -314,15 +477,19 @@ class Type {
      * An assertion that this type matches the specified type. If there is no
      * match, an error message is written.
      * 
+     * @param context
+     *            context in which the check is made; errors are reported to
+     *            its compilation unit.
      * @param line
      *            the line near which the mismatch occurs.
      * @param expectedType
      *            type with which to match.
      */
 
-    public void mustMatchExpected(int line, Type expectedType) {
+    public void mustMatchExpected(Context context, int line,
+            Type expectedType) {
         if (!matchesExpected(expectedType)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            context.compilationUnit().reportSemanticError(line,
                     "Type %s doesn't match type %s", this, expectedType);
         }
     }
@@ -347,21 +514,20 @@ class Type {
      * constructors.
      * 
      * @param argTypes1
-     *            arguments (classReps) of one method.
+     *            arguments of one method.
      * @param argTypes2
-     *            arguments (classReps) of another method.
+     *            arguments of another method.
      * @return true iff all corresponding types of argTypes1 and argTypes2
      *         match.
      */
 
-    public static boolean argTypesMatch(Class<?>[] argTypes1,
-            Class<?>[] argTypes2) {
+    public static boolean argTypesMatch(Type[] argTypes1, Type[] argTypes2) {
         if (argTypes1.length != argTypes2.length) {
             return false;
         }
         for (int i = 0; i < argTypes1.length; i++) {
-            if (!Type.descriptorFor(argTypes1[i]).equals(
-                    Type.descriptorFor(argTypes2[i]))) {
+            if (!argTypes1[i].toDescriptor().equals(
+                    argTypes2[i].toDescriptor())) {
                 return false;
             }
         }
@@ -376,7 +542,9 @@ class Type {
      */
 
     public String simpleName() {
-        return classRep.getSimpleName();
+        return symbol != null ? symbol.simpleName()
+                : arrayComponent != null ? arrayComponent.simpleName() + "[]"
+                        : classRep != null ? classRep.getName() : "any";
     }
 
     /**
@@ -387,7 +555,9 @@ class Type {
      */
 
     public String toString() {
-        return toJava(this.classRep);
+        return symbol != null ? symbol.name()
+                : arrayComponent != null ? arrayComponent + "[]"
+                        : classRep != null ? classRep.getName() : "any";
     }
 
     /**
@@ -398,12 +568,15 @@ class Type {
      */
 
     public String toDescriptor() {
-        return descriptorFor(classRep);
+        return symbol != null ? "L" + symbol.name().replace('.', '/') + ";"
+                : arrayComponent != null ? "["
+                        + arrayComponent.toDescriptor()
+                        : descriptorFor(classRep);
     }
 
     /**
-     * A helper translating a type's internal representation to its (JVM)
-     * descriptor.
+     * A helper translating a primitive type's internal representation to its
+     * (JVM) descriptor.
      * 
      * @param cls
      *            internal representation whose descriptor is required.
@@ -411,12 +584,11 @@ class Type {
      */
 
     private static String descriptorFor(Class<?> cls) {
-        return cls == null ? "V" : cls == void.class ? "V"
-                : cls.isArray() ? "[" + descriptorFor(cls.getComponentType())
-                        : cls.isPrimitive() ? (cls == int.class ? "I"
-                                : cls == char.class ? "C"
-                                        : cls == boolean.class ? "Z" : "?")
-                                : "L" + cls.getName().replace('.', '/') + ";";
+        return cls == null || cls == void.class ? "V" : cls == int.class ? "I"
+                : cls == char.class ? "C" : cls == boolean.class ? "Z"
+                        : cls == byte.class ? "B" : cls == short.class ? "S"
+                                : cls == long.class ? "J"
+                                        : cls == float.class ? "F" : "D";
     }
 
     /**
@@ -428,22 +600,7 @@ class Type {
 
     public String jvmName() {
         return this.isArray() || this.isPrimitive() ? this.toDescriptor()
-                : classRep.getName().replace('.', '/');
-    }
-
-    /**
-     * Return the Java (and so j--) denotation for the specified type. Eg,
-     * int[], java.lang.String.
-     * 
-     * @param classRep
-     *            the internal representation of type whose Java denotation is
-     *            required.
-     * @return the Java denotation.
-     */
-
-    private static String toJava(Class classRep) {
-        return classRep.isArray() ? toJava(classRep.getComponentType()) + "[]"
-                : classRep.getName();
+                : toString().replace('.', '/');
     }
 
     /**
@@ -455,7 +612,7 @@ class Type {
     public String packageName() {
         String name = toString();
         return name.lastIndexOf('.') == -1 ? "" : name.substring(0, name
-                .lastIndexOf('.') - 1);
+                .lastIndexOf('.'));
     }
 
     /**
@@ -474,7 +631,9 @@ class Type {
      * Find an appropriate method in this type, given a message (method) name
      * and it's argument types. This is pretty easy given our (current)
      * restriction that the types of the actual arguments must exactly match the
-     * types of the formal parameters. Returns null if it cannot find one.
+     * types of the formal parameters. Returns null if it cannot find one. The
+     * search is made once for each name and signature; the result is
+     * remembered for the next lookup.
      * 
      * @param name
      *            the method name.
@@ -484,32 +643,21 @@ class Type {
      */
 
     public Method methodFor(String name, Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-        Class cls = classRep;
-
-        // Search this class and all superclasses
-        while (cls != null) {
-            java.lang.reflect.Method[] methods = cls.getDeclaredMethods();
-            for (java.lang.reflect.Method method : methods) {
-                if (method.getName().equals(name)
-                        && Type.argTypesMatch(classes, method
-                                .getParameterTypes())) {
-                    return new Method(method);
-                }
-            }
-            cls = cls.getSuperclass();
+        String key = memberKey(name, argTypes);
+        Object method = memoized(key);
+        if (method == null) {
+            method = findMethod(name, argTypes);
+            memoize(key, method);
         }
-        return null;
+        return method == NONE ? null : (Method) method;
     }
 
     /**
      * Find an appropriate constructor in this type, given it's argument types.
      * This is pretty easy given our (current) restriction that the types of the
      * actual arguments must exactly match the types of the formal parameters.
-     * Returns null if it cannot find one.
+     * Returns null if it cannot find one. The search is made once for each
+     * signature; the result is remembered for the next lookup.
      * 
      * @param argTypes
      *            the argument types.
@@ -517,40 +665,167 @@ class Type {
      */
 
     public Constructor constructorFor(Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
+        String key = memberKey("<init>", argTypes);
+        Object constructor = memoized(key);
+        if (constructor == null) {
+            constructor = findConstructor(argTypes);
+            memoize(key, constructor);
         }
+        return constructor == NONE ? null : (Constructor) constructor;
+    }
 
-        // Search only this class (we don't inherit constructors)
-        java.lang.reflect.Constructor[] constructors = classRep
-                .getDeclaredConstructors();
-        for (java.lang.reflect.Constructor constructor : constructors) {
-            if (argTypesMatch(classes, constructor.getParameterTypes())) {
-                return new Constructor(constructor);
+    /**
+     * Return the Field having this name. The search is made once for each
+     * name; the result is remembered for the next lookup.
+     * 
+     * @param name
+     *            the name of the field we want.
+     * @return the Field or null if it's not there.
+     */
+
+    public Field fieldFor(String name) {
+        Object field = memoized(name);
+        if (field == null) {
+            field = findField(name);
+            memoize(name, field);
+        }
+        return field == NONE ? null : (Field) field;
+    }
+
+    /**
+     * Return the number of member lookups (methodFor(), constructorFor() and
+     * fieldFor()) made so far, over all types.
+     * 
+     * @return the number of lookups.
+     */
+
+    public static long memberLookups() {
+        return memberLookups.get();
+    }
+
+    /**
+     * Return the number of member lookups made so far that were answered from
+     * the memo tables, without a search.
+     * 
+     * @return the number of hits.
+     */
+
+    public static long memberLookupHits() {
+        return memberLookupHits.get();
+    }
+
+    /**
+     * Return the key under which a member lookup is memoized: the name, and
+     * for methods and constructors, the argument types' descriptors, eg,
+     * append(I). Field names carry no parentheses, so fields cannot collide
+     * with methods.
+     * 
+     * @param name
+     *            the member name.
+     * @param argTypes
+     *            the argument types.
+     * @return the key.
+     */
+
+    private static String memberKey(String name, Type[] argTypes) {
+        StringBuilder key = new StringBuilder(name).append('(');
+        for (Type argType : argTypes) {
+            key.append(argType.toDescriptor());
+        }
+        return key.append(')').toString();
+    }
+
+    /**
+     * Return the memoized result of the lookup having the specified key.
+     * 
+     * @param key
+     *            the lookup's key.
+     * @return the member, NONE if the lookup found nothing, or null if the
+     *         lookup has not been made.
+     */
+
+    private synchronized Object memoized(String key) {
+        memberLookups.incrementAndGet();
+        Object member = members == null ? null : members.get(key);
+        if (member != null) {
+            memberLookupHits.incrementAndGet();
+        }
+        return member;
+    }
+
+    /**
+     * Remember the result of the lookup having the specified key.
+     * 
+     * @param key
+     *            the lookup's key.
+     * @param member
+     *            the member found, or null.
+     */
+
+    private synchronized void memoize(String key, Object member) {
+        if (members == null) {
+            members = new HashMap<String, Object>();
+        }
+        members.put(key, member == null ? NONE : member);
+    }
+
+    /**
+     * Search this type and its superclasses for a method (see methodFor()).
+     * 
+     * @param name
+     *            the method name.
+     * @param argTypes
+     *            the argument types.
+     * @return Method with given name and argument types, or null.
+     */
+
+    private Method findMethod(String name, Type[] argTypes) {
+        // Search this class and all its superclasses
+        for (Type type = this; type != null; type = type.superClass()) {
+            if (type.symbol != null) {
+                MethodSymbol method = type.symbol.methodFor(name, argTypes);
+                if (method != null) {
+                    return new Method(method);
+                }
             }
         }
         return null;
     }
 
     /**
-     * Return the Field having this name.
+     * Search this type for a constructor (see constructorFor()).
+     * 
+     * @param argTypes
+     *            the argument types.
+     * @return Constructor with the specified argument types, or null.
+     */
+
+    private Constructor findConstructor(Type[] argTypes) {
+        // Search only this class (we don't inherit constructors)
+        if (symbol != null) {
+            MethodSymbol constructor = symbol.constructorFor(argTypes);
+            return constructor == null ? null : new Constructor(constructor);
+        }
+        return null;
+    }
+
+    /**
+     * Search this type and its superclasses for a field (see fieldFor()).
      * 
      * @param name
      *            the name of the field we want.
      * @return the Field or null if it's not there.
      */
 
-    public Field fieldFor(String name) {
-        Class<?> cls = classRep;
-        while (cls != null) {
-            java.lang.reflect.Field[] fields = cls.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getName().equals(name)) {
+    private Field findField(String name) {
+        // Search this class and all its superclasses
+        for (Type type = this; type != null; type = type.superClass()) {
+            if (type.symbol != null) {
+                FieldSymbol field = type.symbol.fieldFor(name);
+                if (field != null) {
                     return new Field(field);
                 }
             }
-            cls = cls.getSuperclass();
         }
         return null;
     }
@@ -581,6 +856,9 @@ class Type {
      * Check the accessibility of a member from this type (that is, this type is
      * the referencing type).
      * 
+     * @param context
+     *            context in which the check is made; errors are reported to
+     *            its compilation unit.
      * @param line
      *            the line in which the access occurs.
      * @param member
@@ -588,8 +866,8 @@ class Type {
      * @return true if access is valid; false otherwise.
      */
 
-    public boolean checkAccess(int line, Member member) {
-        if (!checkAccess(line, classRep, member.declaringType().classRep)) {
+    public boolean checkAccess(Context context, int line, Member member) {
+        if (!checkAccess(context, line, this, member.declaringType())) {
             return false;
         }
 
@@ -597,52 +875,45 @@ class Type {
         if (member.isPublic()) {
             return true;
         }
-        java.lang.Package p1 = classRep.getPackage();
-        java.lang.Package p2 = member.declaringType().classRep.getPackage();
-        if ((p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2
-                .getName()))) {
+        if (packageName().equals(member.declaringType().packageName())) {
             return true;
         }
         if (member.isProtected()) {
-            if (classRep.getPackage().getName().equals(
-                    member.declaringType().classRep.getPackage().getName())
-                    || typeFor(member.getClass().getDeclaringClass())
-                            .isJavaAssignableFrom(this)) {
+            if (member.declaringType().isJavaAssignableFrom(this)) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                context.compilationUnit().reportSemanticError(line,
                         "The protected member, " + member.name()
                                 + ", is not accessible.");
                 return false;
             }
         }
         if (member.isPrivate()) {
-            if (descriptorFor(classRep).equals(
-                    descriptorFor(member.member().getDeclaringClass()))) {
+            if (toDescriptor().equals(member.declaringType().toDescriptor())) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                context.compilationUnit().reportSemanticError(line,
                         "The private member, " + member.name()
                                 + ", is not accessible.");
                 return false;
             }
         }
 
-        // Otherwise, the member has default access
-        if (packageName().equals(member.declaringType().packageName())) {
-            return true;
-        } else {
-            JAST.compilationUnit.reportSemanticError(line, "The member, "
-                    + member.name()
-                    + ", is not accessible because it's in a different "
-                    + "package.");
-            return false;
-        }
+        // Otherwise, the member has default access, and is in a
+        // different package
+        context.compilationUnit().reportSemanticError(line, "The member, "
+                + member.name()
+                + ", is not accessible because it's in a different "
+                + "package.");
+        return false;
     }
 
     /**
      * Check the accesibility of a target type (from this type)
      * 
+     * @param context
+     *            context in which the check is made; errors are reported to
+     *            its compilation unit.
      * @param line
      *            line in which the access occurs.
      * @param targetType
@@ -650,19 +921,22 @@ class Type {
      * @return true if access is valid; false otherwise.
      */
 
-    public boolean checkAccess(int line, Type targetType) {
+    public boolean checkAccess(Context context, int line, Type targetType) {
         if (targetType.isPrimitive()) {
             return true;
         }
         if (targetType.isArray()) {
-            return this.checkAccess(line, targetType.componentType());
+            return this.checkAccess(context, line, targetType.componentType());
         }
-        return checkAccess(line, classRep, targetType.classRep);
+        return checkAccess(context, line, this, targetType);
     }
 
     /**
      * Check the accessibility of a type.
      * 
+     * @param context
+     *            context in which the check is made; errors are reported to
+     *            its compilation unit.
      * @param line
      *            the line in which the access occurs.
      * @param referencingType
@@ -672,18 +946,14 @@ class Type {
      * @return true if access is valid; false otherwise.
      */
 
-    public static boolean checkAccess(int line, Class referencingType,
-            Class type) {
-        java.lang.Package p1 = referencingType.getPackage();
-        java.lang.Package p2 = type.getPackage();
-        if (Modifier.isPublic(type.getModifiers())
-                || (p1 == null ? "" : p1.getName()).equals((p2 == null ? ""
-                        : p2.getName()))) {
+    public static boolean checkAccess(Context context, int line,
+            Type referencingType, Type type) {
+        if (Modifier.isPublic(type.modifiers())
+                || referencingType.packageName().equals(type.packageName())) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The type, "
-                    + type.getCanonicalName() + ", is not accessible from "
-                    + referencingType.getCanonicalName());
+            context.compilationUnit().reportSemanticError(line, "The type, "
+                    + type + ", is not accessible from " + referencingType);
             return false;
         }
     }
@@ -820,15 +1090,13 @@ class TypeName extends Type {
     public Type resolve(Context context) {
         Type resolvedType = context.lookupType(name);
         if (resolvedType == null) {
-            // Try loading a type with the give fullname
-            try {
-                resolvedType = typeFor(Class.forName(name));
+            // Try finding a library type with the given fullname
+            resolvedType = context.compilationUnit().compilation()
+                    .symbolLoader().typeFor(name);
+            if (resolvedType != null) {
                 context.addType(line, resolvedType);
-                // context.compilationUnitContext().addEntry(line,
-                // resolvedType.toString(),
-                // new TypeNameDefn(resolvedType));
-            } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(line,
+            } else {
+                context.compilationUnit().reportSemanticError(line,
                         "Unable to locate a type named %s", name);
                 resolvedType = Type.ANY;
             }
@@ -836,8 +1104,8 @@ class TypeName extends Type {
         if (resolvedType != Type.ANY) {
             Type referencingType = ((JTypeDecl) (context.classContext
                     .definition())).thisType();
-            Type.checkAccess(line, referencingType.classRep(), resolvedType
-                    .classRep());
+            Type.checkAccess(context, line, referencingType, resolvedType);
+            context.compilationUnit().addDependency(resolvedType);
         }
         return resolvedType;
     }
@@ -905,12 +1173,7 @@ class ArrayTypeName extends Type {
 
     public Type resolve(Context context) {
         componentType = componentType.resolve(context);
-
-        // The API forces us to make an instance and get its
-        // type.
-        Class classRep = Array.newInstance(componentType().classRep(), 0)
-                .getClass();
-        return Type.typeFor(classRep);
+        return Type.arrayTypeFor(componentType);
     }
 
 }
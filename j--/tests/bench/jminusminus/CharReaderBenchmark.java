@@ -0,0 +1,229 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.io.StringReader;
+import jminusminus.bench.WorkloadGen;
+
+/**
+ * Benchmark for reading source characters, over a j-- source of a given size
+ * (50 MB by default) generated by WorkloadGen. It compares the old CharReader,
+ * which read through a LineNumberReader one character at a time (and which the
+ * Scanner asked for the line number after every character), with the current
+ * one, which reads the source in bulk and looks up line numbers in a table of
+ * line starts. Each is timed reading every character and its line number; the
+ * current one also reading just the characters (as the Scanner now does), and
+ * under the Scanner, tokenizing the whole source. Each measurement is the best
+ * of a number of runs (5 by default).
+ */
+
+public class CharReaderBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional source size in MB, and number of runs.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String source = new WorkloadGen().generate(megabytes << 20);
+        System.out.printf("Reading %d MB (%d lines), best of %d runs\n\n",
+                megabytes, lines(source), runs);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            best = Math.min(best, readOld(source));
+        }
+        report("old reader, char + line", best, source);
+        best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            best = Math.min(best, readNew(source, true));
+        }
+        report("new reader, char + line", best, source);
+        best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            best = Math.min(best, readNew(source, false));
+        }
+        report("new reader, char", best, source);
+        best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            best = Math.min(best, tokenize(source));
+        }
+        report("scanner (new reader)", best, source);
+    }
+
+    /**
+     * Read the source through the old reader, asking for the line number after
+     * every character.
+     * 
+     * @param source
+     *            the source text.
+     * @return the time taken, in nanoseconds.
+     */
+
+    private static long readOld(String source) throws IOException {
+        long start = System.nanoTime();
+        LineNumberCharReader input = new LineNumberCharReader(
+                new StringReader(source));
+        int line = 0;
+        char ch;
+        do {
+            line = input.line();
+            ch = input.nextChar();
+        } while (ch != CharReader.EOFCH);
+        long elapsed = System.nanoTime() - start;
+        check(line, source);
+        return elapsed;
+    }
+
+    /**
+     * Read the source through the (new) CharReader.
+     * 
+     * @param source
+     *            the source text.
+     * @param lines
+     *            whether to ask for the line number after every character.
+     * @return the time taken, in nanoseconds.
+     */
+
+    private static long readNew(String source, boolean lines)
+            throws IOException {
+        long start = System.nanoTime();
+        CharReader input = new CharReader("Big.java", new StringReader(source));
+        int line = 0;
+        char ch;
+        do {
+            ch = input.nextChar();
+            if (lines) {
+                line = input.line();
+            }
+        } while (ch != CharReader.EOFCH);
+        if (!lines) {
+            line = input.line();
+        }
+        long elapsed = System.nanoTime() - start;
+        check(line, source);
+        return elapsed;
+    }
+
+    /**
+     * Tokenize the source with the Scanner.
+     * 
+     * @param source
+     *            the source text.
+     * @return the time taken, in nanoseconds.
+     */
+
+    private static long tokenize(String source) {
+        long start = System.nanoTime();
+        Scanner scanner = new Scanner("Big.java", new StringReader(source),
+                DiagnosticListener.STDERR);
+        TokenInfo token;
+        do {
+            token = scanner.getNextToken();
+        } while (token.kind() != TokenKind.EOF);
+        long elapsed = System.nanoTime() - start;
+        check(token.line(), source);
+        return elapsed;
+    }
+
+    /**
+     * Make sure the last line number seen is that of the source's last line.
+     * 
+     * @param line
+     *            the last line number seen.
+     * @param source
+     *            the source text.
+     */
+
+    private static void check(int line, String source) {
+        if (line != lines(source)) {
+            throw new RuntimeException("wrong line number " + line);
+        }
+    }
+
+    /**
+     * Report a measurement.
+     * 
+     * @param what
+     *            what was measured.
+     * @param nanos
+     *            the time taken, in nanoseconds.
+     * @param source
+     *            the source text.
+     */
+
+    private static void report(String what, long nanos, String source) {
+        System.out.printf("%-24s %10.1f ms %10.1f MB/s\n", what, nanos / 1e6,
+                source.length() / 1048576.0 / (nanos / 1e9));
+    }
+
+    /**
+     * Return the number of the source's last line (it ends in a new line, and
+     * the end of file comes after it).
+     * 
+     * @param source
+     *            the source text.
+     * @return the line number.
+     */
+
+    private static int lines(String source) {
+        int lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * The CharReader as it was: reads (and counts lines) through a
+     * LineNumberReader, one character at a time.
+     */
+
+    private static class LineNumberCharReader {
+
+        /** The underlying reader records line numbers. */
+        private LineNumberReader lineNumberReader;
+
+        /**
+         * Construct a LineNumberCharReader reading from the specified reader.
+         * 
+         * @param reader
+         *            the input.
+         */
+
+        public LineNumberCharReader(Reader reader) {
+            lineNumberReader = new LineNumberReader(reader);
+        }
+
+        /**
+         * Scan the next character.
+         * 
+         * @return the character scanned.
+         */
+
+        public char nextChar() throws IOException {
+            return (char) lineNumberReader.read();
+        }
+
+        /**
+         * The current line number in the source file, starting at 1.
+         * 
+         * @return the current line number.
+         */
+
+        public int line() {
+            return lineNumberReader.getLineNumber() + 1;
+        }
+
+    }
+
+}
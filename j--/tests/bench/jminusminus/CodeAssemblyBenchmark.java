@@ -0,0 +1,117 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import com.sun.management.ThreadMXBean;
+import static jminusminus.CLConstants.*;
+
+/**
+ * Benchmark for bytecode assembly: a CLEmitter is given the instructions of a
+ * method of a given size (60 KB by default), and then assembles the class
+ * (computing the maximum stack depth of the method, writing its instructions
+ * into its code array, and the class into bytes). This is done a number of
+ * times (20 by default, after 5 warm-up runs), and the benchmark reports, for
+ * the emitting of the instructions and for the assembly, the best time, and
+ * the bytes allocated per run and per byte of code. The class is loaded and
+ * its method run once, as a check that the bytecode is valid.
+ */
+
+public class CodeAssemblyBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional method size in KB, and number of runs.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int kilobytes = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int size = kilobytes << 10;
+
+        CLEmitter check = emit(size);
+        int codeLength = check.pc();
+        Class<?> theClass = check.toClass(new ByteClassLoader());
+        Object result = theClass.getMethod("run", int.class).invoke(null, 1);
+        System.out.printf("Assembling a method of %d bytes, %d times "
+                + "(run(1) returns %s)\n\n", codeLength, runs, result);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 5; i++) {
+            emit(size).toBytes();
+        }
+        long bestEmit = Long.MAX_VALUE;
+        long bestAssemble = Long.MAX_VALUE;
+        long emitAllocated = 0;
+        long assembleAllocated = 0;
+        for (int i = 0; i < runs; i++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            CLEmitter output = emit(size);
+            long emitted = System.nanoTime();
+            long emitAllocatedTo = threads.getThreadAllocatedBytes(thread);
+            byte[] bytes = output.toBytes();
+            long assembled = System.nanoTime();
+            assembleAllocated += threads.getThreadAllocatedBytes(thread)
+                    - emitAllocatedTo;
+            emitAllocated += emitAllocatedTo - allocated;
+            bestEmit = Math.min(bestEmit, emitted - start);
+            bestAssemble = Math.min(bestAssemble, assembled - emitted);
+            if (bytes == null) {
+                throw new RuntimeException("cannot assemble the class");
+            }
+        }
+        System.out.printf("%-10s %10s %14s %16s\n", "Phase", "Best (ms)",
+                "Alloc (KB/run)", "Alloc (B/byte)");
+        System.out.printf("%-10s %10.2f %14.1f %16.1f\n", "emit",
+                bestEmit / 1e6, emitAllocated / 1024.0 / runs,
+                (double) emitAllocated / runs / codeLength);
+        System.out.printf("%-10s %10.2f %14.1f %16.1f\n", "assemble",
+                bestAssemble / 1e6, assembleAllocated / 1024.0 / runs,
+                (double) assembleAllocated / runs / codeLength);
+    }
+
+    /**
+     * Return an emitter given the instructions of a class Big with a method
+     * static int run(int) of (about) the specified number of bytes of code:
+     * blocks of arithmetic on the argument, each with a short forward branch
+     * (so that the method has as many basic blocks as a 5,000-line j-- method,
+     * for the emitter's computation of the maximum stack depth).
+     * 
+     * @param size
+     *            number of bytes of code.
+     * @return the emitter.
+     */
+
+    private static CLEmitter emit(int size) {
+        CLEmitter output = new CLEmitter(false);
+        ArrayList<String> mods = new ArrayList<String>();
+        mods.add("public");
+        output.addClass(mods, "Big", "java/lang/Object", null, false);
+        mods.add("static");
+        output.addMethod(mods, "run", "(I)I", null, false);
+        for (int i = 0; output.pc() + 18 < size; i++) {
+            String skip = output.createLabel();
+            output.addNoArgInstruction(ILOAD_0);
+            output.addOneArgInstruction(SIPUSH, i % 1000);
+            output.addNoArgInstruction(IADD);
+            output.addNoArgInstruction(ISTORE_0);
+            output.addIINCInstruction(0, -1);
+            output.addNoArgInstruction(ILOAD_0);
+            output.addBranchInstruction(IFLE, skip);
+            output.addNoArgInstruction(ICONST_1);
+            output.addNoArgInstruction(ISTORE_0);
+            output.addLabel(skip);
+            output.addNoArgInstruction(NOP);
+        }
+        output.addNoArgInstruction(ILOAD_0);
+        output.addNoArgInstruction(IRETURN);
+        return output;
+    }
+
+}
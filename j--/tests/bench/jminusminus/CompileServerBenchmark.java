@@ -0,0 +1,206 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Benchmark comparing compiles in cold JVMs (one per compile, as bin/j-- used
+ * to do) with compiles handed to a CompileServer. The files under
+ * PASS_TESTS_DIR are compiled a number of times (100 by default) one after the
+ * other:
+ * 
+ * (1) each in a fresh JVM running jminusminus.Main;
+ * 
+ * (2) each in a fresh JVM running the thin client (CompileServer -client),
+ * which forwards the compile to the server; and
+ * 
+ * (3) each forwarded to the server from this JVM, which measures the server
+ * alone.
+ * 
+ * The child JVMs use the class path given by the JMINUSMINUS_CLASSPATH
+ * property, and write their classes under BENCH_OUTPUT_DIR.
+ */
+
+public class CompileServerBenchmark {
+
+    /** Port for the server started by the benchmark. */
+    private static final int PORT = CompileServer.DEFAULT_PORT + 1;
+
+    /** The java launcher. */
+    private static final String JAVA = System.getProperty("java.home")
+            + File.separator + "bin" + File.separator + "java";
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional number of compiles per mode.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        String classpath = System.getProperty("JMINUSMINUS_CLASSPATH");
+        File outputDir = new File(System.getProperty("BENCH_OUTPUT_DIR"));
+        ArrayList<String> sourceFiles = new ArrayList<String>();
+        for (File file : sortedFiles(new File(System
+                .getProperty("PASS_TESTS_DIR")))) {
+            if (file.getName().endsWith(".java")) {
+                sourceFiles.add(file.getAbsolutePath());
+            }
+        }
+        ArrayList<String> compilerArgs = new ArrayList<String>();
+        compilerArgs.add("-d");
+        compilerArgs.add(outputDir.getAbsolutePath());
+        compilerArgs.addAll(sourceFiles);
+        System.out.printf("Compiling %d files, %d times per mode\n\n",
+                sourceFiles.size(), runs);
+
+        // (1) Cold JVMs
+        ArrayList<String> command = javaCommand(classpath, "jminusminus.Main");
+        command.addAll(compilerArgs);
+        long cold = 0;
+        for (int i = 0; i < runs; i++) {
+            cold += exec(command);
+        }
+        report("cold JVM (jminusminus.Main)", cold, runs);
+
+        // Start the server and wait for it to accept connections
+        ArrayList<String> serverCommand = javaCommand(classpath,
+                "jminusminus.CompileServer");
+        serverCommand.add("-port");
+        serverCommand.add(String.valueOf(PORT));
+        Process server = new ProcessBuilder(serverCommand).inheritIO()
+                .start();
+        try {
+            awaitServer();
+
+            // (2) Cold thin clients
+            command = javaCommand(classpath, "jminusminus.CompileServer");
+            command.add("-port");
+            command.add(String.valueOf(PORT));
+            command.add("-client");
+            command.addAll(compilerArgs);
+            long client = 0;
+            for (int i = 0; i < runs; i++) {
+                client += exec(command);
+            }
+            report("cold JVM client -> server", client, runs);
+
+            // (3) Requests from this JVM
+            String[] request = compilerArgs.toArray(new String[0]);
+            long warm = 0;
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                if (CompileServer.forward(PORT, request,
+                        new ArrayList<String>())) {
+                    throw new RuntimeException("compilation failed");
+                }
+                warm += System.nanoTime() - start;
+            }
+            report("in-process client -> server", warm, runs);
+        } finally {
+            CompileServer.stop(PORT);
+            server.waitFor();
+        }
+    }
+
+    /**
+     * Return the command running the specified main class in a fresh JVM.
+     * 
+     * @param classpath
+     *            class path for the JVM.
+     * @param mainClass
+     *            the main class.
+     * @return the command.
+     */
+
+    private static ArrayList<String> javaCommand(String classpath,
+            String mainClass) {
+        return new ArrayList<String>(Arrays.asList(JAVA, "-classpath",
+                classpath, mainClass));
+    }
+
+    /**
+     * Run the specified command to completion, failing if it writes anything
+     * (the compiler is silent unless there is an error).
+     * 
+     * @param command
+     *            the command.
+     * @return elapsed time in nanoseconds.
+     */
+
+    private static long exec(ArrayList<String> command) throws Exception {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(
+                true).start();
+        InputStream in = process.getInputStream();
+        StringBuilder output = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            output.append(new String(buffer, 0, n));
+        }
+        process.waitFor();
+        long elapsed = System.nanoTime() - start;
+        if (output.length() > 0) {
+            throw new RuntimeException("compilation failed:\n" + output);
+        }
+        return elapsed;
+    }
+
+    /**
+     * Wait (up to 30 seconds) for the server to accept connections.
+     */
+
+    private static void awaitServer() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            try {
+                new Socket(InetAddress.getLoopbackAddress(), PORT).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IOException("server did not start on port " + PORT);
+    }
+
+    /**
+     * Print the total and mean times for a mode.
+     * 
+     * @param mode
+     *            description of the mode.
+     * @param nanos
+     *            total time in nanoseconds.
+     * @param runs
+     *            number of compiles.
+     */
+
+    private static void report(String mode, long nanos, int runs) {
+        System.out.printf("%-30s %10.1f ms total %8.2f ms/compile\n", mode,
+                nanos / 1e6, nanos / 1e6 / runs);
+    }
+
+    /**
+     * Return the files in the specified directory, sorted by name.
+     * 
+     * @param dir
+     *            the directory.
+     * @return the files.
+     */
+
+    private static File[] sortedFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+}
@@ -0,0 +1,769 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import jminusminus.bench.WorkloadGen;
+
+/**
+ * A benchmark suite covering every phase of the compiler, run in the manner
+ * of JMH: each benchmark is run over each workload in a number of warm-up
+ * iterations (3 by default), and then in a number of measured ones (5 by
+ * default). An iteration runs the benchmark as many times as fit in 100 ms of
+ * measured time, each run after an untimed set-up of its own (a fresh
+ * Compilation taken up to the phase measured, say), and yields the mean time
+ * of a run. For each benchmark and workload, the suite reports the mean of the
+ * iterations, their standard deviation, and the best.
+ * 
+ * The benchmarks are scan (the Scanner), parse (Parser.compilationUnit()),
+ * preAnalyze, analyze, codegen (into CLEmitters, in memory), write (the class
+ * files, to a temporary directory, as CLEmitter.write() writes them), absorb
+ * (the CLAbsorber reading them back), cfg (NControlFlowGraph construction),
+ * and naive, linear and graph (the register allocators, over control flow
+ * graphs taken down to LIR). The workloads are the programs under tests/pass
+ * and tests/spim, and a program generated (by WorkloadGen, in SPIM mode) to a
+ * given number of methods (2,000 by default, in classes of 50). The back-end
+ * benchmarks run over the methods the SPIM back end handles; the others (most
+ * of those in tests/pass) are left out, and their number reported.
+ * 
+ * The results can be saved as CSV (-o), and compared against results saved
+ * earlier (-baseline): a benchmark more than 10% (-threshold) slower than its
+ * baseline is reported as a regression, and the suite then exits with status
+ * 1. -only runs the benchmarks whose workload/benchmark names match a regular
+ * expression (eg, "spim/.*" or "pass/parse").
+ */
+
+public class CompilerBenchmark {
+
+    /** Measured time an iteration runs a benchmark for, at least. */
+    private static final long ITERATION_NANOS = 100000000L;
+
+    /** Wall time an iteration runs for, at most (set-ups included). */
+    private static final long ITERATION_WALL_NANOS = 5 * ITERATION_NANOS;
+
+    /** Methods per class in the generated program. */
+    private static final int METHODS_PER_CLASS = 50;
+
+    /** Sink for the results of the runs, so that none is optimized away. */
+    private static volatile long sink;
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            options: -w warm-up iterations, -i measured iterations, -n
+     *            methods in the generated program, -tests directory holding
+     *            pass and spim, -only regular expression, -o results file,
+     *            -baseline results file, -threshold percentage.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int warmups = 3;
+        int iterations = 5;
+        int methods = 2000;
+        String tests = "tests";
+        Pattern only = null;
+        String output = null;
+        String baseline = null;
+        double threshold = 10;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-w") && i + 1 < args.length) {
+                warmups = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-i") && i + 1 < args.length) {
+                iterations = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-n") && i + 1 < args.length) {
+                methods = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-tests") && i + 1 < args.length) {
+                tests = args[++i];
+            } else if (args[i].equals("-only") && i + 1 < args.length) {
+                only = Pattern.compile(args[++i]);
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (args[i].equals("-baseline") && i + 1 < args.length) {
+                baseline = args[++i];
+            } else if (args[i].equals("-threshold") && i + 1 < args.length) {
+                threshold = Double.parseDouble(args[++i]);
+            } else {
+                System.err.println("Usage: java jminusminus.CompilerBenchmark"
+                        + " [-w warmups] [-i iterations] [-n methods]"
+                        + " [-tests dir] [-only regex] [-o file]"
+                        + " [-baseline file] [-threshold percent]");
+                System.exit(2);
+            }
+        }
+
+        ArrayList<Workload> workloads = new ArrayList<Workload>();
+        workloads.add(new Workload("pass", read(new File(tests, "pass"))));
+        workloads.add(new Workload("spim", read(new File(tests, "spim"))));
+        workloads.add(new Workload("generated", new WorkloadGen().spim(true)
+                .classes((methods + METHODS_PER_CLASS - 1) / METHODS_PER_CLASS)
+                .methods(METHODS_PER_CLASS).statements(10).generate()));
+        System.out.printf("%d warm-up and %d measured iterations of at "
+                + "least %d ms each\n\n", warmups, iterations,
+                ITERATION_NANOS / 1000000);
+        for (Workload workload : workloads) {
+            workload.prepare();
+            System.out.printf("%-10s %4d files %7d lines %6d methods "
+                    + "(%d left out of the back end)\n", workload.name,
+                    workload.sources.size(), workload.lines,
+                    workload.methods.size() + workload.leftOut,
+                    workload.leftOut);
+        }
+        System.out.println();
+
+        LinkedHashMap<String, double[]> results = new LinkedHashMap<String, double[]>();
+        System.out.printf("%-22s %14s %12s %14s\n", "Benchmark", "Mean us/op",
+                "Stddev", "Best us/op");
+        for (Workload workload : workloads) {
+            for (Benchmark benchmark : benchmarks()) {
+                String key = workload.name + "/" + benchmark.name;
+                if (only != null && !only.matcher(key).matches()) {
+                    continue;
+                }
+                for (int i = 0; i < warmups; i++) {
+                    iteration(benchmark, workload);
+                }
+                double[] means = new double[iterations];
+                for (int i = 0; i < iterations; i++) {
+                    means[i] = iteration(benchmark, workload);
+                }
+                double[] result = statistics(means);
+                results.put(key, result);
+                System.out.printf("%-22s %14.1f %12.1f %14.1f\n", key,
+                        result[0] / 1e3, result[1] / 1e3, result[2] / 1e3);
+            }
+        }
+        for (Workload workload : workloads) {
+            workload.release();
+        }
+
+        if (output != null) {
+            write(results, output);
+        }
+        if (baseline != null && regressions(results, read(baseline),
+                threshold) > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run one iteration of the specified benchmark over the specified
+     * workload.
+     * 
+     * @param benchmark
+     *            the benchmark.
+     * @param workload
+     *            the workload.
+     * @return the mean time of a run, in nanoseconds.
+     */
+
+    private static double iteration(Benchmark benchmark, Workload workload)
+            throws Exception {
+        long start = System.nanoTime();
+        long nanos = 0;
+        int runs = 0;
+        do {
+            benchmark.setUp(workload);
+            long t = System.nanoTime();
+            sink += benchmark.run(workload);
+            nanos += System.nanoTime() - t;
+            runs++;
+            benchmark.tearDown();
+        } while (nanos < ITERATION_NANOS
+                && System.nanoTime() - start < ITERATION_WALL_NANOS);
+        return (double) nanos / runs;
+    }
+
+    /**
+     * Return the mean, the standard deviation and the least of the specified
+     * values.
+     * 
+     * @param values
+     *            the values.
+     * @return the statistics.
+     */
+
+    private static double[] statistics(double[] values) {
+        double sum = 0;
+        double best = Double.MAX_VALUE;
+        for (double value : values) {
+            sum += value;
+            best = Math.min(best, value);
+        }
+        double mean = sum / values.length;
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double deviation = values.length > 1 ? Math.sqrt(squares
+                / (values.length - 1)) : 0;
+        return new double[] { mean, deviation, best };
+    }
+
+    /**
+     * Report the benchmarks that are slower than their baselines by more than
+     * the specified percentage.
+     * 
+     * @param results
+     *            the results, by workload/benchmark name.
+     * @param baseline
+     *            the baseline results.
+     * @param threshold
+     *            the percentage.
+     * @return the number of regressions.
+     */
+
+    private static int regressions(Map<String, double[]> results,
+            Map<String, double[]> baseline, double threshold) {
+        int regressions = 0;
+        System.out.printf("\n%-22s %14s %14s %9s\n", "Against baseline",
+                "Baseline us/op", "Mean us/op", "Change");
+        for (Map.Entry<String, double[]> result : results.entrySet()) {
+            double[] base = baseline.get(result.getKey());
+            if (base == null) {
+                continue;
+            }
+            double change = 100 * (result.getValue()[0] - base[0]) / base[0];
+            boolean regressed = change > threshold;
+            System.out.printf("%-22s %14.1f %14.1f %8.1f%%%s\n", result
+                    .getKey(), base[0] / 1e3, result.getValue()[0] / 1e3,
+                    change, regressed ? "  REGRESSION" : "");
+            if (regressed) {
+                regressions++;
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Write the results, as CSV.
+     * 
+     * @param results
+     *            the results, by workload/benchmark name.
+     * @param fileName
+     *            name of the file.
+     */
+
+    private static void write(Map<String, double[]> results, String fileName)
+            throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(fileName));
+        try {
+            out.println("benchmark,meanNanos,stddevNanos,bestNanos");
+            for (Map.Entry<String, double[]> result : results.entrySet()) {
+                out.printf("%s,%.0f,%.0f,%.0f\n", result.getKey(), result
+                        .getValue()[0], result.getValue()[1], result
+                        .getValue()[2]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read results written by write().
+     * 
+     * @param fileName
+     *            name of the file.
+     * @return the results, by workload/benchmark name.
+     */
+
+    private static LinkedHashMap<String, double[]> read(String fileName)
+            throws IOException {
+        LinkedHashMap<String, double[]> results = new LinkedHashMap<String, double[]>();
+        BufferedReader in = new BufferedReader(new FileReader(fileName));
+        try {
+            in.readLine();
+            for (String line; (line = in.readLine()) != null;) {
+                String[] fields = line.split(",");
+                results.put(fields[0], new double[] {
+                        Double.parseDouble(fields[1]),
+                        Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3]) });
+            }
+        } finally {
+            in.close();
+        }
+        return results;
+    }
+
+    /**
+     * Read the j-- sources under the specified directory.
+     * 
+     * @param dir
+     *            the directory.
+     * @return maps file names to source text.
+     */
+
+    private static LinkedHashMap<String, String> read(File dir)
+            throws IOException {
+        ArrayList<String> files = new ArrayList<String>();
+        Compilation.addSourceFiles(dir, files);
+        if (files.isEmpty()) {
+            throw new IOException("no sources under " + dir);
+        }
+        LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+        for (String file : files) {
+            sources.put(file, new String(Files.readAllBytes(new File(file)
+                    .toPath())));
+        }
+        return sources;
+    }
+
+    /**
+     * Return a compilation of the specified workload, taken through the
+     * specified number of phases: parsing, pre-analysis, analysis and code
+     * generation (in memory).
+     * 
+     * @param workload
+     *            the workload.
+     * @param phases
+     *            number of phases (1 to 4).
+     * @return the compilation, which the caller shuts down.
+     */
+
+    private static Compilation compile(Workload workload, int phases) {
+        Compilation compilation = new Compilation(1,
+                NPhysicalRegister.DEFAULT_COUNT);
+        for (Map.Entry<String, String> source : workload.sources.entrySet()) {
+            LookaheadScanner scanner = new LookaheadScanner(source.getKey(),
+                    new StringReader(source.getValue()),
+                    DiagnosticListener.STDERR);
+            compilation.addCompilationUnit(new Parser(scanner)
+                    .compilationUnit());
+        }
+        if (phases > 1) {
+            compilation.preAnalyze();
+        }
+        if (phases > 2) {
+            compilation.analyze();
+        }
+        if (phases > 3) {
+            compilation.codegen(null, false);
+        }
+        if (compilation.errorHasOccurred()) {
+            compilation.shutdown();
+            throw new RuntimeException("cannot compile " + workload.name);
+        }
+        return compilation;
+    }
+
+    /**
+     * Take the specified control flow graph down to LIR, as NEmitter does
+     * before register allocation.
+     * 
+     * @param cfg
+     *            the control flow graph.
+     * @return the control flow graph.
+     */
+
+    private static NControlFlowGraph lower(NControlFlowGraph cfg) {
+        cfg.detectLoops(cfg.basicBlocks.get(0), null);
+        cfg.removeUnreachableBlocks();
+        cfg.computeDominators(cfg.basicBlocks.get(0), null);
+        cfg.tuplesToHir();
+        cfg.eliminateRedundantPhiFunctions();
+        cfg.optimize();
+        cfg.hirToLir();
+        cfg.resolvePhiFunctions();
+        cfg.orderBlocks();
+        cfg.renumberLirInstructions();
+        return cfg;
+    }
+
+    /**
+     * Return a register allocator of the specified kind.
+     * 
+     * @param kind
+     *            naive, linear or graph.
+     * @param compilation
+     *            the compilation.
+     * @param cfg
+     *            the control flow graph.
+     * @return the allocator.
+     */
+
+    private static NRegisterAllocator allocator(String kind,
+            Compilation compilation, NControlFlowGraph cfg) {
+        if (kind.equals("naive")) {
+            return new NNaiveRegisterAllocator(compilation, cfg);
+        } else if (kind.equals("linear")) {
+            return new NLinearRegisterAllocator(compilation, cfg);
+        }
+        return new NGraphRegisterAllocator(compilation, cfg);
+    }
+
+    /**
+     * Return the benchmarks, in the order of the phases.
+     * 
+     * @return the benchmarks.
+     */
+
+    private static ArrayList<Benchmark> benchmarks() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.add(new Benchmark("scan") {
+            long run(Workload workload) {
+                long tokens = 0;
+                for (Map.Entry<String, String> source : workload.sources
+                        .entrySet()) {
+                    Scanner scanner = new Scanner(source.getKey(),
+                            new StringReader(source.getValue()),
+                            DiagnosticListener.STDERR);
+                    while (scanner.scan() != TokenKind.EOF) {
+                        tokens++;
+                    }
+                }
+                return tokens;
+            }
+        });
+        benchmarks.add(new Benchmark("parse") {
+            private Compilation compilation;
+
+            long run(Workload workload) {
+                compilation = compile(workload, 1);
+                return compilation.compilationUnits().size();
+            }
+
+            void tearDown() {
+                compilation.shutdown();
+            }
+        });
+        benchmarks.add(new PhaseBenchmark("preAnalyze", 1) {
+            long run(Workload workload) {
+                compilation.preAnalyze();
+                return compilation.errorHasOccurred() ? 0 : 1;
+            }
+        });
+        benchmarks.add(new PhaseBenchmark("analyze", 2) {
+            long run(Workload workload) {
+                compilation.analyze();
+                return compilation.errorHasOccurred() ? 0 : 1;
+            }
+        });
+        benchmarks.add(new PhaseBenchmark("codegen", 3) {
+            long run(Workload workload) {
+                compilation.codegen(null, false);
+                return compilation.errorHasOccurred() ? 0 : 1;
+            }
+        });
+        benchmarks.add(new Benchmark("write") {
+            long run(Workload workload) throws IOException {
+                for (int i = 0; i < workload.clFiles.size(); i++) {
+                    File file = new File(workload.outputDir, i + ".class");
+                    CLOutputStream out = new CLOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(
+                                    file)));
+                    workload.clFiles.get(i).write(out);
+                    out.close();
+                }
+                return workload.clFiles.size();
+            }
+        });
+        benchmarks.add(new Benchmark("absorb") {
+            long run(Workload workload) {
+                long count = 0;
+                for (Map.Entry<String, byte[]> classFile : workload.classFiles
+                        .entrySet()) {
+                    CLAbsorber absorber = new CLAbsorber(classFile.getKey(),
+                            new CLInputStream(new ByteArrayInputStream(
+                                    classFile.getValue())), false);
+                    count += absorber.classFile().methodsCount;
+                }
+                return count;
+            }
+        });
+        benchmarks.add(new Benchmark("cfg") {
+            long run(Workload workload) {
+                long blocks = 0;
+                for (Method method : workload.methods) {
+                    blocks += new NControlFlowGraph(workload.emitter,
+                            method.cp, method.info).basicBlocks.size();
+                }
+                return blocks;
+            }
+        });
+        for (final String kind : new String[] { "naive", "linear", "graph" }) {
+            benchmarks.add(new Benchmark(kind) {
+                private ArrayList<NControlFlowGraph> cfgs = new ArrayList<NControlFlowGraph>();
+
+                void setUp(Workload workload) {
+                    for (Method method : workload.methods) {
+                        cfgs.add(lower(new NControlFlowGraph(
+                                workload.emitter, method.cp, method.info)));
+                    }
+                }
+
+                long run(Workload workload) {
+                    for (NControlFlowGraph cfg : cfgs) {
+                        allocator(kind, workload.compilation, cfg)
+                                .allocation();
+                    }
+                    return cfgs.size();
+                }
+
+                void tearDown() {
+                    cfgs.clear();
+                }
+            });
+        }
+        return benchmarks;
+    }
+
+    /**
+     * A benchmark: a run, which is timed, and its set-up and tear-down, which
+     * are not.
+     */
+
+    private abstract static class Benchmark {
+
+        /** Name of the benchmark. */
+        private String name;
+
+        /**
+         * Construct a Benchmark.
+         * 
+         * @param name
+         *            name of the benchmark.
+         */
+
+        protected Benchmark(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Set up a run over the specified workload.
+         * 
+         * @param workload
+         *            the workload.
+         */
+
+        void setUp(Workload workload) {
+        }
+
+        /**
+         * Run the benchmark over the specified workload.
+         * 
+         * @param workload
+         *            the workload.
+         * @return a count of what was done (tokens, say).
+         */
+
+        abstract long run(Workload workload) throws Exception;
+
+        /**
+         * Tear down a run.
+         */
+
+        void tearDown() {
+        }
+
+    }
+
+    /**
+     * A benchmark of a phase of the compiler, each run of which is over a
+     * fresh compilation, taken through the phases before it.
+     */
+
+    private abstract static class PhaseBenchmark extends Benchmark {
+
+        /** Number of phases before the one measured. */
+        private int phases;
+
+        /** The compilation. */
+        protected Compilation compilation;
+
+        /**
+         * Construct a PhaseBenchmark.
+         * 
+         * @param name
+         *            name of the benchmark.
+         * @param phases
+         *            number of phases before the one measured.
+         */
+
+        protected PhaseBenchmark(String name, int phases) {
+            super(name);
+            this.phases = phases;
+        }
+
+        /**
+         * @inheritDoc
+         */
+
+        void setUp(Workload workload) {
+            compilation = compile(workload, phases);
+        }
+
+        /**
+         * @inheritDoc
+         */
+
+        void tearDown() {
+            compilation.shutdown();
+            compilation = null;
+        }
+
+    }
+
+    /**
+     * A method the SPIM back end handles, in its class's constant pool.
+     */
+
+    private static class Method {
+
+        /** Constant pool of the class. */
+        private CLConstantPool cp;
+
+        /** The method. */
+        private CLMethodInfo info;
+
+        /**
+         * Construct a Method.
+         * 
+         * @param cp
+         *            constant pool of the class.
+         * @param info
+         *            the method.
+         */
+
+        public Method(CLConstantPool cp, CLMethodInfo info) {
+            this.cp = cp;
+            this.info = info;
+        }
+
+    }
+
+    /**
+     * A workload: a program, and what the back-end benchmarks need of it,
+     * compiled once.
+     */
+
+    private static class Workload {
+
+        /** Name of the workload. */
+        private String name;
+
+        /** Maps file names to source text. */
+        private LinkedHashMap<String, String> sources;
+
+        /** Number of source lines. */
+        private int lines;
+
+        /** The program, compiled (in memory). */
+        private Compilation compilation;
+
+        /** Its class files, by class name. */
+        private LinkedHashMap<String, byte[]> classFiles;
+
+        /** Its classes, as generated. */
+        private ArrayList<CLFile> clFiles;
+
+        /** Temporary directory to which the class files are written. */
+        private File outputDir;
+
+        /** Emitter the control flow graphs are built for. */
+        private NEmitter emitter;
+
+        /** The methods the SPIM back end handles. */
+        private ArrayList<Method> methods;
+
+        /** Number of methods left out of the back end. */
+        private int leftOut;
+
+        /**
+         * Construct a Workload.
+         * 
+         * @param name
+         *            name of the workload.
+         * @param sources
+         *            maps file names to source text.
+         */
+
+        public Workload(String name, LinkedHashMap<String, String> sources) {
+            this.name = name;
+            this.sources = sources;
+            for (String source : sources.values()) {
+                lines += source.split("\n", -1).length;
+            }
+        }
+
+        /**
+         * Compile the program, and pick the methods the SPIM back end
+         * handles: those it takes through register allocation (with every
+         * allocator) without failing.
+         */
+
+        public void prepare() throws IOException {
+            compilation = compile(this, 4);
+            classFiles = compilation.classFiles();
+            clFiles = new ArrayList<CLFile>();
+            for (JCompilationUnit unit : compilation.compilationUnits()) {
+                clFiles.addAll(unit.clFiles());
+            }
+            outputDir = Files.createTempDirectory("bench").toFile();
+            emitter = new NEmitter(compilation, name + ".java",
+                    new ArrayList<CLFile>(), "naive");
+            methods = new ArrayList<Method>();
+            for (CLFile clFile : clFiles) {
+                for (CLMethodInfo info : clFile.methods) {
+                    Method method = new Method(clFile.constantPool, info);
+                    if (handled(method)) {
+                        methods.add(method);
+                    } else {
+                        leftOut++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Does the SPIM back end handle the specified method?
+         * 
+         * @param method
+         *            the method.
+         * @return true or false.
+         */
+
+        private boolean handled(Method method) {
+            try {
+                for (String kind : new String[] { "naive", "linear", "graph" }) {
+                    allocator(kind, compilation, lower(new NControlFlowGraph(
+                            emitter, method.cp, method.info))).allocation();
+                }
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Release the compilation, and delete the class files written.
+         */
+
+        public void release() {
+            compilation.shutdown();
+            File[] files = outputDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            outputDir.delete();
+        }
+
+    }
+
+}
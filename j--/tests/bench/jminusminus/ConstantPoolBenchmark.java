@@ -0,0 +1,93 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+import static jminusminus.CLConstants.*;
+
+/**
+ * Benchmark for the constant pool: a CLEmitter is given a class whose methods
+ * load a number of distinct string literals (20,000 by default), each of which
+ * adds a CONSTANT_String and a CONSTANT_Utf8 to the pool, after looking both
+ * up in it; and the class is then assembled. This is done a number of times
+ * (5 by default, after a warm-up run), and the benchmark reports the best
+ * time, and the time per literal. The class is loaded and its methods run
+ * once, as a check that it is valid.
+ */
+
+public class ConstantPoolBenchmark {
+
+    /** Number of literals loaded by each method (keeps it under 64 KB). */
+    private static final int LITERALS_PER_METHOD = 5000;
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional number of literals, and number of runs.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int literals = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        byte[] check = emit(literals).toBytes();
+        int cpCount = ((check[8] & 0xFF) << 8) | (check[9] & 0xFF);
+        Class<?> theClass = new ByteClassLoader().loadClass("Strings", check);
+        int methods = (literals + LITERALS_PER_METHOD - 1)
+                / LITERALS_PER_METHOD;
+        for (int i = 0; i < methods; i++) {
+            theClass.getMethod("load" + i).invoke(null);
+        }
+        System.out.printf("Emitting a class with %d distinct string literals "
+                + "(%d constant pool entries, %d bytes), %d times\n\n",
+                literals, cpCount - 1, check.length, runs);
+
+        emit(literals).toBytes();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            byte[] bytes = emit(literals).toBytes();
+            best = Math.min(best, System.nanoTime() - start);
+            if (bytes == null) {
+                throw new RuntimeException("cannot assemble the class");
+            }
+        }
+        System.out.printf("%-10s %10s %16s\n", "Phase", "Best (ms)",
+                "Per literal (us)");
+        System.out.printf("%-10s %10.2f %16.3f\n", "emit", best / 1e6,
+                best / 1e3 / literals);
+    }
+
+    /**
+     * Return an emitter given the instructions of a class Strings whose
+     * methods static void load0(), load1(), ... load (and pop) the specified
+     * number of distinct string literals between them.
+     * 
+     * @param literals
+     *            number of literals.
+     * @return the emitter.
+     */
+
+    private static CLEmitter emit(int literals) {
+        CLEmitter output = new CLEmitter(false);
+        ArrayList<String> mods = new ArrayList<String>();
+        mods.add("public");
+        output.addClass(mods, "Strings", "java/lang/Object", null, false);
+        mods.add("static");
+        for (int i = 0; i < literals; i++) {
+            if (i % LITERALS_PER_METHOD == 0) {
+                if (i > 0) {
+                    output.addNoArgInstruction(RETURN);
+                }
+                output.addMethod(mods, "load" + i / LITERALS_PER_METHOD,
+                        "()V", null, false);
+            }
+            output.addLDCInstruction("literal" + i);
+            output.addNoArgInstruction(POP);
+        }
+        output.addNoArgInstruction(RETURN);
+        return output;
+    }
+
+}
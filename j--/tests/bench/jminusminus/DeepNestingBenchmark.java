@@ -0,0 +1,128 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.StringReader;
+
+/**
+ * Benchmark for parsing deeply nested expressions, which make the Parser look
+ * ahead (seeCast(), seeLocalVariableDeclaration(), ...) at every level: a
+ * generated class whose methods hold a chain of casts, and a parenthesized
+ * expression, each nested to a given depth (10,000 by default), and a mix of
+ * the two. The class is parsed a number of times (10 by default, after a
+ * warm-up parse), and the benchmark reports the best and mean parse times.
+ * Parsing is recursive, so it is done in a thread with a large stack.
+ */
+
+public class DeepNestingBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional nesting depth and number of parses.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final String source = generate(depth);
+        System.out.printf("Parsing expressions nested %d deep, %d times\n\n",
+                depth, runs);
+        Thread thread = new Thread(null, new Runnable() {
+            public void run() {
+                parse(source);
+                long best = Long.MAX_VALUE;
+                long total = 0;
+                for (int i = 0; i < runs; i++) {
+                    long nanos = parse(source);
+                    best = Math.min(best, nanos);
+                    total += nanos;
+                }
+                System.out.printf("parse (best)         %10.2f ms\n",
+                        best / 1e6);
+                System.out.printf("parse (mean)         %10.2f ms\n", total
+                        / 1e6 / runs);
+            }
+        }, "parser", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    /**
+     * Parse the specified source.
+     * 
+     * @param source
+     *            the source text.
+     * @return the time taken, in nanoseconds.
+     */
+
+    private static long parse(String source) {
+        long start = System.nanoTime();
+        LookaheadScanner scanner = new LookaheadScanner("Deep.java",
+                new StringReader(source), DiagnosticListener.STDERR);
+        Parser parser = new Parser(scanner);
+        parser.compilationUnit();
+        long elapsed = System.nanoTime() - start;
+        if (parser.errorHasOccurred()) {
+            throw new RuntimeException("parse failed");
+        }
+        return elapsed;
+    }
+
+    /**
+     * Generate the program.
+     * 
+     * @param depth
+     *            nesting depth.
+     * @return the source text.
+     */
+
+    private static String generate(int depth) {
+        StringBuilder s = new StringBuilder();
+        s.append("package deep;\n\n");
+        s.append("import java.lang.Object;\n\n");
+        s.append("public class Deep {\n\n");
+
+        // Casts: (int) (int) ... (int) n
+        s.append("    public int casts(int n) {\n");
+        s.append("        int m = ");
+        for (int i = 0; i < depth; i++) {
+            s.append("(int) ");
+        }
+        s.append("n;\n");
+        s.append("        return m;\n");
+        s.append("    }\n\n");
+
+        // Parentheses: ((...(n + 1)...) + 1)
+        s.append("    public int parens(int n) {\n");
+        s.append("        int m = ");
+        for (int i = 0; i < depth; i++) {
+            s.append('(');
+        }
+        s.append('n');
+        for (int i = 0; i < depth; i++) {
+            s.append(" + 1)");
+        }
+        s.append(";\n");
+        s.append("        return m;\n");
+        s.append("    }\n\n");
+
+        // Both: (Object) ((Deep) ((Object) (...(this)...)))
+        s.append("    public Object mixed() {\n");
+        s.append("        Object o = ");
+        for (int i = 0; i < depth; i++) {
+            s.append(i % 2 == 0 ? "(Object) (" : "(Deep) (");
+        }
+        s.append("this");
+        for (int i = 0; i < depth; i++) {
+            s.append(')');
+        }
+        s.append(";\n");
+        s.append("        return o;\n");
+        s.append("    }\n\n");
+        s.append("}\n");
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,159 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Benchmark for reading library types: a generated program imports every
+ * public top-level class in the jar files on a class path (lib/junit.jar and
+ * lib/javacc.jar by default) that is not on the benchmark's own class path,
+ * and declares a variable of each type. The program is compiled (in memory)
+ * against that class path, once and then a number of times (20 by default),
+ * and the benchmark reports the time spent in pre-analysis and analysis. The
+ * library's classes are read from their class files, never loaded (they are
+ * not on the JVM's class path).
+ */
+
+public class LibraryTypeBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional class path and number of compiles.
+     */
+
+    public static void main(String[] args) throws Exception {
+        String classPath = args.length > 0 ? args[0] : "lib/junit.jar"
+                + File.pathSeparator + "lib/javacc.jar";
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        ArrayList<String> names = publicClasses(classPath);
+        String source = generate(names);
+        System.out.printf("Compiling against %d library classes, %d times\n\n",
+                names.size(), runs);
+        long nanos = compile(classPath, source);
+        System.out.printf("analyze (first)      %10.2f ms\n", nanos / 1e6);
+        nanos = 0;
+        for (int i = 0; i < runs; i++) {
+            nanos += compile(classPath, source);
+        }
+        System.out.printf("analyze (warm)       %10.2f ms/compile\n", nanos
+                / 1e6 / runs);
+    }
+
+    /**
+     * Compile the specified program in memory.
+     * 
+     * @param classPath
+     *            the class path to compile against.
+     * @param source
+     *            the source text.
+     * @return the time spent in pre-analysis and analysis, in nanoseconds.
+     */
+
+    private static long compile(String classPath, String source) {
+        Compilation compilation = new Compilation(1,
+                NPhysicalRegister.DEFAULT_COUNT);
+        try {
+            compilation.setClassPath(classPath);
+            LookaheadScanner scanner = new LookaheadScanner("Many.java",
+                    new StringReader(source), DiagnosticListener.STDERR);
+            compilation.addCompilationUnit(new Parser(scanner)
+                    .compilationUnit());
+            long start = System.nanoTime();
+            compilation.preAnalyze();
+            compilation.analyze();
+            long elapsed = System.nanoTime() - start;
+            if (compilation.errorHasOccurred()) {
+                throw new RuntimeException("compilation failed");
+            }
+            return elapsed;
+        } finally {
+            compilation.shutdown();
+        }
+    }
+
+    /**
+     * Return the names of the public top-level classes in the jar files on the
+     * specified class path, leaving out those the benchmark itself can see
+     * (which would be found on the compiler's class path too) and those whose
+     * simple names are already taken.
+     * 
+     * @param classPath
+     *            the class path.
+     * @return the class names.
+     */
+
+    private static ArrayList<String> publicClasses(String classPath)
+            throws Exception {
+        ArrayList<String> names = new ArrayList<String>();
+        HashSet<String> simpleNames = new HashSet<String>();
+        SymbolLoader loader = new SymbolLoader(classPath);
+        for (String path : classPath.split(File.pathSeparator)) {
+            if (!path.endsWith(".jar")) {
+                continue;
+            }
+            ZipFile zip = new ZipFile(path);
+            try {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String entry = entries.nextElement().getName();
+                    if (!entry.endsWith(".class") || entry.indexOf('$') >= 0
+                            || entry.indexOf('/') < 0) {
+                        continue;
+                    }
+                    String name = entry.substring(0, entry.length() - 6)
+                            .replace('/', '.');
+                    String simpleName = name.substring(name
+                            .lastIndexOf('.') + 1);
+                    if (LibraryTypeBenchmark.class.getClassLoader()
+                            .getResource(entry) == null
+                            && !simpleNames.contains(simpleName)
+                            && Modifier.isPublic(loader.typeFor(name).symbol()
+                                    .modifiers())) {
+                        names.add(name);
+                        simpleNames.add(simpleName);
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Generate the program.
+     * 
+     * @param names
+     *            the library classes it refers to.
+     * @return the source text.
+     */
+
+    private static String generate(ArrayList<String> names) {
+        StringBuilder s = new StringBuilder();
+        for (String name : names) {
+            s.append("import ").append(name).append(";\n");
+        }
+        s.append("\npublic class Many {\n\n");
+        s.append("    public void run() {\n");
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            s.append("        ").append(
+                    name.substring(name.lastIndexOf('.') + 1));
+            s.append(" v").append(i).append(" = null;\n");
+        }
+        s.append("    }\n\n");
+        s.append("}\n");
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,133 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Microbenchmark for member lookup (Type.methodFor(), constructorFor() and
+ * fieldFor()) over a generated program that is heavy in method calls: a number
+ * of classes (20 by default), each with a method making a number of calls (500
+ * by default) on a StringBuilder, a String and the class itself. The program is
+ * compiled (in memory) a number of times (50 by default, after five warm-up
+ * compiles), and the benchmark reports the mean time spent in analysis, and
+ * the number of member lookups made and the fraction of them that were
+ * answered from the memo tables.
+ */
+
+public class MemberLookupBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional number of classes, number of statements per class,
+     *            and number of compiles.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        LinkedHashMap<String, String> sources = generate(classes, statements);
+        System.out.printf("Compiling %d classes of %d statements, %d times\n\n",
+                classes, statements, runs);
+        for (int i = 0; i < 5; i++) {
+            compile(sources);
+        }
+
+        long lookups = Type.memberLookups();
+        long hits = Type.memberLookupHits();
+        long nanos = 0;
+        for (int i = 0; i < runs; i++) {
+            nanos += compile(sources);
+        }
+        lookups = Type.memberLookups() - lookups;
+        hits = Type.memberLookupHits() - hits;
+        System.out.printf("analyze              %10.2f ms/compile\n", nanos
+                / 1e6 / runs);
+        System.out.printf("member lookups       %10d per compile\n", lookups
+                / runs);
+        System.out.printf("memo table hits      %10.1f %%\n", lookups == 0 ? 0
+                : 100.0 * hits / lookups);
+    }
+
+    /**
+     * Compile the specified program in memory.
+     * 
+     * @param sources
+     *            maps file names to source text.
+     * @return the time spent in analysis, in nanoseconds.
+     */
+
+    private static long compile(Map<String, String> sources) {
+        Compilation compilation = new Compilation(1,
+                NPhysicalRegister.DEFAULT_COUNT);
+        try {
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                LookaheadScanner scanner = new LookaheadScanner(source
+                        .getKey(), new StringReader(source.getValue()),
+                        DiagnosticListener.STDERR);
+                compilation.addCompilationUnit(new Parser(scanner)
+                        .compilationUnit());
+            }
+            compilation.preAnalyze();
+            long start = System.nanoTime();
+            compilation.analyze();
+            long elapsed = System.nanoTime() - start;
+            compilation.codegen(null, false);
+            if (compilation.errorHasOccurred()) {
+                throw new RuntimeException("compilation failed");
+            }
+            return elapsed;
+        } finally {
+            compilation.shutdown();
+        }
+    }
+
+    /**
+     * Generate the program.
+     * 
+     * @param classes
+     *            number of classes.
+     * @param statements
+     *            number of statements in each class's method.
+     * @return maps file names to source text.
+     */
+
+    private static LinkedHashMap<String, String> generate(int classes,
+            int statements) {
+        String[] calls = { "b.append(n);", "b.append(s);", "b.append('c');",
+                "n = n + s.length();", "n = n + b.length();",
+                "n = n + this.bump(n);", "n = n + count;",
+                "b = new StringBuilder(s);" };
+        LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+        for (int i = 0; i < classes; i++) {
+            String name = "K" + i;
+            StringBuilder s = new StringBuilder();
+            s.append("package calls;\n\n");
+            s.append("import java.lang.StringBuilder;\n\n");
+            s.append("public class ").append(name).append(" {\n\n");
+            s.append("    private int count;\n\n");
+            s.append("    public int bump(int n) {\n");
+            s.append("        count = count + n;\n");
+            s.append("        return count;\n");
+            s.append("    }\n\n");
+            s.append("    public String run(String s) {\n");
+            s.append("        StringBuilder b = new StringBuilder();\n");
+            s.append("        int n = 0;\n");
+            for (int j = 0; j < statements; j++) {
+                s.append("        ").append(calls[j % calls.length]).append(
+                        "\n");
+            }
+            s.append("        return b.toString();\n");
+            s.append("    }\n\n");
+            s.append("}\n");
+            sources.put("calls/" + name + ".java", s.toString());
+        }
+        return sources;
+    }
+
+}
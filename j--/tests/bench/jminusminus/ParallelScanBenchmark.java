@@ -0,0 +1,183 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.StringReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import jminusminus.bench.WorkloadGen;
+
+/**
+ * Benchmark for parallel (chunked) scanning, over a j-- source of a given size
+ * (200 MB by default) generated by WorkloadGen. The source is scanned (read in,
+ * too) by a Scanner, and by a ParallelScanner on fork-join pools of 1, 2, 4,
+ * ... threads (up to 8 by default), a number of times (3 by default, after a
+ * warm-up run), taking turns, each after a garbage collection; the benchmark
+ * reports the best time of each, and its speedup over the Scanner. Reading the
+ * source in, which the ParallelScanner does before splitting it, is timed on
+ * its own too, since it is not done in parallel. The benchmark first checks
+ * that the ParallelScanner scans the same tokens as the Scanner.
+ * 
+ * The speedup depends on the number of processors, which is reported: on a
+ * single processor, there is none to be had.
+ */
+
+public class ParallelScanBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional source size in MB, number of runs, and most
+     *            threads.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        String source = new WorkloadGen().generate(megabytes << 20);
+        System.out.printf("Scanning %d MB on %d processors, best of %d runs"
+                + "\n\n", megabytes, Runtime.getRuntime()
+                .availableProcessors(), runs);
+
+        int pools = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            pools++;
+        }
+        ForkJoinPool[] pool = new ForkJoinPool[pools];
+        for (int i = 0; i < pools; i++) {
+            pool[i] = new ForkJoinPool(1 << i);
+        }
+        check(source, pool[pools - 1]);
+
+        // Warm up; then the scanners take turns, each run starting from a
+        // collected heap
+        long tokens = scan(source);
+        long[] best = new long[pools];
+        for (int i = 0; i < pools; i++) {
+            scan(source, pool[i]);
+            best[i] = Long.MAX_VALUE;
+        }
+        long read = Long.MAX_VALUE;
+        long sequential = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            System.gc();
+            long start = System.nanoTime();
+            new CharReader("Big.java", new StringReader(source)).nextChar();
+            read = Math.min(read, System.nanoTime() - start);
+            System.gc();
+            start = System.nanoTime();
+            scan(source);
+            sequential = Math.min(sequential, System.nanoTime() - start);
+            for (int i = 0; i < pools; i++) {
+                System.gc();
+                start = System.nanoTime();
+                long n = scan(source, pool[i]);
+                best[i] = Math.min(best[i], System.nanoTime() - start);
+                if (n != tokens) {
+                    throw new RuntimeException("ParallelScanner scanned " + n
+                            + " tokens rather than " + tokens);
+                }
+            }
+        }
+        for (ForkJoinPool p : pool) {
+            p.shutdown();
+        }
+
+        System.out.printf("%-28s %10.1f ms\n", "Reading only", read / 1e6);
+        System.out.printf("%-28s %10.1f ms %10.1f Mtokens/s\n", "Scanner",
+                sequential / 1e6, tokens / 1e6 / (sequential / 1e9));
+        for (int i = 0; i < pools; i++) {
+            System.out.printf("%-28s %10.1f ms %10.1f Mtokens/s %6.2fx\n",
+                    "ParallelScanner, " + (1 << i) + " threads",
+                    best[i] / 1e6, tokens / 1e6 / (best[i] / 1e9),
+                    (double) sequential / best[i]);
+        }
+    }
+
+    /**
+     * Scan the source with a Scanner.
+     * 
+     * @param source
+     *            the source text.
+     * @return the number of tokens (including the end of file).
+     */
+
+    private static long scan(String source) {
+        return drain(new Scanner("Big.java", new StringReader(source),
+                DiagnosticListener.STDERR));
+    }
+
+    /**
+     * Scan the source with a ParallelScanner on the specified pool.
+     * 
+     * @param source
+     *            the source text.
+     * @param pool
+     *            the pool.
+     * @return the number of tokens (including the end of file).
+     */
+
+    private static long scan(final String source, ForkJoinPool pool)
+            throws Exception {
+        return pool.submit(new Callable<Long>() {
+            public Long call() {
+                return drain(new ParallelScanner("Big.java",
+                        new StringReader(source), DiagnosticListener.STDERR));
+            }
+        }).get();
+    }
+
+    /**
+     * Scan every token.
+     * 
+     * @param scanner
+     *            the scanner.
+     * @return the number of tokens (including the end of file).
+     */
+
+    private static long drain(TokenScanner scanner) {
+        long tokens = 1;
+        while (scanner.scan() != TokenKind.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    /**
+     * Make sure a ParallelScanner (on the specified pool) scans the same
+     * tokens as a Scanner.
+     * 
+     * @param source
+     *            the source text.
+     * @param pool
+     *            the pool.
+     */
+
+    private static void check(final String source, ForkJoinPool pool)
+            throws Exception {
+        TokenScanner parallelScanner = pool.submit(
+                new Callable<TokenScanner>() {
+                    public TokenScanner call() {
+                        return new ParallelScanner("Big.java",
+                                new StringReader(source),
+                                DiagnosticListener.STDERR);
+                    }
+                }).get();
+        TokenScanner scanner = new Scanner("Big.java", new StringReader(
+                source), DiagnosticListener.STDERR);
+        TokenKind kind;
+        do {
+            kind = scanner.scan();
+            if (parallelScanner.scan() != kind
+                    || !parallelScanner.image().equals(scanner.image())
+                    || parallelScanner.line() != scanner.line()) {
+                throw new RuntimeException("ParallelScanner differs at line "
+                        + scanner.line() + ": " + parallelScanner.image()
+                        + " rather than " + scanner.image());
+            }
+        } while (kind != TokenKind.EOF);
+    }
+
+}
@@ -0,0 +1,187 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.StringReader;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Benchmark for pre-analysis over a large generated program: a number of
+ * classes (1,000 by default) in chains of ten, each chain in a package of its
+ * own, and each class extending the one before it in its chain, holding a field
+ * of the type of the next class, and calling methods on both. The program is
+ * compiled (in memory) a number of times (20 by default, after one warm-up
+ * compile), and the benchmark reports the mean time spent in each phase, along
+ * with the number of classes the JVM loaded and the growth in metaspace over
+ * the timed compiles, both before and after a full garbage collection.
+ */
+
+public class PreAnalysisBenchmark {
+
+    /** Number of classes in each inheritance chain. */
+    private static final int CHAIN = 10;
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional number of classes, and number of compiles.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        LinkedHashMap<String, String> sources = generate(classes);
+        System.out.printf("Compiling %d classes, %d times\n\n", classes, runs);
+        compile(sources, new long[4]);
+
+        ClassLoadingMXBean classLoading = ManagementFactory
+                .getClassLoadingMXBean();
+        System.gc();
+        long loadedBefore = classLoading.getTotalLoadedClassCount();
+        long metaspaceBefore = metaspaceUsed();
+        long[] nanos = new long[4];
+        for (int i = 0; i < runs; i++) {
+            compile(sources, nanos);
+        }
+        long loaded = classLoading.getTotalLoadedClassCount() - loadedBefore;
+        long metaspace = metaspaceUsed() - metaspaceBefore;
+        System.gc();
+        long retained = metaspaceUsed() - metaspaceBefore;
+
+        String[] phases = { "parse", "preAnalyze", "analyze", "codegen" };
+        long total = 0;
+        for (int i = 0; i < phases.length; i++) {
+            System.out.printf("%-12s %10.2f ms/compile\n", phases[i],
+                    nanos[i] / 1e6 / runs);
+            total += nanos[i];
+        }
+        System.out.printf("%-12s %10.2f ms/compile\n\n", "total", total / 1e6
+                / runs);
+        System.out.printf("classes loaded          %10d\n", loaded);
+        System.out.printf("metaspace growth        %10.1f KB\n",
+                metaspace / 1024.0);
+        System.out.printf("metaspace after GC      %10.1f KB\n",
+                retained / 1024.0);
+    }
+
+    /**
+     * Compile the specified program in memory, adding the time spent in each
+     * phase to the specified totals.
+     * 
+     * @param sources
+     *            maps file names to source text.
+     * @param nanos
+     *            totals for parsing, pre-analysis, analysis and code
+     *            generation, in nanoseconds.
+     */
+
+    private static void compile(Map<String, String> sources, long[] nanos) {
+        Compilation compilation = new Compilation(1,
+                NPhysicalRegister.DEFAULT_COUNT);
+        try {
+            long start = System.nanoTime();
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                LookaheadScanner scanner = new LookaheadScanner(source
+                        .getKey(), new StringReader(source.getValue()),
+                        DiagnosticListener.STDERR);
+                compilation.addCompilationUnit(new Parser(scanner)
+                        .compilationUnit());
+            }
+            long parsed = System.nanoTime();
+            compilation.preAnalyze();
+            long preAnalyzed = System.nanoTime();
+            compilation.analyze();
+            long analyzed = System.nanoTime();
+            compilation.codegen(null, false);
+            long generated = System.nanoTime();
+            if (compilation.errorHasOccurred()) {
+                throw new RuntimeException("compilation failed");
+            }
+            nanos[0] += parsed - start;
+            nanos[1] += preAnalyzed - parsed;
+            nanos[2] += analyzed - preAnalyzed;
+            nanos[3] += generated - analyzed;
+        } finally {
+            compilation.shutdown();
+        }
+    }
+
+    /**
+     * Generate the program.
+     * 
+     * @param classes
+     *            number of classes.
+     * @return maps file names to source text.
+     */
+
+    private static LinkedHashMap<String, String> generate(int classes) {
+        LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+        for (int i = 0; i < classes; i++) {
+            int chain = i / CHAIN;
+            int nextIndex = chain * CHAIN + (i + 1) % CHAIN;
+            String name = "C" + i;
+            String next = "C" + nextIndex;
+            boolean root = i % CHAIN == 0;
+            StringBuilder s = new StringBuilder();
+            s.append("package g").append(chain).append(";\n\n");
+            s.append("public class ").append(name);
+            if (!root) {
+                s.append(" extends C").append(i - 1);
+            }
+            s.append(" {\n\n");
+            s.append("    private int value").append(i).append(";\n\n");
+            s.append("    protected ").append(next).append(" next")
+                    .append(i).append(";\n\n");
+            s.append("    public ").append(name).append("(int value) {\n");
+            if (!root) {
+                s.append("        super(value);\n");
+            }
+            s.append("        value").append(i).append(" = value;\n");
+            s.append("    }\n\n");
+            s.append("    public int get").append(i).append("() {\n");
+            s.append("        return value").append(i).append(";\n");
+            s.append("    }\n\n");
+            s.append("    public void link").append(i).append("(")
+                    .append(next).append(" next) {\n");
+            s.append("        next").append(i).append(" = next;\n");
+            s.append("    }\n\n");
+            s.append("    public int sum").append(i).append("(int n) {\n");
+            s.append("        int sum = get").append(i).append("();\n");
+            if (!root) {
+                s.append("        sum = sum + sum").append(i - 1).append(
+                        "(n - 1);\n");
+            }
+            s.append("        if (n > 0) {\n");
+            s.append("            sum = sum + this.next").append(i).append(
+                    ".get").append(nextIndex).append("();\n");
+            s.append("        }\n");
+            s.append("        return sum;\n");
+            s.append("    }\n\n");
+            s.append("}\n");
+            sources.put("g" + chain + "/" + name + ".java", s.toString());
+        }
+        return sources;
+    }
+
+    /**
+     * Return the metaspace currently in use.
+     * 
+     * @return bytes of metaspace in use.
+     */
+
+    private static long metaspaceUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals("Metaspace")) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+}
@@ -0,0 +1,147 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.StringReader;
+import jminusminus.bench.WorkloadGen;
+
+/**
+ * Benchmark for the three scanners, over a j-- source of a given size (20 MB by
+ * default) generated by WorkloadGen: the hand-written Scanner, the table-driven
+ * DFAScanner, and the scanner JavaCC generates (JavaCCParserTokenManager, over
+ * a SimpleCharStream). Each scans the whole source (reading it in, too) a
+ * number of times (5 by default, after a warm-up run), the scanners taking
+ * turns, each after a garbage collection, and the benchmark reports the best
+ * time of each. It also reports the time taken to build the DFAScanner's
+ * automaton, and checks that the three scanners see the same number of tokens,
+ * and the Scanner and the DFAScanner the same tokens.
+ */
+
+public class ScannerBenchmark {
+
+    /** The scanners' names. */
+    private static final String[] NAMES = { "Scanner", "DFAScanner",
+            "JavaCCParserTokenManager" };
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional source size in MB, and number of runs.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String source = new WorkloadGen().generate(megabytes << 20);
+        System.out.printf("Scanning %d MB, best of %d runs\n\n", megabytes,
+                runs);
+
+        long nanos = System.nanoTime();
+        int states = LexicalDFA.STATES;
+        long build = System.nanoTime() - nanos;
+        System.out.printf("DFA: %d states, %d character classes, "
+                + "built in %.1f ms\n\n", states, LexicalDFA.CLASSES,
+                build / 1e6);
+
+        check(source);
+        long tokens = scan(source, 0);
+        long[] best = new long[NAMES.length];
+        for (int scanner = 0; scanner < NAMES.length; scanner++) {
+            scan(source, scanner);
+            best[scanner] = Long.MAX_VALUE;
+        }
+
+        // The scanners take turns, each run starting from a collected heap
+        for (int i = 0; i < runs; i++) {
+            for (int scanner = 0; scanner < NAMES.length; scanner++) {
+                System.gc();
+                long start = System.nanoTime();
+                long n = scan(source, scanner);
+                best[scanner] = Math.min(best[scanner], System.nanoTime()
+                        - start);
+                if (n != tokens) {
+                    throw new RuntimeException(NAMES[scanner] + " scanned "
+                            + n + " tokens rather than " + tokens);
+                }
+            }
+        }
+        for (int scanner = 0; scanner < NAMES.length; scanner++) {
+            System.out.printf("%-24s %10.1f ms %10.1f Mtokens/s\n",
+                    NAMES[scanner], best[scanner] / 1e6, tokens / 1e6
+                            / (best[scanner] / 1e9));
+        }
+    }
+
+    /**
+     * Scan the source with one of the scanners.
+     * 
+     * @param source
+     *            the source text.
+     * @param scanner
+     *            the scanner (an index in NAMES).
+     * @return the number of tokens (including the end of file).
+     */
+
+    private static long scan(String source, int scanner) {
+        long tokens = 0;
+        if (scanner == 2) {
+            JavaCCParserTokenManager javaCCScanner =
+                new JavaCCParserTokenManager(new SimpleCharStream(
+                        new StringReader(source), 1, 1));
+            Token token;
+            do {
+                token = javaCCScanner.getNextToken();
+                tokens++;
+            } while (token.kind != JavaCCParserConstants.EOF);
+        } else {
+            TokenScanner tokenScanner = newScanner(source, scanner);
+            while (tokenScanner.scan() != TokenKind.EOF) {
+                tokens++;
+            }
+            tokens++;
+        }
+        return tokens;
+    }
+
+    /**
+     * Make sure the Scanner and the DFAScanner scan the same tokens.
+     * 
+     * @param source
+     *            the source text.
+     */
+
+    private static void check(String source) {
+        TokenScanner scanner = newScanner(source, 0);
+        TokenScanner dfaScanner = newScanner(source, 1);
+        TokenKind kind;
+        do {
+            kind = scanner.scan();
+            if (dfaScanner.scan() != kind
+                    || !dfaScanner.image().equals(scanner.image())
+                    || dfaScanner.line() != scanner.line()) {
+                throw new RuntimeException("DFAScanner differs at line "
+                        + scanner.line() + ": " + dfaScanner.image()
+                        + " rather than " + scanner.image());
+            }
+        } while (kind != TokenKind.EOF);
+    }
+
+    /**
+     * Return the Scanner (0), or the DFAScanner (1), over the source.
+     * 
+     * @param source
+     *            the source text.
+     * @param scanner
+     *            the scanner.
+     * @return the scanner.
+     */
+
+    private static TokenScanner newScanner(String source, int scanner) {
+        StringReader reader = new StringReader(source);
+        return scanner == 0 ? new Scanner("Big.java", reader,
+                DiagnosticListener.STDERR) : new DFAScanner("Big.java",
+                reader, DiagnosticListener.STDERR);
+    }
+
+}
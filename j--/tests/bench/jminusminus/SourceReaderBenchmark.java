@@ -0,0 +1,135 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import com.sun.management.ThreadMXBean;
+import jminusminus.bench.WorkloadGen;
+
+/**
+ * Benchmark for reading a source file, over a j-- source of a given size (50 MB
+ * by default) generated by WorkloadGen and written to a temporary file. Each
+ * front end reads the file, through a FileReader (or, for JavaCC, a
+ * FileInputStream) as it used to, and through a SourceReader, which maps the
+ * file: a CharReader reads it all in, a Scanner tokenizes it, and a
+ * SimpleCharStream reads it a character (a one-character token) at a time. Each
+ * is timed (the best of a number of runs, 5 by default), and the bytes it
+ * allocates (its peak heap, give or take) are reported.
+ */
+
+public class SourceReaderBenchmark {
+
+    /** What is measured. */
+    private static final String[] NAMES = { "CharReader, FileReader",
+            "CharReader, SourceReader", "Scanner, FileReader",
+            "Scanner, SourceReader", "SimpleCharStream, FileInputStream",
+            "SimpleCharStream, SourceReader" };
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional source size in MB, and number of runs.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File file = File.createTempFile("Big", ".java");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new WorkloadGen().generate(megabytes << 20)
+                    .getBytes());
+        } finally {
+            out.close();
+        }
+        String fileName = file.toString();
+        System.out.printf("Reading %d MB, best of %d runs\n\n", megabytes,
+                runs);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] best = new long[NAMES.length];
+        long[] allocated = new long[NAMES.length];
+        long[] chars = new long[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            read(fileName, i);
+            best[i] = Long.MAX_VALUE;
+        }
+
+        // Taking turns, each run starting from a collected heap
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < NAMES.length; i++) {
+                System.gc();
+                long bytes = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                chars[i] = read(fileName, i);
+                best[i] = Math.min(best[i], System.nanoTime() - start);
+                allocated[i] = threads.getThreadAllocatedBytes(thread)
+                        - bytes;
+            }
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            System.out.printf("%-34s %8.1f ms %8.1f MB allocated\n",
+                    NAMES[i], best[i] / 1e6, allocated[i] / 1048576.0);
+        }
+        for (int i = 0; i < NAMES.length; i += 2) {
+            if (chars[i] != chars[i + 1]) {
+                throw new RuntimeException(NAMES[i + 1] + " read "
+                        + chars[i + 1] + " rather than " + chars[i]);
+            }
+        }
+    }
+
+    /**
+     * Read the file in one of the ways measured.
+     * 
+     * @param fileName
+     *            name of the file.
+     * @param way
+     *            the way (an index in NAMES).
+     * @return the number of characters (or tokens) read.
+     */
+
+    private static long read(String fileName, int way) throws IOException {
+        long n = 0;
+        Reader reader = null;
+        if (way < 4) {
+            reader = way % 2 == 0 ? new FileReader(fileName)
+                    : new SourceReader(fileName);
+        }
+        if (way < 2) {
+            CharReader input = new CharReader(fileName, reader);
+            input.nextChar();
+            n = input.length();
+        } else if (way < 4) {
+            Scanner scanner = new Scanner(fileName, reader,
+                    DiagnosticListener.STDERR);
+            while (scanner.scan() != TokenKind.EOF) {
+                n++;
+            }
+        } else {
+            SimpleCharStream stream = way == 4 ? new SimpleCharStream(
+                    new FileInputStream(fileName), 1, 1)
+                    : new SimpleCharStream(new SourceReader(fileName), 1, 1);
+            try {
+                while (true) {
+                    stream.BeginToken();
+                    n++;
+                }
+            } catch (IOException e) {
+                // End of file
+            }
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,112 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.StringReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import com.sun.management.ThreadMXBean;
+import jminusminus.bench.WorkloadGen;
+
+/**
+ * Benchmark for tokenizing, as the Parser does it (through a LookaheadScanner),
+ * a j-- source of a given size (50 MB by default) generated by WorkloadGen. The
+ * source is tokenized a number of times (5 by default, after a warm-up run),
+ * and the benchmark reports the best time, and per run the bytes allocated (per
+ * token, too) and the garbage collections.
+ */
+
+public class TokenizerBenchmark {
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            optional source size in MB, and number of runs.
+     */
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String source = new WorkloadGen().generate(megabytes << 20);
+        System.out.printf("Tokenizing %d MB, %d times\n\n", megabytes, runs);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        tokenize(source);
+        long best = Long.MAX_VALUE;
+        long tokens = 0;
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long collections = collections();
+        long collectionTime = collectionTime();
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            tokens = tokenize(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        collections = collections() - collections;
+        collectionTime = collectionTime() - collectionTime;
+        System.out.printf("tokens               %10d\n", tokens);
+        System.out.printf("tokenize (best)      %10.1f ms\n", best / 1e6);
+        System.out.printf("allocated            %10.1f MB/run\n", allocated
+                / 1048576.0 / runs);
+        System.out.printf("allocated            %10.1f bytes/token\n",
+                (double) allocated / runs / tokens);
+        System.out.printf("collections          %10.1f per run\n",
+                (double) collections / runs);
+        System.out.printf("collection time      %10.1f ms/run\n",
+                (double) collectionTime / runs);
+    }
+
+    /**
+     * Tokenize the source.
+     * 
+     * @param source
+     *            the source text.
+     * @return the number of tokens.
+     */
+
+    private static long tokenize(String source) {
+        LookaheadScanner scanner = new LookaheadScanner("Big.java",
+                new StringReader(source), DiagnosticListener.STDERR);
+        long tokens = 0;
+        do {
+            scanner.next();
+            tokens++;
+        } while (scanner.token().kind() != TokenKind.EOF);
+        return tokens;
+    }
+
+    /**
+     * Return the number of garbage collections so far.
+     * 
+     * @return the number of collections.
+     */
+
+    private static long collections() {
+        long collections = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            collections += gc.getCollectionCount();
+        }
+        return collections;
+    }
+
+    /**
+     * Return the time spent in garbage collection so far.
+     * 
+     * @return the time, in milliseconds.
+     */
+
+    private static long collectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            time += gc.getCollectionTime();
+        }
+        return time;
+    }
+
+}
@@ -0,0 +1,600 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generator of synthetic j-- programs, for running the compiler at scale. The
+ * programs use only what the j-- grammar supports: classes with fields, a
+ * constructor and methods; local variables; while and if-else statements;
+ * integer arithmetic, comparisons, && and !; arrays; casts between int and
+ * char; string concatenation; and method calls. They compile without errors,
+ * and, since every loop counts down and every call is to a method declared
+ * before the caller (in the caller's class, or in a class before it), they
+ * terminate when run.
+ * 
+ * The knobs are the number of classes, the classes per compilation unit (ie,
+ * per source file), the methods per class, the statements per method, the
+ * depth of the expressions, the int locals per method, and the call density
+ * (the percentage of statements that call a method); a 5,000-line method is
+ * one of about 2,500 statements, say, and a 2,000-class unit one of 2,000
+ * classes per unit. The statements are drawn at random, from a seed, so the
+ * same knobs and seed always generate the same program.
+ * 
+ * A program can also be generated to a size rather than a number of classes:
+ * a single unit of as many classes as it takes, which is the source over which
+ * the scanner benchmarks run.
+ * 
+ * In SPIM mode, the programs use only what the SPIM back end compiles: static
+ * int methods, with int locals, arithmetic, comparisons, loops, branches and
+ * static calls (and no fields, objects, arrays, strings or casts); the last
+ * class prints the result of its last method through spim.SPIM.
+ */
+
+public class WorkloadGen {
+
+    /** Number of classes. */
+    private int classes = 10;
+
+    /** Number of classes per compilation unit. */
+    private int classesPerUnit = 1;
+
+    /** Number of methods per class. */
+    private int methods = 10;
+
+    /** Number of statements per method. */
+    private int statements = 20;
+
+    /** Depth of the expressions. */
+    private int depth = 2;
+
+    /** Number of int locals per method. */
+    private int locals = 4;
+
+    /** Percentage of the statements that call a method. */
+    private int callDensity = 10;
+
+    /** Seed of the random statements. */
+    private long seed = 1;
+
+    /** Whether to use only what the SPIM back end compiles. */
+    private boolean spim;
+
+    /** Source of the random statements. */
+    private Random random;
+
+    /** Text of the unit being generated. */
+    private StringBuilder s;
+
+    /** Number of loop counters declared in the method being generated. */
+    private int counters;
+
+    /**
+     * Entry point: write a generated program to a directory.
+     * 
+     * @param args
+     *            options: -classes, -unit (classes per unit), -methods
+     *            (per class), -statements (per method), -depth, -locals,
+     *            -calls (percentage of statements), -seed, -spim, -d
+     *            directory.
+     */
+
+    public static void main(String[] args) throws IOException {
+        WorkloadGen gen = new WorkloadGen();
+        String dir = ".";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-spim")) {
+                gen.spim(true);
+            } else if (args[i].equals("-d") && i + 1 < args.length) {
+                dir = args[++i];
+            } else if (i + 1 < args.length && args[i].startsWith("-")
+                    && args[i + 1].matches("\\d+")) {
+                String option = args[i];
+                int value = Integer.parseInt(args[++i]);
+                if (option.equals("-classes")) {
+                    gen.classes(value);
+                } else if (option.equals("-unit")) {
+                    gen.classesPerUnit(value);
+                } else if (option.equals("-methods")) {
+                    gen.methods(value);
+                } else if (option.equals("-statements")) {
+                    gen.statements(value);
+                } else if (option.equals("-depth")) {
+                    gen.depth(value);
+                } else if (option.equals("-locals")) {
+                    gen.locals(value);
+                } else if (option.equals("-calls")) {
+                    gen.callDensity(value);
+                } else if (option.equals("-seed")) {
+                    gen.seed(value);
+                } else {
+                    usage();
+                }
+            } else {
+                usage();
+            }
+        }
+        LinkedHashMap<String, String> sources = gen.generate();
+        new File(dir).mkdirs();
+        long lines = 0;
+        long chars = 0;
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            FileWriter out = new FileWriter(new File(dir, source.getKey()));
+            try {
+                out.write(source.getValue());
+            } finally {
+                out.close();
+            }
+            lines += lines(source.getValue());
+            chars += source.getValue().length();
+        }
+        System.out.printf("Wrote %d files, %d lines, %d characters, to %s\n",
+                sources.size(), lines, chars, dir);
+    }
+
+    /**
+     * Print the usage, and exit.
+     */
+
+    private static void usage() {
+        System.err.println("Usage: java jminusminus.bench.WorkloadGen"
+                + " [-classes n] [-unit n] [-methods n] [-statements n]"
+                + " [-depth n] [-locals n] [-calls percent] [-seed n]"
+                + " [-spim] [-d dir]");
+        System.exit(2);
+    }
+
+    /**
+     * Return the number of lines in the specified text.
+     * 
+     * @param text
+     *            the text.
+     * @return the number of lines.
+     */
+
+    public static int lines(String text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Set the number of classes (10 by default).
+     * 
+     * @param classes
+     *            the number.
+     * @return this generator.
+     */
+
+    public WorkloadGen classes(int classes) {
+        this.classes = Math.max(1, classes);
+        return this;
+    }
+
+    /**
+     * Set the number of classes per compilation unit (1 by default).
+     * 
+     * @param classesPerUnit
+     *            the number.
+     * @return this generator.
+     */
+
+    public WorkloadGen classesPerUnit(int classesPerUnit) {
+        this.classesPerUnit = Math.max(1, classesPerUnit);
+        return this;
+    }
+
+    /**
+     * Set the number of methods per class (10 by default).
+     * 
+     * @param methods
+     *            the number.
+     * @return this generator.
+     */
+
+    public WorkloadGen methods(int methods) {
+        this.methods = Math.max(1, methods);
+        return this;
+    }
+
+    /**
+     * Set the number of statements per method (20 by default), not counting
+     * the declarations of the locals and the return.
+     * 
+     * @param statements
+     *            the number.
+     * @return this generator.
+     */
+
+    public WorkloadGen statements(int statements) {
+        this.statements = Math.max(0, statements);
+        return this;
+    }
+
+    /**
+     * Set the depth of the expressions (2 by default): how deeply the
+     * arithmetic in them nests; 0 for single operands.
+     * 
+     * @param depth
+     *            the depth.
+     * @return this generator.
+     */
+
+    public WorkloadGen depth(int depth) {
+        this.depth = Math.max(0, depth);
+        return this;
+    }
+
+    /**
+     * Set the number of int locals per method (4 by default).
+     * 
+     * @param locals
+     *            the number.
+     * @return this generator.
+     */
+
+    public WorkloadGen locals(int locals) {
+        this.locals = Math.max(1, locals);
+        return this;
+    }
+
+    /**
+     * Set the percentage of the statements that call a method (10 by
+     * default).
+     * 
+     * @param callDensity
+     *            the percentage, 0 to 100.
+     * @return this generator.
+     */
+
+    public WorkloadGen callDensity(int callDensity) {
+        this.callDensity = Math.max(0, Math.min(100, callDensity));
+        return this;
+    }
+
+    /**
+     * Set the seed of the random statements (1 by default).
+     * 
+     * @param seed
+     *            the seed.
+     * @return this generator.
+     */
+
+    public WorkloadGen seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Set whether to use only what the SPIM back end compiles (false by
+     * default).
+     * 
+     * @param spim
+     *            true or false.
+     * @return this generator.
+     */
+
+    public WorkloadGen spim(boolean spim) {
+        this.spim = spim;
+        return this;
+    }
+
+    /**
+     * Generate the program.
+     * 
+     * @return maps file names to source text, in the order of the classes.
+     */
+
+    public LinkedHashMap<String, String> generate() {
+        random = new Random(seed);
+        LinkedHashMap<String, String> sources = new LinkedHashMap<String, String>();
+        for (int first = 0; first < classes; first += classesPerUnit) {
+            int last = Math.min(classes, first + classesPerUnit) - 1;
+            s = new StringBuilder();
+            if (last == classes - 1) {
+                s.append(spim ? "import spim.SPIM;\n\n"
+                        : "import java.lang.System;\n\n");
+            }
+            for (int c = first; c <= last; c++) {
+                generateClass(c, c == first, c == classes - 1);
+            }
+            sources.put("C" + first + ".java", s.toString());
+        }
+        s = null;
+        return sources;
+    }
+
+    /**
+     * Generate a program of a single unit of (at least) the specified size:
+     * as many classes as it takes (whatever the number of classes, and of
+     * classes per unit), none of them with a main method.
+     * 
+     * @param size
+     *            the size, in characters.
+     * @return the source text.
+     */
+
+    public String generate(int size) {
+        random = new Random(seed);
+        s = new StringBuilder(size + 1024);
+        for (int c = 0; s.length() < size; c++) {
+            generateClass(c, c == 0, false);
+        }
+        String source = s.toString();
+        s = null;
+        return source;
+    }
+
+    /**
+     * Generate a class.
+     * 
+     * @param c
+     *            number of the class.
+     * @param isPublic
+     *            whether the class is public (the first in its unit).
+     * @param hasMain
+     *            whether the class has the main method (the last class).
+     */
+
+    private void generateClass(int c, boolean isPublic, boolean hasMain) {
+        s.append(isPublic ? "public class C" : "class C").append(c).append(
+                " {\n\n");
+        if (!spim) {
+            s.append("    private int f;\n\n");
+            s.append("    private int[] data;\n\n");
+            s.append("    private String name;\n\n");
+            s.append("    public C").append(c).append("() {\n");
+            s.append("        f = ").append(c).append(";\n");
+            s.append("        data = new int[16];\n");
+            s.append("        name = \"C").append(c).append("\";\n");
+            s.append("    }\n\n");
+        }
+        for (int m = 0; m < methods; m++) {
+            generateMethod(c, m);
+        }
+        if (hasMain) {
+            s.append("    public static void main(String[] args) {\n");
+            if (spim) {
+                s.append("        SPIM.printInt(C").append(c).append(".m")
+                        .append(methods - 1).append("(3, 1));\n");
+                s.append("        SPIM.printChar('\\n');\n");
+            } else {
+                s.append("        System.out.println(new C").append(c)
+                        .append("().m").append(methods - 1).append(
+                                "(3, 1));\n");
+            }
+            s.append("    }\n\n");
+        }
+        s.append("}\n\n");
+    }
+
+    /**
+     * Generate a method.
+     * 
+     * @param c
+     *            number of its class.
+     * @param m
+     *            number of the method.
+     */
+
+    private void generateMethod(int c, int m) {
+        s.append(spim ? "    public static int m" : "    public int m").append(
+                m).append("(int p0, int p1) {\n");
+        for (int i = 0; i < locals; i++) {
+            s.append("        int v").append(i).append(" = ");
+            if (i < 2) {
+                s.append('p').append(i);
+            } else {
+                s.append(random.nextInt(100));
+            }
+            s.append(";\n");
+        }
+        if (!spim) {
+            s.append("        String s = name;\n");
+            s.append("        char c = 'a';\n");
+            s.append("        int[] a = data;\n");
+        }
+        counters = 0;
+        for (int i = 0; i < statements; i++) {
+            if (random.nextInt(100) < callDensity && (c > 0 || m > 0)) {
+                indent(2).append(local()).append(" = ").append(local())
+                        .append(" + ").append(call(c, m)).append(";\n");
+            } else {
+                statement(2, true);
+            }
+        }
+        s.append("        return v0");
+        if (locals > 1) {
+            s.append(" + v").append(locals - 1);
+        }
+        s.append(spim ? "" : " + f").append(";\n");
+        s.append("    }\n\n");
+    }
+
+    /**
+     * Generate a statement (without a call).
+     * 
+     * @param indent
+     *            its indentation level.
+     * @param compound
+     *            whether it may be a while or if-else statement.
+     */
+
+    private void statement(int indent, boolean compound) {
+        int kinds = compound ? 4 : 2;
+        if (!spim) {
+            kinds += 3;
+        }
+        int kind = random.nextInt(kinds);
+        if (!compound && kind >= 2) {
+            kind += 2;
+        }
+        switch (kind) {
+        case 0:
+            indent(indent).append(local()).append(" = ").append(
+                    expression(depth)).append(";\n");
+            break;
+        case 1:
+            indent(indent).append(local()).append(" += ").append(
+                    expression(depth)).append(";\n");
+            break;
+        case 2:
+            indent(indent).append("if (").append(condition()).append(
+                    ") {\n");
+            statement(indent + 1, false);
+            indent(indent).append("} else {\n");
+            statement(indent + 1, false);
+            indent(indent).append("}\n");
+            break;
+        case 3:
+            String w = "w" + counters++;
+            indent(indent).append("int ").append(w).append(" = ").append(
+                    1 + random.nextInt(10)).append(";\n");
+            indent(indent).append("while (").append(w).append(" > 0) {\n");
+            statement(indent + 1, false);
+            indent(indent + 1).append(w).append(" = ").append(w).append(
+                    " - 1;\n");
+            indent(indent).append("}\n");
+            break;
+        case 4:
+            indent(indent).append("a[").append(random.nextInt(16)).append(
+                    "] = ").append(expression(depth)).append(";\n");
+            break;
+        case 5:
+            indent(indent).append("c = (char) (").append(
+                    97 + random.nextInt(26)).append(" - p0 + p0);\n");
+            break;
+        default:
+            indent(indent).append(
+                    random.nextBoolean() ? "s = s + " : "s += ").append(
+                    random.nextBoolean() ? local() : "c").append(";\n");
+            break;
+        }
+    }
+
+    /**
+     * Return a condition: a comparison of expressions, possibly negated or
+     * conjoined with another.
+     * 
+     * @return the condition.
+     */
+
+    private String condition() {
+        String[] operators = { " > ", " <= ", " == " };
+        String condition = expression(depth)
+                + operators[random.nextInt(operators.length)]
+                + expression(depth);
+        switch (random.nextInt(4)) {
+        case 0:
+            return "!(" + condition + ")";
+        case 1:
+            return condition + " && " + local() + " > " + random.nextInt(100);
+        default:
+            return condition;
+        }
+    }
+
+    /**
+     * Return an int expression of the specified depth.
+     * 
+     * @param depth
+     *            the depth.
+     * @return the expression.
+     */
+
+    private String expression(int depth) {
+        if (depth == 0) {
+            return operand();
+        }
+        String[] operators = { " + ", " - ", " * " };
+        String left = expression(depth - 1);
+        String right = random.nextBoolean() ? operand()
+                : expression(depth - 1);
+        return "(" + left + operators[random.nextInt(operators.length)]
+                + right + ")";
+    }
+
+    /**
+     * Return an int operand: a local, a parameter or a literal (or, outside
+     * SPIM mode, the field, an array element or a cast).
+     * 
+     * @return the operand.
+     */
+
+    private String operand() {
+        switch (random.nextInt(spim ? 3 : 6)) {
+        case 0:
+            return local();
+        case 1:
+            return "p" + random.nextInt(2);
+        case 2:
+            return String.valueOf(random.nextInt(100));
+        case 3:
+            return "f";
+        case 4:
+            return "a[" + random.nextInt(16) + "]";
+        default:
+            return "(int) c";
+        }
+    }
+
+    /**
+     * Return a call of a method declared before the specified one: in its
+     * class, or in a class before it.
+     * 
+     * @param c
+     *            number of the calling class.
+     * @param m
+     *            number of the calling method.
+     * @return the call.
+     */
+
+    private String call(int c, int m) {
+        int callee = m > 0 && (c == 0 || random.nextBoolean()) ? random
+                .nextInt(m) : -1;
+        String arguments = "(" + expression(depth - 1 < 0 ? 0 : depth - 1)
+                + ", " + operand() + ")";
+        if (callee >= 0) {
+            return "m" + callee + arguments;
+        }
+        String target = "C" + random.nextInt(c);
+        return (spim ? target : "new " + target + "()") + ".m"
+                + random.nextInt(methods) + arguments;
+    }
+
+    /**
+     * Return the name of a random int local.
+     * 
+     * @return the name.
+     */
+
+    private String local() {
+        return "v" + random.nextInt(locals);
+    }
+
+    /**
+     * Append the indentation of the specified level.
+     * 
+     * @param level
+     *            the level.
+     * @return the text.
+     */
+
+    private StringBuilder indent(int level) {
+        for (int i = 0; i < level; i++) {
+            s.append("    ");
+        }
+        return s;
+    }
+
+}
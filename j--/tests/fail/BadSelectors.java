@@ -0,0 +1,18 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package fail;
+
+// This program has broken field selections on the lhs of assignments, and
+// shouldn't compile.
+
+public class BadSelectors {
+
+    public int count;
+
+    public void reset(int[] a) {
+        nowhere.count = 0;
+        this.missing = 0;
+        a.length = 0;
+    }
+
+}
@@ -0,0 +1,112 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package junit;
+
+import junit.framework.TestCase;
+import jminusminus.Main;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * JUnit test case for the table-driven (DFA) scanner, with the hand-written
+ * scanner as the oracle: on every test file, the tokens printed by -t -dfa,
+ * and the errors reported, must be the same as by -t.
+ */
+
+public class DFAScannerTest extends TestCase {
+
+    /**
+     * Construct a DFAScannerTest object.
+     */
+
+    public DFAScannerTest() {
+        super("JUnit test case for the DFA scanner");
+    }
+
+    /**
+     * Run both scanners against each pass-test file under the folder specified
+     * by PASS_TESTS_DIR property.
+     */
+
+    public void testPass() {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        compare(passTestsDir.listFiles(), false);
+    }
+
+    /**
+     * Run both scanners against each fail-test file (next to the pass-test
+     * folder); those with lexical errors must report the same errors.
+     */
+
+    public void testFail() {
+        File failTestsDir = new File(new File(System
+                .getProperty("PASS_TESTS_DIR")).getParentFile(), "fail");
+        compare(failTestsDir.listFiles(), true);
+    }
+
+    /**
+     * Compare the output of both scanners on the specified files.
+     * 
+     * @param files
+     *            the files.
+     * @param errorsAllowed
+     *            whether the files may hold lexical errors.
+     */
+
+    private void compare(File[] files, boolean errorsAllowed) {
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (files[i].toString().endsWith(".java")) {
+                System.out.printf("Running DFA scanner on %s ...\n\n",
+                        files[i].toString());
+                String expected = tokenize("-t", files[i].toString());
+                boolean expectedError = Main.errorHasOccurred();
+                String actual = tokenize("-t -dfa", files[i].toString());
+                assertEquals(files[i].toString(), expected, actual);
+                assertEquals(expectedError, Main.errorHasOccurred());
+                if (!errorsAllowed) {
+                    assertFalse(Main.errorHasOccurred());
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the compiler with the specified options on the specified file, and
+     * return what it printed (to STDOUT and STDERR).
+     * 
+     * @param options
+     *            the options, separated by spaces.
+     * @param file
+     *            the file.
+     * @return the output.
+     */
+
+    private String tokenize(String options, String file) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true);
+        System.setOut(printStream);
+        System.setErr(printStream);
+        try {
+            Main.main((options + " " + file).split(" "));
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DFAScannerTest.class);
+    }
+
+}
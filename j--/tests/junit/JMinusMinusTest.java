@@ -2,8 +2,23 @@
 
 package junit;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import junit.framework.TestCase;
+import jminusminus.CompileServer;
+import jminusminus.Diagnostic;
+import jminusminus.JMinusMinusCompiler;
 import jminusminus.Main;
 
 /**
@@ -52,6 +67,351 @@ public class JMinusMinusTest extends TestCase {
         assertFalse(errorHasOccurred);
     }
 
+    /**
+     * Run the j-- compiler once on the whole folder specified by
+     * PASS_TESTS_DIR, compiling its files together as one program on four
+     * worker threads.
+     */
+
+    public void testPassAsProgram() {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"));
+        System.out.printf("Running j-- (with handwritten frontend) "
+                + "on %s ...\n\n", passTestsDir.toString());
+        String[] args = new String[] { "-j", "4", "-d",
+                genClassDir.getAbsolutePath(), passTestsDir.toString() };
+        Main.main(args);
+        System.out.printf("\n\n");
+        assertFalse(Main.errorHasOccurred());
+    }
+
+    /**
+     * Compile the folder specified by PASS_TESTS_DIR on 16 threads at once,
+     * each compilation writing to a directory of its own, and check that every
+     * one of them produces exactly the class files that a serial compilation
+     * does.
+     */
+
+    public void testPassConcurrently() throws Exception {
+        final File passTestsDir = new File(System
+                .getProperty("PASS_TESTS_DIR"));
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"));
+        File serialDir = new File(genClassDir, "concurrent/serial");
+        assertFalse(Main.run(new String[] { "-j", "1", "-d",
+                serialDir.getAbsolutePath(), passTestsDir.toString() }));
+
+        final int threads = 16;
+        final File[] outputDirs = new File[threads];
+        final boolean[] errors = new boolean[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int n = i;
+            outputDirs[n] = new File(genClassDir, "concurrent/" + n);
+            workers[n] = new Thread() {
+                public void run() {
+                    errors[n] = Main.run(new String[] { "-j", "1", "-d",
+                            outputDirs[n].getAbsolutePath(),
+                            passTestsDir.toString() });
+                }
+            };
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (int i = 0; i < threads; i++) {
+            assertFalse(errors[i]);
+            assertSameFiles(serialDir, outputDirs[i]);
+        }
+    }
+
+    /**
+     * Start a CompileServer, have it compile the folder specified by
+     * PASS_TESTS_DIR, and check that it reports the class files it wrote,
+     * which must match those of a compilation in this JVM; and check that it
+     * closes, unanswered, a connection that does not send its token, and
+     * that it survives a compile that overflows the stack.
+     */
+
+    public void testCompileServer() throws Exception {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"));
+        File localDir = new File(genClassDir, "server/local");
+        File serverDir = new File(genClassDir, "server/remote");
+        assertFalse(Main.run(new String[] { "-d", localDir.getAbsolutePath(),
+                passTestsDir.toString() }));
+
+        final int port = CompileServer.DEFAULT_PORT + 2;
+        final CompileServer server = new CompileServer(port);
+        Thread serverThread = new Thread() {
+            public void run() {
+                server.serve();
+            }
+        };
+        serverThread.start();
+        ArrayList<String> outputFiles = new ArrayList<String>();
+        try {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            try {
+                socket.getOutputStream().write(new byte[32]);
+                assertEquals(-1, socket.getInputStream().read());
+            } finally {
+                socket.close();
+            }
+            StringBuilder deep = new StringBuilder("public class Deep {\n"
+                    + "    public int f() {\n        return ");
+            for (int i = 0; i < 20000; i++) {
+                deep.append('(');
+            }
+            deep.append('1');
+            for (int i = 0; i < 20000; i++) {
+                deep.append(')');
+            }
+            deep.append(";\n    }\n}\n");
+            File deepFile = new File(genClassDir, "server/Deep.java");
+            write(deepFile, deep.toString());
+            assertTrue(CompileServer.forward(port, new String[] { "-d",
+                    serverDir.getAbsolutePath(), deepFile.toString() },
+                    new ArrayList<String>()));
+            assertFalse(CompileServer.forward(port, new String[] { "-d",
+                    serverDir.getAbsolutePath(), passTestsDir.toString() },
+                    outputFiles));
+        } finally {
+            CompileServer.stop(port);
+            serverThread.join();
+        }
+        assertFalse(outputFiles.isEmpty());
+        for (String outputFile : outputFiles) {
+            assertTrue(outputFile, new File(outputFile).isFile());
+        }
+        assertSameFiles(localDir, serverDir);
+    }
+
+    /**
+     * Compile the files under PASS_TESTS_DIR in memory, with each scanner,
+     * and check that the class files match those written by a compilation to
+     * the file system; then compile a fail-test in memory, and check that its
+     * errors are returned as diagnostics; and compile all the fail-tests, and
+     * check that their errors come in the same order on one thread or many.
+     */
+
+    public void testInMemory() throws Exception {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        File failTestsDir = new File(System.getProperty("FAIL_TESTS_DIR"));
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"));
+        File diskDir = new File(genClassDir, "memory");
+        assertFalse(Main.run(new String[] { "-d", diskDir.getAbsolutePath(),
+                passTestsDir.toString() }));
+
+        Map<String, CharSequence> sources = new TreeMap<String, CharSequence>();
+        for (File file : passTestsDir.listFiles()) {
+            if (file.getName().endsWith(".java")) {
+                sources.put(file.getName(), new String(contents(file)));
+            }
+        }
+        JMinusMinusCompiler.Options[] scanOptions = {
+                new JMinusMinusCompiler.Options(),
+                new JMinusMinusCompiler.Options().dfaScanner(true),
+                new JMinusMinusCompiler.Options().parallelScan(true) };
+        JMinusMinusCompiler.Result result = null;
+        for (JMinusMinusCompiler.Options options : scanOptions) {
+            result = JMinusMinusCompiler.compile(sources, options);
+            assertFalse(result.errorHasOccurred());
+            assertTrue(result.diagnostics().isEmpty());
+            assertFalse(result.classFiles().isEmpty());
+            for (Map.Entry<String, byte[]> classFile : result.classFiles()
+                    .entrySet()) {
+                String name = classFile.getKey().replace('.', '/');
+                File file = new File(diskDir, name + ".class");
+                assertTrue(file.toString(), Arrays.equals(contents(file),
+                        classFile.getValue()));
+            }
+        }
+
+        sources = new TreeMap<String, CharSequence>();
+        sources.put("TypeErrors.java", new String(contents(new File(
+                failTestsDir, "TypeErrors.java"))));
+        result = JMinusMinusCompiler.compile(sources,
+                new JMinusMinusCompiler.Options());
+        assertTrue(result.errorHasOccurred());
+        assertTrue(result.classFiles().isEmpty());
+        assertFalse(result.diagnostics().isEmpty());
+        for (Diagnostic diagnostic : result.diagnostics()) {
+            assertEquals("TypeErrors.java", diagnostic.fileName());
+            assertTrue(diagnostic.line() > 0);
+        }
+
+        // The errors in several sources come in the same (source) order
+        // however many threads parse them
+        sources = new TreeMap<String, CharSequence>();
+        for (File file : failTestsDir.listFiles()) {
+            if (file.getName().endsWith(".java")) {
+                sources.put(file.getName(), new String(contents(file)));
+            }
+        }
+        List<Diagnostic> serial = JMinusMinusCompiler.compile(sources,
+                new JMinusMinusCompiler.Options()).diagnostics();
+        assertFalse(serial.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            List<Diagnostic> parallel = JMinusMinusCompiler.compile(sources,
+                    new JMinusMinusCompiler.Options().parallelism(4))
+                    .diagnostics();
+            assertEquals(serial.toString(), parallel.toString());
+        }
+    }
+
+    /**
+     * Compile a method whose loop body is over 32 KB of code, with more than
+     * 256 locals, and check that the class loads (the branches around the
+     * loop, out of reach of 16-bit offsets, are widened, and the locals are
+     * accessed through WIDE instructions), and that the method computes what
+     * the same loop computes in Java.
+     */
+
+    public void testLargeMethod() throws Exception {
+        int locals = 300;
+        int statements = 1600;
+        StringBuilder source = new StringBuilder("package large;\n\n"
+                + "public class Large {\n"
+                + "    public static int run(int n) {\n"
+                + "        int s = 0;\n");
+        for (int i = 0; i < locals; i++) {
+            source.append("        int l" + i + " = " + i + ";\n");
+        }
+        source.append("        while (n > 0) {\n");
+        source.append("            if (n > 1) {\n");
+        for (int i = 0; i < statements; i++) {
+            String l = "l" + i % locals;
+            source.append("                s = s + " + l + " - n;\n");
+            source.append("                " + l + " = " + l + " + s;\n");
+        }
+        source.append("            } else {\n");
+        for (int i = 0; i < statements; i++) {
+            String l = "l" + i % locals;
+            source.append("                s = s - " + l + ";\n");
+            source.append("                " + l + " = " + l + " - n;\n");
+        }
+        source.append("            }\n");
+        source.append("            n = n - 1;\n");
+        source.append("        }\n");
+        source.append("        return s;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        Map<String, CharSequence> sources = new TreeMap<String, CharSequence>();
+        sources.put("Large.java", source);
+        JMinusMinusCompiler.Result result = JMinusMinusCompiler.compile(
+                sources, new JMinusMinusCompiler.Options());
+        assertFalse(result.errorHasOccurred());
+        final byte[] bytes = result.classFiles().get("large.Large");
+        ClassLoader loader = new ClassLoader() {
+            protected Class<?> findClass(String name) {
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        Object actual = loader.loadClass("large.Large")
+                .getMethod("run", int.class).invoke(null, 3);
+
+        int[] l = new int[locals];
+        for (int i = 0; i < locals; i++) {
+            l[i] = i;
+        }
+        int s = 0;
+        for (int n = 3; n > 0; n--) {
+            for (int i = 0; i < statements; i++) {
+                if (n > 1) {
+                    s = s + l[i % locals] - n;
+                    l[i % locals] = l[i % locals] + s;
+                } else {
+                    s = s - l[i % locals];
+                    l[i % locals] = l[i % locals] - n;
+                }
+            }
+        }
+        assertEquals(s, actual);
+    }
+
+    /**
+     * Compile the files under PASS_TESTS_DIR in memory into class files of
+     * version 52 (Java 8), and check that each class is of that version and
+     * loads, and so passes the type-checking verifier, which has no other
+     * types to check the methods' code against than those in the stack map
+     * frames that CLEmitter computes.
+     */
+
+    public void testTargetVersion() throws Exception {
+        File passTestsDir = new File(System.getProperty("PASS_TESTS_DIR"));
+        Map<String, CharSequence> sources = new TreeMap<String, CharSequence>();
+        for (File file : passTestsDir.listFiles()) {
+            if (file.getName().endsWith(".java")) {
+                sources.put(file.getName(), new String(contents(file)));
+            }
+        }
+        JMinusMinusCompiler.Result result = JMinusMinusCompiler.compile(
+                sources, new JMinusMinusCompiler.Options().majorVersion(52));
+        assertFalse(result.errorHasOccurred());
+        final Map<String, byte[]> classFiles = result.classFiles();
+        ClassLoader loader = new ClassLoader() {
+            protected Class<?> findClass(String name)
+                    throws ClassNotFoundException {
+                byte[] bytes = classFiles.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+            byte[] bytes = classFile.getValue();
+            assertEquals(52, ((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF));
+            Class.forName(classFile.getKey(), true, loader);
+        }
+    }
+
+    /**
+     * Compile a small program incrementally, and check that each compilation
+     * regenerates exactly the classes affected by the edit since the last one:
+     * none after no edit, only the edited class after a change to a method
+     * body, and also its users after a change to its signature; and that the
+     * class file of a removed source is deleted.
+     */
+
+    public void testIncremental() throws Exception {
+        File genClassDir = new File(System.getProperty("GEN_CLASS_DIR"));
+        File dir = new File(genClassDir, "incremental");
+        File srcDir = new File(dir, "src");
+        File cacheDir = new File(dir, "cache");
+        new File(cacheDir, "dependencies").delete();
+        srcDir.mkdirs();
+        String a = "package incremental;\n\npublic class A {\n"
+                + "    public int f() {\n        return 1;\n    }\n}\n";
+        write(new File(srcDir, "A.java"), a);
+        write(new File(srcDir, "B.java"), "package incremental;\n\n"
+                + "public class B {\n    public int g() {\n"
+                + "        return new A().f();\n    }\n}\n");
+        write(new File(srcDir, "C.java"), "package incremental;\n\n"
+                + "public class C {\n    public int h() {\n"
+                + "        return 3;\n    }\n}\n");
+        File classesDir = new File(dir, "classes");
+        String[] args = new String[] { "-i", cacheDir.getAbsolutePath(), "-d",
+                classesDir.getAbsolutePath(), srcDir.toString() };
+
+        assertEquals("[A, B, C]", compiledClasses(args));
+        assertEquals("[]", compiledClasses(args));
+        write(new File(srcDir, "A.java"), a.replace("return 1", "return 2"));
+        assertEquals("[A]", compiledClasses(args));
+        write(new File(srcDir, "A.java"), a.replace("}\n}\n", "}\n"
+                + "    public int f(int x) {\n        return x;\n    }\n}\n"));
+        assertEquals("[A, B]", compiledClasses(args));
+        File c = new File(classesDir, "incremental/C.class");
+        assertTrue(c.isFile());
+        assertTrue(new File(srcDir, "C.java").delete());
+        assertEquals("[]", compiledClasses(args));
+        assertFalse(c.exists());
+        assertTrue(new File(classesDir, "incremental/B.class").isFile());
+    }
+
     /**
      * Run the j-- compiler against each fail-test file under the folder
      * specified by FAIL_TESTS_DIR property in the build.xml file. FRONT_END
@@ -83,6 +443,92 @@ public class JMinusMinusTest extends TestCase {
         assertTrue(errorHasOccurred);
     }
 
+    /**
+     * Assert that the two directories contain the same files (recursively),
+     * with the same contents.
+     * 
+     * @param expected
+     *            the expected directory.
+     * @param actual
+     *            the actual directory.
+     */
+
+    private static void assertSameFiles(File expected, File actual)
+            throws IOException {
+        String[] names = expected.list();
+        String[] actualNames = actual.list();
+        assertNotNull(actualNames);
+        Arrays.sort(names);
+        Arrays.sort(actualNames);
+        assertTrue(Arrays.equals(names, actualNames));
+        for (String name : names) {
+            File file = new File(expected, name);
+            if (file.isDirectory()) {
+                assertSameFiles(file, new File(actual, name));
+            } else {
+                assertTrue(actual + File.separator + name, Arrays.equals(
+                        contents(file), contents(new File(actual, name))));
+            }
+        }
+    }
+
+    /**
+     * Run the j-- compiler with the specified arguments, which must compile
+     * without error, and return the simple names of the classes it wrote.
+     * 
+     * @param args
+     *            command-line arguments.
+     * @return the sorted class names, as a string.
+     */
+
+    private static String compiledClasses(String[] args) {
+        ArrayList<String> outputFiles = new ArrayList<String>();
+        assertFalse(Main.run(args, outputFiles));
+        ArrayList<String> names = new ArrayList<String>();
+        for (String outputFile : outputFiles) {
+            names.add(new File(outputFile).getName().replace(".class", ""));
+        }
+        Collections.sort(names);
+        return names.toString();
+    }
+
+    /**
+     * Write the specified text to a file.
+     * 
+     * @param file
+     *            the file.
+     * @param text
+     *            the text.
+     */
+
+    private static void write(File file, String text) throws IOException {
+        FileWriter out = new FileWriter(file);
+        try {
+            out.write(text);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Return the contents of the specified file.
+     * 
+     * @param file
+     *            the file.
+     * @return the bytes in the file.
+     */
+
+    private static byte[] contents(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
     /**
      * Entry point.
      * 
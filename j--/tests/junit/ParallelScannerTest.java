@@ -0,0 +1,188 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package junit;
+
+import junit.framework.TestCase;
+import jminusminus.Main;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * JUnit test case for parallel (chunked) scanning, with the hand-written
+ * scanner as the oracle: the tokens printed by -t -ps, the ASTs printed by -p
+ * -ps (of the pass tests), and the errors reported, must be the same as without -ps. Besides the
+ * test files (each scanned as a single chunk), a source made of the test
+ * files over and over again, large enough to be split, is tokenized.
+ */
+
+public class ParallelScannerTest extends TestCase {
+
+    /** Size (in characters) of the large source; several chunks' worth. */
+    private static final int LARGE_SIZE = 3 << 20;
+
+    /**
+     * Construct a ParallelScannerTest object.
+     */
+
+    public ParallelScannerTest() {
+        super("JUnit test case for parallel scanning");
+    }
+
+    /**
+     * Compare scanning with and without -ps on each pass-test file under the
+     * folder specified by PASS_TESTS_DIR property.
+     */
+
+    public void testPass() {
+        compare(passTests(), false);
+    }
+
+    /**
+     * Compare scanning with and without -ps on each fail-test file (next to
+     * the pass-test folder).
+     */
+
+    public void testFail() {
+        compare(failTests(), true);
+    }
+
+    /**
+     * Compare scanning with and without -ps on a large source made of all of
+     * the test files.
+     */
+
+    public void testLarge() throws IOException {
+        ArrayList<File> files = new ArrayList<File>();
+        files.addAll(Arrays.asList(passTests()));
+        files.addAll(Arrays.asList(failTests()));
+        File large = File.createTempFile("Large", ".java");
+        large.deleteOnExit();
+        FileWriter writer = new FileWriter(large);
+        try {
+            long size = 0;
+            while (size < LARGE_SIZE) {
+                for (File file : files) {
+                    if (file.toString().endsWith(".java")) {
+                        String text = new String(Files.readAllBytes(file
+                                .toPath()));
+                        writer.write(text);
+                        size += text.length();
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        System.out.printf("Running parallel scanner on %s ...\n\n", large
+                .toString());
+        String expected = run("-t", large.toString());
+        boolean expectedError = Main.errorHasOccurred();
+        String actual = run("-t -ps", large.toString());
+        assertTrue("tokens differ", expected.equals(actual));
+        assertEquals(expectedError, Main.errorHasOccurred());
+    }
+
+    /**
+     * Return the pass-test files, in order.
+     * 
+     * @return the files.
+     */
+
+    private File[] passTests() {
+        File[] files = new File(System.getProperty("PASS_TESTS_DIR"))
+                .listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Return the fail-test files, in order.
+     * 
+     * @return the files.
+     */
+
+    private File[] failTests() {
+        File[] files = new File(new File(System.getProperty("PASS_TESTS_DIR"))
+                .getParentFile(), "fail").listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Compare the output of the compiler with and without -ps, when
+     * tokenizing and (on files without errors) when parsing, on the specified
+     * files.
+     * 
+     * @param files
+     *            the files.
+     * @param errorsAllowed
+     *            whether the files may hold errors.
+     */
+
+    private void compare(File[] files, boolean errorsAllowed) {
+        // Erroneous ASTs are not printed
+        String[] options = errorsAllowed ? new String[] { "-t" }
+                : new String[] { "-t", "-p" };
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].toString().endsWith(".java")) {
+                System.out.printf("Running parallel scanner on %s ...\n\n",
+                        files[i].toString());
+                for (String option : options) {
+                    String expected = run(option, files[i].toString());
+                    boolean expectedError = Main.errorHasOccurred();
+                    String actual = run(option + " -ps", files[i].toString());
+                    assertEquals(files[i].toString(), expected, actual);
+                    assertEquals(expectedError, Main.errorHasOccurred());
+                    if (!errorsAllowed) {
+                        assertFalse(Main.errorHasOccurred());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the compiler with the specified options on the specified file, and
+     * return what it printed (to STDOUT and STDERR).
+     * 
+     * @param options
+     *            the options, separated by spaces.
+     * @param file
+     *            the file.
+     * @return the output.
+     */
+
+    private String run(String options, String file) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true);
+        System.setOut(printStream);
+        System.setErr(printStream);
+        try {
+            Main.main((options + " " + file).split(" "));
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Entry point.
+     * 
+     * @param args
+     *            command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ParallelScannerTest.class);
+    }
+
+}
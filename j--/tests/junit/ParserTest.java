@@ -3,8 +3,13 @@
 package junit;
 
 import junit.framework.TestCase;
+import jminusminus.Diagnostic;
+import jminusminus.JMinusMinusCompiler;
 import jminusminus.Main;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * JUnit test case for the parser.
@@ -48,6 +53,47 @@ public class ParserTest extends TestCase {
         assertFalse(errorHasOccurred);
     }
 
+    /**
+     * Compile a source with independent syntax errors in one class, and a type
+     * error in another, and check that each error is reported, once: the
+     * parser recovers from each syntax error, and the class without any is
+     * still analyzed.
+     */
+
+    public void testRecovery() {
+        String source = "package fail;\n" // 1
+                + "\n" // 2
+                + "public class Broken {\n" // 3
+                + "    public int f(int x) {\n" // 4
+                + "        int y = x + ;\n" // 5
+                + "        y = y * (2 + x;\n" // 6
+                + "        return y\n" // 7
+                + "    }\n" // 8
+                + "    public int g(int x {\n" // 9
+                + "        while (x > ) { x = x - 1; }\n" // 10
+                + "        return x;\n" // 11
+                + "    }\n" // 12
+                + "    int 1 = 2;\n" // 13
+                + "}\n" // 14
+                + "\n" // 15
+                + "class Sound {\n" // 16
+                + "    public int h() {\n" // 17
+                + "        return new Broken().f(1) + true;\n" // 18
+                + "    }\n" // 19
+                + "}\n"; // 20
+        Map<String, CharSequence> sources = new TreeMap<String, CharSequence>();
+        sources.put("Broken.java", source);
+        JMinusMinusCompiler.Result result = JMinusMinusCompiler.compile(
+                sources, new JMinusMinusCompiler.Options());
+        assertTrue(result.errorHasOccurred());
+        assertTrue(result.classFiles().isEmpty());
+        ArrayList<Integer> lines = new ArrayList<Integer>();
+        for (Diagnostic diagnostic : result.diagnostics()) {
+            lines.add(diagnostic.line());
+        }
+        assertEquals("[5, 6, 8, 9, 10, 13, 18]", lines.toString());
+    }
+
     /**
      * Entry point.
      * 